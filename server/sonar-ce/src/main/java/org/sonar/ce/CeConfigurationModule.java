@@ -24,6 +24,8 @@ import org.sonar.core.platform.Module;
 import org.sonar.process.systeminfo.ProcessStateSystemInfo;
 import org.sonar.server.computation.configuration.CeConfigurationImpl;
 import org.sonar.server.computation.monitoring.CeDatabaseMBeanImpl;
+import org.sonar.server.computation.monitoring.CeMeasuresMBeanImpl;
+import org.sonar.server.es.BulkIndexerMBeanImpl;
 
 public class CeConfigurationModule extends Module {
   @Override
@@ -32,6 +34,8 @@ public class CeConfigurationModule extends Module {
       CeConfigurationImpl.class,
       CeLogging.class,
       CeDatabaseMBeanImpl.class,
+      CeMeasuresMBeanImpl.class,
+      BulkIndexerMBeanImpl.class,
       new ProcessStateSystemInfo("Compute Engine State"));
   }
 }
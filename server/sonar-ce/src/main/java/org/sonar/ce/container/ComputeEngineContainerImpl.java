@@ -135,6 +135,7 @@ import org.sonar.server.startup.LogServerId;
 import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.user.DefaultUserFinder;
 import org.sonar.server.user.DeprecatedUserFinder;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.util.OkHttpClientProvider;
@@ -318,6 +319,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       DefaultUserFinder.class,
       UserIndexer.class,
       UserIndex.class,
+      UserPermissionsCache.class,
 
       // permissions
       DefaultTemplatesResolverImpl.class,
@@ -90,7 +90,8 @@ public final class SqTables {
     "users",
     "user_roles",
     "user_tokens",
-    "webhook_deliveries");
+    "webhook_deliveries",
+    "webhook_delivery_queue");
 
   private SqTables() {
     // prevents instantiation
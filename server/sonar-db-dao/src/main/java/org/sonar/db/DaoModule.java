@@ -68,6 +68,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserTokenDao;
 import org.sonar.db.webhook.WebhookDeliveryDao;
+import org.sonar.db.webhook.WebhookPendingDeliveryDao;
 
 public class DaoModule extends Module {
   private static final List<Class<? extends Dao>> classes = ImmutableList.<Class<? extends Dao>>builder().add(
@@ -119,7 +120,8 @@ public class DaoModule extends Module {
     UserGroupDao.class,
     UserPermissionDao.class,
     UserTokenDao.class,
-    WebhookDeliveryDao.class)
+    WebhookDeliveryDao.class,
+    WebhookPendingDeliveryDao.class)
     .build();
 
   @Override
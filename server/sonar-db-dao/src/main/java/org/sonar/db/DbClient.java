@@ -67,6 +67,7 @@ import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserTokenDao;
 import org.sonar.db.webhook.WebhookDeliveryDao;
+import org.sonar.db.webhook.WebhookPendingDeliveryDao;
 
 public class DbClient {
 
@@ -118,6 +119,7 @@ public class DbClient {
   private final QProfileChangeDao qProfileChangeDao;
   private final UserPermissionDao userPermissionDao;
   private final WebhookDeliveryDao webhookDeliveryDao;
+  private final WebhookPendingDeliveryDao webhookPendingDeliveryDao;
 
   public DbClient(Database database, MyBatis myBatis, Dao... daos) {
     this.database = database;
@@ -173,6 +175,7 @@ public class DbClient {
     qProfileChangeDao = getDao(map, QProfileChangeDao.class);
     userPermissionDao = getDao(map, UserPermissionDao.class);
     webhookDeliveryDao = getDao(map, WebhookDeliveryDao.class);
+    webhookPendingDeliveryDao = getDao(map, WebhookPendingDeliveryDao.class);
   }
 
   public DbSession openSession(boolean batch) {
@@ -367,6 +370,10 @@ public class DbClient {
     return webhookDeliveryDao;
   }
 
+  public WebhookPendingDeliveryDao webhookPendingDeliveryDao() {
+    return webhookPendingDeliveryDao;
+  }
+
   protected <K extends Dao> K getDao(Map<Class, Dao> map, Class<K> clazz) {
     return (K) map.get(clazz);
   }
@@ -120,6 +120,7 @@ import org.sonar.db.user.UserTokenCount;
 import org.sonar.db.user.UserTokenDto;
 import org.sonar.db.user.UserTokenMapper;
 import org.sonar.db.webhook.WebhookDeliveryMapper;
+import org.sonar.db.webhook.WebhookPendingDeliveryMapper;
 
 public class MyBatis implements Startable {
 
@@ -234,7 +235,8 @@ public class MyBatis implements Startable {
       UserMapper.class,
       UserPermissionMapper.class,
       UserTokenMapper.class,
-      WebhookDeliveryMapper.class
+      WebhookDeliveryMapper.class,
+      WebhookPendingDeliveryMapper.class
     };
     confBuilder.loadMappers(mappers);
 
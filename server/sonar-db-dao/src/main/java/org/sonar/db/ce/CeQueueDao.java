@@ -109,16 +109,29 @@ public class CeQueueDao implements Dao {
   }
 
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek(ONE_ROW_LIMIT);
-    if (taskUuids.isEmpty()) {
+    List<CeQueueDto> eligibles = mapper(session).selectEligibleForPeek(ONE_ROW_LIMIT);
+    if (eligibles.isEmpty()) {
       return Optional.absent();
     }
 
-    String taskUuid = taskUuids.get(0);
+    String taskUuid = eligibles.get(0).getUuid();
     return tryToPeek(session, taskUuid);
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
+  /**
+   * Pending tasks which component has no task in progress, oldest first. At most {@code limit} tasks are returned.
+   */
+  public List<CeQueueDto> selectEligibleForPeek(DbSession session, int limit) {
+    return mapper(session).selectEligibleForPeek(new RowBounds(0, limit));
+  }
+
+  /**
+   * Changes the status of the specified task to {@link CeQueueDto.Status#IN_PROGRESS} if it is still
+   * {@link CeQueueDto.Status#PENDING}.
+   *
+   * @return the peeked task, or absent if the task does not exist or is not pending anymore
+   */
+  public Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
       return Optional.absent();
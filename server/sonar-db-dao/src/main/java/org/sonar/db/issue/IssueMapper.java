@@ -30,8 +30,12 @@ public interface IssueMapper {
 
   void selectNonClosedByComponentUuid(@Param("componentUuid") String componentUuid, ResultHandler resultHandler);
 
+  void selectNonClosedByProjectUuid(@Param("projectUuid") String projectUuid, ResultHandler resultHandler);
+
   Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(String projectUuid);
 
+  List<String> selectProjectUuids();
+
   List<IssueDto> selectByKeys(List<String> keys);
 
   void insert(IssueDto issue);
@@ -0,0 +1,48 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Base64;
+import org.sonar.db.protobuf.DbMeasures;
+
+/**
+ * Binary encoding of duplication groups, stored alongside the XML of measures of metric {@code duplications_data}.
+ * Duplication groups are serialized with protobuf (see {@link DbMeasures.Duplications}) and stored as a Base64 string,
+ * so that they fit into the existing text and data columns of measures.
+ */
+public class DuplicationsDataCodec {
+
+  private DuplicationsDataCodec() {
+    // only static methods
+  }
+
+  public static String encode(DbMeasures.Duplications duplications) {
+    return Base64.getEncoder().encodeToString(duplications.toByteArray());
+  }
+
+  public static DbMeasures.Duplications decode(String data) {
+    try {
+      return DbMeasures.Duplications.parseFrom(Base64.getDecoder().decode(data));
+    } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+      throw new IllegalStateException("Fail to decode duplications data", e);
+    }
+  }
+}
@@ -24,11 +24,13 @@ import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class MeasureDao implements Dao {
@@ -93,6 +95,16 @@ public class MeasureDao implements Dao {
       ids -> mapper(dbSession).selectPastMeasuresOnSingleAnalysis(componentUuid, analysisUuid, ids));
   }
 
+  /**
+   * Streams the measures of all the components of an analysis, excluding measures of developers. This is
+   * the single-query equivalent of calling {@link #selectPastMeasures(DbSession, String, String, Collection)}
+   * on every component of a project.
+   */
+  public void selectPastMeasuresOfAnalysis(DbSession dbSession, String analysisUuid, ResultHandler handler) {
+    requireNonNull(handler);
+    mapper(dbSession).selectPastMeasuresOfAnalysis(analysisUuid, handler);
+  }
+
   /**
    * Select measures of:
    * - one component
@@ -26,6 +26,8 @@ import static java.util.Objects.requireNonNull;
 
 public class PastMeasureDto {
 
+  private String componentUuid;
+
   private int metricId;
 
   @CheckForNull
@@ -48,6 +50,15 @@ public class PastMeasureDto {
     return value != null;
   }
 
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  PastMeasureDto setComponentUuid(String s) {
+    this.componentUuid = s;
+    return this;
+  }
+
   public int getMetricId() {
     return metricId;
   }
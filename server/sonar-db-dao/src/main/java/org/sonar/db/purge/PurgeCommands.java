@@ -218,5 +218,10 @@ class PurgeCommands {
     purgeMapper.deleteWebhookDeliveriesByProjectUuid(rootUuid);
     session.commit();
     profiler.stop();
+
+    profiler.start("deleteWebhookDeliveries (webhook_delivery_queue)");
+    purgeMapper.deleteWebhookPendingDeliveriesByProjectUuid(rootUuid);
+    session.commit();
+    profiler.stop();
   }
 }
@@ -89,4 +89,6 @@ public interface PurgeMapper {
   void deleteCeQueueByProjectUuid(@Param("projectUuid") String projectUuid);
 
   void deleteWebhookDeliveriesByProjectUuid(@Param("projectUuid") String projectUuid);
+
+  void deleteWebhookPendingDeliveriesByProjectUuid(@Param("projectUuid") String projectUuid);
 }
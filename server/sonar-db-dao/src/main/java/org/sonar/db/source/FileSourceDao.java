@@ -25,16 +25,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -98,6 +102,29 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Streams the line hashes of all the source files of a project. Only the fields
+   * {@link FileSourceDto#getFileUuid()} and {@link FileSourceDto#getLineHashes()} are loaded.
+   */
+  public void selectLineHashesForProject(DbSession dbSession, String projectUuid, ResultHandler handler) {
+    mapper(dbSession).selectLineHashesForProject(projectUuid, Type.SOURCE, handler);
+  }
+
+  /**
+   * Line hashes of the given source files. Only the fields {@link FileSourceDto#getFileUuid()} and
+   * {@link FileSourceDto#getLineHashes()} are loaded.
+   */
+  public List<FileSourceDto> selectLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    return executeLargeInputs(fileUuids, partition -> mapper(dbSession).selectLineHashesByFileUuids(partition, Type.SOURCE));
+  }
+
+  /**
+   * Uuids of all the projects having rows of the given data type
+   */
+  public List<String> selectProjectUuids(DbSession dbSession, String dataType) {
+    return mapper(dbSession).selectProjectUuids(dataType);
+  }
+
   public void insert(DbSession session, FileSourceDto dto) {
     mapper(session).insert(dto);
   }
@@ -20,9 +20,11 @@
 package org.sonar.db.source;
 
 import com.google.protobuf.CodedInputStream;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -32,14 +34,27 @@ import javax.annotation.Nullable;
 import net.jpountz.lz4.LZ4BlockInputStream;
 import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.protobuf.DbFileSources;
 
 import static java.lang.String.format;
 
 public class FileSourceDto {
 
-  private static final String SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE = "Protocol message was too large.  May be malicious.  " +
-    "Use CodedInputStream.setSizeLimit() to increase the size limit.";
+  /**
+   * Tags of the fields of {@link DbFileSources.Data} and {@link DbFileSources.Line} read by {@link #decodeScmData(byte[])}
+   */
+  private static final int LINES_TAG = tag(DbFileSources.Data.LINES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int LINE_TAG = tag(DbFileSources.Line.LINE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+  private static final int SCM_REVISION_TAG = tag(DbFileSources.Line.SCM_REVISION_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int SCM_AUTHOR_TAG = tag(DbFileSources.Line.SCM_AUTHOR_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int SCM_DATE_TAG = tag(DbFileSources.Line.SCM_DATE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+
+  /**
+   * Maximum number of lines in a block of source data
+   */
+  static final int LINES_PER_BLOCK = 500;
+  private static final byte[] BLOCKS_HEADER = {'S', 'Q', 'B', '1'};
 
   private Long id;
   private String projectUuid;
@@ -94,8 +109,35 @@ public class FileSourceDto {
   }
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
+    return decodeSourceData(binaryData, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Decodes only the lines numbered from {@code from} to {@code toInclusive}. When the data is stored in blocks
+   * (see {@link #encodeSourceData(DbFileSources.Data)}), the blocks out of this range are not decompressed.
+   */
+  public DbFileSources.Data decodeSourceData(byte[] binaryData, int from, int toInclusive) {
+    return decode(binaryData, from, toInclusive, DbFileSources.Data::parseFrom);
+  }
+
+  /**
+   * Decodes only the line numbers and the SCM fields of lines. Other fields, like source code, highlighting or
+   * symbols, are skipped without being copied nor decoded.
+   */
+  public DbFileSources.Data decodeScmData(byte[] binaryData) {
+    return decode(binaryData, Integer.MIN_VALUE, Integer.MAX_VALUE, FileSourceDto::parseScmData);
+  }
+
+  private DbFileSources.Data decode(byte[] binaryData, int from, int toInclusive, DataParser parser) {
     try {
-      return decodeRegularSourceData(binaryData);
+      if (isStoredInBlocks(binaryData)) {
+        return decodeBlocksOfSourceData(binaryData, from, toInclusive, parser);
+      }
+      DbFileSources.Data data = decompressAndParse(new ByteArrayInputStream(binaryData), parser);
+      if (from == Integer.MIN_VALUE && toInclusive == Integer.MAX_VALUE) {
+        return data;
+      }
+      return DbFileSources.Data.newBuilder().addAllLines(filterLines(data.getLinesList(), from, toInclusive)).build();
     } catch (IOException e) {
       throw new IllegalStateException(
         format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
@@ -103,41 +145,140 @@ public class FileSourceDto {
     }
   }
 
-  private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
-      return DbFileSources.Data.parseFrom(lz4Input);
-    } catch (InvalidProtocolBufferException e) {
-      if (SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE.equals(e.getMessage())) {
-        return decodeHugeSourceData(binaryData);
+  private static boolean isStoredInBlocks(byte[] binaryData) {
+    if (binaryData.length < BLOCKS_HEADER.length) {
+      return false;
+    }
+    for (int i = 0; i < BLOCKS_HEADER.length; i++) {
+      if (binaryData[i] != BLOCKS_HEADER[i]) {
+        return false;
       }
-      throw e;
     }
+    return true;
   }
 
-  private static DbFileSources.Data decodeHugeSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+  private static DbFileSources.Data decodeBlocksOfSourceData(byte[] binaryData, int from, int toInclusive, DataParser parser) throws IOException {
+    DataInputStream index = new DataInputStream(new ByteArrayInputStream(binaryData, BLOCKS_HEADER.length, binaryData.length - BLOCKS_HEADER.length));
+    int blockCount = index.readInt();
+    int[] firstLines = new int[blockCount];
+    int[] lengths = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      firstLines[i] = index.readInt();
+      lengths[i] = index.readInt();
+    }
+
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    int offset = BLOCKS_HEADER.length + 4 + 8 * blockCount;
+    for (int i = 0; i < blockCount; i++) {
+      boolean beforeRange = i + 1 < blockCount && firstLines[i + 1] <= from;
+      boolean afterRange = firstLines[i] > toInclusive;
+      if (!beforeRange && !afterRange) {
+        DbFileSources.Data block = decompressAndParse(new ByteArrayInputStream(binaryData, offset, lengths[i]), parser);
+        data.addAllLines(filterLines(block.getLinesList(), from, toInclusive));
+      }
+      offset += lengths[i];
+    }
+    return data.build();
+  }
+
+  private static List<DbFileSources.Line> filterLines(List<DbFileSources.Line> lines, int from, int toInclusive) {
+    return lines.stream()
+      .filter(line -> line.getLine() >= from && line.getLine() <= toInclusive)
+      .collect(MoreCollectors.toList());
+  }
+
+  /**
+   * The size limit of protobuf is disabled, as the data of huge files may exceed it
+   */
+  private static DbFileSources.Data decompressAndParse(InputStream binaryInput, DataParser parser) throws IOException {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(binaryInput)) {
       CodedInputStream input = CodedInputStream.newInstance(lz4Input);
       input.setSizeLimit(Integer.MAX_VALUE);
-      return DbFileSources.Data.parseFrom(input);
+      return parser.parse(input);
+    }
+  }
+
+  private static DbFileSources.Data parseScmData(CodedInputStream input) throws IOException {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == LINES_TAG) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        data.addLines(parseScmFieldsOfLine(input));
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return data.build();
+  }
+
+  private static DbFileSources.Line parseScmFieldsOfLine(CodedInputStream input) throws IOException {
+    DbFileSources.Line.Builder line = DbFileSources.Line.newBuilder();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == LINE_TAG) {
+        line.setLine(input.readInt32());
+      } else if (tag == SCM_REVISION_TAG) {
+        line.setScmRevision(input.readString());
+      } else if (tag == SCM_AUTHOR_TAG) {
+        line.setScmAuthor(input.readString());
+      } else if (tag == SCM_DATE_TAG) {
+        line.setScmDate(input.readInt64());
+      } else {
+        input.skipField(tag);
+      }
     }
+    return line.build();
+  }
+
+  private static int tag(int fieldNumber, int wireType) {
+    return (fieldNumber << 3) | wireType;
+  }
+
+  @FunctionalInterface
+  private interface DataParser {
+    DbFileSources.Data parse(CodedInputStream input) throws IOException;
   }
 
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
    * in the column BINARY_DATA.
+   * <p/>
+   * Lines are grouped in blocks of {@link #LINES_PER_BLOCK} lines which are compressed independently, so that
+   * a range of lines can be read without decompressing the whole file. The header contains the number of blocks, then
+   * the first line number and the size in bytes of each block. Data written by previous versions, compressed as a single
+   * LZ4 stream, is still supported when reading and is replaced on the next analysis of the project.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
+    List<DbFileSources.Line> lines = data.getLinesList();
+    List<byte[]> blocks = new ArrayList<>();
     ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
-    try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+    try (DataOutputStream output = new DataOutputStream(byteOutput)) {
+      output.write(BLOCKS_HEADER);
+      output.writeInt((lines.size() + LINES_PER_BLOCK - 1) / LINES_PER_BLOCK);
+      for (int i = 0; i < lines.size(); i += LINES_PER_BLOCK) {
+        List<DbFileSources.Line> blockLines = lines.subList(i, Math.min(i + LINES_PER_BLOCK, lines.size()));
+        byte[] block = compress(DbFileSources.Data.newBuilder().addAllLines(blockLines).build());
+        output.writeInt(blockLines.get(0).getLine());
+        output.writeInt(block.length);
+        blocks.add(block);
+      }
+      for (byte[] block : blocks) {
+        output.write(block);
+      }
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
+    return byteOutput.toByteArray();
+  }
+
+  private static byte[] compress(DbFileSources.Data data) throws IOException {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      data.writeTo(compressedOutput);
+    }
+    return byteOutput.toByteArray();
   }
 
   public static List<DbFileSources.Test> decodeTestData(byte[] binaryData) {
@@ -212,6 +353,20 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Lines numbered from {@code from} to {@code toInclusive} of the protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
+   */
+  public DbFileSources.Data getSourceData(int from, int toInclusive) {
+    return decodeSourceData(binaryData, from, toInclusive);
+  }
+
+  /**
+   * Protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data} in which lines only have their number and SCM fields
+   */
+  public DbFileSources.Data getScmData() {
+    return decodeScmData(binaryData);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
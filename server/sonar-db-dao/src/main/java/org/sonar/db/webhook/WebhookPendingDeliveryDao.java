@@ -0,0 +1,51 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.List;
+import org.apache.ibatis.session.RowBounds;
+import org.sonar.db.Dao;
+import org.sonar.db.DbSession;
+
+public class WebhookPendingDeliveryDao implements Dao {
+
+  /**
+   * The {@code limit} first pending deliveries, ordered by ascending date of next attempt.
+   */
+  public List<WebhookPendingDeliveryDto> selectOrderedByNextAttemptAt(DbSession dbSession, int limit) {
+    return mapper(dbSession).selectOrderedByNextAttemptAt(new RowBounds(0, limit));
+  }
+
+  public void insert(DbSession dbSession, WebhookPendingDeliveryDto dto) {
+    mapper(dbSession).insert(dto);
+  }
+
+  public void updateAttempt(DbSession dbSession, String uuid, int attempt, long nextAttemptAt) {
+    mapper(dbSession).updateAttempt(uuid, attempt, nextAttemptAt);
+  }
+
+  public void deleteByUuid(DbSession dbSession, String uuid) {
+    mapper(dbSession).deleteByUuid(uuid);
+  }
+
+  private static WebhookPendingDeliveryMapper mapper(DbSession dbSession) {
+    return dbSession.getMapper(WebhookPendingDeliveryMapper.class);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * A webhook delivery which is not completed yet: either never attempted, or waiting for
+ * its next attempt after a failure.
+ */
+public class WebhookPendingDeliveryDto {
+  /** Technical unique identifier, can't be null */
+  private String uuid;
+  /** Component UUID, can't be null */
+  private String componentUuid;
+  /** Compute Engine task UUID, can't be null */
+  private String ceTaskUuid;
+  /** Name, can't be null */
+  private String name;
+  /** URL, can't be null */
+  private String url;
+  /** Key of the project, can't be null */
+  private String projectKey;
+  /** The payload to be sent, can't be null */
+  private String payload;
+  /** Number of the next attempt, starting with 1 */
+  private int attempt;
+  /** Time, in ms, when the next attempt must be sent */
+  private long nextAttemptAt;
+  /** Time, in ms, of creation of the delivery */
+  private long createdAt;
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public WebhookPendingDeliveryDto setUuid(String s) {
+    this.uuid = s;
+    return this;
+  }
+
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public WebhookPendingDeliveryDto setComponentUuid(String s) {
+    this.componentUuid = s;
+    return this;
+  }
+
+  public String getCeTaskUuid() {
+    return ceTaskUuid;
+  }
+
+  public WebhookPendingDeliveryDto setCeTaskUuid(String s) {
+    this.ceTaskUuid = s;
+    return this;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public WebhookPendingDeliveryDto setName(String s) {
+    this.name = s;
+    return this;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public WebhookPendingDeliveryDto setUrl(String s) {
+    this.url = s;
+    return this;
+  }
+
+  public String getProjectKey() {
+    return projectKey;
+  }
+
+  public WebhookPendingDeliveryDto setProjectKey(String s) {
+    this.projectKey = s;
+    return this;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  public WebhookPendingDeliveryDto setPayload(String s) {
+    this.payload = s;
+    return this;
+  }
+
+  public int getAttempt() {
+    return attempt;
+  }
+
+  public WebhookPendingDeliveryDto setAttempt(int i) {
+    this.attempt = i;
+    return this;
+  }
+
+  public long getNextAttemptAt() {
+    return nextAttemptAt;
+  }
+
+  public WebhookPendingDeliveryDto setNextAttemptAt(long l) {
+    this.nextAttemptAt = l;
+    return this;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public WebhookPendingDeliveryDto setCreatedAt(long l) {
+    this.createdAt = l;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+      .append("uuid", uuid)
+      .append("componentUuid", componentUuid)
+      .append("ceTaskUuid", ceTaskUuid)
+      .append("name", name)
+      .append("url", url)
+      .append("attempt", attempt)
+      .append("nextAttemptAt", nextAttemptAt)
+      .append("createdAt", createdAt)
+      .toString();
+  }
+}
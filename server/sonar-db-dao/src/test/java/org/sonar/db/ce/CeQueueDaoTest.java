@@ -36,6 +36,7 @@ import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
 import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
 import static org.sonar.db.ce.CeQueueTesting.newCeQueueDto;
@@ -182,6 +183,35 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void selectEligibleForPeek_returns_oldest_pending_tasks_of_components_without_task_in_progress() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 3_000);
+    insert("TASK_4", "PROJECT_3", PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 10))
+      .extracting(CeQueueDto::getUuid, CeQueueDto::getComponentUuid)
+      .containsExactly(tuple(TASK_UUID_3, COMPONENT_UUID_2), tuple("TASK_4", "PROJECT_3"));
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 1))
+      .extracting(CeQueueDto::getUuid)
+      .containsExactly(TASK_UUID_3);
+  }
+
+  @Test
+  public void tryToPeek_peeks_task_only_if_pending() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+
+    Optional<CeQueueDto> peek = underTest.tryToPeek(db.getSession(), TASK_UUID_1);
+    assertThat(peek.get().getStatus()).isEqualTo(IN_PROGRESS);
+
+    assertThat(underTest.tryToPeek(db.getSession(), TASK_UUID_1).isPresent()).isFalse();
+    assertThat(underTest.tryToPeek(db.getSession(), "unknown").isPresent()).isFalse();
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
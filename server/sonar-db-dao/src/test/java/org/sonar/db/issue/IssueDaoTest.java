@@ -122,6 +122,13 @@ public class IssueDaoTest {
     assertThat(issues).extracting("key").containsExactly("I2", "I1");
   }
 
+  @Test
+  public void selectProjectUuids() {
+    prepareTables();
+
+    assertThat(underTest.selectProjectUuids(dbTester.getSession())).containsExactly(PROJECT_UUID);
+  }
+
   private static IssueDto newIssueDto(String key) {
     IssueDto dto = new IssueDto();
     dto.setComponent(new ComponentDto().setKey("struts:Action").setId(123L).setUuid("component-uuid"));
@@ -19,6 +19,8 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -213,6 +215,41 @@ public class IssueMapperTest {
     assertThat(result.getUpdatedAt()).isEqualTo(1_500_000_000_000L);
   }
 
+  @Test
+  public void selectNonClosedByProjectUuid() {
+    underTest.insert(newIssue().setKee("RESOLVED_ON_FILE"));
+    underTest.insert(newIssue().setKee("OPEN_ON_FILE_2").setComponentUuid(file2.uuid()).setStatus("OPEN").setResolution(null));
+    underTest.insert(newIssue().setKee("CLOSED").setStatus("CLOSED"));
+    ComponentDto otherProject = ComponentTesting.newProjectDto(dbTester.organizations().insert());
+    ComponentDto otherFile = ComponentTesting.newFileDto(otherProject, null);
+    dbTester.getDbClient().componentDao().insert(dbSession, otherProject, otherFile);
+    underTest.insert(newIssue().setKee("ON_OTHER_PROJECT").setComponentUuid(otherFile.uuid()).setProjectUuid(otherProject.uuid()));
+    dbSession.commit();
+
+    List<IssueDto> issues = new ArrayList<>();
+    underTest.selectNonClosedByProjectUuid(project.uuid(), resultContext -> issues.add((IssueDto) resultContext.getResultObject()));
+
+    assertThat(issues).extracting(IssueDto::getKey).containsOnly("RESOLVED_ON_FILE", "OPEN_ON_FILE_2");
+    IssueDto issueOnFile2 = issues.stream().filter(issue -> issue.getKey().equals("OPEN_ON_FILE_2")).findFirst().get();
+    assertThat(issueOnFile2.getComponentUuid()).isEqualTo(file2.uuid());
+    assertThat(issueOnFile2.getComponentKey()).isEqualTo(file2.key());
+    assertThat(issueOnFile2.getProjectKey()).isEqualTo(project.key());
+    assertThat(issueOnFile2.getRuleKey()).isEqualTo(rule.getKey());
+    assertThat(issueOnFile2.getStatus()).isEqualTo("OPEN");
+  }
+
+  @Test
+  public void selectNonClosedByProjectUuid_returns_nothing_when_project_has_no_issues() {
+    underTest.insert(newIssue().setKee("CLOSED").setStatus("CLOSED"));
+    dbSession.commit();
+
+    List<IssueDto> issues = new ArrayList<>();
+    underTest.selectNonClosedByProjectUuid(project.uuid(), resultContext -> issues.add((IssueDto) resultContext.getResultObject()));
+    underTest.selectNonClosedByProjectUuid("unknown", resultContext -> issues.add((IssueDto) resultContext.getResultObject()));
+
+    assertThat(issues).isEmpty();
+  }
+
   private IssueDto newIssue() {
     return new IssueDto()
       .setKee("ABCDE")
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.protobuf.DbMeasures;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DuplicationsDataCodecTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void encode_and_decode() {
+    DbMeasures.Duplications duplications = DbMeasures.Duplications.newBuilder()
+      .addComponentKey("PROJECT:file")
+      .addGroup(DbMeasures.Group.newBuilder()
+        .addBlock(DbMeasures.Block.newBuilder().setComponentKeyIndex(0).setStartLine(1).setLength(10))
+        .addBlock(DbMeasures.Block.newBuilder().setComponentKeyIndex(0).setStartLine(20).setLength(10)))
+      .build();
+
+    String data = DuplicationsDataCodec.encode(duplications);
+
+    assertThat(DuplicationsDataCodec.decode(data)).isEqualTo(duplications);
+  }
+
+  @Test
+  public void fail_to_decode_invalid_data() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decode duplications data");
+
+    DuplicationsDataCodec.decode("not base64 !");
+  }
+}
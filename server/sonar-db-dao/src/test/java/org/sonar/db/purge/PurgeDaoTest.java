@@ -46,7 +46,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.db.ce.CeTaskTypes.REPORT;
 import static org.sonar.db.webhook.WebhookDbTesting.newWebhookDeliveryDto;
+import static org.sonar.db.webhook.WebhookDbTesting.newWebhookPendingDeliveryDto;
 import static org.sonar.db.webhook.WebhookDbTesting.selectAllDeliveryUuids;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllPendingDeliveryUuids;
 
 public class PurgeDaoTest {
 
@@ -243,6 +245,16 @@ public class PurgeDaoTest {
     assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D2");
   }
 
+  @Test
+  public void deleteProject_deletes_pending_webhook_deliveries() {
+    dbClient.webhookPendingDeliveryDao().insert(dbSession, newWebhookPendingDeliveryDto().setComponentUuid("P1").setUuid("D1"));
+    dbClient.webhookPendingDeliveryDao().insert(dbSession, newWebhookPendingDeliveryDto().setComponentUuid("P2").setUuid("D2"));
+
+    underTest.deleteProject(dbSession, "P1");
+
+    assertThat(selectAllPendingDeliveryUuids(dbTester, dbSession)).containsOnly("D2");
+  }
+
   private CeQueueDto createCeQueue(ComponentDto component, Status status) {
     CeQueueDto queueDto = new CeQueueDto();
     queueDto.setUuid(Uuids.create());
@@ -21,6 +21,9 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -33,6 +36,7 @@ import org.sonar.db.source.FileSourceDto.Type;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class FileSourceDaoTest {
 
@@ -69,6 +73,78 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void select_line_hashes_for_project() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("TEST_UUID")
+      .setDataType(Type.TEST)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setDataType(Type.SOURCE)
+      .setLineHashes("JKL")
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("OTHER_PRJ_UUID")
+      .setFileUuid("FILE3_UUID")
+      .setDataType(Type.SOURCE)
+      .setLineHashes("MNO")
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    session.commit();
+
+    List<FileSourceDto> result = new ArrayList<>();
+    underTest.selectLineHashesForProject(session, "PRJ_UUID", context -> result.add((FileSourceDto) context.getResultObject()));
+
+    assertThat(result).extracting(FileSourceDto::getFileUuid, FileSourceDto::getLineHashes).containsOnly(
+      tuple("FILE1_UUID", "ABC\\nDEF\\nGHI"),
+      tuple("FILE2_UUID", "JKL"));
+  }
+
+  @Test
+  public void select_line_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setDataType(Type.SOURCE)
+      .setLineHashes("JKL")
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("TEST_UUID")
+      .setDataType(Type.TEST)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    session.commit();
+
+    List<FileSourceDto> result = underTest.selectLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID", "TEST_UUID", "UNKNOWN"));
+
+    assertThat(result).extracting(FileSourceDto::getFileUuid, FileSourceDto::getLineHashes).containsOnly(
+      tuple("FILE1_UUID", "ABC\\nDEF\\nGHI"));
+  }
+
+  @Test
+  public void select_project_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("OTHER_PRJ_UUID")
+      .setFileUuid("TEST_UUID")
+      .setDataType(Type.TEST)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+    session.commit();
+
+    assertThat(underTest.selectProjectUuids(session, Type.SOURCE)).containsExactly("PRJ_UUID");
+    assertThat(underTest.selectProjectUuids(session, Type.TEST)).containsExactly("OTHER_PRJ_UUID");
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -19,8 +19,11 @@
  */
 package org.sonar.db.source;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -80,6 +83,94 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getSourceData_decodes_only_requested_range_of_lines() {
+    DbFileSources.Data data = createData(2 * FileSourceDto.LINES_PER_BLOCK + 10);
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data);
+
+    assertThat(underTest.getSourceData().getLinesList()).isEqualTo(data.getLinesList());
+    assertThat(underTest.getSourceData(1, 3).getLinesList()).extracting(DbFileSources.Line::getLine).containsExactly(1, 2, 3);
+    int lastLineOfFirstBlock = FileSourceDto.LINES_PER_BLOCK;
+    assertThat(underTest.getSourceData(lastLineOfFirstBlock, lastLineOfFirstBlock + 1).getLinesList()).extracting(DbFileSources.Line::getLine)
+      .containsExactly(lastLineOfFirstBlock, lastLineOfFirstBlock + 1);
+    assertThat(underTest.getSourceData(data.getLinesCount() - 1, data.getLinesCount() + 100).getLinesList()).extracting(DbFileSources.Line::getSource)
+      .containsExactly("line " + (data.getLinesCount() - 1), "line " + data.getLinesCount());
+    assertThat(underTest.getSourceData(data.getLinesCount() + 1, data.getLinesCount() + 100).getLinesList()).isEmpty();
+  }
+
+  @Test
+  public void getScmData_decodes_only_line_numbers_and_scm_fields() {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= FileSourceDto.LINES_PER_BLOCK + 10; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i).setHighlighting("0,5,k").setLineHits(i)
+        .setScmRevision("rev-" + (i % 2)).setScmAuthor("author").setScmDate(1_500_000_000_000L + i)
+        .addDuplication(i);
+    }
+    DbFileSources.Data data = dataBuilder.build();
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data);
+
+    List<DbFileSources.Line> lines = underTest.getScmData().getLinesList();
+
+    assertThat(lines).hasSize(data.getLinesCount());
+    for (int i = 0; i < lines.size(); i++) {
+      DbFileSources.Line expected = data.getLines(i);
+      assertThat(lines.get(i)).isEqualTo(DbFileSources.Line.newBuilder()
+        .setLine(expected.getLine())
+        .setScmRevision(expected.getScmRevision())
+        .setScmAuthor(expected.getScmAuthor())
+        .setScmDate(expected.getScmDate())
+        .build());
+    }
+  }
+
+  @Test
+  public void getScmData_reads_data_compressed_as_single_LZ4_stream() throws IOException {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    dataBuilder.addLinesBuilder().setLine(1).setSource("foo").setScmRevision("rev-1").setScmDate(1_500_000_000_000L);
+    dataBuilder.addLinesBuilder().setLine(2).setSource("bar");
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      dataBuilder.build().writeTo(compressedOutput);
+    }
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(byteOutput.toByteArray());
+
+    List<DbFileSources.Line> lines = underTest.getScmData().getLinesList();
+
+    assertThat(lines).extracting(DbFileSources.Line::getLine).containsExactly(1, 2);
+    assertThat(lines).extracting(DbFileSources.Line::hasSource).containsOnly(false);
+    assertThat(lines.get(0).getScmRevision()).isEqualTo("rev-1");
+    assertThat(lines.get(1).hasScmRevision()).isFalse();
+  }
+
+  @Test
+  public void encode_and_decode_empty_source_data() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(DbFileSources.Data.getDefaultInstance());
+
+    assertThat(underTest.getSourceData().getLinesList()).isEmpty();
+    assertThat(underTest.getSourceData(1, 10).getLinesList()).isEmpty();
+  }
+
+  @Test
+  public void getSourceData_reads_data_compressed_as_single_LZ4_stream() throws IOException {
+    DbFileSources.Data data = createData(3);
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      data.writeTo(compressedOutput);
+    }
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(byteOutput.toByteArray());
+
+    assertThat(underTest.getSourceData()).isEqualTo(data);
+    assertThat(underTest.getSourceData(2, 5).getLinesList()).extracting(DbFileSources.Line::getLine).containsExactly(2, 3);
+  }
+
+  private static DbFileSources.Data createData(int lines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= lines; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i);
+    }
+    return dataBuilder.build();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
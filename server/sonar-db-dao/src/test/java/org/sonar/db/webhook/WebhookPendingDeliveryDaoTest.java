@@ -0,0 +1,115 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.webhook;
+
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.sonar.db.webhook.WebhookDbTesting.newWebhookPendingDeliveryDto;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllPendingDeliveryUuids;
+
+public class WebhookPendingDeliveryDaoTest {
+
+  private static final long NOW = 1_500_000_000L;
+
+  @Rule
+  public final DbTester dbTester = DbTester.create(System2.INSTANCE).setDisableDefaultOrganization(true);
+
+  private final DbClient dbClient = dbTester.getDbClient();
+  private final DbSession dbSession = dbTester.getSession();
+  private final WebhookPendingDeliveryDao underTest = dbClient.webhookPendingDeliveryDao();
+
+  @Test
+  public void selectOrderedByNextAttemptAt_returns_empty_if_no_records() {
+    assertThat(underTest.selectOrderedByNextAttemptAt(dbSession, 10)).isEmpty();
+  }
+
+  @Test
+  public void insert_and_select_all_columns() {
+    WebhookPendingDeliveryDto dto = newWebhookPendingDeliveryDto().setUuid("D1");
+    underTest.insert(dbSession, dto);
+
+    List<WebhookPendingDeliveryDto> stored = underTest.selectOrderedByNextAttemptAt(dbSession, 10);
+
+    assertThat(stored).hasSize(1);
+    WebhookPendingDeliveryDto actual = stored.get(0);
+    assertThat(actual.getUuid()).isEqualTo("D1");
+    assertThat(actual.getComponentUuid()).isEqualTo(dto.getComponentUuid());
+    assertThat(actual.getCeTaskUuid()).isEqualTo(dto.getCeTaskUuid());
+    assertThat(actual.getName()).isEqualTo(dto.getName());
+    assertThat(actual.getUrl()).isEqualTo(dto.getUrl());
+    assertThat(actual.getProjectKey()).isEqualTo(dto.getProjectKey());
+    assertThat(actual.getPayload()).isEqualTo(dto.getPayload());
+    assertThat(actual.getAttempt()).isEqualTo(dto.getAttempt());
+    assertThat(actual.getNextAttemptAt()).isEqualTo(dto.getNextAttemptAt());
+    assertThat(actual.getCreatedAt()).isEqualTo(dto.getCreatedAt());
+  }
+
+  @Test
+  public void selectOrderedByNextAttemptAt_returns_records_ordered_by_date_of_next_attempt() {
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D1").setNextAttemptAt(NOW + 2));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D2").setNextAttemptAt(NOW));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D3").setNextAttemptAt(NOW + 1));
+
+    List<WebhookPendingDeliveryDto> stored = underTest.selectOrderedByNextAttemptAt(dbSession, 10);
+
+    assertThat(stored).extracting(WebhookPendingDeliveryDto::getUuid).containsExactly("D2", "D3", "D1");
+  }
+
+  @Test
+  public void selectOrderedByNextAttemptAt_returns_at_most_limit_records() {
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D1").setNextAttemptAt(NOW + 2));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D2").setNextAttemptAt(NOW));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D3").setNextAttemptAt(NOW + 1));
+
+    List<WebhookPendingDeliveryDto> stored = underTest.selectOrderedByNextAttemptAt(dbSession, 2);
+
+    assertThat(stored).extracting(WebhookPendingDeliveryDto::getUuid).containsExactly("D2", "D3");
+  }
+
+  @Test
+  public void updateAttempt_changes_attempt_number_and_date_of_next_attempt() {
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D1").setAttempt(1).setNextAttemptAt(NOW));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D2").setAttempt(1).setNextAttemptAt(NOW));
+
+    underTest.updateAttempt(dbSession, "D1", 2, NOW + 10_000L);
+
+    List<WebhookPendingDeliveryDto> stored = underTest.selectOrderedByNextAttemptAt(dbSession, 10);
+    assertThat(stored).extracting(WebhookPendingDeliveryDto::getUuid, WebhookPendingDeliveryDto::getAttempt, WebhookPendingDeliveryDto::getNextAttemptAt)
+      .containsExactly(tuple("D2", 1, NOW), tuple("D1", 2, NOW + 10_000L));
+  }
+
+  @Test
+  public void deleteByUuid_deletes_only_the_specified_delivery() {
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D1"));
+    underTest.insert(dbSession, newWebhookPendingDeliveryDto().setUuid("D2"));
+
+    underTest.deleteByUuid(dbSession, "D1");
+
+    assertThat(selectAllPendingDeliveryUuids(dbTester, dbSession)).containsOnly("D2");
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.version.v64;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.CoreDbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CreateTableWebhookDeliveryQueueTest {
+
+  private static final String TABLE = "webhook_delivery_queue";
+
+  @Rule
+  public final CoreDbTester dbTester = CoreDbTester.createForSchema(CreateTableWebhookDeliveryQueueTest.class, "empty.sql");
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private CreateTableWebhookDeliveryQueue underTest = new CreateTableWebhookDeliveryQueue(dbTester.database());
+
+  @Test
+  public void creates_table_on_empty_db() throws SQLException {
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable(TABLE)).isEqualTo(0);
+
+    dbTester.assertColumnDefinition(TABLE, "uuid", Types.VARCHAR, 40, false);
+    dbTester.assertColumnDefinition(TABLE, "component_uuid", Types.VARCHAR, 40, false);
+    dbTester.assertColumnDefinition(TABLE, "ce_task_uuid", Types.VARCHAR, 40, false);
+    dbTester.assertColumnDefinition(TABLE, "name", Types.VARCHAR, 100, false);
+    dbTester.assertColumnDefinition(TABLE, "url", Types.VARCHAR, 2000, false);
+    dbTester.assertColumnDefinition(TABLE, "project_key", Types.VARCHAR, 400, false);
+    dbTester.assertColumnDefinition(TABLE, "payload", Types.CLOB, null, false);
+    dbTester.assertColumnDefinition(TABLE, "attempt", Types.INTEGER, null, false);
+    dbTester.assertColumnDefinition(TABLE, "next_attempt_at", Types.BIGINT, null, false);
+    dbTester.assertColumnDefinition(TABLE, "created_at", Types.BIGINT, null, false);
+    dbTester.assertPrimaryKey(TABLE, "pk_" + TABLE, "uuid");
+    dbTester.assertIndex(TABLE, "webhook_queue_component", "component_uuid");
+  }
+
+  @Test
+  public void migration_is_not_reentrant() throws SQLException {
+    underTest.execute();
+
+    expectedException.expect(IllegalStateException.class);
+
+    underTest.execute();
+  }
+}
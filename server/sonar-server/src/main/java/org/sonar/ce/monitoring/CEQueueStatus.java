@@ -19,6 +19,8 @@
  */
 package org.sonar.ce.monitoring;
 
+import java.util.Map;
+
 public interface CEQueueStatus {
 
   /**
@@ -31,6 +33,17 @@ public interface CEQueueStatus {
    */
   long addInProgress();
 
+  /**
+   * Same as {@link #addInProgress()} and records the time the task waited in queue before being processed.
+   *
+   * @param waitingTimeInMs delay in ms between the submission of the task and the start of its processing
+   *
+   * @throws IllegalArgumentException if waitingTimeInMs is < 0
+   *
+   * @see #getWaitingTimeHistogram()
+   */
+  long addInProgress(long waitingTimeInMs);
+
   /**
    * Adds 1 to the count of batch reports which processing ended successfully and removes 1 from the count of batch
    * reports under processing. Adds the specified time to the processing time counter.
@@ -85,4 +98,16 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Count of tasks by range of time they waited in queue before being processed, since startup.
+   * Keys are the labels of the ranges, ordered by increasing durations.
+   */
+  Map<String, Long> getWaitingTimeHistogram();
+
+  /**
+   * Count of processed tasks by range of processing time, since startup.
+   * Keys are the labels of the ranges, ordered by increasing durations.
+   */
+  Map<String, Long> getProcessingTimeHistogram();
 }
@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import com.google.common.base.Splitter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.MediaTypes;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonar.api.web.UserRole.USER;
+import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
+import static org.sonar.db.component.ComponentDto.UUID_PATH_SEPARATOR;
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_001;
+import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
+
+/**
+ * Line hashes of a list of files of a project or module in a single response, so that the scanner
+ * does not have to request them file per file when tracking issues in issues mode.
+ */
+public class LineHashesAction implements BatchWsAction {
+
+  static final int MAX_FILES = 100;
+  private static final String PARAM_KEY = "key";
+  private static final String PARAM_FILES = "files";
+  private static final Splitter LINE_SPLITTER = Splitter.on('\n');
+
+  private final DbClient dbClient;
+  private final UserSession userSession;
+  private final ComponentFinder componentFinder;
+
+  public LineHashesAction(DbClient dbClient, UserSession userSession, ComponentFinder componentFinder) {
+    this.dbClient = dbClient;
+    this.userSession = userSession;
+    this.componentFinder = componentFinder;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("line_hashes")
+      .setDescription("Return line hashes of some files of a project or module. Files which are not found are ignored.")
+      .setResponseExample(getClass().getResource("line-hashes-example.proto"))
+      .setSince("6.4")
+      .setInternal(true)
+      .setPost(true)
+      .setHandler(this);
+
+    action
+      .createParam(PARAM_KEY)
+      .setRequired(true)
+      .setDescription("Project or module key")
+      .setExampleValue(KEY_PROJECT_EXAMPLE_001);
+
+    action
+      .createParam(PARAM_FILES)
+      .setRequired(true)
+      .setDescription("File key. Repeat this parameter to request several files. At most " + MAX_FILES + " files are accepted.")
+      .setExampleValue(KEY_FILE_EXAMPLE_001);
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    List<String> fileKeys = request.mandatoryMultiParam(PARAM_FILES);
+    checkArgument(fileKeys.size() <= MAX_FILES, "Number of files is limited to %s (got %s)", MAX_FILES, fileKeys.size());
+    response.stream().setMediaType(MediaTypes.PROTOBUF);
+
+    try (DbSession session = dbClient.openSession(false)) {
+      ComponentDto component = componentFinder.getByKey(session, request.mandatoryParam(PARAM_KEY));
+      userSession.checkComponentPermission(USER, component);
+
+      Map<String, ComponentDto> filesByUuid = dbClient.componentDao().selectByKeys(session, fileKeys).stream()
+        .filter(file -> isFileOf(file, component))
+        .collect(uniqueIndex(ComponentDto::uuid));
+
+      OutputStream output = response.stream().output();
+      ScannerInput.LineHashes.Builder builder = ScannerInput.LineHashes.newBuilder();
+      for (FileSourceDto dto : dbClient.fileSourceDao().selectLineHashesByFileUuids(session, filesByUuid.keySet())) {
+        String lineHashes = dto.getLineHashes();
+        if (lineHashes != null) {
+          writeLineHashes(output, builder, filesByUuid.get(dto.getFileUuid()).key(), lineHashes);
+        }
+      }
+    }
+  }
+
+  private static boolean isFileOf(ComponentDto file, ComponentDto component) {
+    return (Qualifiers.FILE.equals(file.qualifier()) || Qualifiers.UNIT_TEST_FILE.equals(file.qualifier()))
+      && file.projectUuid().equals(component.projectUuid())
+      && file.moduleUuidPath().contains(UUID_PATH_SEPARATOR + component.uuid() + UUID_PATH_SEPARATOR);
+  }
+
+  private static void writeLineHashes(OutputStream output, ScannerInput.LineHashes.Builder builder, String fileKey, String lineHashes) {
+    builder.clear();
+    builder.setFileKey(fileKey);
+    builder.addAllLineHash(LINE_SPLITTER.split(lineHashes));
+    try {
+      builder.build().writeDelimitedTo(output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize line hashes of file " + fileKey, e);
+    }
+  }
+}
@@ -31,4 +31,28 @@ public interface CeConfiguration {
    * when previous one had nothing to do.
    */
   long getQueuePollingDelay();
+
+  /**
+   * The number of threads used by a worker to visit files concurrently during the processing of a report.
+   * {@code 1} means that files are visited sequentially.
+   */
+  int getVisitorsParallelism();
+
+  /**
+   * The number of threads used by a worker to compute and compress the sources of files before they are persisted.
+   * {@code 1} means that sources are computed sequentially by the worker.
+   */
+  int getPersistSourcesParallelism();
+
+  /**
+   * The number of workers, in addition to {@link #getWorkerCount()}, which only process tasks of small projects,
+   * so that they do not wait behind the analysis of large projects. {@code 0} means that there is no such worker.
+   */
+  int getSmallProjectsWorkerCount();
+
+  /**
+   * The maximum number of lines of code, as computed by the last analysis, of the projects which tasks can be processed
+   * by the workers dedicated to small projects.
+   */
+  int getSmallProjectsMaxNcloc();
 }
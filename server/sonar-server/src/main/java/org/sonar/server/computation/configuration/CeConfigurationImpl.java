@@ -30,48 +30,78 @@ import static java.lang.String.format;
 
 /**
  * Immutable implementation of {@link CeConfiguration} which takes value returned by
- * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY} and
+ * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY},
+ * value returned by {@link CeConfiguration#getVisitorsParallelism()} from property
+ * {@link CeConfigurationImpl#CE_VISITORS_PARALLELISM_PROPERTY}, value returned by
+ * {@link CeConfiguration#getPersistSourcesParallelism()} from property
+ * {@link CeConfigurationImpl#CE_PERSIST_SOURCES_PARALLELISM_PROPERTY}, the lane of workers dedicated to small projects from
+ * properties {@link CeConfigurationImpl#CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY} and
+ * {@link CeConfigurationImpl#CE_SMALL_PROJECTS_MAX_NCLOC_PROPERTY} and
  * always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when {@link CeConfiguration#getQueuePollingDelay()} is called.
  */
 public class CeConfigurationImpl implements CeConfiguration, Startable {
   public static final String CE_WORKERS_COUNT_PROPERTY = "sonar.ce.workerCount";
+  public static final String CE_VISITORS_PARALLELISM_PROPERTY = "sonar.ce.visitors.parallelism";
+  public static final String CE_PERSIST_SOURCES_PARALLELISM_PROPERTY = "sonar.ce.persistSources.parallelism";
+  public static final String CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY = "sonar.ce.smallProjects.workerCount";
+  public static final String CE_SMALL_PROJECTS_MAX_NCLOC_PROPERTY = "sonar.ce.smallProjects.maxNcloc";
 
   private static final Logger LOG = Loggers.get(CeConfigurationImpl.class);
 
   @VisibleForTesting
   protected static final int DEFAULT_WORKER_COUNT = 1;
+  @VisibleForTesting
+  protected static final int DEFAULT_VISITORS_PARALLELISM = 1;
+  @VisibleForTesting
+  protected static final int DEFAULT_PERSIST_SOURCES_PARALLELISM = 1;
+  @VisibleForTesting
+  protected static final int DEFAULT_SMALL_PROJECTS_WORKER_COUNT = 0;
+  @VisibleForTesting
+  protected static final int DEFAULT_SMALL_PROJECTS_MAX_NCLOC = 10_000;
   // 2 seconds
   @VisibleForTesting
   protected static final long DEFAULT_QUEUE_POLLING_DELAY = 2 * 1000L;
 
   private final int workerCount;
+  private final int visitorsParallelism;
+  private final int persistSourcesParallelism;
+  private final int smallProjectsWorkerCount;
+  private final int smallProjectsMaxNcloc;
 
   public CeConfigurationImpl(Settings settings) {
-    String workerCountAsStr = settings.getString(CE_WORKERS_COUNT_PROPERTY);
-    if (workerCountAsStr == null || workerCountAsStr.isEmpty()) {
-      this.workerCount = DEFAULT_WORKER_COUNT;
-    } else {
-      this.workerCount = parseStringValue(workerCountAsStr);
+    this.workerCount = readInt(settings, CE_WORKERS_COUNT_PROPERTY, DEFAULT_WORKER_COUNT, 1);
+    this.visitorsParallelism = readInt(settings, CE_VISITORS_PARALLELISM_PROPERTY, DEFAULT_VISITORS_PARALLELISM, 1);
+    this.persistSourcesParallelism = readInt(settings, CE_PERSIST_SOURCES_PARALLELISM_PROPERTY, DEFAULT_PERSIST_SOURCES_PARALLELISM, 1);
+    this.smallProjectsWorkerCount = readInt(settings, CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY, DEFAULT_SMALL_PROJECTS_WORKER_COUNT, 0);
+    this.smallProjectsMaxNcloc = readInt(settings, CE_SMALL_PROJECTS_MAX_NCLOC_PROPERTY, DEFAULT_SMALL_PROJECTS_MAX_NCLOC, 0);
+  }
+
+  private static int readInt(Settings settings, String propertyKey, int defaultValue, int minValue) {
+    String valueAsStr = settings.getString(propertyKey);
+    if (valueAsStr == null || valueAsStr.isEmpty()) {
+      return defaultValue;
     }
+    return parseStringValue(propertyKey, valueAsStr, minValue);
   }
 
-  private static int parseStringValue(String workerCountAsStr) {
+  private static int parseStringValue(String propertyKey, String valueAsStr, int minValue) {
     try {
-      int value = Integer.parseInt(workerCountAsStr);
-      if (value < 1) {
-        throw parsingError(workerCountAsStr);
+      int value = Integer.parseInt(valueAsStr);
+      if (value < minValue) {
+        throw parsingError(propertyKey, valueAsStr, minValue);
       }
       return value;
     } catch (NumberFormatException e) {
-      throw parsingError(workerCountAsStr);
+      throw parsingError(propertyKey, valueAsStr, minValue);
     }
   }
 
-  private static MessageException parsingError(String workerCountAsStr) {
+  private static MessageException parsingError(String propertyKey, String valueAsStr, int minValue) {
     return MessageException.of(format(
-      "value '%s' of property %s is invalid. It must an integer strictly greater than 0.",
-      workerCountAsStr,
-      CE_WORKERS_COUNT_PROPERTY)
+      "value '%s' of property %s is invalid. It must an integer %s.",
+      valueAsStr,
+      propertyKey,
+      minValue == 0 ? "greater than or equal to 0" : "strictly greater than 0")
       );
   }
 
@@ -80,6 +110,16 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     if (this.workerCount > 1) {
       LOG.info("Compute Engine will use {} concurrent workers to process tasks", this.workerCount);
     }
+    if (this.visitorsParallelism > 1) {
+      LOG.info("Compute Engine will use {} threads per worker to visit files", this.visitorsParallelism);
+    }
+    if (this.persistSourcesParallelism > 1) {
+      LOG.info("Compute Engine will use {} threads per worker to compute sources of files", this.persistSourcesParallelism);
+    }
+    if (this.smallProjectsWorkerCount > 0) {
+      LOG.info("Compute Engine will use {} additional workers dedicated to projects with at most {} lines of code",
+        this.smallProjectsWorkerCount, this.smallProjectsMaxNcloc);
+    }
   }
 
   @Override
@@ -96,4 +136,24 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   public long getQueuePollingDelay() {
     return DEFAULT_QUEUE_POLLING_DELAY;
   }
+
+  @Override
+  public int getVisitorsParallelism() {
+    return visitorsParallelism;
+  }
+
+  @Override
+  public int getPersistSourcesParallelism() {
+    return persistSourcesParallelism;
+  }
+
+  @Override
+  public int getSmallProjectsWorkerCount() {
+    return smallProjectsWorkerCount;
+  }
+
+  @Override
+  public int getSmallProjectsMaxNcloc() {
+    return smallProjectsMaxNcloc;
+  }
 }
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.db.DbClient;
@@ -34,6 +35,8 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final DurationHistogram waitingTimeHistogram = new DurationHistogram();
+  private final DurationHistogram processingTimeHistogram = new DurationHistogram();
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -44,6 +47,13 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     return inProgress.incrementAndGet();
   }
 
+  @Override
+  public long addInProgress(long waitingTimeInMs) {
+    checkArgument(waitingTimeInMs >= 0, "Waiting time can not be < 0");
+    waitingTimeHistogram.add(waitingTimeInMs);
+    return addInProgress();
+  }
+
   @Override
   public long addError(long processingTimeInMs) {
     addProcessingTime(processingTimeInMs);
@@ -61,6 +71,7 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private void addProcessingTime(long ms) {
     checkArgument(ms >= 0, "Processing time can not be < 0");
     processingTime.addAndGet(ms);
+    processingTimeHistogram.add(ms);
   }
 
   @Override
@@ -89,4 +100,14 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public Map<String, Long> getWaitingTimeHistogram() {
+    return waitingTimeHistogram.toMap();
+  }
+
+  @Override
+  public Map<String, Long> getProcessingTimeHistogram() {
+    return processingTimeHistogram.toMap();
+  }
 }
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+public interface CeMeasuresMBean {
+
+  String OBJECT_NAME = "SonarQube:name=ComputeEngineMeasures";
+
+  /**
+   * Count of tasks which stored raw measures since startup.
+   */
+  long getTaskCount();
+
+  /**
+   * Count of tasks which stored raw measures in columns since startup.
+   */
+  long getColumnarStorageTaskCount();
+
+  /**
+   * Count of lookups of raw measures since startup.
+   */
+  long getRawMeasureLookups();
+
+  /**
+   * Time spent looking up raw measures since startup, in milliseconds.
+   */
+  long getRawMeasureLookupTime();
+
+  /**
+   * Average time of a lookup of raw measure since startup, in nanoseconds.
+   */
+  long getAverageRawMeasureLookupTimeNanos();
+
+  /**
+   * Largest size of the columns of raw measures of a task since startup, in bytes.
+   */
+  long getMaxColumnsSizeInBytes();
+}
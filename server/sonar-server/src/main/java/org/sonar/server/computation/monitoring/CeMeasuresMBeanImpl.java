@@ -0,0 +1,99 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+
+/**
+ * Usage of the storage of raw measures by the tasks, as reported by
+ * {@link org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryImpl} when a task ends.
+ */
+public class CeMeasuresMBeanImpl implements CeMeasuresMBean, Startable {
+
+  private final LongAdder taskCount = new LongAdder();
+  private final LongAdder columnarStorageTaskCount = new LongAdder();
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder lookupNanos = new LongAdder();
+  private final AtomicLong maxColumnsSizeInBytes = new AtomicLong();
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  /**
+   * Unregister, if needed
+   */
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  public void addTaskUsingMapStorage(long taskLookups, long taskLookupNanos) {
+    addTask(taskLookups, taskLookupNanos);
+  }
+
+  public void addTaskUsingColumnarStorage(long taskLookups, long taskLookupNanos, long columnsSizeInBytes) {
+    addTask(taskLookups, taskLookupNanos);
+    columnarStorageTaskCount.increment();
+    maxColumnsSizeInBytes.accumulateAndGet(columnsSizeInBytes, Math::max);
+  }
+
+  private void addTask(long taskLookups, long taskLookupNanos) {
+    taskCount.increment();
+    lookups.add(taskLookups);
+    lookupNanos.add(taskLookupNanos);
+  }
+
+  @Override
+  public long getTaskCount() {
+    return taskCount.sum();
+  }
+
+  @Override
+  public long getColumnarStorageTaskCount() {
+    return columnarStorageTaskCount.sum();
+  }
+
+  @Override
+  public long getRawMeasureLookups() {
+    return lookups.sum();
+  }
+
+  @Override
+  public long getRawMeasureLookupTime() {
+    return TimeUnit.NANOSECONDS.toMillis(lookupNanos.sum());
+  }
+
+  @Override
+  public long getAverageRawMeasureLookupTimeNanos() {
+    long count = lookups.sum();
+    return count == 0 ? 0 : (lookupNanos.sum() / count);
+  }
+
+  @Override
+  public long getMaxColumnsSizeInBytes() {
+    return maxColumnsSizeInBytes.get();
+  }
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import java.util.Map;
+
 public interface CeTasksMBean {
 
   String OBJECT_NAME = "SonarQube:name=ComputeEngineTasks";
@@ -52,4 +54,19 @@ public interface CeTasksMBean {
    * Configured number of Workers.
    */
   int getWorkerCount();
+
+  /**
+   * Configured number of Workers dedicated to small projects.
+   */
+  int getSmallProjectsWorkerCount();
+
+  /**
+   * Count of tasks by range of time they waited in queue before being processed, since startup.
+   */
+  Map<String, Long> getWaitingTimeHistogram();
+
+  /**
+   * Count of tasks by range of processing time, since startup.
+   */
+  Map<String, Long> getProcessingTimeHistogram();
 }
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import com.google.common.base.Joiner;
+import java.util.Map;
 import org.picocontainer.Startable;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.process.Jmx;
@@ -27,6 +29,8 @@ import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.server.computation.configuration.CeConfiguration;
 
 public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSection {
+  private static final Joiner.MapJoiner HISTOGRAM_JOINER = Joiner.on(", ").withKeyValueSeparator("=");
+
   private final CEQueueStatus queueStatus;
   private final CeConfiguration ceConfiguration;
 
@@ -78,6 +82,21 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return ceConfiguration.getWorkerCount();
   }
 
+  @Override
+  public int getSmallProjectsWorkerCount() {
+    return ceConfiguration.getSmallProjectsWorkerCount();
+  }
+
+  @Override
+  public Map<String, Long> getWaitingTimeHistogram() {
+    return queueStatus.getWaitingTimeHistogram();
+  }
+
+  @Override
+  public Map<String, Long> getProcessingTimeHistogram() {
+    return queueStatus.getProcessingTimeHistogram();
+  }
+
   @Override
   public ProtobufSystemInfo.Section toProtobuf() {
     ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
@@ -88,6 +107,9 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
+    builder.addAttributesBuilder().setKey("Small Projects Worker Count").setLongValue(getSmallProjectsWorkerCount()).build();
+    builder.addAttributesBuilder().setKey("Waiting Time Histogram").setStringValue(HISTOGRAM_JOINER.join(getWaitingTimeHistogram())).build();
+    builder.addAttributesBuilder().setKey("Processing Time Histogram").setStringValue(HISTOGRAM_JOINER.join(getProcessingTimeHistogram())).build();
     return builder.build();
   }
 }
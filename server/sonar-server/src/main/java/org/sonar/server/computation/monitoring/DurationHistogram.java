@@ -0,0 +1,61 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Thread-safe counts of durations by ranges, from less than a second to more than an hour.
+ */
+class DurationHistogram {
+
+  private static final long[] UPPER_BOUNDS_IN_MS = {
+    1_000L, 5_000L, 10_000L, 30_000L, 60_000L, 5 * 60_000L, 10 * 60_000L, 30 * 60_000L, 60 * 60_000L
+  };
+  private static final String[] LABELS = {
+    "<=1s", "<=5s", "<=10s", "<=30s", "<=1m", "<=5m", "<=10m", "<=30m", "<=1h", ">1h"
+  };
+
+  private final AtomicLongArray counts = new AtomicLongArray(LABELS.length);
+
+  void add(long durationInMs) {
+    checkArgument(durationInMs >= 0, "Duration can not be < 0");
+    int bucket = 0;
+    while (bucket < UPPER_BOUNDS_IN_MS.length && durationInMs > UPPER_BOUNDS_IN_MS[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+  }
+
+  /**
+   * Counts by label of range, ordered by increasing durations. Ranges without any duration are included.
+   */
+  Map<String, Long> toMap() {
+    Map<String, Long> res = new LinkedHashMap<>();
+    for (int i = 0; i < LABELS.length; i++) {
+      res.put(LABELS[i], counts.get(i));
+    }
+    return res;
+  }
+}
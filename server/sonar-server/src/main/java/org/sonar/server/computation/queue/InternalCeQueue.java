@@ -48,6 +48,12 @@ public interface InternalCeQueue extends CeQueue {
    */
   Optional<CeTask> peek();
 
+  /**
+   * Same as {@link #peek()} but only considers the tasks of projects which last analysis counted at most
+   * {@code maxNcloc} lines of code. Tasks of projects which have never been analyzed are ignored.
+   */
+  Optional<CeTask> peek(int maxNcloc);
+
   /**
    * Removes all the tasks from the queue, whatever their status. They are marked
    * as {@link Status#CANCELED} in past activity.
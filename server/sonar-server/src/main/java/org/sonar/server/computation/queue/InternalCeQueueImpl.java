@@ -24,11 +24,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
 import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.utils.System2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeQueueImpl;
@@ -39,14 +44,22 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 @ComputeEngineSide
 public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue {
 
+  // number of pending tasks considered by peek(int) to find a task of a small project
+  private static final int MAX_PEEK_CANDIDATES = 20;
+
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
@@ -62,21 +75,70 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     this.queueStatus = queueStatus;
   }
 
+  /**
+   * Peeks are serialized so that workers of this instance never start concurrently two tasks of the same project:
+   * the selection of the eligible tasks and the change of status of the selected one are not atomic.
+   */
+  @Override
+  public synchronized Optional<CeTask> peek() {
+    if (peekPaused.get()) {
+      return Optional.absent();
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return toTask(dbSession, dbClient.ceQueueDao().peek(dbSession));
+    }
+  }
+
   @Override
-  public Optional<CeTask> peek() {
+  public synchronized Optional<CeTask> peek(int maxNcloc) {
     if (peekPaused.get()) {
       return Optional.absent();
     }
     try (DbSession dbSession = dbClient.openSession(false)) {
-      Optional<CeQueueDto> dto = dbClient.ceQueueDao().peek(dbSession);
-      CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
-        queueStatus.addInProgress();
+      List<CeQueueDto> candidates = dbClient.ceQueueDao().selectEligibleForPeek(dbSession, MAX_PEEK_CANDIDATES);
+      Map<String, Double> nclocByProjectUuid = selectNclocOfProjects(dbSession, candidates);
+      for (CeQueueDto candidate : candidates) {
+        Double ncloc = candidate.getComponentUuid() == null ? null : nclocByProjectUuid.get(candidate.getComponentUuid());
+        if (ncloc != null && ncloc <= maxNcloc) {
+          Optional<CeQueueDto> dto = dbClient.ceQueueDao().tryToPeek(dbSession, candidate.getUuid());
+          if (dto.isPresent()) {
+            return toTask(dbSession, dto);
+          }
+        }
       }
-      return Optional.fromNullable(task);
+      return Optional.absent();
+    }
+  }
+
+  private Map<String, Double> selectNclocOfProjects(DbSession dbSession, List<CeQueueDto> tasks) {
+    Set<String> projectUuids = tasks.stream()
+      .map(CeQueueDto::getComponentUuid)
+      .filter(Objects::nonNull)
+      .collect(toSet());
+    if (projectUuids.isEmpty()) {
+      return emptyMap();
+    }
+    MeasureQuery query = MeasureQuery.builder()
+      .setProjectUuids(projectUuids)
+      .setMetricKey(CoreMetrics.NCLOC_KEY)
+      .build();
+    return dbClient.measureDao().selectByQuery(dbSession, query).stream()
+      .filter(measure -> measure.getValue() != null)
+      .collect(toMap(MeasureDto::getComponentUuid, MeasureDto::getValue, (a, b) -> a));
+  }
 
+  private Optional<CeTask> toTask(DbSession dbSession, Optional<CeQueueDto> dto) {
+    if (!dto.isPresent()) {
+      return Optional.absent();
+    }
+    CeTask task = loadTask(dbSession, dto.get());
+    Long startedAt = dto.get().getStartedAt();
+    if (startedAt == null) {
+      queueStatus.addInProgress();
+    } else {
+      queueStatus.addInProgress(Math.max(0L, startedAt - dto.get().getCreatedAt()));
     }
+    return Optional.of(task);
   }
 
   @Override
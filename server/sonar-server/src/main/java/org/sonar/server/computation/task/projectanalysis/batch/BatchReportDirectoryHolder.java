@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
 import org.sonar.ce.queue.CeTask;
+import org.sonar.scanner.protocol.output.FileStructure;
 
 public interface BatchReportDirectoryHolder {
   /**
@@ -30,4 +31,10 @@ public interface BatchReportDirectoryHolder {
    */
   File getDirectory();
 
+  /**
+   * The structure of the Batch report files stored in {@link #getDirectory()}.
+   *
+   * @throws IllegalStateException if the holder is empty (ie. there is no directory yet)
+   */
+  FileStructure getFileStructure();
 }
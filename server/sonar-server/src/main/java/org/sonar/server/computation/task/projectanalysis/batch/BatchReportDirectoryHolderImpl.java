@@ -20,15 +20,34 @@
 package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Objects;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.protocol.output.FileStructure;
 
-public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirectoryHolder {
+public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirectoryHolder, Startable {
 
   private File directory;
+  private FileStructure fileStructure;
 
   @Override
   public void setDirectory(File newDirectory) {
     this.directory = Objects.requireNonNull(newDirectory);
+    setFileStructure(null);
+  }
+
+  @Override
+  public void setArchive(File newDirectory, File zipFile) {
+    Objects.requireNonNull(zipFile);
+    this.directory = Objects.requireNonNull(newDirectory);
+    setFileStructure(new LazyExtractedFileStructure(newDirectory, zipFile));
+  }
+
+  private void setFileStructure(@CheckForNull FileStructure newFileStructure) {
+    closeFileStructure();
+    this.fileStructure = newFileStructure;
   }
 
   @Override
@@ -38,4 +57,32 @@ public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirecto
     }
     return this.directory;
   }
+
+  @Override
+  public FileStructure getFileStructure() {
+    if (this.fileStructure == null) {
+      this.fileStructure = new FileStructure(getDirectory());
+    }
+    return this.fileStructure;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    closeFileStructure();
+  }
+
+  private void closeFileStructure() {
+    if (fileStructure instanceof LazyExtractedFileStructure) {
+      try {
+        ((LazyExtractedFileStructure) fileStructure).close();
+      } catch (IOException e) {
+        Loggers.get(BatchReportDirectoryHolderImpl.class).warn("Fail to close report archive", e);
+      }
+    }
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.sonar.scanner.protocol.output.FileStructure;
+
+/**
+ * {@link FileStructure} of a report which is still zipped. The files of the report are extracted from the zip file
+ * into the directory of the structure only when they are accessed for the first time, so that the processing
+ * of the report can start without waiting for the whole report to be extracted.
+ * <p/>
+ * As a consequence, the directory returned by {@link #root()} contains only the files which have already been accessed.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class LazyExtractedFileStructure extends FileStructure implements Closeable {
+
+  private final ZipFile zipFile;
+  // whether an entry has been extracted, by entry name. False if the entry does not exist in the zip file.
+  private final Map<String, Boolean> extractedEntries = new ConcurrentHashMap<>();
+
+  public LazyExtractedFileStructure(File dir, File zipFile) {
+    super(dir);
+    try {
+      this.zipFile = new ZipFile(zipFile);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open report archive " + zipFile, e);
+    }
+  }
+
+  @Override
+  public File metadataFile() {
+    return extract(super.metadataFile());
+  }
+
+  @Override
+  public File analysisLog() {
+    return extract(super.analysisLog());
+  }
+
+  @Override
+  public File activeRules() {
+    return extract(super.activeRules());
+  }
+
+  @Override
+  public File fileFor(Domain domain, int componentRef) {
+    return extract(super.fileFor(domain, componentRef));
+  }
+
+  @Override
+  public File contextProperties() {
+    return extract(super.contextProperties());
+  }
+
+  private File extract(File file) {
+    extractedEntries.computeIfAbsent(file.getName(), name -> extractEntry(name, file));
+    return file;
+  }
+
+  private boolean extractEntry(String name, File target) {
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null) {
+      return false;
+    }
+    try (InputStream input = zipFile.getInputStream(entry)) {
+      FileUtils.copyInputStreamToFile(input, target);
+      return true;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to extract " + name + " from report archive", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
@@ -31,4 +31,14 @@ public interface MutableBatchReportDirectoryHolder extends BatchReportDirectoryH
    * @throws NullPointerException if {@code newDirectory} is {@code null}
    */
   void setDirectory(File newDirectory);
+
+  /**
+   * Sets the directory in the BatchReportDirectoryHolder and the zip file of the report, which files are extracted into
+   * this directory only when they are read for the first time.
+   *
+   * @throws NullPointerException if {@code newDirectory} or {@code zipFile} is {@code null}
+   * @throws IllegalStateException if {@code zipFile} can not be opened
+   * @see LazyExtractedFileStructure
+   */
+  void setArchive(File newDirectory, File zipFile);
 }
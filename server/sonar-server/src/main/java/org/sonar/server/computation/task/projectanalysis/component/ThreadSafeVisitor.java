@@ -0,0 +1,35 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * Declares that a {@link TypeAwareVisitor} can visit different {@link Component.Type#FILE} components
+ * concurrently.
+ * <p/>
+ * When {@link VisitorsCrawler} is created with a {@link java.util.concurrent.ForkJoinPool}, the sibling files
+ * of a component are visited concurrently by the thread-safe visitors which come first in the list of visitors
+ * applying to files. Files are then visited sequentially, in their order in the tree, by the other visitors.
+ * Visits of components other than files are always sequential.
+ * <p/>
+ * {@link PathAwareVisitor} can not be thread-safe, as their path is shared by all the visits.
+ */
+public interface ThreadSafeVisitor extends ComponentVisitor {
+
+}
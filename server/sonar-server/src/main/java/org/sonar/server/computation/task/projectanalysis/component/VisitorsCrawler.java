@@ -23,9 +23,14 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
@@ -37,6 +42,9 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p/>
+ * When a {@link ForkJoinPool} is provided, files are visited concurrently by the {@link ThreadSafeVisitor} which
+ * come first in the list of the visitors applying to files (see {@link ThreadSafeVisitor}).
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
@@ -44,17 +52,49 @@ public class VisitorsCrawler implements ComponentCrawler {
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
   private final List<VisitorWrapper> preOrderVisitorWrappers;
   private final List<VisitorWrapper> postOrderVisitorWrappers;
+  @CheckForNull
+  private final ForkJoinPool forkJoinPool;
+  private final List<VisitorWrapper> concurrentFileVisitorWrappers;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
     this(visitors, false);
   }
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration) {
+    this(visitors, computeDuration, null);
+  }
+
+  /**
+   * @param forkJoinPool if not {@code null}, the pool used to visit files concurrently
+   */
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration, @Nullable ForkJoinPool forkJoinPool) {
     List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
     this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
     this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
     this.computeDuration = computeDuration;
     this.visitorCumulativeDurations = computeDuration ? from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE) : Collections.emptyMap();
+    this.forkJoinPool = forkJoinPool;
+    this.concurrentFileVisitorWrappers = forkJoinPool == null ? Collections.emptyList() : selectConcurrentFileVisitorWrappers();
+  }
+
+  /**
+   * Visitors applying to files are executed on a file in this order: pre-order visitors, then post-order visitors.
+   * The thread-safe ones at the beginning of this sequence can be executed concurrently on the files without changing
+   * the order in which visitors are executed on a given file.
+   */
+  private List<VisitorWrapper> selectConcurrentFileVisitorWrappers() {
+    MatchVisitorMaxDepth fileMaxDepth = MatchVisitorMaxDepth.INSTANCES.get(Component.Type.FILE);
+    List<VisitorWrapper> result = new ArrayList<>();
+    for (VisitorWrapper visitorWrapper : concat(preOrderVisitorWrappers, postOrderVisitorWrappers)) {
+      if (!fileMaxDepth.apply(visitorWrapper)) {
+        continue;
+      }
+      if (!(visitorWrapper instanceof TypeAwareVisitorWrapper) || !(visitorWrapper.getWrappedVisitor() instanceof ThreadSafeVisitor)) {
+        break;
+      }
+      result.add(visitorWrapper);
+    }
+    return result;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -68,8 +108,12 @@ public class VisitorsCrawler implements ComponentCrawler {
 
   @Override
   public void visit(final Component component) {
+    visit(component, Collections.emptyList());
+  }
+
+  private void visit(Component component, List<VisitorWrapper> excludedVisitorWrappers) {
     try {
-      visitImpl(component);
+      visitImpl(component, excludedVisitorWrappers);
     } catch (RuntimeException e) {
       VisitException.rethrowOrWrap(
         e,
@@ -78,10 +122,12 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
-  private void visitImpl(Component component) {
+  private void visitImpl(Component component, List<VisitorWrapper> excludedVisitorWrappers) {
     MatchVisitorMaxDepth visitorMaxDepth = MatchVisitorMaxDepth.forComponent(component);
-    List<VisitorWrapper> preOrderVisitorWrappersToExecute = from(preOrderVisitorWrappers).filter(visitorMaxDepth).toList();
-    List<VisitorWrapper> postOrderVisitorWrappersToExecute = from(postOrderVisitorWrappers).filter(visitorMaxDepth).toList();
+    List<VisitorWrapper> preOrderVisitorWrappersToExecute = from(preOrderVisitorWrappers).filter(visitorMaxDepth)
+      .filter(w -> !excludedVisitorWrappers.contains(w)).toList();
+    List<VisitorWrapper> postOrderVisitorWrappersToExecute = from(postOrderVisitorWrappers).filter(visitorMaxDepth)
+      .filter(w -> !excludedVisitorWrappers.contains(w)).toList();
     if (preOrderVisitorWrappersToExecute.isEmpty() && postOrderVisitorWrappersToExecute.isEmpty()) {
       return;
     }
@@ -106,8 +152,62 @@ public class VisitorsCrawler implements ComponentCrawler {
   }
 
   private void visitChildren(Component component) {
-    for (Component child : component.getChildren()) {
-      visit(child);
+    List<Component> children = component.getChildren();
+    List<Component> files = concurrentFileVisitorWrappers.isEmpty() ? Collections.emptyList() : from(children).filter(IsFile.INSTANCE).toList();
+    if (files.size() < 2) {
+      for (Component child : children) {
+        visit(child);
+      }
+      return;
+    }
+
+    forkJoinPool.invoke(new ConcurrentFileVisits(files, 0, files.size()));
+    for (Component child : children) {
+      if (child.getType() == Component.Type.FILE) {
+        visit(child, concurrentFileVisitorWrappers);
+      } else {
+        visit(child);
+      }
+    }
+  }
+
+  private void visitFileConcurrently(Component file) {
+    try {
+      for (VisitorWrapper visitorWrapper : concurrentFileVisitorWrappers) {
+        visitNode(file, visitorWrapper);
+      }
+    } catch (RuntimeException e) {
+      VisitException.rethrowOrWrap(
+        e,
+        "Visit of Component {key=%s,type=%s} failed",
+        file.getKey(), file.getType());
+    }
+  }
+
+  /**
+   * Visits a range of files by splitting it until a single file remains.
+   */
+  private class ConcurrentFileVisits extends RecursiveAction {
+    private static final long serialVersionUID = 1;
+
+    private final List<Component> files;
+    private final int from;
+    private final int to;
+
+    private ConcurrentFileVisits(List<Component> files, int from, int to) {
+      this.files = files;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        visitFileConcurrently(files.get(from));
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ConcurrentFileVisits(files, from, middle), new ConcurrentFileVisits(files, middle, to));
+      }
     }
   }
 
@@ -210,15 +310,24 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
+  private enum IsFile implements Predicate<Component> {
+    INSTANCE;
+
+    @Override
+    public boolean apply(@Nonnull Component input) {
+      return input.getType() == Component.Type.FILE;
+    }
+  }
+
   private static final class VisitorDuration {
-    private long duration = 0;
+    private final AtomicLong duration = new AtomicLong(0);
 
     public void increment(long duration) {
-      this.duration += duration;
+      this.duration.addAndGet(duration);
     }
 
     public long getDuration() {
-      return duration;
+      return duration.get();
     }
   }
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.container;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nullable;
@@ -28,6 +29,7 @@ import org.sonar.ce.settings.SettingsLoader;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.platform.ContainerPopulator;
 import org.sonar.plugin.ce.ReportAnalysisComponentProvider;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.task.container.TaskContainer;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.api.posttask.PostProjectAnalysisTasksExecutor;
@@ -46,8 +48,10 @@ import org.sonar.server.computation.task.projectanalysis.filemove.MutableMovedFi
 import org.sonar.server.computation.task.projectanalysis.filemove.SourceSimilarityImpl;
 import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationTempFolderProvider;
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
+import org.sonar.server.computation.task.projectanalysis.issue.BaseLineHashesLoader;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepositoryImpl;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentsWithUnprocessedIssues;
 import org.sonar.server.computation.task.projectanalysis.issue.DebtCalculator;
 import org.sonar.server.computation.task.projectanalysis.issue.DefaultAssignee;
@@ -63,6 +67,7 @@ import org.sonar.server.computation.task.projectanalysis.issue.LoadComponentUuid
 import org.sonar.server.computation.task.projectanalysis.issue.MovedIssueVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.NewEffortAggregator;
 import org.sonar.server.computation.task.projectanalysis.issue.NewEffortCalculator;
+import org.sonar.server.computation.task.projectanalysis.issue.PrefetchIssueTrackingVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleTagsCopier;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleTypeCopier;
@@ -126,17 +131,31 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
     container.add(DefaultOrganizationLoader.class);
     container.add(task);
     container.add(steps);
-    container.addSingletons(componentClasses());
+    container.addSingletons(componentClasses(isConcurrentVisitsEnabled(container)));
     for (ReportAnalysisComponentProvider componentProvider : componentProviders) {
       container.addSingletons(componentProvider.getComponents());
     }
     container.addSingletons(steps.orderedStepClasses());
   }
 
+  private static boolean isConcurrentVisitsEnabled(TaskContainer container) {
+    CeConfiguration ceConfiguration = container.getComponentByType(CeConfiguration.class);
+    return ceConfiguration != null && ceConfiguration.getVisitorsParallelism() > 1;
+  }
+
   /**
    * List of all objects to be injected in the picocontainer dedicated to computation stack.
    * Does not contain the steps declared in {@link ReportComputationSteps#orderedStepClasses()}.
    */
+  private static List<Object> componentClasses(boolean concurrentVisits) {
+    List<Object> components = new ArrayList<>(componentClasses());
+    if (concurrentVisits) {
+      // issue tracking is prefetched only when files are visited concurrently, just before the integration of issues
+      components.add(components.indexOf(IntegrateIssuesVisitor.class), PrefetchIssueTrackingVisitor.class);
+    }
+    return components;
+  }
+
   private static List<Object> componentClasses() {
     return Arrays.asList(
       PostProjectAnalysisTasksExecutor.class,
@@ -185,6 +204,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       IssueVisitors.class,
       IssueLifecycle.class,
       ComponentsWithUnprocessedIssues.class,
+      ChangedIssuesRepository.class,
       ComponentIssuesRepositoryImpl.class,
       IssueFilter.class,
 
@@ -227,6 +247,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       Tracker.class,
       TrackerExecution.class,
       BaseIssuesLoader.class,
+      BaseLineHashesLoader.class,
 
       // filemove
       SourceSimilarityImpl.class,
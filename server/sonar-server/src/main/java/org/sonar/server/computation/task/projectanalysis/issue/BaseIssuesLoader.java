@@ -20,21 +20,30 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.annotation.CheckForNull;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolder;
+import org.sonar.server.util.cache.MappedDiskCache;
 
 /**
  * Loads all the project open issues from database, including manual issues.
- *
+ * <p/>
+ * On first call to {@link #loadForComponentUuid(String)}, the open issues of the whole project are streamed
+ * by a single query into a temporary file, indexed by component. Next calls do not query the database.
+ * Issues are loaded concurrently by the prefetch of issue tracking, so the loading is synchronized to be done only once.
  */
 public class BaseIssuesLoader {
 
@@ -42,20 +51,26 @@ public class BaseIssuesLoader {
   private final DbClient dbClient;
   private final RuleRepository ruleRepository;
   private final ActiveRulesHolder activeRulesHolder;
+  private final TempFolder tempFolder;
+  private final System2 system2;
+  @CheckForNull
+  private BaseIssues baseIssues;
 
-  public BaseIssuesLoader(TreeRootHolder treeRootHolder,
-    DbClient dbClient, RuleRepository ruleRepository, ActiveRulesHolder activeRulesHolder) {
+  public BaseIssuesLoader(TreeRootHolder treeRootHolder, DbClient dbClient, RuleRepository ruleRepository, ActiveRulesHolder activeRulesHolder,
+    TempFolder tempFolder, System2 system2) {
     this.activeRulesHolder = activeRulesHolder;
     this.treeRootHolder = treeRootHolder;
     this.dbClient = dbClient;
     this.ruleRepository = ruleRepository;
+    this.tempFolder = tempFolder;
+    this.system2 = system2;
   }
 
   public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      List<DefaultIssue> result = new ArrayList<>();
-      dbSession.getMapper(IssueMapper.class).selectNonClosedByComponentUuid(componentUuid, resultContext -> {
-        DefaultIssue issue = ((IssueDto) resultContext.getResultObject()).toDefaultIssue();
+    List<DefaultIssue> result = new ArrayList<>();
+    try (CloseableIterator<DefaultIssue> issues = baseIssues().cache.traverse(componentUuid)) {
+      while (issues.hasNext()) {
+        DefaultIssue issue = issues.next();
 
         // TODO this field should be set outside this class
         if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
@@ -66,9 +81,34 @@ public class BaseIssuesLoader {
         // FIXME
         issue.setSelectedAt(System.currentTimeMillis());
         result.add(issue);
-      });
-      return result;
+      }
     }
+    return result;
+  }
+
+  /**
+   * Uuids of the components returned by {@link #loadForComponentUuid(String)}
+   */
+  Set<String> loadUuidsOfComponentsWithBaseIssues() {
+    return baseIssues().componentUuids;
+  }
+
+  private synchronized BaseIssues baseIssues() {
+    if (baseIssues == null) {
+      MappedDiskCache<DefaultIssue> cache = new MappedDiskCache<>(tempFolder.newFile("base-issues", ".dat"), system2, new DefaultIssueCodec(),
+        DefaultIssue::componentUuid);
+      Set<String> componentUuids = new HashSet<>();
+      try (DbSession dbSession = dbClient.openSession(false);
+        MappedDiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender()) {
+        dbSession.getMapper(IssueMapper.class).selectNonClosedByProjectUuid(treeRootHolder.getRoot().getUuid(), resultContext -> {
+          DefaultIssue issue = ((IssueDto) resultContext.getResultObject()).toDefaultIssue();
+          componentUuids.add(issue.componentUuid());
+          appender.append(issue);
+        });
+      }
+      this.baseIssues = new BaseIssues(cache, componentUuids);
+    }
+    return baseIssues;
   }
 
   private boolean isActive(RuleKey ruleKey) {
@@ -83,4 +123,14 @@ public class BaseIssuesLoader {
       return dbClient.issueDao().selectComponentUuidsOfOpenIssuesForProjectUuid(dbSession, treeRootHolder.getRoot().getUuid());
     }
   }
+
+  private static class BaseIssues {
+    private final MappedDiskCache<DefaultIssue> cache;
+    private final Set<String> componentUuids;
+
+    private BaseIssues(MappedDiskCache<DefaultIssue> cache, Set<String> componentUuids) {
+      this.cache = cache;
+      this.componentUuids = componentUuids;
+    }
+  }
 }
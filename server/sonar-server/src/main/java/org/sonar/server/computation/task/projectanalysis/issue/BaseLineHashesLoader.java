@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.base.Splitter;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.util.cache.MappedDiskCache;
+import org.sonar.server.util.cache.ObjectCodec;
+
+/**
+ * Loads from database the line hashes of the files which have base issues. Line hashes are not needed
+ * to track the issues of the other files.
+ * <p/>
+ * On first call, the line hashes of the whole project are streamed by a single query into a temporary
+ * file, indexed by file. Next calls do not query the database. Line hashes are loaded concurrently by the prefetch
+ * of issue tracking, so the loading is synchronized to be done only once.
+ */
+public class BaseLineHashesLoader {
+
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+
+  private final TreeRootHolder treeRootHolder;
+  private final DbClient dbClient;
+  private final BaseIssuesLoader baseIssuesLoader;
+  private final TempFolder tempFolder;
+  private final System2 system2;
+  @CheckForNull
+  private MappedDiskCache<FileSourceDto> lineHashes;
+
+  public BaseLineHashesLoader(TreeRootHolder treeRootHolder, DbClient dbClient, BaseIssuesLoader baseIssuesLoader, TempFolder tempFolder, System2 system2) {
+    this.treeRootHolder = treeRootHolder;
+    this.dbClient = dbClient;
+    this.baseIssuesLoader = baseIssuesLoader;
+    this.tempFolder = tempFolder;
+    this.system2 = system2;
+  }
+
+  /**
+   * @return the line hashes of the file, or {@code null} if the file has no base issues or is not in database
+   */
+  @CheckForNull
+  public List<String> loadLineHashes(String fileUuid) {
+    try (CloseableIterator<FileSourceDto> dtos = lineHashes().traverse(fileUuid)) {
+      if (!dtos.hasNext()) {
+        return null;
+      }
+      String hashes = dtos.next().getLineHashes();
+      return hashes == null ? Collections.emptyList() : END_OF_LINE_SPLITTER.splitToList(hashes);
+    }
+  }
+
+  private synchronized MappedDiskCache<FileSourceDto> lineHashes() {
+    if (lineHashes == null) {
+      Set<String> fileUuids = baseIssuesLoader.loadUuidsOfComponentsWithBaseIssues();
+      MappedDiskCache<FileSourceDto> cache = new MappedDiskCache<>(tempFolder.newFile("base-line-hashes", ".dat"), system2, new LineHashesCodec(),
+        FileSourceDto::getFileUuid);
+      try (DbSession dbSession = dbClient.openSession(false);
+        MappedDiskCache<FileSourceDto>.DiskAppender appender = cache.newAppender()) {
+        dbClient.fileSourceDao().selectLineHashesForProject(dbSession, treeRootHolder.getRoot().getUuid(), resultContext -> {
+          FileSourceDto dto = (FileSourceDto) resultContext.getResultObject();
+          if (fileUuids.contains(dto.getFileUuid())) {
+            appender.append(dto);
+          }
+        });
+      }
+      this.lineHashes = cache;
+    }
+    return lineHashes;
+  }
+
+  private static class LineHashesCodec implements ObjectCodec<FileSourceDto> {
+    @Override
+    public void write(FileSourceDto dto, CodedOutputStream output) throws IOException {
+      output.writeStringNoTag(dto.getFileUuid());
+      output.writeBoolNoTag(dto.getLineHashes() != null);
+      if (dto.getLineHashes() != null) {
+        output.writeStringNoTag(dto.getLineHashes());
+      }
+    }
+
+    @Override
+    public FileSourceDto read(CodedInputStream input) throws IOException {
+      FileSourceDto dto = new FileSourceDto().setFileUuid(input.readString());
+      if (input.readBool()) {
+        dto.setLineHashes(input.readString());
+      }
+      return dto;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Keys of the issues inserted or updated in database during the analysis. It allows to re-index only these
+ * issues instead of all the issues of the project.
+ */
+public class ChangedIssuesRepository {
+
+  /**
+   * Above this number of changed issues, the issues of the project are fully re-indexed. It also bounds
+   * the memory used to keep the keys.
+   */
+  static final int MAX_SIZE = 50_000;
+
+  private final Set<String> keys = new HashSet<>();
+  private boolean completed = false;
+  private boolean overflowed = false;
+  private boolean componentsChanged = false;
+
+  public void add(String issueKey) {
+    if (!overflowed) {
+      keys.add(issueKey);
+      if (keys.size() > MAX_SIZE) {
+        overflowed = true;
+        keys.clear();
+      }
+    }
+  }
+
+  /**
+   * Called once all the changed issues have been added.
+   */
+  public void complete() {
+    this.completed = true;
+  }
+
+  /**
+   * Called when the path or the module of existing components changed. These fields are copied into
+   * the index documents of all the issues of the components, including the issues that are not changed
+   * by the analysis.
+   */
+  public void componentsChanged() {
+    this.componentsChanged = true;
+  }
+
+  /**
+   * @return the keys of the changed issues, or empty if they are not known, too many to be indexed one by one,
+   * or if other issues must be re-indexed because their components changed
+   */
+  public Optional<Set<String>> getKeys() {
+    if (!completed || overflowed || componentsChanged) {
+      return Optional.empty();
+    }
+    return Optional.of(unmodifiableSet(keys));
+  }
+}
@@ -0,0 +1,510 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.SerializationUtils;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.ObjectCodec;
+
+/**
+ * Binary encoding of {@link DefaultIssue} used by {@link IssueCache}. An issue is written as a
+ * bit set of the non-null fields followed by the values of these fields.
+ */
+class DefaultIssueCodec implements ObjectCodec<DefaultIssue> {
+
+  private static final int KEY = 0;
+  private static final int TYPE = 1;
+  private static final int COMPONENT_UUID = 2;
+  private static final int COMPONENT_KEY = 3;
+  private static final int MODULE_UUID = 4;
+  private static final int MODULE_UUID_PATH = 5;
+  private static final int PROJECT_UUID = 6;
+  private static final int PROJECT_KEY = 7;
+  private static final int RULE_KEY = 8;
+  private static final int LANGUAGE = 9;
+  private static final int SEVERITY = 10;
+  private static final int MESSAGE = 11;
+  private static final int LINE = 12;
+  private static final int GAP = 13;
+  private static final int EFFORT = 14;
+  private static final int STATUS = 15;
+  private static final int RESOLUTION = 16;
+  private static final int ASSIGNEE = 17;
+  private static final int CHECKSUM = 18;
+  private static final int AUTHOR_LOGIN = 19;
+  private static final int CREATION_DATE = 20;
+  private static final int UPDATE_DATE = 21;
+  private static final int CLOSE_DATE = 22;
+  private static final int SELECTED_AT = 23;
+  private static final int ATTRIBUTES = 24;
+  private static final int TAGS = 25;
+  private static final int COMMENTS = 26;
+  private static final int CHANGES = 27;
+  private static final int LOCATIONS = 28;
+  private static final int MANUAL_SEVERITY = 32;
+  private static final int NEW = 33;
+  private static final int BEING_CLOSED = 34;
+  private static final int ON_DISABLED_RULE = 35;
+  private static final int CHANGED = 36;
+  private static final int SEND_NOTIFICATIONS = 37;
+
+  private static final int COMMENT_USER_LOGIN = 0;
+  private static final int COMMENT_CREATED_AT = 1;
+  private static final int COMMENT_UPDATED_AT = 2;
+  private static final int COMMENT_KEY = 3;
+  private static final int COMMENT_MARKDOWN_TEXT = 4;
+  private static final int COMMENT_ISSUE_KEY = 5;
+  private static final int COMMENT_NEW = 6;
+
+  private static final int CHANGE_ISSUE_KEY = 0;
+  private static final int CHANGE_USER_LOGIN = 1;
+  private static final int CHANGE_CREATION_DATE = 2;
+
+  private static final int VALUE_NULL = 0;
+  private static final int VALUE_STRING = 1;
+  private static final int VALUE_LONG = 2;
+  private static final int VALUE_INTEGER = 3;
+  private static final int VALUE_DOUBLE = 4;
+  private static final int VALUE_SERIALIZED = 5;
+
+  private static final int LOCATIONS_PROTOBUF = 1;
+  private static final int LOCATIONS_SERIALIZED = 2;
+
+  @Override
+  public void write(DefaultIssue issue, CodedOutputStream output) throws IOException {
+    Map<String, String> attributes = issue.attributes();
+    Set<String> tags = issue.tags();
+    List<IssueComment> comments = issue.comments();
+    List<FieldDiffs> changes = issue.changes();
+    Object locations = issue.getLocations();
+
+    long fields = 0L;
+    fields |= bit(KEY, issue.key() != null);
+    fields |= bit(TYPE, issue.type() != null);
+    fields |= bit(COMPONENT_UUID, issue.componentUuid() != null);
+    fields |= bit(COMPONENT_KEY, issue.componentKey() != null);
+    fields |= bit(MODULE_UUID, issue.moduleUuid() != null);
+    fields |= bit(MODULE_UUID_PATH, issue.moduleUuidPath() != null);
+    fields |= bit(PROJECT_UUID, issue.projectUuid() != null);
+    fields |= bit(PROJECT_KEY, issue.projectKey() != null);
+    fields |= bit(RULE_KEY, issue.ruleKey() != null);
+    fields |= bit(LANGUAGE, issue.language() != null);
+    fields |= bit(SEVERITY, issue.severity() != null);
+    fields |= bit(MESSAGE, issue.message() != null);
+    fields |= bit(LINE, issue.line() != null);
+    fields |= bit(GAP, issue.gap() != null);
+    fields |= bit(EFFORT, issue.effort() != null);
+    fields |= bit(STATUS, issue.status() != null);
+    fields |= bit(RESOLUTION, issue.resolution() != null);
+    fields |= bit(ASSIGNEE, issue.assignee() != null);
+    fields |= bit(CHECKSUM, issue.checksum() != null);
+    fields |= bit(AUTHOR_LOGIN, issue.authorLogin() != null);
+    fields |= bit(CREATION_DATE, issue.creationDate() != null);
+    fields |= bit(UPDATE_DATE, issue.updateDate() != null);
+    fields |= bit(CLOSE_DATE, issue.closeDate() != null);
+    fields |= bit(SELECTED_AT, issue.selectedAt() != null);
+    fields |= bit(ATTRIBUTES, !attributes.isEmpty());
+    fields |= bit(TAGS, !tags.isEmpty());
+    fields |= bit(COMMENTS, !comments.isEmpty());
+    fields |= bit(CHANGES, !changes.isEmpty());
+    fields |= bit(LOCATIONS, locations != null);
+    fields |= bit(MANUAL_SEVERITY, issue.manualSeverity());
+    fields |= bit(NEW, issue.isNew());
+    fields |= bit(BEING_CLOSED, issue.isBeingClosed());
+    fields |= bit(ON_DISABLED_RULE, issue.isOnDisabledRule());
+    fields |= bit(CHANGED, issue.isChanged());
+    fields |= bit(SEND_NOTIFICATIONS, issue.mustSendNotifications());
+    output.writeUInt64NoTag(fields);
+
+    writeString(output, issue.key());
+    if (issue.type() != null) {
+      output.writeUInt32NoTag(issue.type().getDbConstant());
+    }
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    if (issue.ruleKey() != null) {
+      output.writeStringNoTag(issue.ruleKey().repository());
+      output.writeStringNoTag(issue.ruleKey().rule());
+    }
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    writeString(output, issue.message());
+    if (issue.line() != null) {
+      output.writeUInt32NoTag(issue.line());
+    }
+    if (issue.gap() != null) {
+      output.writeDoubleNoTag(issue.gap());
+    }
+    if (issue.effort() != null) {
+      output.writeInt64NoTag(issue.effort().toMinutes());
+    }
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeString(output, issue.authorLogin());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    if (issue.selectedAt() != null) {
+      output.writeInt64NoTag(issue.selectedAt());
+    }
+    if (!attributes.isEmpty()) {
+      output.writeUInt32NoTag(attributes.size());
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        output.writeStringNoTag(attribute.getKey());
+        output.writeStringNoTag(attribute.getValue());
+      }
+    }
+    if (!tags.isEmpty()) {
+      output.writeUInt32NoTag(tags.size());
+      for (String tag : tags) {
+        output.writeStringNoTag(tag);
+      }
+    }
+    if (!comments.isEmpty()) {
+      output.writeUInt32NoTag(comments.size());
+      for (IssueComment comment : comments) {
+        writeComment(output, (DefaultIssueComment) comment);
+      }
+    }
+    if (!changes.isEmpty()) {
+      output.writeUInt32NoTag(changes.size());
+      output.writeInt32NoTag(changes.indexOf(issue.currentChange()));
+      for (FieldDiffs change : changes) {
+        writeChange(output, change);
+      }
+    }
+    if (locations != null) {
+      writeLocations(output, locations);
+    }
+  }
+
+  @Override
+  public DefaultIssue read(CodedInputStream input) throws IOException {
+    long fields = input.readUInt64();
+    DefaultIssue issue = new DefaultIssue();
+    if (has(fields, KEY)) {
+      issue.setKey(input.readString());
+    }
+    if (has(fields, TYPE)) {
+      issue.setType(RuleType.valueOf(input.readUInt32()));
+    }
+    if (has(fields, COMPONENT_UUID)) {
+      issue.setComponentUuid(input.readString());
+    }
+    if (has(fields, COMPONENT_KEY)) {
+      issue.setComponentKey(input.readString());
+    }
+    if (has(fields, MODULE_UUID)) {
+      issue.setModuleUuid(input.readString());
+    }
+    if (has(fields, MODULE_UUID_PATH)) {
+      issue.setModuleUuidPath(input.readString());
+    }
+    if (has(fields, PROJECT_UUID)) {
+      issue.setProjectUuid(input.readString());
+    }
+    if (has(fields, PROJECT_KEY)) {
+      issue.setProjectKey(input.readString());
+    }
+    if (has(fields, RULE_KEY)) {
+      issue.setRuleKey(RuleKey.of(input.readString(), input.readString()));
+    }
+    if (has(fields, LANGUAGE)) {
+      issue.setLanguage(input.readString());
+    }
+    if (has(fields, SEVERITY)) {
+      issue.setSeverity(input.readString());
+    }
+    if (has(fields, MESSAGE)) {
+      issue.setMessage(input.readString());
+    }
+    if (has(fields, LINE)) {
+      issue.setLine(input.readUInt32());
+    }
+    if (has(fields, GAP)) {
+      issue.setGap(input.readDouble());
+    }
+    if (has(fields, EFFORT)) {
+      issue.setEffort(Duration.create(input.readInt64()));
+    }
+    if (has(fields, STATUS)) {
+      issue.setStatus(input.readString());
+    }
+    if (has(fields, RESOLUTION)) {
+      issue.setResolution(input.readString());
+    }
+    if (has(fields, ASSIGNEE)) {
+      issue.setAssignee(input.readString());
+    }
+    if (has(fields, CHECKSUM)) {
+      issue.setChecksum(input.readString());
+    }
+    if (has(fields, AUTHOR_LOGIN)) {
+      issue.setAuthorLogin(input.readString());
+    }
+    if (has(fields, CREATION_DATE)) {
+      issue.setCreationDate(new Date(input.readInt64()));
+    }
+    if (has(fields, UPDATE_DATE)) {
+      issue.setUpdateDate(new Date(input.readInt64()));
+    }
+    if (has(fields, CLOSE_DATE)) {
+      issue.setCloseDate(new Date(input.readInt64()));
+    }
+    if (has(fields, SELECTED_AT)) {
+      issue.setSelectedAt(input.readInt64());
+    }
+    if (has(fields, ATTRIBUTES)) {
+      int size = input.readUInt32();
+      for (int i = 0; i < size; i++) {
+        issue.setAttribute(input.readString(), input.readString());
+      }
+    }
+    if (has(fields, TAGS)) {
+      int size = input.readUInt32();
+      List<String> tags = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        tags.add(input.readString());
+      }
+      issue.setTags(tags);
+    }
+    if (has(fields, COMMENTS)) {
+      int size = input.readUInt32();
+      for (int i = 0; i < size; i++) {
+        issue.addComment(readComment(input));
+      }
+    }
+    if (has(fields, CHANGES)) {
+      int size = input.readUInt32();
+      int currentChangeIndex = input.readInt32();
+      for (int i = 0; i < size; i++) {
+        FieldDiffs change = readChange(input);
+        if (i == currentChangeIndex) {
+          issue.setCurrentChange(change);
+        } else {
+          issue.addChange(change);
+        }
+      }
+    }
+    if (has(fields, LOCATIONS)) {
+      issue.setLocations(readLocations(input));
+    }
+    issue.setManualSeverity(has(fields, MANUAL_SEVERITY));
+    issue.setNew(has(fields, NEW));
+    issue.setBeingClosed(has(fields, BEING_CLOSED));
+    issue.setOnDisabledRule(has(fields, ON_DISABLED_RULE));
+    issue.setChanged(has(fields, CHANGED));
+    issue.setSendNotifications(has(fields, SEND_NOTIFICATIONS));
+    return issue;
+  }
+
+  private static void writeComment(CodedOutputStream output, DefaultIssueComment comment) throws IOException {
+    long fields = 0L;
+    fields |= bit(COMMENT_USER_LOGIN, comment.userLogin() != null);
+    fields |= bit(COMMENT_CREATED_AT, comment.createdAt() != null);
+    fields |= bit(COMMENT_UPDATED_AT, comment.updatedAt() != null);
+    fields |= bit(COMMENT_KEY, comment.key() != null);
+    fields |= bit(COMMENT_MARKDOWN_TEXT, comment.markdownText() != null);
+    fields |= bit(COMMENT_ISSUE_KEY, comment.issueKey() != null);
+    fields |= bit(COMMENT_NEW, comment.isNew());
+    output.writeUInt64NoTag(fields);
+    writeString(output, comment.userLogin());
+    writeDate(output, comment.createdAt());
+    writeDate(output, comment.updatedAt());
+    writeString(output, comment.key());
+    writeString(output, comment.markdownText());
+    writeString(output, comment.issueKey());
+  }
+
+  private static DefaultIssueComment readComment(CodedInputStream input) throws IOException {
+    long fields = input.readUInt64();
+    DefaultIssueComment comment = new DefaultIssueComment();
+    if (has(fields, COMMENT_USER_LOGIN)) {
+      comment.setUserLogin(input.readString());
+    }
+    if (has(fields, COMMENT_CREATED_AT)) {
+      comment.setCreatedAt(new Date(input.readInt64()));
+    }
+    if (has(fields, COMMENT_UPDATED_AT)) {
+      comment.setUpdatedAt(new Date(input.readInt64()));
+    }
+    if (has(fields, COMMENT_KEY)) {
+      comment.setKey(input.readString());
+    }
+    if (has(fields, COMMENT_MARKDOWN_TEXT)) {
+      comment.setMarkdownText(input.readString());
+    }
+    if (has(fields, COMMENT_ISSUE_KEY)) {
+      comment.setIssueKey(input.readString());
+    }
+    comment.setNew(has(fields, COMMENT_NEW));
+    return comment;
+  }
+
+  private static void writeChange(CodedOutputStream output, FieldDiffs change) throws IOException {
+    long fields = 0L;
+    fields |= bit(CHANGE_ISSUE_KEY, change.issueKey() != null);
+    fields |= bit(CHANGE_USER_LOGIN, change.userLogin() != null);
+    fields |= bit(CHANGE_CREATION_DATE, change.creationDate() != null);
+    output.writeUInt64NoTag(fields);
+    writeString(output, change.issueKey());
+    writeString(output, change.userLogin());
+    writeDate(output, change.creationDate());
+    output.writeUInt32NoTag(change.diffs().size());
+    for (String field : change.diffs().keySet()) {
+      FieldDiffs.Diff<?> diff = change.diffs().get(field);
+      output.writeStringNoTag(field);
+      writeDiffValue(output, diff.oldValue());
+      writeDiffValue(output, diff.newValue());
+    }
+  }
+
+  private static FieldDiffs readChange(CodedInputStream input) throws IOException {
+    long fields = input.readUInt64();
+    FieldDiffs change = new FieldDiffs();
+    if (has(fields, CHANGE_ISSUE_KEY)) {
+      change.setIssueKey(input.readString());
+    }
+    if (has(fields, CHANGE_USER_LOGIN)) {
+      change.setUserLogin(input.readString());
+    }
+    if (has(fields, CHANGE_CREATION_DATE)) {
+      change.setCreationDate(new Date(input.readInt64()));
+    }
+    int size = input.readUInt32();
+    for (int i = 0; i < size; i++) {
+      String field = input.readString();
+      Serializable oldValue = readDiffValue(input);
+      Serializable newValue = readDiffValue(input);
+      change.setDiff(field, oldValue, newValue);
+    }
+    return change;
+  }
+
+  private static void writeDiffValue(CodedOutputStream output, @Nullable Object value) throws IOException {
+    if (value == null) {
+      output.writeUInt32NoTag(VALUE_NULL);
+    } else if (value instanceof String) {
+      output.writeUInt32NoTag(VALUE_STRING);
+      output.writeStringNoTag((String) value);
+    } else if (value instanceof Long) {
+      output.writeUInt32NoTag(VALUE_LONG);
+      output.writeInt64NoTag((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeUInt32NoTag(VALUE_INTEGER);
+      output.writeInt32NoTag((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeUInt32NoTag(VALUE_DOUBLE);
+      output.writeDoubleNoTag((Double) value);
+    } else {
+      output.writeUInt32NoTag(VALUE_SERIALIZED);
+      output.writeByteArrayNoTag(SerializationUtils.serialize((Serializable) value));
+    }
+  }
+
+  @CheckForNull
+  private static Serializable readDiffValue(CodedInputStream input) throws IOException {
+    int type = input.readUInt32();
+    switch (type) {
+      case VALUE_NULL:
+        return null;
+      case VALUE_STRING:
+        return input.readString();
+      case VALUE_LONG:
+        return input.readInt64();
+      case VALUE_INTEGER:
+        return input.readInt32();
+      case VALUE_DOUBLE:
+        return input.readDouble();
+      case VALUE_SERIALIZED:
+        return (Serializable) SerializationUtils.deserialize(input.readByteArray());
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+
+  private static void writeLocations(CodedOutputStream output, Object locations) throws IOException {
+    if (locations instanceof DbIssues.Locations) {
+      output.writeUInt32NoTag(LOCATIONS_PROTOBUF);
+      output.writeBytesNoTag(((DbIssues.Locations) locations).toByteString());
+    } else {
+      output.writeUInt32NoTag(LOCATIONS_SERIALIZED);
+      output.writeByteArrayNoTag(SerializationUtils.serialize((Serializable) locations));
+    }
+  }
+
+  private static Object readLocations(CodedInputStream input) throws IOException {
+    int type = input.readUInt32();
+    switch (type) {
+      case LOCATIONS_PROTOBUF:
+        ByteString bytes = input.readBytes();
+        return DbIssues.Locations.parseFrom(bytes);
+      case LOCATIONS_SERIALIZED:
+        return SerializationUtils.deserialize(input.readByteArray());
+      default:
+        throw new IllegalStateException("Unsupported type of locations: " + type);
+    }
+  }
+
+  private static void writeString(CodedOutputStream output, @Nullable String value) throws IOException {
+    if (value != null) {
+      output.writeStringNoTag(value);
+    }
+  }
+
+  private static void writeDate(CodedOutputStream output, @Nullable Date value) throws IOException {
+    if (value != null) {
+      output.writeInt64NoTag(value.getTime());
+    }
+  }
+
+  private static long bit(int index, boolean set) {
+    return set ? (1L << index) : 0L;
+  }
+
+  private static boolean has(long fields, int index) {
+    return (fields & (1L << index)) != 0L;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.ThreadSafeVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
+
+/**
+ * Computes the tracking of the issues of files before they are integrated by {@link IntegrateIssuesVisitor}. Loading
+ * raw and base issues and matching them is the most expensive part of the integration of issues and it does not
+ * change any shared state, so that it can be executed concurrently on the files of a directory.
+ * <p/>
+ * Only the trackings of the files of the directory being visited are kept in memory.
+ */
+public class PrefetchIssueTrackingVisitor extends TypeAwareVisitorAdapter implements ThreadSafeVisitor {
+
+  private final TrackerExecution tracker;
+
+  public PrefetchIssueTrackingVisitor(TrackerExecution tracker) {
+    super(CrawlerDepthLimit.FILE, PRE_ORDER);
+    this.tracker = tracker;
+  }
+
+  @Override
+  public void visitDirectory(Component directory) {
+    tracker.clearPrefetched();
+  }
+
+  @Override
+  public void visitFile(Component file) {
+    tracker.prefetch(file);
+  }
+}
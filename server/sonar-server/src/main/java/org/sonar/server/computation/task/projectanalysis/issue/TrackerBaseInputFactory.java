@@ -27,8 +27,6 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.LazyInput;
 import org.sonar.core.issue.tracking.LineHashSequence;
-import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
@@ -40,12 +38,12 @@ public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
 
   private final BaseIssuesLoader baseIssuesLoader;
-  private final DbClient dbClient;
+  private final BaseLineHashesLoader baseLineHashesLoader;
   private final MovedFilesRepository movedFilesRepository;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, BaseLineHashesLoader baseLineHashesLoader, MovedFilesRepository movedFilesRepository) {
     this.baseIssuesLoader = baseIssuesLoader;
-    this.dbClient = dbClient;
+    this.baseLineHashesLoader = baseLineHashesLoader;
     this.movedFilesRepository = movedFilesRepository;
   }
 
@@ -69,13 +67,11 @@ public class TrackerBaseInputFactory {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
 
-      try (DbSession session = dbClient.openSession(false)) {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
+      List<String> hashes = baseLineHashesLoader.loadLineHashes(effectiveUuid);
+      if (hashes == null || hashes.isEmpty()) {
+        return EMPTY_LINE_HASH_SEQUENCE;
       }
+      return new LineHashSequence(hashes);
     }
 
     @Override
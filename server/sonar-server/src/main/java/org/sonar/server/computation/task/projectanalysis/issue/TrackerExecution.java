@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.issue.tracking.Tracking;
@@ -29,6 +31,7 @@ public class TrackerExecution {
   private final TrackerBaseInputFactory baseInputFactory;
   private final TrackerRawInputFactory rawInputFactory;
   private final Tracker<DefaultIssue, DefaultIssue> tracker;
+  private final Map<String, Tracking<DefaultIssue, DefaultIssue>> prefetchedTrackings = new ConcurrentHashMap<>();
 
   public TrackerExecution(TrackerBaseInputFactory baseInputFactory, TrackerRawInputFactory rawInputFactory,
     Tracker<DefaultIssue, DefaultIssue> tracker) {
@@ -37,7 +40,30 @@ public class TrackerExecution {
     this.tracker = tracker;
   }
 
+  /**
+   * Computes the tracking of the component, so that it is returned by the next call to {@link #track(Component)}.
+   * Can be called concurrently for different components.
+   */
+  public void prefetch(Component component) {
+    prefetchedTrackings.put(component.getUuid(), doTrack(component));
+  }
+
+  /**
+   * Drops the trackings which have been prefetched but not returned by {@link #track(Component)}.
+   */
+  public void clearPrefetched() {
+    prefetchedTrackings.clear();
+  }
+
   public Tracking<DefaultIssue, DefaultIssue> track(Component component) {
+    Tracking<DefaultIssue, DefaultIssue> prefetched = prefetchedTrackings.remove(component.getUuid());
+    if (prefetched != null) {
+      return prefetched;
+    }
+    return doTrack(component);
+  }
+
+  private Tracking<DefaultIssue, DefaultIssue> doTrack(Component component) {
     return tracker.track(rawInputFactory.create(component), baseInputFactory.create(component));
   }
 }
@@ -0,0 +1,352 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.checkValueTypeConsistency;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores them in columns: one array of
+ * values per metric, indexed by the reference of the component, instead of one {@link Measure} object per component
+ * and metric.
+ * <p/>
+ * Only measures with a numeric value and an optional variation are stored in columns. Other measures (measures with
+ * a String, Level or no value, with data, a description or a QualityGate status, measures of developers) are stored
+ * in a side table, the same way as {@link MapBasedRawMeasureRepository} does.
+ * <p/>
+ * Component references must be positive and are expected to be dense, as the report references of components are.
+ * Metrics are indexed by id.
+ * <p/>
+ * Measures of different components can be read and added concurrently.
+ */
+public final class ColumnarRawMeasureRepository implements RawMeasureRepository {
+  private static final double GROWTH_FACTOR = 1.5;
+
+  private final Function<Component, Integer> componentToRef;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Integer, Map<MeasureKey, Measure>> sideTable = new HashMap<>();
+  // indexed by id of metric
+  private Column[] columns = new Column[0];
+
+  public ColumnarRawMeasureRepository(Function<Component, Integer> componentToRef) {
+    this.componentToRef = requireNonNull(componentToRef);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(component, metric, null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ref = toRef(component);
+    MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && findLocked(ref, metric, key) != null) {
+        return;
+      }
+      Column column = getColumn(metric);
+      if (measure.hasOnlyNumericValue() && (column == null || column.valueType == measure.getValueType())) {
+        if (column == null) {
+          column = createColumn(metric, measure.getValueType());
+        }
+        column.set(ref, measure);
+        removeFromSideTable(ref, key);
+      } else {
+        sideTable.computeIfAbsent(ref, k -> new HashMap<>()).put(key, measure);
+        if (column != null && key.getDeveloper() == null) {
+          column.clear(ref);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int ref = toRef(component);
+
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+      Column column = getColumn(metric);
+      if (column != null && column.has(ref)) {
+        builder.add(column.get(ref));
+      }
+      Map<MeasureKey, Measure> otherMeasures = sideTable.get(ref);
+      if (otherMeasures != null) {
+        for (Map.Entry<MeasureKey, Measure> entry : otherMeasures.entrySet()) {
+          if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+            builder.add(entry.getValue());
+          }
+        }
+      }
+      return builder.build();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = toRef(component);
+
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+      for (Column column : columns) {
+        if (column != null && column.has(ref)) {
+          builder.put(column.metricKey, column.get(ref));
+        }
+      }
+      Map<MeasureKey, Measure> otherMeasures = sideTable.get(ref);
+      if (otherMeasures != null) {
+        for (Map.Entry<MeasureKey, Measure> entry : otherMeasures.entrySet()) {
+          builder.put(entry.getKey().getMetricKey(), entry.getValue());
+        }
+      }
+      return builder.build();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Size in bytes of the arrays of the columns.
+   */
+  public long getColumnsSizeInBytes() {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      long size = 0L;
+      for (Column column : columns) {
+        if (column != null) {
+          size += column.sizeInBytes();
+        }
+      }
+      return size;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Number of measures stored in the side table, as {@link Measure} objects.
+   */
+  public int getSideTableMeasureCount() {
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      int count = 0;
+      for (Map<MeasureKey, Measure> measures : sideTable.values()) {
+        count += measures.size();
+      }
+      return count;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @CheckForNull
+  private Measure find(Component component, Metric metric, @Nullable Developer developer) {
+    int ref = toRef(component);
+    MeasureKey key = new MeasureKey(metric.getKey(), developer);
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return findLocked(ref, metric, key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @CheckForNull
+  private Measure findLocked(int ref, Metric metric, MeasureKey key) {
+    if (key.getDeveloper() == null) {
+      Column column = getColumn(metric);
+      if (column != null && column.has(ref)) {
+        return column.get(ref);
+      }
+    }
+    Map<MeasureKey, Measure> otherMeasures = sideTable.get(ref);
+    return otherMeasures == null ? null : otherMeasures.get(key);
+  }
+
+  private void removeFromSideTable(int ref, MeasureKey key) {
+    Map<MeasureKey, Measure> otherMeasures = sideTable.get(ref);
+    if (otherMeasures != null) {
+      otherMeasures.remove(key);
+    }
+  }
+
+  private int toRef(Component component) {
+    int ref = componentToRef.apply(component);
+    checkArgument(ref >= 0, "Reference of component must be positive: %s", ref);
+    return ref;
+  }
+
+  @CheckForNull
+  private Column getColumn(Metric metric) {
+    int metricId = metric.getId();
+    return metricId >= 0 && metricId < columns.length ? columns[metricId] : null;
+  }
+
+  private Column createColumn(Metric metric, Measure.ValueType valueType) {
+    int metricId = metric.getId();
+    checkArgument(metricId >= 0, "Id of metric must be positive: %s", metricId);
+    if (metricId >= columns.length) {
+      columns = Arrays.copyOf(columns, metricId + 1);
+    }
+    Column column = new Column(metric.getKey(), valueType);
+    columns[metricId] = column;
+    return column;
+  }
+
+  private static int newCapacity(int currentCapacity, int minCapacity) {
+    return Math.max(minCapacity, (int) (currentCapacity * GROWTH_FACTOR));
+  }
+
+  /**
+   * Values and variations of the measures of a metric, indexed by the reference of the component
+   */
+  private static final class Column {
+    private final String metricKey;
+    private final Measure.ValueType valueType;
+    private final BitSet hasValue = new BitSet();
+    private final BitSet hasVariation = new BitSet();
+    private double[] values = new double[0];
+    private double[] variations = new double[0];
+
+    private Column(String metricKey, Measure.ValueType valueType) {
+      this.metricKey = metricKey;
+      this.valueType = valueType;
+    }
+
+    boolean has(int ref) {
+      return hasValue.get(ref);
+    }
+
+    Measure get(int ref) {
+      Double variation = hasVariation.get(ref) ? variations[ref] : null;
+      return Measure.restoreNumericMeasure(valueType, values[ref], variation);
+    }
+
+    void set(int ref, Measure measure) {
+      if (ref >= values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length, ref + 1));
+      }
+      values[ref] = measure.getNumericValue();
+      hasValue.set(ref);
+      if (measure.hasVariation()) {
+        if (ref >= variations.length) {
+          variations = Arrays.copyOf(variations, newCapacity(variations.length, ref + 1));
+        }
+        variations[ref] = measure.getVariation();
+        hasVariation.set(ref);
+      } else {
+        hasVariation.clear(ref);
+      }
+    }
+
+    void clear(int ref) {
+      hasValue.clear(ref);
+      hasVariation.clear(ref);
+    }
+
+    long sizeInBytes() {
+      return 8L * (values.length + variations.length) + (hasValue.size() + hasVariation.size()) / 8;
+    }
+  }
+}
@@ -25,9 +25,9 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.SetMultimap;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -42,10 +42,12 @@ import static java.util.Objects.requireNonNull;
  * Map based implementation of MeasureRepository which supports only raw measures.
  *
  * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ *
+ * Measures of different components can be read and added concurrently.
  */
-public final class MapBasedRawMeasureRepository<T> implements MeasureRepository {
+public final class MapBasedRawMeasureRepository<T> implements RawMeasureRepository {
   private final Function<Component, T> componentToKey;
-  private final Map<T, Map<MeasureKey, Measure>> measures = new HashMap<>();
+  private final Map<T, Map<MeasureKey, Measure>> measures = new ConcurrentHashMap<>();
 
   public MapBasedRawMeasureRepository(Function<Component, T> componentToKey) {
     this.componentToKey = requireNonNull(componentToKey);
@@ -100,7 +102,7 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     add(component, metric, measure, OverridePolicy.OVERRIDE);
   }
 
-  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+  static void checkValueTypeConsistency(Metric metric, Measure measure) {
     checkArgument(
       measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
       format(
@@ -153,6 +155,7 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     return Optional.fromNullable(measuresPerMetric.get(new MeasureKey(metric.getKey(), measure.getDeveloper())));
   }
 
+  @Override
   public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
     requireNonNull(component);
     requireNonNull(measure);
@@ -160,14 +163,12 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     requireNonNull(overridePolicy);
 
     T componentKey = componentToKey.apply(component);
-    Map<MeasureKey, Measure> measuresPerMetric = measures.get(componentKey);
-    if (measuresPerMetric == null) {
-      measuresPerMetric = new HashMap<>();
-      measures.put(componentKey, measuresPerMetric);
-    }
+    Map<MeasureKey, Measure> measuresPerMetric = measures.computeIfAbsent(componentKey, k -> new ConcurrentHashMap<>());
     MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
-    if (!measuresPerMetric.containsKey(key) || overridePolicy == OverridePolicy.OVERRIDE) {
+    if (overridePolicy == OverridePolicy.OVERRIDE) {
       measuresPerMetric.put(key, measure);
+    } else {
+      measuresPerMetric.putIfAbsent(key, measure);
     }
   }
 
@@ -103,6 +103,37 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Restores a measure which has only a numeric value and an optional variation, as stored by
+   * {@link ColumnarRawMeasureRepository}. The value is not scaled again.
+   */
+  static Measure restoreNumericMeasure(ValueType valueType, double value, @Nullable Double variation) {
+    checkArgument(isNumeric(valueType), "ValueType %s is not numeric", valueType);
+    return new Measure(valueType, null, value, null, null, null, null, variation);
+  }
+
+  /**
+   * Whether this measure has only a numeric value and an optional variation (no developer, data,
+   * description nor QualityGate status).
+   */
+  boolean hasOnlyNumericValue() {
+    return isNumeric(valueType) && developer == null && data == null && description == null && qualityGateStatus == null;
+  }
+
+  private static boolean isNumeric(ValueType valueType) {
+    return valueType == ValueType.BOOLEAN || valueType == ValueType.INT || valueType == ValueType.LONG || valueType == ValueType.DOUBLE;
+  }
+
+  /**
+   * The numeric value of the measure, whichever is its numeric {@link ValueType}.
+   *
+   * @throws IllegalStateException if the measure has no numeric value
+   */
+  double getNumericValue() {
+    checkState(value != null, "Measure does not have a numeric value");
+    return value;
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private String description;
@@ -21,16 +21,24 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.monitoring.CeMeasuresMBeanImpl;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -39,23 +47,41 @@ import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricVali
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
 
-public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+/**
+ * Raw measures are stored in memory, by default by {@link MapBasedRawMeasureRepository}. Storage in columns, by
+ * {@link ColumnarRawMeasureRepository}, is enabled for the task by the project property {@link #COLUMNAR_STORAGE_PROPERTY}.
+ * Usage of the storage is reported to {@link CeMeasuresMBeanImpl} and logged at debug level when the task ends.
+ */
+public class MeasureRepositoryImpl implements MeasureRepository, Startable {
+  public static final String COLUMNAR_STORAGE_PROPERTY = "sonar.ce.measures.columnarStorage";
+
+  private static final Logger LOGGER = Loggers.get(MeasureRepositoryImpl.class);
+
+  private final TreeRootHolder treeRootHolder;
+  private final SettingsRepository settingsRepository;
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
   private final ReportMetricValidator reportMetricValidator;
+  private final CeMeasuresMBeanImpl measuresMBean;
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
-  private final Set<Integer> loadedComponents = new HashSet<>();
-
-  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
+  private final Set<Integer> loadedComponents = ConcurrentHashMap.newKeySet();
+  private final LongAdder rawMeasureLookups = new LongAdder();
+  private final LongAdder rawMeasureLookupNanos = new LongAdder();
+  private volatile RawMeasureRepository delegate;
+
+  public MeasureRepositoryImpl(TreeRootHolder treeRootHolder, SettingsRepository settingsRepository, DbClient dbClient, BatchReportReader reportReader,
+    MetricRepository metricRepository, ReportMetricValidator reportMetricValidator, CeMeasuresMBeanImpl measuresMBean) {
+    this.treeRootHolder = treeRootHolder;
+    this.settingsRepository = settingsRepository;
     this.dbClient = dbClient;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
     this.batchMeasureToMeasure = new BatchMeasureToMeasure();
     this.metricRepository = metricRepository;
+    this.measuresMBean = measuresMBean;
   }
 
   @Override
@@ -76,36 +102,96 @@ public class MeasureRepositoryImpl implements MeasureRepository {
 
   @Override
   public Optional<Measure> getRawMeasure(Component component, Metric metric) {
-    Optional<Measure> local = delegate.getRawMeasure(component, metric);
-    if (local.isPresent()) {
-      return local;
-    }
+    long start = System.nanoTime();
+    try {
+      RawMeasureRepository rawMeasures = delegate();
+      Optional<Measure> local = rawMeasures.getRawMeasure(component, metric);
+      if (local.isPresent()) {
+        return local;
+      }
 
-    // look up in batch after loading (if not yet loaded) measures from batch
-    loadBatchMeasuresForComponent(component);
-    return delegate.getRawMeasure(component, metric);
+      // look up in batch after loading (if not yet loaded) measures from batch
+      loadBatchMeasuresForComponent(component);
+      return rawMeasures.getRawMeasure(component, metric);
+    } finally {
+      rawMeasureLookups.increment();
+      rawMeasureLookupNanos.add(System.nanoTime() - start);
+    }
   }
 
   @Override
   public void add(Component component, Metric metric, Measure measure) {
-    delegate.add(component, metric, measure);
+    delegate().add(component, metric, measure);
   }
 
   @Override
   public void update(Component component, Metric metric, Measure measure) {
-    delegate.update(component, metric, measure);
+    delegate().update(component, metric, measure);
   }
 
   @Override
   public Set<Measure> getRawMeasures(Component component, Metric metric) {
     loadBatchMeasuresForComponent(component);
-    return delegate.getRawMeasures(component, metric);
+    return delegate().getRawMeasures(component, metric);
   }
 
   @Override
   public SetMultimap<String, Measure> getRawMeasures(Component component) {
     loadBatchMeasuresForComponent(component);
-    return delegate.getRawMeasures(component);
+    return delegate().getRawMeasures(component);
+  }
+
+  /**
+   * The storage is selected when the first raw measure is read or added, as settings of the project are not
+   * known when the repository is created.
+   */
+  private RawMeasureRepository delegate() {
+    RawMeasureRepository res = delegate;
+    if (res == null) {
+      synchronized (this) {
+        res = delegate;
+        if (res == null) {
+          res = createDelegate();
+          delegate = res;
+        }
+      }
+    }
+    return res;
+  }
+
+  private RawMeasureRepository createDelegate() {
+    if (settingsRepository.getSettings(treeRootHolder.getRoot()).getBoolean(COLUMNAR_STORAGE_PROPERTY)) {
+      return new ColumnarRawMeasureRepository(toReportRef());
+    }
+    return new MapBasedRawMeasureRepository<>(toReportRef());
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    RawMeasureRepository rawMeasures = delegate;
+    if (rawMeasures == null) {
+      return;
+    }
+    long lookups = rawMeasureLookups.sum();
+    long lookupNanos = rawMeasureLookupNanos.sum();
+    long lookupMillis = TimeUnit.NANOSECONDS.toMillis(lookupNanos);
+    long averageLookupNanos = lookups == 0 ? 0 : (lookupNanos / lookups);
+    if (rawMeasures instanceof ColumnarRawMeasureRepository) {
+      ColumnarRawMeasureRepository columnar = (ColumnarRawMeasureRepository) rawMeasures;
+      measuresMBean.addTaskUsingColumnarStorage(lookups, lookupNanos, columnar.getColumnsSizeInBytes());
+      LOGGER.debug("Raw measures | storage=columnar | columns={}KB | sideTableMeasures={} | lookups={} | lookupTime={}ms | averageLookupTime={}ns",
+        columnar.getColumnsSizeInBytes() / 1024, columnar.getSideTableMeasureCount(),
+        lookups, lookupMillis, averageLookupNanos);
+    } else {
+      measuresMBean.addTaskUsingMapStorage(lookups, lookupNanos);
+      LOGGER.debug("Raw measures | storage=map | lookups={} | lookupTime={}ms | averageLookupTime={}ns",
+        lookups, lookupMillis, averageLookupNanos);
+    }
   }
 
   private void loadBatchMeasuresForComponent(Component component) {
@@ -119,7 +205,7 @@ public class MeasureRepositoryImpl implements MeasureRepository {
         String metricKey = batchMeasure.getMetricKey();
         if (reportMetricValidator.validate(metricKey)) {
           Metric metric = metricRepository.getByKey(metricKey);
-          delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+          delegate().add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
         }
       }
     }
@@ -19,38 +19,56 @@
  */
 package org.sonar.server.computation.task.projectanalysis.scm;
 
-import com.google.common.base.Predicate;
-import java.util.Arrays;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.CheckForNull;
-import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
-import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Iterables.isEmpty;
-import static java.util.Arrays.asList;
 
+/**
+ * Changesets are stored once, lines only reference their changeset by an index. Indexes are stored in the
+ * smallest type which can hold the number of distinct changesets, ie. one byte per line in most cases.
+ */
 @Immutable
 public class ScmInfoImpl implements ScmInfo {
 
   @CheckForNull
   private final Changeset latestChangeset;
-  private final Changeset[] lineChangesets;
+  private final Changeset[] changesets;
+  private final ChangesetIndexes changesetIndexByLine;
 
   public ScmInfoImpl(Iterable<Changeset> lineChangesets) {
     checkState(!isEmpty(lineChangesets), "A ScmInfo must have at least one Changeset and does not support any null one");
-    this.lineChangesets = from(lineChangesets)
-      .filter(CheckNotNull.INSTANCE)
-      .toArray(Changeset.class);
-    this.latestChangeset = computeLatestChangeset(lineChangesets);
+    // changesets of lines are shared instances when created from the report or the DB, so identity is enough
+    Map<Changeset, Integer> indexByChangeset = new IdentityHashMap<>();
+    List<Changeset> distinctChangesets = new ArrayList<>();
+    List<Integer> indexes = new ArrayList<>();
+    for (Changeset lineChangeset : lineChangesets) {
+      checkState(lineChangeset != null, "Null changeset are not allowed");
+      Integer index = indexByChangeset.get(lineChangeset);
+      if (index == null) {
+        index = distinctChangesets.size();
+        indexByChangeset.put(lineChangeset, index);
+        distinctChangesets.add(lineChangeset);
+      }
+      indexes.add(index);
+    }
+    this.changesets = distinctChangesets.toArray(new Changeset[distinctChangesets.size()]);
+    this.changesetIndexByLine = ChangesetIndexes.of(indexes, changesets.length);
+    this.latestChangeset = computeLatestChangeset(changesets);
   }
 
-  private static Changeset computeLatestChangeset(Iterable<Changeset> lineChangesets) {
+  private static Changeset computeLatestChangeset(Changeset[] changesets) {
     Changeset latestChangeset = null;
-    for (Changeset lineChangeset : lineChangesets) {
-      if (latestChangeset == null || lineChangeset.getDate() > latestChangeset.getDate()) {
-        latestChangeset = lineChangeset;
+    for (Changeset changeset : changesets) {
+      if (latestChangeset == null || changeset.getDate() > latestChangeset.getDate()) {
+        latestChangeset = changeset;
       }
     }
     return latestChangeset;
@@ -63,35 +81,115 @@ public class ScmInfoImpl implements ScmInfo {
 
   @Override
   public Changeset getChangesetForLine(int lineNumber) {
-    checkArgument(lineNumber > 0 && lineNumber <= lineChangesets.length, String.format("There's no changeset on line %s", lineNumber));
-    return lineChangesets[lineNumber - 1];
+    checkArgument(lineNumber > 0 && lineNumber <= changesetIndexByLine.size(), String.format("There's no changeset on line %s", lineNumber));
+    return changesets[changesetIndexByLine.get(lineNumber - 1)];
   }
 
   @Override
   public boolean hasChangesetForLine(int lineNumber) {
-    return lineNumber <= lineChangesets.length;
+    return lineNumber <= changesetIndexByLine.size();
   }
 
   @Override
   public Iterable<Changeset> getAllChangesets() {
-    return asList(lineChangesets);
+    return new LineChangesets();
   }
 
   @Override
   public String toString() {
     return "ScmInfoImpl{" +
       "latestChangeset=" + latestChangeset +
-      ", lineChangesets=" + Arrays.toString(lineChangesets) +
+      ", lineChangesets=" + getAllChangesets() +
       '}';
   }
 
-  private enum CheckNotNull implements Predicate<Changeset> {
-    INSTANCE;
+  private class LineChangesets extends AbstractList<Changeset> {
+    @Override
+    public Changeset get(int index) {
+      return changesets[changesetIndexByLine.get(index)];
+    }
+
+    @Override
+    public int size() {
+      return changesetIndexByLine.size();
+    }
+  }
+
+  private abstract static class ChangesetIndexes {
+    abstract int get(int lineIndex);
+
+    abstract int size();
+
+    static ChangesetIndexes of(List<Integer> indexes, int changesetCount) {
+      if (changesetCount <= 0xFF) {
+        byte[] bytes = new byte[indexes.size()];
+        for (int i = 0; i < bytes.length; i++) {
+          bytes[i] = (byte) indexes.get(i).intValue();
+        }
+        return new ByteIndexes(bytes);
+      }
+      if (changesetCount <= 0xFFFF) {
+        char[] chars = new char[indexes.size()];
+        for (int i = 0; i < chars.length; i++) {
+          chars[i] = (char) indexes.get(i).intValue();
+        }
+        return new CharIndexes(chars);
+      }
+      return new IntIndexes(indexes.stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  private static final class ByteIndexes extends ChangesetIndexes {
+    private final byte[] indexes;
+
+    private ByteIndexes(byte[] indexes) {
+      this.indexes = indexes;
+    }
+
+    @Override
+    int get(int lineIndex) {
+      return indexes[lineIndex] & 0xFF;
+    }
+
+    @Override
+    int size() {
+      return indexes.length;
+    }
+  }
+
+  private static final class CharIndexes extends ChangesetIndexes {
+    private final char[] indexes;
+
+    private CharIndexes(char[] indexes) {
+      this.indexes = indexes;
+    }
+
+    @Override
+    int get(int lineIndex) {
+      return indexes[lineIndex];
+    }
+
+    @Override
+    int size() {
+      return indexes.length;
+    }
+  }
+
+  private static final class IntIndexes extends ChangesetIndexes {
+    private final int[] indexes;
+
+    private IntIndexes(int[] indexes) {
+      this.indexes = indexes;
+    }
+
+    @Override
+    int get(int lineIndex) {
+      return indexes[lineIndex];
+    }
 
     @Override
-    public boolean apply(@Nullable Changeset input) {
-      checkState(input != null, "Null changeset are not allowed");
-      return true;
+    int size() {
+      return indexes.length;
     }
   }
 }
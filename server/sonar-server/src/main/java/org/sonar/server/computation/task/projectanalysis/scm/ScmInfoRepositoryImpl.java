@@ -20,8 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
-import java.util.HashMap;
+import com.google.common.collect.Iterables;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -35,22 +37,38 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceHashReposi
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * SCM information of files is kept in memory, as it is used by several steps, until the total number of lines
+ * reaches {@link #MAX_CACHED_LINES}. SCM information of next files is computed again on each call, so that memory
+ * used by huge projects remains bounded.
+ */
 public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
 
+  static final int MAX_CACHED_LINES = 20_000_000;
+
   private final BatchReportReader batchReportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final DbClient dbClient;
   private final SourceHashRepository sourceHashRepository;
 
-  private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  private final int maxCachedLines;
+
+  private final Map<Component, ScmInfo> scmInfoCache = new ConcurrentHashMap<>();
+  private final AtomicInteger cachedLines = new AtomicInteger();
 
   public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+    this(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, MAX_CACHED_LINES);
+  }
+
+  ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository,
+    int maxCachedLines) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.maxCachedLines = maxCachedLines;
   }
 
   @Override
@@ -69,10 +87,20 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     scmInfo = getScmInfoForComponent(component);
-    scmInfoCache.put(component, scmInfo);
+    cache(component, scmInfo);
     return optionalOf(scmInfo);
   }
 
+  private void cache(Component component, ScmInfo scmInfo) {
+    int lines = scmInfo == NoScmInfo.INSTANCE ? 0 : Iterables.size(scmInfo.getAllChangesets());
+    if (cachedLines.addAndGet(lines) <= maxCachedLines) {
+      scmInfoCache.put(component, scmInfo);
+    } else {
+      cachedLines.addAndGet(-lines);
+      LOGGER.trace("SCM info of file '{}' is not kept in memory", component.getKey());
+    }
+  }
+
   private static Optional<ScmInfo> optionalOf(ScmInfo scmInfo) {
     if (scmInfo == NoScmInfo.INSTANCE) {
       return Optional.absent();
@@ -103,7 +131,7 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
       if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
         return NoScmInfo.INSTANCE;
       }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+      return DbScmInfo.create(file, dto.getScmData().getLinesList()).or(NoScmInfo.INSTANCE);
     }
   }
 
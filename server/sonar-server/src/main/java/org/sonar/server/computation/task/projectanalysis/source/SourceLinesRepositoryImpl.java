@@ -19,7 +19,20 @@
  */
 package org.sonar.server.computation.task.projectanalysis.source;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -29,12 +42,40 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
 
-public class SourceLinesRepositoryImpl implements SourceLinesRepository {
+/**
+ * Source lines are read by several steps (file move detection, source hashes, issue tracking, persistence of
+ * sources). Lines of files which have been entirely read are kept in memory, up to {@link #MAX_CACHED_SIZE}, so that
+ * next reads do not re-open and re-decode the file of the report.
+ * <p/>
+ * Steps traverse files in the same order, so once the cache is full, new files are not cached rather than evicting
+ * files which are about to be read again. Files which are not cached are still read from the report.
+ */
+public class SourceLinesRepositoryImpl implements SourceLinesRepository, Startable {
+
+  private static final Logger LOG = Loggers.get(SourceLinesRepositoryImpl.class);
+
+  /**
+   * Estimated size in bytes of the cached lines
+   */
+  static final long MAX_CACHED_SIZE = 32L * 1024 * 1024;
+  private static final int LINE_OVERHEAD = 48;
 
   private final BatchReportReader reportReader;
+  private final long maxCachedSize;
+  // lines may be read concurrently, for example by the pool of threads of PersistFileSourcesStep
+  private final Map<Integer, List<String>> linesByFileRef = new ConcurrentHashMap<>();
+  private final AtomicLong cachedSize = new AtomicLong();
+  private final AtomicInteger filesReadFromReport = new AtomicInteger();
+  private final AtomicLong linesReadFromReport = new AtomicLong();
+  private final AtomicInteger readsFromCache = new AtomicInteger();
 
   public SourceLinesRepositoryImpl(BatchReportReader reportReader) {
+    this(reportReader, MAX_CACHED_SIZE);
+  }
+
+  SourceLinesRepositoryImpl(BatchReportReader reportReader, long maxCachedSize) {
     this.reportReader = reportReader;
+    this.maxCachedSize = maxCachedSize;
   }
 
   @Override
@@ -42,12 +83,79 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
     requireNonNull(file, "Component should not be bull");
     checkArgument(file.getType() == FILE, "Component '%s' is not a file", file);
 
-    Optional<CloseableIterator<String>> linesIteratorOptional = reportReader.readFileSource(file.getReportAttributes().getRef());
+    int fileRef = file.getReportAttributes().getRef();
+    List<String> cachedLines = linesByFileRef.get(fileRef);
+    if (cachedLines != null) {
+      readsFromCache.incrementAndGet();
+      return CloseableIterator.from(cachedLines.iterator());
+    }
+
+    Optional<CloseableIterator<String>> linesIteratorOptional = reportReader.readFileSource(fileRef);
 
     checkState(linesIteratorOptional.isPresent(), "File '%s' has no source code", file);
     CloseableIterator<String> lineIterator = linesIteratorOptional.get();
+    filesReadFromReport.incrementAndGet();
+
+    return new ComponentLinesCloseableIterator(file, lineIterator, file.getFileAttributes().getLines(), this);
+  }
+
+  /**
+   * Called when all the lines of a file have been read from the report
+   */
+  private void onLinesRead(int fileRef, @Nullable List<String> lines, int numberOfLines) {
+    linesReadFromReport.addAndGet(numberOfLines);
+    if (lines == null || linesByFileRef.containsKey(fileRef)) {
+      return;
+    }
+    long size = estimateSize(lines);
+    if (reserve(size) && linesByFileRef.putIfAbsent(fileRef, Collections.unmodifiableList(lines)) != null) {
+      // lines of the same file have been cached by another thread in the meantime
+      cachedSize.addAndGet(-size);
+    }
+  }
+
+  /**
+   * Atomically adds {@code size} to the size of the cache, unless the maximum size would be exceeded
+   */
+  private boolean reserve(long size) {
+    long current;
+    do {
+      current = cachedSize.get();
+      if (current + size > maxCachedSize) {
+        return false;
+      }
+    } while (!cachedSize.compareAndSet(current, current + size));
+    return true;
+  }
+
+  private boolean canCache(int numberOfLines) {
+    return cachedSize.get() + (long) numberOfLines * LINE_OVERHEAD <= maxCachedSize;
+  }
+
+  private static long estimateSize(List<String> lines) {
+    long size = 0;
+    for (String line : lines) {
+      size += LINE_OVERHEAD + 2L * line.length();
+    }
+    return size;
+  }
 
-    return new ComponentLinesCloseableIterator(file, lineIterator, file.getFileAttributes().getLines());
+  @VisibleForTesting
+  long getCachedSize() {
+    return cachedSize.get();
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    LOG.debug("Source of {} files read from report ({} lines), {} reads served from memory ({} bytes)",
+      filesReadFromReport.get(), linesReadFromReport.get(), readsFromCache.get(), cachedSize.get());
+    linesByFileRef.clear();
+    cachedSize.set(0);
   }
 
   private static class ComponentLinesCloseableIterator extends CloseableIterator<String> {
@@ -56,12 +164,21 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
     private final Component file;
     private final CloseableIterator<String> delegate;
     private final int numberOfLines;
+    private final SourceLinesRepositoryImpl repository;
+    /**
+     * Lines read so far, {@code null} if they can not be cached
+     */
+    @CheckForNull
+    private List<String> lines;
     private int currentLine = 0;
+    private boolean fullyRead = false;
 
-    private ComponentLinesCloseableIterator(Component file, CloseableIterator<String> lineIterator, int numberOfLines) {
+    private ComponentLinesCloseableIterator(Component file, CloseableIterator<String> lineIterator, int numberOfLines, SourceLinesRepositoryImpl repository) {
       this.file = file;
       this.delegate = lineIterator;
       this.numberOfLines = numberOfLines;
+      this.repository = repository;
+      this.lines = repository.canCache(numberOfLines) ? new ArrayList<>(numberOfLines) : null;
     }
 
     @Override
@@ -71,7 +188,12 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
         return true;
       }
       checkState((currentLine + 1) >= numberOfLines, "Source of file '%s' has less lines (%s) than the expected number (%s)", file, currentLine, numberOfLines);
-      return currentLine < numberOfLines;
+      boolean hasNext = currentLine < numberOfLines;
+      if (!hasNext && !fullyRead) {
+        fullyRead = true;
+        repository.onLinesRead(file.getReportAttributes().getRef(), lines, currentLine);
+      }
+      return hasNext;
     }
 
     @Override
@@ -82,10 +204,11 @@ public class SourceLinesRepositoryImpl implements SourceLinesRepository {
       }
 
       currentLine++;
-      if (delegate.hasNext()) {
-        return delegate.next();
+      String line = delegate.hasNext() ? delegate.next() : EXTRA_END_LINE;
+      if (lines != null) {
+        lines.add(line);
       }
-      return EXTRA_END_LINE;
+      return line;
     }
 
     @Override
@@ -20,11 +20,11 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 import javax.annotation.CheckForNull;
@@ -49,8 +49,6 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -80,24 +78,90 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
   @Override
   public void execute() {
+    if (!periodHolder.hasPeriod()) {
+      return;
+    }
+    List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
+    PastMeasures pastMeasures = new PastMeasures(metrics);
+    new DepthTraversalTypeAwareCrawler(new ComponentsCollector(pastMeasures))
+      .visit(treeRootHolder.getRoot());
     try (DbSession dbSession = dbClient.openSession(false)) {
-      List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      Period period = periodHolder.getPeriod();
+      dbClient.measureDao().selectPastMeasuresOfAnalysis(dbSession, period.getAnalysisUuid(),
+        context -> pastMeasures.add((PastMeasureDto) context.getResultObject()));
+    }
+    new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(pastMeasures, metrics))
+      .visit(treeRootHolder.getRoot());
+  }
+
+  private static CrawlerDepthLimit visitedDepth() {
+    // measures on files are currently purged, so past measures are not available on files
+    return CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW);
+  }
+
+  private static class ComponentsCollector extends TypeAwareVisitorAdapter {
+    private final PastMeasures pastMeasures;
+
+    ComponentsCollector(PastMeasures pastMeasures) {
+      super(visitedDepth(), PRE_ORDER);
+      this.pastMeasures = pastMeasures;
+    }
+
+    @Override
+    public void visitAny(Component component) {
+      pastMeasures.addComponent(component);
+    }
+  }
+
+  /**
+   * Values of the past measures, by component and metric. The table only contains the components which are visited,
+   * and only allocates the rows of the components which have past measures. A missing measure has value 0.
+   */
+  private static final class PastMeasures {
+    private final Map<Integer, Integer> metricIndexesById = new HashMap<>();
+    private final Map<String, Integer> componentIndexesByUuid = new HashMap<>();
+    private final List<double[]> rows = new ArrayList<>();
+
+    PastMeasures(List<Metric> metrics) {
+      for (Metric metric : metrics) {
+        metricIndexesById.put(metric.getId(), metricIndexesById.size());
+      }
+    }
+
+    void addComponent(Component component) {
+      componentIndexesByUuid.put(component.getUuid(), rows.size());
+      rows.add(null);
+    }
+
+    void add(PastMeasureDto dto) {
+      Integer componentIndex = componentIndexesByUuid.get(dto.getComponentUuid());
+      Integer metricIndex = metricIndexesById.get(dto.getMetricId());
+      if (componentIndex == null || metricIndex == null || !dto.hasValue()) {
+        return;
+      }
+      double[] row = rows.get(componentIndex);
+      if (row == null) {
+        row = new double[metricIndexesById.size()];
+        rows.set(componentIndex, row);
+      }
+      row[metricIndex] = dto.getValue();
+    }
+
+    double get(Component component, Metric metric) {
+      Integer componentIndex = componentIndexesByUuid.get(component.getUuid());
+      double[] row = componentIndex == null ? null : rows.get(componentIndex);
+      return row == null ? 0d : row[metricIndexesById.get(metric.getId())];
     }
   }
 
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
+    private final PastMeasures pastMeasures;
     private final List<Metric> metrics;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
-      // measures on files are currently purged, so past measures are not available on files
-      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(Metric::getId).collect(MoreCollectors.toSet());
+    VariationMeasuresVisitor(PastMeasures pastMeasures, List<Metric> metrics) {
+      super(visitedDepth(), PRE_ORDER);
+      this.pastMeasures = pastMeasures;
       this.metrics = metrics;
     }
 
@@ -109,27 +173,14 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
     private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      if (periodHolder.hasPeriod()) {
-        Period period = periodHolder.getPeriod();
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, measuresWithVariationRepository);
-      }
-      return measuresWithVariationRepository;
-    }
-
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
       for (Metric metric : metrics) {
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariation()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = pastMeasures.get(component, metric);
           measuresWithVariationRepository.add(metric, measure.get(), computeVariation(measure.get(), pastValue));
         }
       }
+      return measuresWithVariationRepository;
     }
 
     private double computeVariation(Measure measure, double pastValue) {
@@ -19,7 +19,11 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.lang.StringEscapeUtils;
+import org.sonar.db.measure.DuplicationsDataCodec;
+import org.sonar.db.protobuf.DbMeasures;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
@@ -40,10 +44,13 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.Iterables.isEmpty;
 import static org.sonar.api.measures.CoreMetrics.DUPLICATIONS_DATA_KEY;
+import static org.sonar.server.duplication.DuplicationMetrics.DUPLICATIONS_BINARY_DATA_KEY;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
- * Compute duplication data measures on files, based on the {@link DuplicationRepository}
+ * Compute duplication data measures on files, based on the {@link DuplicationRepository}. The XML format of
+ * {@link org.sonar.api.measures.CoreMetrics#DUPLICATIONS_DATA} is kept, the same data is also stored in binary format
+ * in the internal metric {@link org.sonar.server.duplication.DuplicationMetrics#DUPLICATIONS_BINARY_DATA}.
  */
 public class DuplicationDataMeasuresStep implements ComputationStep {
 
@@ -52,6 +59,7 @@ public class DuplicationDataMeasuresStep implements ComputationStep {
   private final DuplicationRepository duplicationRepository;
 
   private final Metric duplicationDataMetric;
+  private final Metric duplicationBinaryDataMetric;
 
   public DuplicationDataMeasuresStep(TreeRootHolder treeRootHolder, MetricRepository metricRepository, MeasureRepository measureRepository,
     DuplicationRepository duplicationRepository) {
@@ -59,6 +67,7 @@ public class DuplicationDataMeasuresStep implements ComputationStep {
     this.treeRootHolder = treeRootHolder;
     this.duplicationRepository = duplicationRepository;
     this.duplicationDataMetric = metricRepository.getByKey(DUPLICATIONS_DATA_KEY);
+    this.duplicationBinaryDataMetric = metricRepository.getByKey(DUPLICATIONS_BINARY_DATA_KEY);
   }
 
   @Override
@@ -88,6 +97,12 @@ public class DuplicationDataMeasuresStep implements ComputationStep {
         duplicationDataMetric,
         Measure.newMeasureBuilder().create(duplicationXml)
         );
+      String duplicationBinaryData = DuplicationsDataCodec.encode(createDuplications(component.getKey(), duplications));
+      measureRepository.add(
+        component,
+        duplicationBinaryDataMetric,
+        Measure.newMeasureBuilder().create(duplicationBinaryData)
+        );
     }
 
     private String createXmlDuplications(String componentKey, Iterable<Duplication> duplications) {
@@ -97,7 +112,7 @@ public class DuplicationDataMeasuresStep implements ComputationStep {
         xml.append("<g>");
         appendDuplication(xml, componentKey, duplication.getOriginal());
         for (Duplicate duplicate : duplication.getDuplicates()) {
-          processDuplicationBlock(xml, duplicate, componentKey);
+          appendDuplication(xml, getComponentKey(duplicate, componentKey), duplicate.getTextBlock());
         }
         xml.append("</g>");
       }
@@ -105,32 +120,61 @@ public class DuplicationDataMeasuresStep implements ComputationStep {
       return xml.toString();
     }
 
-    private void processDuplicationBlock(StringBuilder xml, Duplicate duplicate, String componentKey) {
+    private void appendDuplication(StringBuilder xml, String componentKey, TextBlock textBlock) {
+      int length = textBlock.getEnd() - textBlock.getStart() + 1;
+      xml.append("<b s=\"").append(textBlock.getStart())
+        .append("\" l=\"").append(length)
+        .append("\" r=\"").append(StringEscapeUtils.escapeXml(componentKey))
+        .append("\"/>");
+    }
+
+    private DbMeasures.Duplications createDuplications(String componentKey, Iterable<Duplication> duplications) {
+      DuplicationsBuilder builder = new DuplicationsBuilder();
+      for (Duplication duplication : duplications) {
+        DbMeasures.Group.Builder group = DbMeasures.Group.newBuilder();
+        group.addBlock(builder.createBlock(componentKey, duplication.getOriginal()));
+        for (Duplicate duplicate : duplication.getDuplicates()) {
+          group.addBlock(builder.createBlock(getComponentKey(duplicate, componentKey), duplicate.getTextBlock()));
+        }
+        builder.duplications.addGroup(group);
+      }
+      return builder.duplications.build();
+    }
+
+    private String getComponentKey(Duplicate duplicate, String componentKey) {
       if (duplicate instanceof InnerDuplicate) {
         // Duplication is on a the same file
-        appendDuplication(xml, componentKey, duplicate);
+        return componentKey;
       } else if (duplicate instanceof InProjectDuplicate) {
         // Duplication is on a different file
-        appendDuplication(xml, ((InProjectDuplicate) duplicate).getFile().getKey(), duplicate);
+        return ((InProjectDuplicate) duplicate).getFile().getKey();
       } else if (duplicate instanceof CrossProjectDuplicate) {
         // componentKey is only set for cross project duplications
-        String crossProjectComponentKey = ((CrossProjectDuplicate) duplicate).getFileKey();
-        appendDuplication(xml, crossProjectComponentKey, duplicate);
-      } else {
-        throw new IllegalArgumentException("Unsupported type of Duplicate " + duplicate.getClass().getName());
+        return ((CrossProjectDuplicate) duplicate).getFileKey();
       }
+      throw new IllegalArgumentException("Unsupported type of Duplicate " + duplicate.getClass().getName());
     }
+  }
 
-    private void appendDuplication(StringBuilder xml, String componentKey, Duplicate duplicate) {
-      appendDuplication(xml, componentKey, duplicate.getTextBlock());
-    }
-
-    private void appendDuplication(StringBuilder xml, String componentKey, TextBlock textBlock) {
-      int length = textBlock.getEnd() - textBlock.getStart() + 1;
-      xml.append("<b s=\"").append(textBlock.getStart())
-        .append("\" l=\"").append(length)
-        .append("\" r=\"").append(StringEscapeUtils.escapeXml(componentKey))
-        .append("\"/>");
+  /**
+   * Stores each component key only once, blocks reference keys by their index.
+   */
+  private static class DuplicationsBuilder {
+    private final DbMeasures.Duplications.Builder duplications = DbMeasures.Duplications.newBuilder();
+    private final Map<String, Integer> indexByComponentKey = new HashMap<>();
+
+    private DbMeasures.Block createBlock(String componentKey, TextBlock textBlock) {
+      Integer index = indexByComponentKey.get(componentKey);
+      if (index == null) {
+        index = indexByComponentKey.size();
+        indexByComponentKey.put(componentKey, index);
+        duplications.addComponentKey(componentKey);
+      }
+      return DbMeasures.Block.newBuilder()
+        .setComponentKeyIndex(index)
+        .setStartLine(textBlock.getStart())
+        .setLength(textBlock.getEnd() - textBlock.getStart() + 1)
+        .build();
     }
   }
 
@@ -21,8 +21,10 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
@@ -34,10 +36,12 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  private final CeConfiguration ceConfiguration;
 
-  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, CeConfiguration ceConfiguration) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
@@ -47,7 +51,21 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
+    int parallelism = ceConfiguration.getVisitorsParallelism();
+    if (parallelism <= 1) {
+      execute(new VisitorsCrawler(visitors, LOGGER.isDebugEnabled()));
+      return;
+    }
+
+    ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+    try {
+      execute(new VisitorsCrawler(visitors, LOGGER.isDebugEnabled(), forkJoinPool));
+    } finally {
+      forkJoinPool.shutdown();
+    }
+  }
+
+  private void execute(VisitorsCrawler visitorsCrawler) {
     visitorsCrawler.visit(treeRootHolder.getRoot());
     logVisitorExecutionDurations(visitors, visitorsCrawler);
   }
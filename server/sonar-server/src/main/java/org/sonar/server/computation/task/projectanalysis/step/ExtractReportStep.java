@@ -19,24 +19,26 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeTaskInputDao;
+import org.sonar.server.computation.task.projectanalysis.batch.LazyExtractedFileStructure;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 /**
- * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
- * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * Copies the content zip file of the {@link CeTask} to a temp file and adds it, with a {@link File} representing
+ * a temp directory, to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * The zip file is not extracted by this step: files of the report are extracted to the temp directory only when
+ * they are read (see {@link LazyExtractedFileStructure}).
  */
 public class ExtractReportStep implements ComputationStep {
 
@@ -59,13 +61,13 @@ public class ExtractReportStep implements ComputationStep {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
       if (opt.isPresent()) {
         File unzippedDir = tempFolder.newDir();
-        try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
-          ZipUtils.unzip(zipStream, unzippedDir);
+        File zipFile = tempFolder.newFile("report", ".zip");
+        try (CeTaskInputDao.DataStream reportStream = opt.get()) {
+          FileUtils.copyInputStreamToFile(reportStream.getInputStream(), zipFile);
         } catch (IOException e) {
           throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
         }
-        reportDirectoryHolder.setDirectory(unzippedDir);
+        reportDirectoryHolder.setArchive(unzippedDir, zipFile);
       } else {
         throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
       }
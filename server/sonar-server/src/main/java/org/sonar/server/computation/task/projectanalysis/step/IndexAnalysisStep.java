@@ -19,30 +19,51 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.Optional;
+import java.util.Set;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
 public class IndexAnalysisStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(IndexAnalysisStep.class);
 
   private final TreeRootHolder treeRootHolder;
+  private final ChangedIssuesRepository changedIssuesRepository;
+  private final IssueIndexer issueIndexer;
   private final ProjectIndexer[] indexers;
 
-  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ProjectIndexer... indexers) {
+  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ChangedIssuesRepository changedIssuesRepository, IssueIndexer issueIndexer,
+    ProjectIndexer... indexers) {
     this.treeRootHolder = treeRootHolder;
+    this.changedIssuesRepository = changedIssuesRepository;
+    this.issueIndexer = issueIndexer;
     this.indexers = indexers;
   }
 
   @Override
   public void execute() {
     String projectUuid = treeRootHolder.getRoot().getUuid();
+    Optional<Set<String>> changedIssueKeys = changedIssuesRepository.getKeys();
     for (ProjectIndexer indexer : indexers) {
-      LOGGER.debug("Call {}", indexer);
-      indexer.indexProject(projectUuid, ProjectIndexer.Cause.NEW_ANALYSIS);
+      if (indexer == issueIndexer && changedIssueKeys.isPresent()) {
+        indexChangedIssues(changedIssueKeys.get());
+      } else {
+        LOGGER.debug("Call {}", indexer);
+        indexer.indexProject(projectUuid, ProjectIndexer.Cause.NEW_ANALYSIS);
+      }
+    }
+  }
+
+  private void indexChangedIssues(Set<String> issueKeys) {
+    LOGGER.debug("Index {} changed issues", issueKeys.size());
+    if (!issueKeys.isEmpty()) {
+      issueIndexer.index(issueKeys);
     }
   }
 
@@ -47,6 +47,7 @@ import org.sonar.server.computation.task.projectanalysis.component.PathAwareCraw
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -66,16 +67,19 @@ public class PersistComponentsStep implements ComputationStep {
   private final System2 system2;
   private final MutableDisabledComponentsHolder disabledComponentsHolder;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final ChangedIssuesRepository changedIssuesRepository;
 
   public PersistComponentsStep(DbClient dbClient, TreeRootHolder treeRootHolder,
     MutableDbIdsRepository dbIdsRepository, System2 system2,
-    MutableDisabledComponentsHolder disabledComponentsHolder, AnalysisMetadataHolder analysisMetadataHolder) {
+    MutableDisabledComponentsHolder disabledComponentsHolder, AnalysisMetadataHolder analysisMetadataHolder,
+    ChangedIssuesRepository changedIssuesRepository) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.dbIdsRepository = dbIdsRepository;
     this.system2 = system2;
     this.disabledComponentsHolder = disabledComponentsHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.changedIssuesRepository = changedIssuesRepository;
   }
 
   @Override
@@ -211,6 +215,9 @@ public class PersistComponentsStep implements ComputationStep {
       if (update.isPresent()) {
         ComponentUpdateDto updateDto = update.get();
         dbClient.componentDao().update(dbSession, updateDto);
+        if (isMoved(existingComponent, updateDto)) {
+          changedIssuesRepository.componentsChanged();
+        }
 
         // update the fields in memory in order the PathAwareVisitor.Path
         // to be up-to-date
@@ -409,6 +416,15 @@ public class PersistComponentsStep implements ComputationStep {
     return Optional.ofNullable(update);
   }
 
+  /**
+   * The path and the module of the component are copied into the index documents of its issues
+   */
+  private static boolean isMoved(ComponentDto existing, ComponentUpdateDto update) {
+    return !StringUtils.equals(existing.path(), update.getBPath()) ||
+      !StringUtils.equals(existing.moduleUuid(), update.getBModuleUuid()) ||
+      !StringUtils.equals(existing.moduleUuidPath(), update.getBModuleUuidPath());
+  }
+
   private static String getFileQualifier(Component component) {
     return component.getFileAttributes().isUnitTest() ? Qualifiers.UNIT_TEST_FILE : Qualifiers.FILE;
   }
@@ -21,15 +21,25 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -37,6 +47,7 @@ import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
@@ -60,8 +71,22 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Computes and persists the sources of the files.
+ * <p>
+ * When {@link CeConfiguration#getPersistSourcesParallelism()} is greater than 1, the data of the files is computed and compressed
+ * concurrently by as many threads, while the calling thread writes it to the database.
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  private static final Logger LOGGER = Loggers.get(PersistFileSourcesStep.class);
+
+  /**
+   * Data is flushed to the database when the written binary data reaches this size, in order to not keep too
+   * many big files in memory. Anyway {@link org.sonar.db.BatchSession} flushes every {@link org.sonar.db.BatchSession#MAX_BATCH_SIZE} statements.
+   */
+  private static final int MAX_PENDING_BYTES = 10 * 1024 * 1024;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -69,9 +94,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final CeConfiguration ceConfiguration;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, CeConfiguration ceConfiguration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -79,56 +105,130 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
-        .visit(treeRootHolder.getRoot());
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FilesCollector filesCollector = new FilesCollector();
+      new DepthTraversalTypeAwareCrawler(filesCollector).visit(treeRootHolder.getRoot());
+
+      FileSourceComputer computer = new FileSourceComputer(filesCollector.projectUuid, loadPreviousFileSources(dbSession, filesCollector.projectUuid));
+      FileSourceWriter writer = new FileSourceWriter(dbSession);
+      int parallelism = ceConfiguration.getPersistSourcesParallelism();
+      if (parallelism <= 1) {
+        for (Component file : filesCollector.files) {
+          writer.write(computer.compute(file));
+        }
+      } else {
+        computeConcurrently(filesCollector.files, parallelism, computer, writer);
+      }
+      writer.close();
+
+      LOGGER.debug("  Persist sources | files={} | unchanged={} | threads={} | computeTime={}ms | writeTime={}ms",
+        filesCollector.files.size(), writer.unchangedCount, parallelism, computer.cumulativeDuration.get(), writer.duration);
     }
   }
 
-  private class FileSourceVisitor extends TypeAwareVisitorAdapter {
+  private Map<String, FileSourceDto> loadPreviousFileSources(DbSession session, String projectUuid) {
+    Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
+    session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
+      context -> {
+        FileSourceDto dto = (FileSourceDto) context.getResultObject();
+        previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
+      });
+    return previousFileSourcesByUuid;
+  }
 
-    private final DbSession session;
+  /**
+   * Files are computed in tree order and written in the same order. The number of computed files waiting to be written
+   * is bounded in order to not keep too much data in memory when the database is slower than the computation.
+   */
+  private static void computeConcurrently(List<Component> files, int parallelism, FileSourceComputer computer, FileSourceWriter writer) {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+      new ThreadFactoryBuilder().setNameFormat("CE_PersistFileSources-%d").setDaemon(true).build());
+    try {
+      int maxPendingFiles = 2 * parallelism;
+      Deque<Future<PersistableFileSource>> pending = new ArrayDeque<>(maxPendingFiles);
+      for (Component file : files) {
+        pending.add(executor.submit(() -> computer.compute(file)));
+        if (pending.size() >= maxPendingFiles) {
+          writer.write(getResult(pending.poll()));
+        }
+      }
+      while (!pending.isEmpty()) {
+        writer.write(getResult(pending.poll()));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static PersistableFileSource getResult(Future<PersistableFileSource> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while persisting sources", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to persist sources", e.getCause());
+    }
+  }
 
-    private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
+  private static class FilesCollector extends TypeAwareVisitorAdapter {
+    private final List<Component> files = new ArrayList<>();
     private String projectUuid;
 
-    private FileSourceVisitor(DbSession session) {
+    private FilesCollector() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
-      this.session = session;
     }
 
     @Override
     public void visitProject(Component project) {
       this.projectUuid = project.getUuid();
-      session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
-        context -> {
-          FileSourceDto dto = (FileSourceDto) context.getResultObject();
-          previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
-        });
     }
 
     @Override
     public void visitFile(Component file) {
+      files.add(file);
+    }
+  }
+
+  /**
+   * Computes the data of files and compares it with the data stored in database. Can be called concurrently.
+   */
+  private class FileSourceComputer {
+    private final String projectUuid;
+    private final Map<String, FileSourceDto> previousFileSourcesByUuid;
+    private final AtomicLong cumulativeDuration = new AtomicLong();
+
+    private FileSourceComputer(String projectUuid, Map<String, FileSourceDto> previousFileSourcesByUuid) {
+      this.projectUuid = projectUuid;
+      this.previousFileSourcesByUuid = previousFileSourcesByUuid;
+    }
+
+    PersistableFileSource compute(Component file) {
+      long start = System.currentTimeMillis();
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        return toPersistable(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
         linesIterator.close();
         lineReaders.close();
+        cumulativeDuration.addAndGet(System.currentTimeMillis() - start);
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    private PersistableFileSource toPersistable(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
@@ -149,26 +249,25 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
+        return PersistableFileSource.toInsert(dto);
       }
+
+      // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
+      String revision = computeRevision(latestChange);
+      boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        previousDto
+          .setBinaryData(data)
+          .setDataHash(dataHash)
+          .setSrcHash(srcHash)
+          .setLineHashes(lineHashes)
+          .setRevision(revision)
+          .setUpdatedAt(system2.now());
+        return PersistableFileSource.toUpdate(previousDto);
+      }
+      return PersistableFileSource.UNCHANGED;
     }
 
     @CheckForNull
@@ -180,6 +279,67 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  private static class PersistableFileSource {
+    private static final PersistableFileSource UNCHANGED = new PersistableFileSource(null, false);
+
+    @CheckForNull
+    private final FileSourceDto dto;
+    private final boolean insert;
+
+    private PersistableFileSource(@Nullable FileSourceDto dto, boolean insert) {
+      this.dto = dto;
+      this.insert = insert;
+    }
+
+    static PersistableFileSource toInsert(FileSourceDto dto) {
+      return new PersistableFileSource(dto, true);
+    }
+
+    static PersistableFileSource toUpdate(FileSourceDto dto) {
+      return new PersistableFileSource(dto, false);
+    }
+  }
+
+  /**
+   * Writes to the database from a single thread.
+   */
+  private class FileSourceWriter {
+    private final DbSession session;
+    private long pendingBytes = 0;
+    private int unchangedCount = 0;
+    private long duration = 0;
+
+    private FileSourceWriter(DbSession session) {
+      this.session = session;
+    }
+
+    void write(PersistableFileSource fileSource) {
+      FileSourceDto dto = fileSource.dto;
+      if (dto == null) {
+        unchangedCount++;
+        return;
+      }
+      long start = System.currentTimeMillis();
+      if (fileSource.insert) {
+        dbClient.fileSourceDao().insert(session, dto);
+      } else {
+        dbClient.fileSourceDao().update(session, dto);
+      }
+      pendingBytes += dto.getBinaryData().length;
+      if (pendingBytes >= MAX_PENDING_BYTES) {
+        session.commit();
+        pendingBytes = 0;
+      }
+      duration += System.currentTimeMillis() - start;
+    }
+
+    void close() {
+      long start = System.currentTimeMillis();
+      session.commit();
+      duration += System.currentTimeMillis() - start;
+    }
+  }
+
   private static class LineReaders {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
@@ -31,6 +31,7 @@ import org.sonar.db.issue.IssueChangeDto;
 import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
@@ -43,14 +44,16 @@ public class PersistIssuesStep implements ComputationStep {
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final ChangedIssuesRepository changedIssuesRepository;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, ChangedIssuesRepository changedIssuesRepository) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.changedIssuesRepository = changedIssuesRepository;
   }
 
   @Override
@@ -65,10 +68,12 @@ public class PersistIssuesStep implements ComputationStep {
         boolean saved = persistIssueIfRequired(mapper, issue);
         if (saved) {
           insertChanges(changeMapper, issue);
+          changedIssuesRepository.add(issue.key());
         }
       }
       dbSession.flushStatements();
       dbSession.commit();
+      changedIssuesRepository.complete();
     }
   }
 
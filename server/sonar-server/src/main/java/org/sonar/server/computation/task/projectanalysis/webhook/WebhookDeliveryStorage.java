@@ -20,6 +20,9 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import com.google.common.base.Throwables;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
@@ -27,9 +30,12 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.webhook.WebhookDeliveryDao;
 import org.sonar.db.webhook.WebhookDeliveryDto;
+import org.sonar.db.webhook.WebhookPendingDeliveryDto;
 
 /**
- * Persist and purge {@link WebhookDelivery} into database
+ * Persist and purge {@link WebhookDelivery} into database. Keeps statistics of the deliveries persisted since startup.
+ * Also stores the queue of the deliveries which are not completed yet, so that they are not lost when
+ * the Compute Engine restarts.
  */
 @ComputeEngineSide
 public class WebhookDeliveryStorage {
@@ -39,6 +45,10 @@ public class WebhookDeliveryStorage {
   private final DbClient dbClient;
   private final System2 system;
   private final UuidFactory uuidFactory;
+  private final LongAdder successCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder durationCount = new LongAdder();
+  private final LongAdder durationSumMs = new LongAdder();
 
   public WebhookDeliveryStorage(DbClient dbClient, System2 system, UuidFactory uuidFactory) {
     this.dbClient = dbClient;
@@ -52,6 +62,35 @@ public class WebhookDeliveryStorage {
       dao.insert(dbSession, toDto(delivery));
       dbSession.commit();
     }
+    recordStats(delivery);
+  }
+
+  private void recordStats(WebhookDelivery delivery) {
+    if (delivery.isSuccess()) {
+      successCount.increment();
+    } else {
+      failureCount.increment();
+    }
+    delivery.getDurationInMs().ifPresent(duration -> {
+      durationCount.increment();
+      durationSumMs.add(duration);
+    });
+  }
+
+  public long getSuccessCount() {
+    return successCount.sum();
+  }
+
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  /**
+   * Average duration of the requests which got a HTTP response, in milliseconds
+   */
+  public long getAverageDurationMs() {
+    long count = durationCount.sum();
+    return count == 0 ? 0 : (durationSumMs.sum() / count);
   }
 
   public void purge(String componentUuid) {
@@ -62,6 +101,58 @@ public class WebhookDeliveryStorage {
     }
   }
 
+  /**
+   * Adds a delivery to the queue, to be attempted for the first time immediately. Returns the uuid of the pending delivery.
+   */
+  public String addToQueue(Webhook webhook, WebhookPayload payload) {
+    long now = system.now();
+    WebhookPendingDeliveryDto dto = new WebhookPendingDeliveryDto()
+      .setUuid(uuidFactory.create())
+      .setComponentUuid(webhook.getComponentUuid())
+      .setCeTaskUuid(webhook.getCeTaskUuid())
+      .setName(webhook.getName())
+      .setUrl(webhook.getUrl())
+      .setProjectKey(payload.getProjectKey())
+      .setPayload(payload.getJson())
+      .setAttempt(1)
+      .setNextAttemptAt(now)
+      .setCreatedAt(now);
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.webhookPendingDeliveryDao().insert(dbSession, dto);
+      dbSession.commit();
+    }
+    return dto.getUuid();
+  }
+
+  public void updateInQueue(@Nullable String uuid, int attempt, long nextAttemptAt) {
+    if (uuid == null) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.webhookPendingDeliveryDao().updateAttempt(dbSession, uuid, attempt, nextAttemptAt);
+      dbSession.commit();
+    }
+  }
+
+  public void removeFromQueue(@Nullable String uuid) {
+    if (uuid == null) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.webhookPendingDeliveryDao().deleteByUuid(dbSession, uuid);
+      dbSession.commit();
+    }
+  }
+
+  /**
+   * The {@code limit} first deliveries of the queue, ordered by date of next attempt
+   */
+  public List<WebhookPendingDeliveryDto> loadQueue(int limit) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.webhookPendingDeliveryDao().selectOrderedByNextAttemptAt(dbSession, limit);
+    }
+  }
+
   private WebhookDeliveryDto toDto(WebhookDelivery delivery) {
     WebhookDeliveryDto dto = new WebhookDeliveryDto();
     dto.setUuid(uuidFactory.create());
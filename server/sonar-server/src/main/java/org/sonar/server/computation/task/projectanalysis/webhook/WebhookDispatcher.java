@@ -0,0 +1,363 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import okhttp3.HttpUrl;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.webhook.WebhookPendingDeliveryDto;
+import org.sonar.process.Jmx;
+
+/**
+ * Sends webhooks from a dedicated pool of threads, so that Compute Engine workers do not wait for the
+ * responses of remote servers.
+ * <ul>
+ *   <li>at most {@link #MAX_CONCURRENT_DELIVERIES_PER_HOST} requests are sent in parallel to the same host. Next
+ *   deliveries to this host are queued.</li>
+ *   <li>deliveries which fail because of a connectivity problem or of a server error (HTTP 5xx or 429) are attempted
+ *   again, up to {@link #MAX_ATTEMPTS} times, with an exponential backoff</li>
+ *   <li>each attempt is persisted by {@link WebhookDeliveryStorage}</li>
+ * </ul>
+ * Pending deliveries, with their number of attempts and the date of their next attempt, are stored in database
+ * by {@link WebhookDeliveryStorage}. They are loaded again when the Compute Engine starts. At most
+ * {@link #MAX_PENDING_DELIVERIES} of them are kept in memory, the others are loaded as soon as the deliveries
+ * in memory are completed.
+ */
+@ComputeEngineSide
+public class WebhookDispatcher implements WebhookDispatcherMBean, Startable {
+
+  static final int MAX_CONCURRENT_DELIVERIES_PER_HOST = 2;
+  static final int MAX_ATTEMPTS = 3;
+  static final int MAX_PENDING_DELIVERIES = 10_000;
+  private static final Logger LOGGER = Loggers.get(WebhookDispatcher.class);
+  private static final int THREADS = 5;
+  private static final long FIRST_RETRY_DELAY_MS = 10_000L;
+  private static final long STOP_TIMEOUT_MS = 5_000L;
+
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final System2 system;
+  private final long firstRetryDelayMs;
+  // guarded by this
+  private final Map<String, HostQueue> queuesByHost = new HashMap<>();
+  // guarded by this
+  private final Set<String> pendingUuids = new HashSet<>();
+  // guarded by this
+  private int pendingDeliveries = 0;
+  // guarded by this. True if some pending deliveries are stored in database but not in memory.
+  private boolean overflowed = false;
+  private ScheduledThreadPoolExecutor executor;
+
+  public WebhookDispatcher(WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system) {
+    this(caller, deliveryStorage, system, FIRST_RETRY_DELAY_MS);
+  }
+
+  WebhookDispatcher(WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system, long firstRetryDelayMs) {
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.system = system;
+    this.firstRetryDelayMs = firstRetryDelayMs;
+  }
+
+  @Override
+  public void start() {
+    executor = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactoryBuilder()
+      .setNameFormat("Webhooks-%d")
+      .setDaemon(true)
+      .build());
+    executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    Jmx.register(OBJECT_NAME, this);
+    int loaded = loadQueue();
+    if (loaded > 0) {
+      LOGGER.info("{} pending webhook deliveries are loaded", loaded);
+    }
+  }
+
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    int notSent = getPendingDeliveries();
+    if (notSent > 0) {
+      LOGGER.info("{} webhook deliveries will be sent on next startup", notSent);
+    }
+  }
+
+  /**
+   * Sends the payload to the webhook asynchronously. The delivery is stored in the queue of
+   * pending deliveries before being sent. Errors are not propagated but logged and persisted.
+   */
+  public void dispatch(Webhook webhook, WebhookPayload payload) {
+    String uuid = deliveryStorage.addToQueue(webhook, payload);
+    if (reserve(uuid)) {
+      enqueue(new Attempt(uuid, webhook, payload, 1));
+    } else {
+      LOGGER.warn("Too many pending webhook deliveries. Webhook '{}' is postponed | url={}", webhook.getName(), webhook.getUrl());
+    }
+  }
+
+  /**
+   * Loads the pending deliveries which are stored in database but not in memory, and schedules them
+   * at the date of their next attempt. Returns the number of loaded deliveries.
+   */
+  private int loadQueue() {
+    List<WebhookPendingDeliveryDto> dtos = deliveryStorage.loadQueue(MAX_PENDING_DELIVERIES);
+    if (dtos.size() >= MAX_PENDING_DELIVERIES) {
+      synchronized (this) {
+        overflowed = true;
+      }
+    }
+    long now = system.now();
+    int loaded = 0;
+    for (WebhookPendingDeliveryDto dto : dtos) {
+      synchronized (this) {
+        if (pendingUuids.contains(dto.getUuid())) {
+          continue;
+        }
+      }
+      if (!reserve(dto.getUuid())) {
+        break;
+      }
+      Attempt attempt = new Attempt(dto.getUuid(), new Webhook(dto.getComponentUuid(), dto.getCeTaskUuid(), dto.getName(), dto.getUrl()),
+        new WebhookPayload(dto.getProjectKey(), dto.getPayload()), dto.getAttempt());
+      schedule(attempt, dto.getNextAttemptAt() - now);
+      loaded++;
+    }
+    return loaded;
+  }
+
+  /**
+   * Reserves a place in memory for the pending delivery. Returns {@code false} if too many deliveries are
+   * already pending, in which case the delivery stays in database only.
+   */
+  private synchronized boolean reserve(@Nullable String uuid) {
+    if (pendingDeliveries >= MAX_PENDING_DELIVERIES) {
+      overflowed = true;
+      return false;
+    }
+    pendingDeliveries++;
+    if (uuid != null) {
+      pendingUuids.add(uuid);
+    }
+    return true;
+  }
+
+  /**
+   * The delivery is not pending in memory anymore, either because it is completed or because the server
+   * is stopping. In the latter case it is still stored in database.
+   */
+  private synchronized void release(Attempt attempt) {
+    pendingDeliveries--;
+    if (attempt.uuid != null) {
+      pendingUuids.remove(attempt.uuid);
+    }
+    if (pendingDeliveries == 0 && overflowed) {
+      overflowed = false;
+      try {
+        executor.execute(this::reloadQueue);
+      } catch (RejectedExecutionException e) {
+        // server is stopping, deliveries will be loaded on next startup
+        overflowed = true;
+      }
+    }
+  }
+
+  private void reloadQueue() {
+    try {
+      loadQueue();
+    } catch (RuntimeException e) {
+      LOGGER.error("Fail to load pending webhook deliveries", e);
+    }
+  }
+
+  private synchronized void enqueue(Attempt attempt) {
+    HostQueue queue = queuesByHost.computeIfAbsent(attempt.host, host -> new HostQueue());
+    if (queue.running < MAX_CONCURRENT_DELIVERIES_PER_HOST) {
+      queue.running++;
+      if (!execute(attempt)) {
+        sendNextToSameHost(attempt.host);
+      }
+    } else {
+      queue.waiting.add(attempt);
+    }
+  }
+
+  /**
+   * Must be called while holding the lock. Returns {@code false} if the attempt is rejected because
+   * the server is stopping, in which case it is not pending in memory anymore but the caller must still
+   * release the slot of the host.
+   */
+  private boolean execute(Attempt attempt) {
+    try {
+      executor.execute(() -> send(attempt));
+      return true;
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Webhook '{}' is postponed to next startup as server is stopping | url={}", attempt.webhook.getName(), attempt.webhook.getUrl());
+      release(attempt);
+      return false;
+    }
+  }
+
+  private void send(Attempt attempt) {
+    Attempt retry = null;
+    long retryDelayMs = firstRetryDelayMs << (attempt.number - 1);
+    try {
+      WebhookDelivery delivery = caller.call(attempt.webhook, attempt.payload);
+      log(delivery, attempt);
+      deliveryStorage.persist(delivery);
+      if (attempt.number < MAX_ATTEMPTS && isRetryable(delivery)) {
+        retry = attempt.next();
+        deliveryStorage.updateInQueue(retry.uuid, retry.number, system.now() + retryDelayMs);
+      } else {
+        deliveryStorage.removeFromQueue(attempt.uuid);
+        deliveryStorage.purge(attempt.webhook.getComponentUuid());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Fail to send webhook '{}' | url={}", attempt.webhook.getName(), attempt.webhook.getUrl(), e);
+      retry = null;
+    } finally {
+      if (retry != null) {
+        schedule(retry, retryDelayMs);
+      } else {
+        release(attempt);
+      }
+      sendNextToSameHost(attempt.host);
+    }
+  }
+
+  private void schedule(Attempt attempt, long delayMs) {
+    try {
+      if (delayMs > 0) {
+        executor.schedule(() -> enqueue(attempt), delayMs, TimeUnit.MILLISECONDS);
+      } else {
+        enqueue(attempt);
+      }
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Webhook '{}' is postponed to next startup as server is stopping | url={}", attempt.webhook.getName(), attempt.webhook.getUrl());
+      release(attempt);
+    }
+  }
+
+  private synchronized void sendNextToSameHost(String host) {
+    HostQueue queue = queuesByHost.get(host);
+    Attempt next = queue.waiting.poll();
+    while (next != null) {
+      if (execute(next)) {
+        return;
+      }
+      next = queue.waiting.poll();
+    }
+    queue.running--;
+    if (queue.running == 0) {
+      queuesByHost.remove(host);
+    }
+  }
+
+  private static boolean isRetryable(WebhookDelivery delivery) {
+    if (delivery.getError().isPresent()) {
+      return true;
+    }
+    int status = delivery.getHttpStatus().orElse(0);
+    return status >= 500 || status == 429;
+  }
+
+  private static void log(WebhookDelivery delivery, Attempt attempt) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | attempt={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), attempt.number, error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | attempt={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), attempt.number, delivery.getDurationInMs().orElse(-1),
+        delivery.getHttpStatus().orElse(-1));
+    }
+  }
+
+  @Override
+  public synchronized int getPendingDeliveries() {
+    return pendingDeliveries;
+  }
+
+  @Override
+  public long getSuccessfulDeliveries() {
+    return deliveryStorage.getSuccessCount();
+  }
+
+  @Override
+  public long getFailedDeliveries() {
+    return deliveryStorage.getFailureCount();
+  }
+
+  @Override
+  public long getAverageDeliveryTimeMs() {
+    return deliveryStorage.getAverageDurationMs();
+  }
+
+  private static class HostQueue {
+    private final Deque<Attempt> waiting = new ArrayDeque<>();
+    private int running = 0;
+  }
+
+  private static class Attempt {
+    @Nullable
+    private final String uuid;
+    private final Webhook webhook;
+    private final WebhookPayload payload;
+    private final int number;
+    private final String host;
+
+    private Attempt(@Nullable String uuid, Webhook webhook, WebhookPayload payload, int number) {
+      this.uuid = uuid;
+      this.webhook = webhook;
+      this.payload = payload;
+      this.number = number;
+      HttpUrl url = HttpUrl.parse(webhook.getUrl());
+      this.host = url == null ? webhook.getUrl() : url.host();
+    }
+
+    private Attempt next() {
+      return new Attempt(uuid, webhook, payload, number + 1);
+    }
+  }
+}
@@ -22,7 +22,7 @@ package org.sonar.server.computation.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -32,14 +32,21 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Chains the executions of the workers: a worker polls the queue again as soon as it executed a task, or after
+ * {@link CeConfiguration#getQueuePollingDelay()} when the queue had no task for it. When a worker executed a task,
+ * the idle workers are woken up without waiting for the end of their delay, as tasks of the same project may have been
+ * waiting for the end of the executed one.
+ * <p/>
+ * {@link CeConfiguration#getWorkerCount()} workers execute any task, and {@link CeConfiguration#getSmallProjectsWorkerCount()}
+ * additional workers only execute tasks of small projects.
+ */
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
 
   private final CeProcessingSchedulerExecutorService executorService;
-  private final CeWorkerCallable workerRunnable;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
@@ -48,15 +55,21 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
     CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
     this.executorService = processingExecutorService;
-    this.workerRunnable = workerRunnable;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
 
     int workerCount = ceConfiguration.getWorkerCount();
-    this.chainingCallbacks = new ChainingCallback[workerCount];
+    int smallProjectsWorkerCount = ceConfiguration.getSmallProjectsWorkerCount();
+    this.chainingCallbacks = new ChainingCallback[workerCount + smallProjectsWorkerCount];
     for (int i = 0; i < workerCount; i++) {
-      chainingCallbacks[i] = new ChainingCallback();
+      chainingCallbacks[i] = new ChainingCallback(workerRunnable);
+    }
+    if (smallProjectsWorkerCount > 0) {
+      CeWorkerCallable smallProjectsWorker = workerRunnable.restrictToSmallProjects(ceConfiguration.getSmallProjectsMaxNcloc());
+      for (int i = workerCount; i < chainingCallbacks.length; i++) {
+        chainingCallbacks[i] = new ChainingCallback(smallProjectsWorker);
+      }
     }
   }
 
@@ -68,8 +81,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   @Override
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.chainWithDelay();
     }
   }
 
@@ -80,15 +92,31 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     }
   }
 
+  private void wakeUpIdleWorkers(ChainingCallback caller) {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback != caller) {
+        chainingCallback.wakeUp();
+      }
+    }
+  }
+
   private class ChainingCallback implements FutureCallback<Boolean> {
+    private final CeWorkerCallable worker;
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    // true when workerFuture is a delayed polling of the queue
+    private boolean idle = false;
+
+    private ChainingCallback(CeWorkerCallable worker) {
+      this.worker = worker;
+    }
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
       if (result != null && result) {
         chainWithoutDelay();
+        wakeUpIdleWorkers(this);
       } else {
         chainWithDelay();
       }
@@ -96,6 +124,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     @Override
     public void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // future has been canceled by stop() or replaced by wakeUp()
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -103,16 +135,18 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
-    private void chainWithoutDelay() {
+    private synchronized void chainWithoutDelay() {
+      idle = false;
       if (keepRunning()) {
-        workerFuture = executorService.submit(workerRunnable);
+        workerFuture = executorService.submit(worker);
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private synchronized void chainWithDelay() {
+      idle = true;
       if (keepRunning()) {
-        workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        workerFuture = executorService.schedule(worker, delayBetweenTasks, timeUnit);
       }
       addCallback();
     }
@@ -127,7 +161,16 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       return keepRunning.get();
     }
 
-    public void stop() {
+    /**
+     * Replaces the delayed polling of the queue, if it has not started yet, by an immediate one.
+     */
+    private synchronized void wakeUp() {
+      if (idle && keepRunning() && workerFuture != null && workerFuture.cancel(false)) {
+        chainWithoutDelay();
+      }
+    }
+
+    public synchronized void stop() {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(false);
@@ -29,4 +29,12 @@ import org.sonar.ce.queue.CeTask;
  * {@code false} otherwise.
  */
 public interface CeWorkerCallable extends Callable<Boolean> {
+
+  /**
+   * A worker which only executes the tasks of projects which last analysis counted at most {@code maxNcloc}
+   * lines of code.
+   *
+   * @see org.sonar.server.computation.queue.InternalCeQueue#peek(int)
+   */
+  CeWorkerCallable restrictToSmallProjects(int maxNcloc);
 }
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.taskprocessor;
 
 import com.google.common.base.Optional;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -40,11 +41,24 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
   private final InternalCeQueue queue;
   private final CeLogging ceLogging;
   private final CeTaskProcessorRepository taskProcessorRepository;
+  @CheckForNull
+  private final Integer maxNcloc;
 
   public CeWorkerCallableImpl(InternalCeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository) {
+    this(queue, ceLogging, taskProcessorRepository, null);
+  }
+
+  private CeWorkerCallableImpl(InternalCeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository,
+    @Nullable Integer maxNcloc) {
     this.queue = queue;
     this.ceLogging = ceLogging;
     this.taskProcessorRepository = taskProcessorRepository;
+    this.maxNcloc = maxNcloc;
+  }
+
+  @Override
+  public CeWorkerCallable restrictToSmallProjects(int maxNcloc) {
+    return new CeWorkerCallableImpl(queue, ceLogging, taskProcessorRepository, maxNcloc);
   }
 
   @Override
@@ -64,7 +78,7 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
 
   private Optional<CeTask> tryAndFindTaskToExecute() {
     try {
-      return queue.peek();
+      return maxNcloc == null ? queue.peek() : queue.peek(maxNcloc);
     } catch (Exception e) {
       LOG.error("Failed to pop the queue of analysis reports", e);
     }
@@ -0,0 +1,54 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.duplication;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.Metrics;
+import org.sonar.db.measure.DuplicationsDataCodec;
+
+/**
+ * Internal metrics about duplications, which are not part of the API
+ */
+public final class DuplicationMetrics implements Metrics {
+
+  public static final String DUPLICATIONS_BINARY_DATA_KEY = "duplications_binary_data";
+
+  /**
+   * Same information as {@link CoreMetrics#DUPLICATIONS_DATA}, which keeps its XML format, encoded by
+   * {@link DuplicationsDataCodec} so that it can be read without parsing XML.
+   */
+  public static final Metric<String> DUPLICATIONS_BINARY_DATA = new Metric.Builder(DUPLICATIONS_BINARY_DATA_KEY, "Duplication Binary Details",
+    Metric.ValueType.DATA)
+      .setDescription("Duplications details, in binary format")
+      .setDirection(Metric.DIRECTION_NONE)
+      .setQualitative(false)
+      .setDomain(CoreMetrics.DOMAIN_DUPLICATIONS)
+      .setDeleteHistoricalData(true)
+      .setHidden(true)
+      .create();
+
+  @Override
+  public List<Metric> getMetrics() {
+    return ImmutableList.of(DUPLICATIONS_BINARY_DATA);
+  }
+}
@@ -20,7 +20,6 @@
 package org.sonar.server.duplication.ws;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Optional;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.util.Collections;
@@ -39,9 +38,13 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDao;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.measure.DuplicationsDataCodec;
+import org.sonar.db.protobuf.DbMeasures;
+import org.sonar.server.duplication.DuplicationMetrics;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 
 @ServerSide
 public class DuplicationsParser {
@@ -52,45 +55,75 @@ public class DuplicationsParser {
     this.componentDao = componentDao;
   }
 
+  /**
+   * @param duplicationsData XML of measure of metric {@link org.sonar.api.measures.CoreMetrics#DUPLICATIONS_DATA}
+   */
   public List<Block> parse(ComponentDto component, @Nullable String duplicationsData, DbSession session) {
-    Map<String, ComponentDto> componentsByKey = newHashMap();
+    if (duplicationsData == null) {
+      return newArrayList();
+    }
+    return toBlocks(component, parseXml(duplicationsData), session);
+  }
+
+  /**
+   * @param duplicationsBinaryData data of measure of metric {@link DuplicationMetrics#DUPLICATIONS_BINARY_DATA}
+   */
+  public List<Block> parseBinary(ComponentDto component, String duplicationsBinaryData, DbSession session) {
+    return toBlocks(component, DuplicationsDataCodec.decode(duplicationsBinaryData), session);
+  }
+
+  private List<Block> toBlocks(ComponentDto component, DbMeasures.Duplications duplications, DbSession session) {
+    Map<String, ComponentDto> componentsByKey = componentDao.selectByKeys(session, duplications.getComponentKeyList()).stream()
+      .collect(uniqueIndex(ComponentDto::key));
+
     List<Block> blocks = newArrayList();
-    if (duplicationsData != null) {
-      try {
-        SMInputFactory inputFactory = initStax();
-        SMHierarchicCursor root = inputFactory.rootElementCursor(new StringReader(duplicationsData));
-        root.advance(); // <duplications>
-        SMInputCursor cursor = root.childElementCursor("g");
-        while (cursor.getNext() != null) {
-          List<Duplication> duplications = newArrayList();
-          SMInputCursor bCursor = cursor.childElementCursor("b");
-          while (bCursor.getNext() != null) {
-            String from = bCursor.getAttrValue("s");
-            String size = bCursor.getAttrValue("l");
-            String componentKey = bCursor.getAttrValue("r");
-            if (from != null && size != null && componentKey != null) {
-              duplications.add(createDuplication(componentsByKey, from, size, componentKey, session));
-            }
-          }
-          Collections.sort(duplications, new DuplicationComparator(component.uuid(), component.projectUuid()));
-          blocks.add(new Block(duplications));
-        }
-        Collections.sort(blocks, new BlockComparator());
-      } catch (XMLStreamException e) {
-        throw new IllegalStateException("XML is not valid", e);
+    for (DbMeasures.Group group : duplications.getGroupList()) {
+      List<Duplication> groupDuplications = newArrayList();
+      for (DbMeasures.Block block : group.getBlockList()) {
+        ComponentDto file = componentsByKey.get(duplications.getComponentKey(block.getComponentKeyIndex()));
+        groupDuplications.add(new Duplication(file, block.getStartLine(), block.getLength()));
       }
+      Collections.sort(groupDuplications, new DuplicationComparator(component.uuid(), component.projectUuid()));
+      blocks.add(new Block(groupDuplications));
     }
+    Collections.sort(blocks, new BlockComparator());
     return blocks;
   }
 
-  private Duplication createDuplication(Map<String, ComponentDto> componentsByKey, String from, String size, String componentKey, DbSession session) {
-    ComponentDto component = componentsByKey.get(componentKey);
-    if (component == null) {
-      Optional<ComponentDto> componentDtoOptional = componentDao.selectByKey(session, componentKey);
-      component = componentDtoOptional.isPresent() ? componentDtoOptional.get() : null;
-      componentsByKey.put(componentKey, component);
+  private static DbMeasures.Duplications parseXml(String duplicationsData) {
+    DbMeasures.Duplications.Builder duplications = DbMeasures.Duplications.newBuilder();
+    Map<String, Integer> indexByComponentKey = newHashMap();
+    try {
+      SMInputFactory inputFactory = initStax();
+      SMHierarchicCursor root = inputFactory.rootElementCursor(new StringReader(duplicationsData));
+      root.advance(); // <duplications>
+      SMInputCursor cursor = root.childElementCursor("g");
+      while (cursor.getNext() != null) {
+        DbMeasures.Group.Builder group = DbMeasures.Group.newBuilder();
+        SMInputCursor bCursor = cursor.childElementCursor("b");
+        while (bCursor.getNext() != null) {
+          String from = bCursor.getAttrValue("s");
+          String size = bCursor.getAttrValue("l");
+          String componentKey = bCursor.getAttrValue("r");
+          if (from != null && size != null && componentKey != null) {
+            Integer index = indexByComponentKey.get(componentKey);
+            if (index == null) {
+              index = indexByComponentKey.size();
+              indexByComponentKey.put(componentKey, index);
+              duplications.addComponentKey(componentKey);
+            }
+            group.addBlock(DbMeasures.Block.newBuilder()
+              .setComponentKeyIndex(index)
+              .setStartLine(Integer.parseInt(from))
+              .setLength(Integer.parseInt(size)));
+          }
+        }
+        duplications.addGroup(group);
+      }
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("XML is not valid", e);
     }
-    return new Duplication(component, Integer.valueOf(from), Integer.valueOf(size));
+    return duplications.build();
   }
 
   private static SMInputFactory initStax() {
@@ -39,6 +39,7 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.user.UserSession;
 
 import static org.sonar.server.component.ComponentFinder.ParamNames.UUID_AND_KEY;
+import static org.sonar.server.duplication.DuplicationMetrics.DUPLICATIONS_BINARY_DATA_KEY;
 
 public class ShowAction implements RequestHandler {
 
@@ -82,18 +83,29 @@ public class ShowAction implements RequestHandler {
       ComponentDto component = componentFinder.getByUuidOrKey(dbSession, request.param("uuid"), request.param("key"), UUID_AND_KEY);
       userSession.checkComponentPermission(UserRole.CODEVIEWER, component);
       json.beginObject();
-      String duplications = findDataFromComponent(dbSession, component);
-      List<DuplicationsParser.Block> blocks = parser.parse(component, duplications, dbSession);
+      List<DuplicationsParser.Block> blocks = parseDuplications(dbSession, component);
       duplicationsJsonWriter.write(blocks, json, dbSession);
       json.endObject();
     }
   }
 
+  /**
+   * The binary data is read when available. Otherwise, for example when the file has not been analyzed since the binary
+   * format exists, the XML is parsed.
+   */
+  private List<DuplicationsParser.Block> parseDuplications(DbSession dbSession, ComponentDto component) {
+    String binaryData = findDataFromComponent(dbSession, component, DUPLICATIONS_BINARY_DATA_KEY);
+    if (binaryData != null) {
+      return parser.parseBinary(component, binaryData, dbSession);
+    }
+    return parser.parse(component, findDataFromComponent(dbSession, component, CoreMetrics.DUPLICATIONS_DATA_KEY), dbSession);
+  }
+
   @CheckForNull
-  private String findDataFromComponent(DbSession dbSession, ComponentDto component) {
+  private String findDataFromComponent(DbSession dbSession, ComponentDto component, String metricKey) {
     MeasureQuery query = MeasureQuery.builder()
       .setComponentUuid(component.uuid())
-      .setMetricKey(CoreMetrics.DUPLICATIONS_DATA_KEY)
+      .setMetricKey(metricKey)
       .build();
     Optional<MeasureDto> measure = dbClient.measureDao().selectSingle(dbSession, query);
     return measure.isPresent() ? measure.get().getData() : null;
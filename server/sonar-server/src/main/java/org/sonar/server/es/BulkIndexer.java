@@ -21,10 +21,19 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -39,6 +48,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -55,7 +65,10 @@ import static java.lang.String.format;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>in adaptive mode, size and concurrency of requests are tuned on the fly and rejected requests are retried</li>
  * </ul>
+ * Requests can be added concurrently by multiple threads, for example by {@link PartitionedStartupIndexing}.
+ * Throughput is published by {@link BulkIndexerMetrics}.
  */
 public class BulkIndexer implements Startable {
 
@@ -63,16 +76,25 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final long STOP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final int MAX_RETRIES_ON_STOP = 10;
 
   private final EsClient client;
   private final String indexName;
   private Size size = Size.REGULAR;
   private long flushByteSize = FLUSH_BYTE_SIZE;
+  private boolean adaptive = false;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
   private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final BulkIndexerMetrics metrics = BulkIndexerMetrics.get();
+  private final Object inFlightLock = new Object();
+  private int inFlightRequests = 0;
+  private final Queue<ActionRequest<?>> rejectedRequests = new ConcurrentLinkedQueue<>();
+  private final List<Future<?>> pendingDeletions = new ArrayList<>();
+  private ExecutorService deletionExecutor = null;
+  private BulkThrottle throttle;
   private final ProgressLogger progress;
 
   public BulkIndexer(EsClient client, String indexName) {
@@ -83,7 +105,6 @@ public class BulkIndexer implements Startable {
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
   }
 
   public enum Size {
@@ -109,6 +130,17 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * In adaptive mode, the size of requests and the number of concurrent requests are tuned from the latency
+   * of Elasticsearch responses. Requests rejected by Elasticsearch because of back pressure are sent again.
+   * Disabled by default.
+   */
+  public BulkIndexer setAdaptive(boolean adaptive) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    this.adaptive = adaptive;
+    return this;
+  }
+
   @Override
   public void start() {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
@@ -131,18 +163,24 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    throttle = new BulkThrottle(flushByteSize, concurrentRequests, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), adaptive);
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
     progress.start();
   }
 
-  public void add(ActionRequest<?> request) {
+  public synchronized void add(ActionRequest<?> request) {
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= throttle.getFlushByteSize()) {
       executeBulk();
     }
   }
 
+  /**
+   * Deletes the documents matching the search request. Search is executed synchronously, so that the deleted
+   * documents are the ones existing when this method is called, but the next pages of results are
+   * scrolled and deleted asynchronously. {@link #stop()} waits for the end of deletions.
+   */
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .addSort("_doc", SortOrder.ASC)
@@ -151,12 +189,15 @@ public class BulkIndexer implements Startable {
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
     SearchResponse searchResponse = searchRequest.get();
+    if (deletionExecutor == null) {
+      deletionExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("BulkIndexer-deletion-%d").setDaemon(true).build());
+    }
+    pendingDeletions.add(deletionExecutor.submit(() -> scrollAndDelete(searchResponse)));
+  }
 
+  private void scrollAndDelete(SearchResponse firstResponse) {
+    SearchResponse searchResponse = firstResponse;
     while (true) {
       SearchHit[] hits = searchResponse.getHits().getHits();
       for (SearchHit hit : hits) {
@@ -169,11 +210,11 @@ public class BulkIndexer implements Startable {
       }
 
       String scrollId = searchResponse.getScrollId();
-      searchResponse = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(5)).get();
       if (hits.length == 0) {
         client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
         break;
       }
+      searchResponse = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(5)).get();
     }
   }
 
@@ -198,17 +239,34 @@ public class BulkIndexer implements Startable {
     bulk.stop();
   }
 
+  /**
+   * Sends the pending requests and waits for the responses of all the requests sent so far. Requests
+   * must not be added concurrently.
+   */
+  public void flush() {
+    flushAndWait();
+    int retries = 0;
+    while (!rejectedRequests.isEmpty() && retries < MAX_RETRIES_ON_STOP) {
+      retries++;
+      addRejectedRequests();
+      flushAndWait();
+    }
+    if (!rejectedRequests.isEmpty()) {
+      LOGGER.error("{} requests on index [{}] are still rejected after {} retries", rejectedRequests.size(), indexName, MAX_RETRIES_ON_STOP);
+      rejectedRequests.clear();
+    }
+  }
+
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
     try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
+      waitForDeletions();
+      flush();
+    } finally {
+      if (deletionExecutor != null) {
+        deletionExecutor.shutdownNow();
+        deletionExecutor = null;
       }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
     progress.stop();
     client.prepareRefresh(indexName).get();
@@ -223,42 +281,138 @@ public class BulkIndexer implements Startable {
     bulkRequest = null;
   }
 
+  private void waitForDeletions() {
+    for (Future<?> deletion : pendingDeletions) {
+      try {
+        deletion.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while deleting documents of index " + indexName, e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Fail to delete documents of index " + indexName, e.getCause());
+      }
+    }
+    pendingDeletions.clear();
+  }
+
+  private void flushAndWait() {
+    synchronized (this) {
+      if (bulkRequest.numberOfActions() > 0) {
+        executeBulk();
+      }
+    }
+    long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+    synchronized (inFlightLock) {
+      while (inFlightRequests > 0) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes");
+        }
+        try {
+          inFlightLock.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+        }
+      }
+    }
+  }
+
   private void updateSettings(Map<String, Object> settings) {
     UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(indexName);
     req.setSettings(settings);
     req.get();
   }
 
+  private void addRejectedRequests() {
+    ActionRequest<?> request = rejectedRequests.poll();
+    while (request != null) {
+      add(request);
+      request = rejectedRequests.poll();
+    }
+  }
+
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    throttle.acquire();
+    synchronized (inFlightLock) {
+      inFlightRequests++;
+    }
+    metrics.onRequestSent();
+    req.execute(new BulkResponseActionListener(req, System.currentTimeMillis()));
+    if (adaptive && !rejectedRequests.isEmpty()) {
+      // rejected requests are sent again with the next bulk request
+      ActionRequest<?> request = rejectedRequests.poll();
+      while (request != null) {
+        bulkRequest.request().add(request);
+        request = rejectedRequests.poll();
+      }
+    }
+  }
+
+  private void onRequestCompleted() {
+    throttle.release();
+    synchronized (inFlightLock) {
+      inFlightRequests--;
+      inFlightLock.notifyAll();
+    }
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final long sentAt;
+    private final long sizeInBytes;
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, long sentAt) {
       this.req = req;
+      this.sentAt = sentAt;
+      this.sizeInBytes = req.request().estimatedSizeInBytes();
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+      try {
+        long latency = System.currentTimeMillis() - sentAt;
+        int failures = 0;
+        int rejections = 0;
+        for (BulkItemResponse item : response.getItems()) {
+          if (item.isFailed()) {
+            if (adaptive && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+              rejections++;
+              rejectedRequests.add(req.request().requests().get(item.getItemId()));
+            } else {
+              failures++;
+              LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+            }
+          }
+        }
+        counter.addAndGet(response.getItems().length - rejections);
+        metrics.onResponse(response.getItems().length - rejections, sizeInBytes, latency, failures, rejections > 0);
+        if (rejections > 0) {
+          throttle.onRejection();
+        } else {
+          throttle.onSuccess(latency);
         }
+      } finally {
+        onRequestCompleted();
       }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      try {
+        boolean rejected = ExceptionsHelper.status(e) == RestStatus.TOO_MANY_REQUESTS;
+        metrics.onResponse(0, 0L, System.currentTimeMillis() - sentAt, rejected ? 0 : req.request().numberOfActions(), rejected);
+        if (adaptive && rejected) {
+          throttle.onRejection();
+          req.request().requests().forEach(rejectedRequests::add);
+        } else {
+          LOGGER.error("Fail to execute bulk index request: " + req, e);
+        }
+      } finally {
+        onRequestCompleted();
+      }
     }
   }
 }
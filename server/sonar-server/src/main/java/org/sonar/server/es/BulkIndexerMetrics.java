@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Throughput and health of the bulk requests sent to Elasticsearch by all the {@link BulkIndexer}s
+ * of the process. Exported through JMX by {@link BulkIndexerMBeanImpl}.
+ */
+public class BulkIndexerMetrics {
+
+  private static final BulkIndexerMetrics INSTANCE = new BulkIndexerMetrics(System::nanoTime);
+
+  /**
+   * Rates are computed over periods of 5 seconds
+   */
+  private static final long RATE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final LongSupplier nanoTime;
+  private final AtomicInteger inFlightRequests = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rejectedRequests = new AtomicLong();
+  private final AtomicLong failedDocuments = new AtomicLong();
+  private final AtomicLong totalLatencyMillis = new AtomicLong();
+  private final Rate documents;
+  private final Rate bytes;
+
+  BulkIndexerMetrics(LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+    this.documents = new Rate(nanoTime.getAsLong());
+    this.bytes = new Rate(nanoTime.getAsLong());
+  }
+
+  public static BulkIndexerMetrics get() {
+    return INSTANCE;
+  }
+
+  void onRequestSent() {
+    inFlightRequests.incrementAndGet();
+  }
+
+  void onResponse(int documentCount, long byteCount, long latencyMillis, int failedDocumentCount, boolean rejected) {
+    long now = nanoTime.getAsLong();
+    inFlightRequests.decrementAndGet();
+    requests.incrementAndGet();
+    totalLatencyMillis.addAndGet(latencyMillis);
+    documents.add(documentCount, now);
+    bytes.add(byteCount, now);
+    failedDocuments.addAndGet(failedDocumentCount);
+    if (rejected) {
+      rejectedRequests.incrementAndGet();
+    }
+  }
+
+  public int getInFlightRequests() {
+    return inFlightRequests.get();
+  }
+
+  public long getRequests() {
+    return requests.get();
+  }
+
+  public long getRejectedRequests() {
+    return rejectedRequests.get();
+  }
+
+  public long getFailedDocuments() {
+    return failedDocuments.get();
+  }
+
+  public long getAverageLatencyMillis() {
+    long count = requests.get();
+    return count == 0 ? 0L : (totalLatencyMillis.get() / count);
+  }
+
+  public long getDocuments() {
+    return documents.total.get();
+  }
+
+  public long getBytes() {
+    return bytes.total.get();
+  }
+
+  public double getDocumentsPerSecond() {
+    return documents.perSecond(nanoTime.getAsLong());
+  }
+
+  public double getBytesPerSecond() {
+    return bytes.perSecond(nanoTime.getAsLong());
+  }
+
+  private static class Rate {
+    private final AtomicLong total = new AtomicLong();
+    private long periodStart;
+    private long periodStartTotal = 0L;
+    private double lastRate = 0d;
+
+    Rate(long now) {
+      this.periodStart = now;
+    }
+
+    void add(long value, long now) {
+      long newTotal = total.addAndGet(value);
+      synchronized (this) {
+        long elapsed = now - periodStart;
+        if (elapsed >= RATE_PERIOD_NANOS) {
+          lastRate = (newTotal - periodStartTotal) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+          periodStart = now;
+          periodStartTotal = newTotal;
+        }
+      }
+    }
+
+    synchronized double perSecond(long now) {
+      // rate is obsolete if nothing has been indexed during the last two periods
+      if (now - periodStart > 2 * RATE_PERIOD_NANOS) {
+        return 0d;
+      }
+      return lastRate;
+    }
+  }
+}
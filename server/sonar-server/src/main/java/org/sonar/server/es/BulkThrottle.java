@@ -0,0 +1,115 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.Semaphore;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+/**
+ * Limits the size and the number of concurrent bulk requests sent by a {@link BulkIndexer}. In adaptive
+ * mode, limits are tuned from the latency of the responses and from the rejections of Elasticsearch:
+ * <ul>
+ *   <li>a rejection halves the size of requests and decreases concurrency</li>
+ *   <li>a slow response decreases the size of requests</li>
+ *   <li>fast responses increase the size of requests and, from time to time, concurrency</li>
+ * </ul>
+ */
+class BulkThrottle {
+
+  static final long MIN_FLUSH_BYTE_SIZE = new ByteSizeValue(256, ByteSizeUnit.KB).bytes();
+  static final long MAX_FLUSH_BYTE_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB).bytes();
+  static final long TARGET_LATENCY_MILLIS = 500L;
+  static final int SUCCESSES_BEFORE_CONCURRENCY_INCREASE = 10;
+
+  private final boolean adaptive;
+  private final int maxConcurrency;
+  private final ResizableSemaphore semaphore;
+  private volatile long flushByteSize;
+  private int concurrency;
+  private int successes = 0;
+
+  BulkThrottle(long flushByteSize, int concurrency, int maxConcurrency, boolean adaptive) {
+    this.flushByteSize = flushByteSize;
+    this.concurrency = concurrency;
+    this.maxConcurrency = Math.max(concurrency, maxConcurrency);
+    this.adaptive = adaptive;
+    this.semaphore = new ResizableSemaphore(concurrency);
+  }
+
+  long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  synchronized int getConcurrency() {
+    return concurrency;
+  }
+
+  void acquire() {
+    semaphore.acquireUninterruptibly();
+  }
+
+  void release() {
+    semaphore.release();
+  }
+
+  synchronized void onSuccess(long latencyMillis) {
+    if (!adaptive) {
+      return;
+    }
+    if (latencyMillis > 2 * TARGET_LATENCY_MILLIS) {
+      successes = 0;
+      flushByteSize = Math.max(MIN_FLUSH_BYTE_SIZE, flushByteSize * 3 / 4);
+    } else if (latencyMillis < TARGET_LATENCY_MILLIS) {
+      flushByteSize = Math.min(MAX_FLUSH_BYTE_SIZE, flushByteSize + flushByteSize / 4);
+      successes++;
+      if (successes >= SUCCESSES_BEFORE_CONCURRENCY_INCREASE && concurrency < maxConcurrency) {
+        successes = 0;
+        concurrency++;
+        semaphore.release();
+      }
+    }
+  }
+
+  synchronized void onRejection() {
+    if (!adaptive) {
+      return;
+    }
+    successes = 0;
+    flushByteSize = Math.max(MIN_FLUSH_BYTE_SIZE, flushByteSize / 2);
+    if (concurrency > 1) {
+      concurrency--;
+      semaphore.reducePermits(1);
+    }
+  }
+
+  private static class ResizableSemaphore extends Semaphore {
+    private static final long serialVersionUID = 1;
+
+    ResizableSemaphore(int permits) {
+      super(permits);
+    }
+
+    @Override
+    protected void reducePermits(int reduction) {
+      super.reducePermits(reduction);
+    }
+  }
+}
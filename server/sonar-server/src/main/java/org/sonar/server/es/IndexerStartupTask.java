@@ -19,7 +19,20 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
 import org.elasticsearch.action.admin.indices.close.CloseIndexAction;
@@ -32,17 +45,28 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 
-import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toSet;
 
+/**
+ * Indexes the empty types on startup. Indexers are executed concurrently. Each type is flagged as initialized
+ * as soon as its indexer is done, so that a restart does not index it again. Within a type, the indexers of
+ * issues and tests save the projects already indexed, see {@link PartitionedStartupIndexing}.
+ */
 public class IndexerStartupTask {
 
+  static final String PARALLELISM_PROPERTY = "sonar.internal.es.startupIndexing.parallelism";
+
   private static final Logger LOG = Loggers.get(IndexerStartupTask.class);
   private static final String SETTING_PREFIX_INITIAL_INDEXING_FINISHED = "sonarqube_initial_indexing_finished.";
 
   private final EsClient esClient;
   private final Settings settings;
   private final StartupIndexer[] indexers;
+  /**
+   * Indices are closed to be flagged as initialized. It must not happen while other indexers still write into them.
+   */
+  private final Map<String, ReadWriteLock> locksByIndex = new ConcurrentHashMap<>();
 
   public IndexerStartupTask(EsClient esClient, Settings settings, StartupIndexer... indexers) {
     this.esClient = esClient;
@@ -51,9 +75,46 @@ public class IndexerStartupTask {
   }
 
   public void execute() {
-    if (indexesAreEnabled()) {
-      stream(indexers)
-        .forEach(this::indexEmptyTypes);
+    if (!indexesAreEnabled()) {
+      return;
+    }
+    List<Runnable> tasks = new ArrayList<>();
+    for (StartupIndexer indexer : indexers) {
+      Set<IndexType> uninitializedTypes = getUninitializedTypes(indexer);
+      if (!uninitializedTypes.isEmpty()) {
+        tasks.add(() -> indexEmptyTypes(indexer, uninitializedTypes));
+      }
+    }
+    if (!tasks.isEmpty()) {
+      execute(tasks);
+    }
+  }
+
+  private void execute(List<Runnable> tasks) {
+    int parallelism = settings.getInt(PARALLELISM_PROPERTY);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism > 0 ? parallelism : tasks.size(),
+      new ThreadFactoryBuilder().setNameFormat("StartupIndexer-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = tasks.stream().map(executor::submit).collect(Collectors.toList());
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to index", e.getCause());
     }
   }
 
@@ -61,15 +122,23 @@ public class IndexerStartupTask {
     return !settings.getBoolean("sonar.internal.es.disableIndexes");
   }
 
-  private void indexEmptyTypes(StartupIndexer indexer) {
-    Set<IndexType> uninizializedTypes = getUninitializedTypes(indexer);
-    if (!uninizializedTypes.isEmpty()) {
-      Profiler profiler = Profiler.create(LOG);
-      profiler.startInfo(getLogMessage(uninizializedTypes, "..."));
-      indexer.indexOnStartup(uninizializedTypes);
-      uninizializedTypes.forEach(this::setInitialized);
-      profiler.stopInfo(getLogMessage(uninizializedTypes, "done"));
+  private void indexEmptyTypes(StartupIndexer indexer, Set<IndexType> uninitializedTypes) {
+    Profiler profiler = Profiler.create(LOG);
+    profiler.startInfo(getLogMessage(uninitializedTypes, "..."));
+    // indices are locked in the same order by all the indexers
+    SortedSet<String> indices = uninitializedTypes.stream().map(IndexType::getIndex).collect(toCollection(TreeSet::new));
+    indices.forEach(index -> lockOf(index).readLock().lock());
+    try {
+      indexer.indexOnStartup(uninitializedTypes);
+    } finally {
+      indices.forEach(index -> lockOf(index).readLock().unlock());
     }
+    uninitializedTypes.forEach(this::setInitialized);
+    profiler.stopInfo(getLogMessage(uninitializedTypes, "done"));
+  }
+
+  private ReadWriteLock lockOf(String index) {
+    return locksByIndex.computeIfAbsent(index, i -> new ReentrantReadWriteLock());
   }
 
   private Set<IndexType> getUninitializedTypes(StartupIndexer indexer) {
@@ -84,10 +153,16 @@ public class IndexerStartupTask {
 
   private void setInitialized(IndexType indexType) {
     String index = indexType.getIndex();
-    closeIndex(index);
-    setIndexSetting(index, getInitializedSettingName(indexType), true);
-    openIndex(index);
-    waitForIndexYellow(index);
+    ReadWriteLock lock = lockOf(index);
+    lock.writeLock().lock();
+    try {
+      closeIndex(index);
+      setIndexSetting(index, getInitializedSettingName(indexType), true);
+      openIndex(index);
+      waitForIndexYellow(index);
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   private void closeIndex(String index) {
@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Indexing on startup of the tables which are too large to be read by a single DB cursor. Rows are read
+ * project by project by a pool of threads, each of them using its own cursor. Documents are pushed to a
+ * {@link BulkIndexer} shared by all the threads.
+ * <p>
+ * Projects are indexed in batches. At the end of each batch, the bulk requests are flushed and the projects
+ * of the batch are saved in a {@link StartupIndexingCheckpoint}, so that a restart of the server
+ * resumes with the projects which are not indexed yet.
+ * </p>
+ */
+public class PartitionedStartupIndexing {
+
+  static final int DEFAULT_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  static final int DEFAULT_BATCH_SIZE = 500;
+
+  private PartitionedStartupIndexing() {
+    // only static methods
+  }
+
+  /**
+   * @param projectUuids the projects having rows in the table to index
+   */
+  public static void forEachProject(List<String> projectUuids, BulkIndexer bulk, StartupIndexingCheckpoint checkpoint,
+    Consumer<String> projectIndexing) {
+    forEachProject(projectUuids, bulk, checkpoint, DEFAULT_PARALLELISM, DEFAULT_BATCH_SIZE, projectIndexing);
+  }
+
+  static void forEachProject(List<String> projectUuids, BulkIndexer bulk, StartupIndexingCheckpoint checkpoint, int parallelism, int batchSize,
+    Consumer<String> projectIndexing) {
+    List<String> remainingUuids = projectUuids.stream().filter(uuid -> !checkpoint.isDone(uuid)).collect(Collectors.toList());
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+      new ThreadFactoryBuilder().setNameFormat("StartupIndexing-%d").setDaemon(true).build());
+    try {
+      for (List<String> batch : Lists.partition(remainingUuids, batchSize)) {
+        List<Future<?>> futures = new ArrayList<>(batch.size());
+        for (String projectUuid : batch) {
+          futures.add(executor.submit(() -> projectIndexing.accept(projectUuid)));
+        }
+        for (Future<?> future : futures) {
+          waitFor(future);
+        }
+        bulk.flush();
+        checkpoint.save(batch);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to index", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+/**
+ * Projects already indexed by an interrupted indexing of a type on startup, so that a restart of the server
+ * does not index them again.
+ * <p>
+ * The uuids of the projects are saved in the DB table internal_properties, along with the uuid of the Elasticsearch
+ * index. They are ignored if the index has been re-created since.
+ * </p>
+ */
+public class StartupIndexingCheckpoint {
+
+  private static final Logger LOGGER = Loggers.get(StartupIndexingCheckpoint.class);
+  private static final String PROPERTY_PREFIX = "es.startupIndexing.";
+  private static final char SEPARATOR = ',';
+
+  private final DbClient dbClient;
+  private final String propertyKey;
+  private final String indexUuid;
+  private final Set<String> doneProjectUuids = new HashSet<>();
+
+  private StartupIndexingCheckpoint(DbClient dbClient, String propertyKey, String indexUuid) {
+    this.dbClient = dbClient;
+    this.propertyKey = propertyKey;
+    this.indexUuid = indexUuid;
+  }
+
+  public static StartupIndexingCheckpoint load(DbClient dbClient, EsClient esClient, IndexType indexType) {
+    String index = indexType.getIndex();
+    String indexUuid = esClient.nativeClient().admin().indices().prepareGetSettings(index).get().getSetting(index, IndexMetaData.SETTING_INDEX_UUID);
+    StartupIndexingCheckpoint checkpoint = new StartupIndexingCheckpoint(dbClient, PROPERTY_PREFIX + indexType.getType(), indexUuid);
+    Optional<String> value;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      value = dbClient.internalPropertiesDao().selectByKey(dbSession, checkpoint.propertyKey);
+    }
+    if (value.isPresent() && !value.get().isEmpty()) {
+      Iterator<String> uuids = Splitter.on(SEPARATOR).split(value.get()).iterator();
+      if (indexUuid.equals(uuids.next())) {
+        uuids.forEachRemaining(checkpoint.doneProjectUuids::add);
+        LOGGER.info("Resume indexing of type {}: {} projects are already indexed", indexType, checkpoint.doneProjectUuids.size());
+      }
+    }
+    return checkpoint;
+  }
+
+  public boolean isDone(String projectUuid) {
+    return doneProjectUuids.contains(projectUuid);
+  }
+
+  int countDone() {
+    return doneProjectUuids.size();
+  }
+
+  /**
+   * Saves the projects as indexed. Their documents must have been acknowledged by Elasticsearch.
+   */
+  public void save(Collection<String> projectUuids) {
+    doneProjectUuids.addAll(projectUuids);
+    write(indexUuid + SEPARATOR + Joiner.on(SEPARATOR).join(doneProjectUuids));
+  }
+
+  /**
+   * Forgets the checkpoint once the type is completely indexed
+   */
+  public void clear() {
+    doneProjectUuids.clear();
+    write(null);
+  }
+
+  private void write(@Nullable String value) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      if (value == null) {
+        dbClient.internalPropertiesDao().saveAsEmpty(dbSession, propertyKey);
+      } else {
+        dbClient.internalPropertiesDao().save(dbSession, propertyKey, value);
+      }
+      dbSession.commit();
+    }
+  }
+}
@@ -29,13 +29,16 @@ import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.sonar.api.resources.Qualifiers;
+import org.sonar.db.DbClient;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedStartupIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.es.StartupIndexer;
+import org.sonar.server.es.StartupIndexingCheckpoint;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
@@ -51,10 +54,12 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_ISSUE, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
 
   private final EsClient esClient;
+  private final DbClient dbClient;
   private final IssueIteratorFactory issueIteratorFactory;
 
-  public IssueIndexer(EsClient esClient, IssueIteratorFactory issueIteratorFactory) {
+  public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory) {
     this.esClient = esClient;
+    this.dbClient = dbClient;
     this.issueIteratorFactory = issueIteratorFactory;
   }
 
@@ -70,7 +75,19 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    StartupIndexingCheckpoint checkpoint = StartupIndexingCheckpoint.load(dbClient, esClient, INDEX_TYPE_ISSUE);
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE).setAdaptive(true);
+    bulk.start();
+    try {
+      PartitionedStartupIndexing.forEachProject(issueIteratorFactory.selectProjectUuids(), bulk, checkpoint, projectUuid -> {
+        try (IssueIterator issues = issueIteratorFactory.createForProject(projectUuid)) {
+          issues.forEachRemaining(issue -> bulk.add(newIndexRequest(issue)));
+        }
+      });
+    } finally {
+      bulk.stop();
+    }
+    checkpoint.clear();
   }
 
   @Override
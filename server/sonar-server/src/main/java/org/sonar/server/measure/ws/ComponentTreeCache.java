@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.ws;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.db.component.ComponentTreeQuery;
+import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
+
+/**
+ * Components of a tree, filtered and sorted as requested to api/measures/component_tree. Browsing the pages
+ * of a large tree does not load again all the components and their measures on each page.
+ * <p/>
+ * Entries are identified by the uuid of the last analysis of the project, so a new analysis makes them obsolete.
+ * They also expire after a few minutes, as changes of component keys do not create analyses.
+ */
+public class ComponentTreeCache {
+
+  /**
+   * Maximum number of component uuids kept in memory, whatever the number of trees
+   */
+  private static final long MAX_UUIDS = 1_000_000L;
+
+  private final Cache<List<Object>, List<String>> componentUuidsByRequest = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_UUIDS)
+    .weigher((List<Object> key, List<String> uuids) -> uuids.size() + 1)
+    .expireAfterWrite(10, TimeUnit.MINUTES)
+    .build();
+
+  /**
+   * @return the sorted uuids of the components of the tree, loaded by {@code loader} if not in cache
+   */
+  List<String> getComponentUuids(String analysisUuid, ComponentTreeQuery componentTreeQuery, ComponentTreeWsRequest wsRequest, @Nullable Long developerId,
+    Supplier<List<String>> loader) {
+    List<Object> key = Arrays.asList(analysisUuid, componentTreeQuery.getBaseUuid(), componentTreeQuery.getStrategy(), componentTreeQuery.getQualifiers(),
+      componentTreeQuery.getNameOrKeyQuery(), developerId, wsRequest.getSort(), wsRequest.getAsc(), wsRequest.getMetricSort(), wsRequest.getMetricSortFilter(),
+      wsRequest.getMetricPeriodSort());
+    try {
+      return componentUuidsByRequest.get(key, loader::get);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to load components of " + componentTreeQuery.getBaseUuid(), e.getCause());
+    }
+  }
+}
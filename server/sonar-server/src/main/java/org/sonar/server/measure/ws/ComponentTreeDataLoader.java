@@ -52,6 +52,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -80,12 +81,15 @@ public class ComponentTreeDataLoader {
   private final ComponentFinder componentFinder;
   private final UserSession userSession;
   private final ResourceTypes resourceTypes;
+  private final ComponentTreeCache componentTreeCache;
 
-  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes) {
+  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes,
+    ComponentTreeCache componentTreeCache) {
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
     this.userSession = userSession;
     this.resourceTypes = resourceTypes;
+    this.componentTreeCache = componentTreeCache;
   }
 
   ComponentTreeData load(ComponentTreeWsRequest wsRequest) {
@@ -101,16 +105,15 @@ public class ComponentTreeDataLoader {
       Long developerId = searchDeveloperId(dbSession, wsRequest);
 
       ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
-      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
-        metrics, developerId);
-
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      String analysisUuid = baseSnapshot.get().getUuid();
+      List<String> componentUuids = componentTreeCache.getComponentUuids(analysisUuid, componentTreeQuery, wsRequest, developerId,
+        () -> searchSortedComponentUuids(dbSession, baseComponent, componentTreeQuery, metrics, developerId, wsRequest));
 
-      int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
+      int componentCount = componentUuids.size();
+      List<ComponentDto> components = searchComponentsByUuids(dbSession, paginateComponentUuids(componentUuids, wsRequest));
+      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, analysisUuid, baseComponent, components,
+        metrics, developerId);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -124,6 +127,25 @@ public class ComponentTreeDataLoader {
     }
   }
 
+  /**
+   * Filters and sorts all the components of the tree. Only the measures of the metric used to sort are loaded,
+   * measures of the other metrics are loaded for the requested page only.
+   */
+  private List<String> searchSortedComponentUuids(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery, List<MetricDto> metrics,
+    @Nullable Long developerId, ComponentTreeWsRequest wsRequest) {
+    List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
+    List<MetricDto> sortMetrics = metrics.stream()
+      .filter(metric -> metric.getKey().equals(wsRequest.getMetricSort()))
+      .collect(MoreCollectors.toList());
+    Table<String, MetricDto, MeasureDto> sortMeasuresByComponentUuidAndMetric = sortMetrics.isEmpty() || components.isEmpty()
+      ? HashBasedTable.create()
+      : searchTreeMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components, sortMetrics, developerId);
+
+    components = filterComponents(components, sortMeasuresByComponentUuidAndMetric, metrics, wsRequest);
+    components = sortComponents(components, wsRequest, sortMetrics, sortMeasuresByComponentUuidAndMetric);
+    return components.stream().map(ComponentDto::uuid).collect(MoreCollectors.toList(components.size()));
+  }
+
   @CheckForNull
   private Long searchDeveloperId(DbSession dbSession, ComponentTreeWsRequest wsRequest) {
     if (wsRequest.getDeveloperId() == null && wsRequest.getDeveloperKey() == null) {
@@ -154,6 +176,15 @@ public class ComponentTreeDataLoader {
     return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery);
   }
 
+  private List<ComponentDto> searchComponentsByUuids(DbSession dbSession, List<String> componentUuids) {
+    Map<String, ComponentDto> componentsByUuid = dbClient.componentDao().selectByUuids(dbSession, componentUuids).stream()
+      .collect(MoreCollectors.uniqueIndex(ComponentDto::uuid));
+    return componentUuids.stream()
+      .map(componentsByUuid::get)
+      .filter(Objects::nonNull)
+      .collect(MoreCollectors.toList(componentUuids.size()));
+  }
+
   private List<MetricDto> searchMetrics(DbSession dbSession, ComponentTreeWsRequest request) {
     List<String> metricKeys = requireNonNull(request.getMetricKeys());
     List<MetricDto> metrics = dbClient.metricDao().selectByKeys(dbSession, metricKeys);
@@ -169,8 +200,26 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
-  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
+  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, String analysisUuid, ComponentDto baseComponent,
     List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(component -> componentUuids.add(component.uuid()));
+
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setAnalysisUuid(analysisUuid)
+      .setComponentUuids(baseComponent.projectUuid(), componentUuids)
+      .setPersonId(developerId)
+      .setMetricIds(new ArrayList<>(metricsById.keySet()))
+      .build();
+    List<MeasureDto> measureDtos = dbClient.measureDao().selectByQuery(dbSession, measureQuery);
+
+    return toTable(measureDtos, components, metrics, metricsById);
+  }
+
+  private Table<String, MetricDto, MeasureDto> searchTreeMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent,
+    ComponentTreeQuery componentTreeQuery, List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
 
     Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
     MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
@@ -182,6 +231,11 @@ public class ComponentTreeDataLoader {
       .build();
     List<MeasureDto> measureDtos = dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery);
 
+    return toTable(measureDtos, components, metrics, metricsById);
+  }
+
+  private static Table<String, MetricDto, MeasureDto> toTable(List<MeasureDto> measureDtos, List<ComponentDto> components, List<MetricDto> metrics,
+    Map<Integer, MetricDto> metricsById) {
     Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
     for (MeasureDto measureDto : measureDtos) {
       measuresByComponentUuidAndMetric.put(
@@ -247,8 +301,8 @@ public class ComponentTreeDataLoader {
     return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
   }
 
-  private static List<ComponentDto> paginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest) {
-    return components.stream()
+  private static List<String> paginateComponentUuids(List<String> componentUuids, ComponentTreeWsRequest wsRequest) {
+    return componentUuids.stream()
       .skip(offset(wsRequest.getPage(), wsRequest.getPageSize()))
       .limit(wsRequest.getPageSize())
       .collect(MoreCollectors.toList(wsRequest.getPageSize()));
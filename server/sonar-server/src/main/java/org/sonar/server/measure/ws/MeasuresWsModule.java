@@ -25,6 +25,7 @@ public class MeasuresWsModule extends Module {
   @Override
   protected void configureModule() {
     add(
+      ComponentTreeCache.class,
       ComponentTreeDataLoader.class,
       MeasuresWs.class,
       ComponentTreeAction.class,
@@ -47,10 +47,12 @@ import org.sonar.server.component.ws.ComponentsWsModule;
 import org.sonar.server.debt.DebtModelPluginRepository;
 import org.sonar.server.debt.DebtModelXMLExporter;
 import org.sonar.server.debt.DebtRulesXMLImporter;
+import org.sonar.server.duplication.DuplicationMetrics;
 import org.sonar.server.duplication.ws.DuplicationsJsonWriter;
 import org.sonar.server.duplication.ws.DuplicationsParser;
 import org.sonar.server.duplication.ws.DuplicationsWs;
 import org.sonar.server.email.ws.EmailsWsModule;
+import org.sonar.server.es.BulkIndexerMBeanImpl;
 import org.sonar.server.es.IndexCreator;
 import org.sonar.server.es.IndexDefinitions;
 import org.sonar.server.event.NewAlerts;
@@ -200,6 +202,7 @@ import org.sonar.server.user.DefaultUserFinder;
 import org.sonar.server.user.DeprecatedUserFinder;
 import org.sonar.server.user.NewUserNotifier;
 import org.sonar.server.user.SecurityRealmFactory;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserSessionFactoryImpl;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndex;
@@ -339,6 +342,7 @@ public class PlatformLevel4 extends PlatformLevel {
 
       // users
       UserSessionFactoryImpl.class,
+      UserPermissionsCache.class,
       SecurityRealmFactory.class,
       DeprecatedUserFinder.class,
       NewUserNotifier.class,
@@ -428,6 +432,7 @@ public class PlatformLevel4 extends PlatformLevel {
       ScmAction.class,
 
       // Duplications
+      DuplicationMetrics.class,
       DuplicationsParser.class,
       DuplicationsWs.class,
       DuplicationsJsonWriter.class,
@@ -477,6 +482,7 @@ public class PlatformLevel4 extends PlatformLevel {
       SettingsMonitor.class,
       SonarQubeMonitor.class,
       EsMonitor.class,
+      BulkIndexerMBeanImpl.class,
       PluginsMonitor.class,
       JvmPropsMonitor.class,
       DatabaseMonitor.class,
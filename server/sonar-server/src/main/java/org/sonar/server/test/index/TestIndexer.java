@@ -21,18 +21,22 @@ package org.sonar.server.test.index;
 
 import com.google.common.collect.ImmutableSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedStartupIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.es.StartupIndexer;
+import org.sonar.server.es.StartupIndexingCheckpoint;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 
 import static org.sonar.server.test.index.TestIndexDefinition.FIELD_FILE_UUID;
@@ -78,7 +82,27 @@ public class TestIndexer implements ProjectIndexer, StartupIndexer {
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(null, Size.LARGE);
+    StartupIndexingCheckpoint checkpoint = StartupIndexingCheckpoint.load(dbClient, esClient, INDEX_TYPE_TEST);
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX_TYPE_TEST.getIndex());
+    bulk.setSize(Size.LARGE).setAdaptive(true);
+    bulk.start();
+    try {
+      PartitionedStartupIndexing.forEachProject(selectProjectUuids(), bulk, checkpoint, projectUuid -> {
+        try (DbSession dbSession = dbClient.openSession(false);
+          TestResultSetIterator rowIt = TestResultSetIterator.create(dbClient, dbSession, projectUuid)) {
+          rowIt.forEachRemaining(row -> row.getUpdateRequests().forEach(bulk::add));
+        }
+      });
+    } finally {
+      bulk.stop();
+    }
+    checkpoint.clear();
+  }
+
+  private List<String> selectProjectUuids() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.fileSourceDao().selectProjectUuids(dbSession, FileSourceDto.Type.TEST);
+    }
   }
 
   public long index(Iterator<FileSourcesUpdaterHelper.Row> dbRows) {
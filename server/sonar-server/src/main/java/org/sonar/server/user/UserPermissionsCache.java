@@ -0,0 +1,163 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.permission.OrganizationPermission;
+import org.sonar.process.Jmx;
+
+/**
+ * Permissions of users on organizations and projects, shared by all the {@link ServerUserSession} of the web server so
+ * that the requests of a same user, for example a CI bot or an IDE, do not load them again from database.
+ * <p/>
+ * The number of entries is bounded, and entries expire a short time after being loaded. Components which change
+ * permissions, groups or group memberships must call {@link #invalidateAll()} so that changes are applied to the
+ * next requests.
+ */
+@ServerSide
+public class UserPermissionsCache implements UserPermissionsCacheMBean, Startable {
+
+  private static final long MAX_ENTRIES = 100_000L;
+  private static final long EXPIRATION_SECONDS = 60L;
+  private static final String ANONYMOUS = "";
+
+  private final Cache<List<String>, Set<OrganizationPermission>> organizationPermissions;
+  private final Cache<List<String>, Set<String>> projectPermissions;
+
+  public UserPermissionsCache() {
+    this(Ticker.systemTicker());
+  }
+
+  UserPermissionsCache(Ticker ticker) {
+    this.organizationPermissions = newCache(ticker);
+    this.projectPermissions = newCache(ticker);
+  }
+
+  private static <V> Cache<List<String>, V> newCache(Ticker ticker) {
+    return CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .expireAfterWrite(EXPIRATION_SECONDS, TimeUnit.SECONDS)
+      .ticker(ticker)
+      .recordStats()
+      .build();
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  /**
+   * Unregister, if needed
+   */
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  /**
+   * @param userId id of user, or {@code null} for anonymous
+   */
+  Set<OrganizationPermission> getOrganizationPermissions(@Nullable Integer userId, String organizationUuid, Callable<Set<OrganizationPermission>> loader) {
+    return get(organizationPermissions, key(userId, organizationUuid), loader);
+  }
+
+  /**
+   * @param userId id of user, or {@code null} for anonymous
+   */
+  Set<String> getProjectPermissions(@Nullable Integer userId, String projectUuid, Callable<Set<String>> loader) {
+    return get(projectPermissions, key(userId, projectUuid), loader);
+  }
+
+  /**
+   * Removes the permissions of all the users on the given projects
+   */
+  public void invalidateProjects(Collection<String> projectUuids) {
+    Set<String> uuids = new HashSet<>(projectUuids);
+    projectPermissions.asMap().keySet().removeIf(key -> uuids.contains(key.get(1)));
+  }
+
+  /**
+   * Removes the permissions of all the users, including anonymous
+   */
+  public void invalidateAll() {
+    organizationPermissions.invalidateAll();
+    projectPermissions.invalidateAll();
+  }
+
+  private static List<String> key(@Nullable Integer userId, String uuid) {
+    return Arrays.asList(userId == null ? ANONYMOUS : String.valueOf(userId), uuid);
+  }
+
+  private static <V> V get(Cache<List<String>, V> cache, List<String> key, Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to load permissions", e.getCause());
+    }
+  }
+
+  private CacheStats stats() {
+    return organizationPermissions.stats().plus(projectPermissions.stats());
+  }
+
+  @Override
+  public long getHitCount() {
+    return stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return stats().missCount();
+  }
+
+  @Override
+  public double getHitRate() {
+    return stats().hitRate();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return stats().evictionCount();
+  }
+
+  @Override
+  public long getSize() {
+    return organizationPermissions.size() + projectPermissions.size();
+  }
+}
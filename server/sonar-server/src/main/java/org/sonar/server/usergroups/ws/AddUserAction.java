@@ -28,6 +28,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserSession;
 
 import static java.lang.String.format;
@@ -45,11 +46,13 @@ public class AddUserAction implements UserGroupsWsAction {
   private final DbClient dbClient;
   private final UserSession userSession;
   private final GroupWsSupport support;
+  private final UserPermissionsCache userPermissionsCache;
 
-  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support) {
+  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, UserPermissionsCache userPermissionsCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
+    this.userPermissionsCache = userPermissionsCache;
   }
 
   @Override
@@ -83,6 +86,7 @@ public class AddUserAction implements UserGroupsWsAction {
         UserGroupDto membershipDto = new UserGroupDto().setGroupId(groupId.getId()).setUserId(user.getId());
         dbClient.userGroupDao().insert(dbSession, membershipDto);
         dbSession.commit();
+        userPermissionsCache.invalidateAll();
       }
 
       response.noContent();
@@ -31,6 +31,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.user.GroupDto;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.db.permission.OrganizationPermission;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -46,14 +47,16 @@ public class DeleteAction implements UserGroupsWsAction {
   private final GroupWsSupport support;
   private final Settings settings;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserPermissionsCache userPermissionsCache;
 
   public DeleteAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, Settings settings,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, UserPermissionsCache userPermissionsCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
     this.settings = settings;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.userPermissionsCache = userPermissionsCache;
   }
 
   @Override
@@ -84,6 +87,7 @@ public class DeleteAction implements UserGroupsWsAction {
       dbClient.groupDao().deleteById(dbSession, groupId.getId());
 
       dbSession.commit();
+      userPermissionsCache.invalidateAll();
       response.noContent();
     }
   }
@@ -0,0 +1,344 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+/**
+ * Stores objects on disk in a compact binary format defined by a {@link ObjectCodec}. Each object is
+ * written as a record prefixed by its size (varint). Records are written through a large NIO buffer and
+ * read back through memory-mapped regions of the file.
+ * <p/>
+ * In addition to full scan, objects can be traversed by an index key (for example the uuid of the component
+ * of an issue). The positions of records are kept in memory, grouped by index key.
+ * <p/>
+ * Not thread-safe.
+ */
+public class MappedDiskCache<O> {
+
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+  private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+  private static final int MAX_VARINT32_SIZE = 5;
+
+  private final File file;
+  private final System2 system2;
+  private final ObjectCodec<O> codec;
+  private final Function<O, String> indexKeyFunction;
+  private final Map<String, Positions> positionsByIndexKey = new HashMap<>();
+
+  /**
+   * Cache which objects can be traversed only by {@link #traverse()}. No positions are kept in memory.
+   */
+  public MappedDiskCache(File file, System2 system2, ObjectCodec<O> codec) {
+    this(file, system2, codec, o -> null);
+  }
+
+  /**
+   * @param indexKeyFunction returns the key used by {@link #traverse(String)}. Objects for which it
+   *                         returns {@code null} can be traversed only by {@link #traverse()}.
+   */
+  public MappedDiskCache(File file, System2 system2, ObjectCodec<O> codec, Function<O, String> indexKeyFunction) {
+    this.file = file;
+    this.system2 = system2;
+    this.codec = codec;
+    this.indexKeyFunction = indexKeyFunction;
+    try {
+      // creates the file or truncates it if it already exists
+      Files.write(file.toPath(), new byte[0]);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    }
+  }
+
+  public DiskAppender newAppender() {
+    return new DiskAppender();
+  }
+
+  /**
+   * Traverses all the objects, in the order they have been appended.
+   */
+  public CloseableIterator<O> traverse() {
+    return new FullScanIterator(new RecordReader());
+  }
+
+  /**
+   * Traverses the objects associated to the specified index key, in the order they have
+   * been appended. Only the records of this key are read from disk.
+   */
+  public CloseableIterator<O> traverse(String indexKey) {
+    Positions positions = positionsByIndexKey.get(indexKey);
+    if (positions == null) {
+      return CloseableIterator.emptyCloseableIterator();
+    }
+    return new IndexedIterator(new RecordReader(), Arrays.copyOf(positions.values, positions.size));
+  }
+
+  public class DiskAppender implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final CodedOutputStream recordOutput = CodedOutputStream.newInstance(recordBytes);
+    private final Map<String, Positions> appendedPositions = new HashMap<>();
+    private long position;
+
+    private DiskAppender() {
+      try {
+        this.channel = new FileOutputStream(file, true).getChannel();
+        this.position = channel.size();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    public DiskAppender append(O object) {
+      try {
+        recordBytes.reset();
+        codec.write(object, recordOutput);
+        recordOutput.flush();
+        byte[] record = recordBytes.toByteArray();
+
+        if (buffer.remaining() < MAX_VARINT32_SIZE + record.length) {
+          flushBuffer();
+        }
+        long recordPosition = position;
+        int headerSize = writeVarint32(buffer, record.length);
+        if (record.length > buffer.remaining()) {
+          writeFully(ByteBuffer.wrap(record));
+        } else {
+          buffer.put(record);
+        }
+        position += headerSize + record.length;
+        addPosition(appendedPositions, indexKeyFunction.apply(object), recordPosition);
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      buffer.flip();
+      writeFully(buffer);
+      buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+      if (bytes != buffer) {
+        // keep records ordered on disk
+        flushBuffer();
+      }
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        flushBuffer();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      } finally {
+        system2.close(channel);
+      }
+      for (Map.Entry<String, Positions> entry : appendedPositions.entrySet()) {
+        Positions appended = entry.getValue();
+        for (int i = 0; i < appended.size; i++) {
+          addPosition(positionsByIndexKey, entry.getKey(), appended.values[i]);
+        }
+      }
+      appendedPositions.clear();
+    }
+  }
+
+  private static void addPosition(Map<String, Positions> positionsByKey, @CheckForNull String indexKey, long position) {
+    if (indexKey != null) {
+      positionsByKey.computeIfAbsent(indexKey, k -> new Positions()).add(position);
+    }
+  }
+
+  private static int writeVarint32(ByteBuffer buffer, int value) {
+    int size = 1;
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      buffer.put((byte) ((remaining & 0x7F) | 0x80));
+      remaining >>>= 7;
+      size++;
+    }
+    buffer.put((byte) remaining);
+    return size;
+  }
+
+  /**
+   * Growable array of positions of records in file
+   */
+  private static class Positions {
+    private long[] values = new long[4];
+    private int size = 0;
+
+    void add(long position) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size] = position;
+      size++;
+    }
+  }
+
+  /**
+   * Reads records from memory-mapped regions of the file. A region is remapped when a record
+   * is not fully contained in the current one.
+   */
+  private class RecordReader implements AutoCloseable {
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long nextPosition = 0L;
+
+    private RecordReader() {
+      try {
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = randomAccessFile.getChannel();
+        this.fileSize = channel.size();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to traverse file: " + file, e);
+      }
+    }
+
+    boolean hasRecord(long position) {
+      return position < fileSize;
+    }
+
+    O read(long position) {
+      try {
+        map(position, (int) Math.min(MAX_VARINT32_SIZE, fileSize - position));
+        int length = readVarint32();
+        long dataPosition = regionStart + region.position();
+        map(dataPosition, length);
+        byte[] record = new byte[length];
+        region.get(record);
+        nextPosition = dataPosition + length;
+        return codec.read(CodedInputStream.newInstance(record));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file: " + file, e);
+      }
+    }
+
+    long nextPosition() {
+      return nextPosition;
+    }
+
+    private void map(long position, int length) throws IOException {
+      if (region == null || position < regionStart || position + length > regionStart + region.limit()) {
+        long regionSize = Math.min(Math.max(MAPPED_REGION_SIZE, length), fileSize - position);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+        regionStart = position;
+      } else {
+        region.position((int) (position - regionStart));
+      }
+    }
+
+    private int readVarint32() {
+      int result = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        byte b = region.get();
+        result |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return result;
+        }
+      }
+      throw new IllegalStateException("Malformed record size in file: " + file);
+    }
+
+    @Override
+    public void close() {
+      region = null;
+      system2.close(randomAccessFile);
+    }
+  }
+
+  private class FullScanIterator extends CloseableIterator<O> {
+    private final RecordReader reader;
+    private long position = 0L;
+
+    private FullScanIterator(RecordReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    protected O doNext() {
+      if (!reader.hasRecord(position)) {
+        return null;
+      }
+      O object = reader.read(position);
+      position = reader.nextPosition();
+      return object;
+    }
+
+    @Override
+    protected void doClose() {
+      reader.close();
+    }
+  }
+
+  private class IndexedIterator extends CloseableIterator<O> {
+    private final RecordReader reader;
+    private final long[] positions;
+    private int index = 0;
+
+    private IndexedIterator(RecordReader reader, long[] positions) {
+      this.reader = reader;
+      this.positions = positions;
+    }
+
+    @Override
+    protected O doNext() {
+      if (index == positions.length) {
+        return null;
+      }
+      O object = reader.read(positions[index]);
+      index++;
+      return object;
+    }
+
+    @Override
+    protected void doClose() {
+      reader.close();
+    }
+  }
+}
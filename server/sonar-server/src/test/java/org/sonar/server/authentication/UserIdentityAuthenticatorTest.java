@@ -39,6 +39,7 @@ import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationCreation;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.user.NewUserNotifier;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndexer;
 
@@ -85,7 +86,8 @@ public class UserIdentityAuthenticatorTest {
     System2.INSTANCE,
     defaultOrganizationProvider,
       organizationCreation);
-  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider);
+  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider,
+    new UserPermissionsCache());
   private GroupDto defaultGroup;
 
   @Before
@@ -0,0 +1,162 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsActionTester;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newModuleDto;
+
+public class LineHashesActionTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+
+  private WsActionTester tester = new WsActionTester(new LineHashesAction(db.getDbClient(), userSession, new ComponentFinder(db.getDbClient())));
+
+  @Test
+  public void return_line_hashes_of_requested_files() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(module));
+    ComponentDto notRequested = db.components().insertComponent(newFileDto(project));
+    insertLineHashes(project, file1, "ab12\n\ncd34");
+    insertLineHashes(project, file2, "ef56");
+    insertLineHashes(project, notRequested, "gh78");
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    List<LineHashes> result = call(project.key(), file1.key(), file2.key());
+
+    assertThat(result).extracting(LineHashes::getFileKey).containsOnly(file1.key(), file2.key());
+    assertThat(result.stream().filter(l -> l.getFileKey().equals(file1.key())).findFirst().get().getLineHashList()).containsExactly("ab12", "", "cd34");
+    assertThat(result.stream().filter(l -> l.getFileKey().equals(file2.key())).findFirst().get().getLineHashList()).containsExactly("ef56");
+  }
+
+  @Test
+  public void ignore_files_which_are_not_in_requested_module() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto projectFile = db.components().insertComponent(newFileDto(project));
+    ComponentDto moduleFile = db.components().insertComponent(newFileDto(module));
+    insertLineHashes(project, projectFile, "ab12");
+    insertLineHashes(project, moduleFile, "ef56");
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    List<LineHashes> result = call(module.key(), projectFile.key(), moduleFile.key());
+
+    assertThat(result).extracting(LineHashes::getFileKey).containsExactly(moduleFile.key());
+  }
+
+  @Test
+  public void ignore_files_of_another_project() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto otherProject = db.components().insertProject();
+    ComponentDto otherFile = db.components().insertComponent(newFileDto(otherProject));
+    insertLineHashes(otherProject, otherFile, "ab12");
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    assertThat(call(project.key(), otherFile.key())).isEmpty();
+  }
+
+  @Test
+  public void ignore_unknown_files_and_files_without_line_hashes() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    insertLineHashes(project, file, null);
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    assertThat(call(project.key(), file.key(), "unknown")).isEmpty();
+  }
+
+  @Test
+  public void fail_if_too_many_files() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of files is limited to 100 (got 101)");
+
+    call(project.key(), IntStream.range(0, 101).mapToObj(i -> "file" + i).toArray(String[]::new));
+  }
+
+  @Test
+  public void fail_if_missing_permission() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+
+    expectedException.expect(ForbiddenException.class);
+
+    call(project.key(), file.key());
+  }
+
+  private void insertLineHashes(ComponentDto project, ComponentDto file, @Nullable String lineHashes) {
+    db.getDbClient().fileSourceDao().insert(db.getSession(), new FileSourceDto()
+      .setProjectUuid(project.uuid())
+      .setFileUuid(file.uuid())
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setLineHashes(lineHashes)
+      .setSrcHash("src_hash")
+      .setDataHash("data_hash")
+      .setCreatedAt(1L)
+      .setUpdatedAt(1L));
+    db.commit();
+  }
+
+  private List<LineHashes> call(String componentKey, String... fileKeys) throws Exception {
+    InputStream input = tester.newRequest()
+      .setMethod("POST")
+      .setParam("key", componentKey)
+      .setMultiParam("files", asList(fileKeys))
+      .execute().getInputStream();
+    List<LineHashes> result = new ArrayList<>();
+    LineHashes lineHashes = LineHashes.parseDelimitedFrom(input);
+    while (lineHashes != null) {
+      result.add(lineHashes);
+      lineHashes = LineHashes.parseDelimitedFrom(input);
+    }
+    return result;
+  }
+}
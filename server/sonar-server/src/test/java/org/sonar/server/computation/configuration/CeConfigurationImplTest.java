@@ -29,6 +29,10 @@ import org.sonar.api.utils.MessageException;
 
 import static java.lang.Math.abs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_SMALL_PROJECTS_MAX_NCLOC_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_PERSIST_SOURCES_PARALLELISM_PROPERTY;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_VISITORS_PARALLELISM_PROPERTY;
 import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_WORKERS_COUNT_PROPERTY;
 
 public class CeConfigurationImplTest {
@@ -103,6 +107,85 @@ public class CeConfigurationImplTest {
     new CeConfigurationImpl(settings);
   }
 
+  @Test
+  public void getVisitorsParallelism_returns_1_when_property_is_not_defined() {
+    assertThat(new CeConfigurationImpl(settings).getVisitorsParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void getVisitorsParallelism_returns_value_when_property_is_integer_greater_than_1() {
+    settings.setProperty(CE_VISITORS_PARALLELISM_PROPERTY, 8);
+
+    assertThat(new CeConfigurationImpl(settings).getVisitorsParallelism()).isEqualTo(8);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_visitors_parallelism_property_is_0() {
+    settings.setProperty(CE_VISITORS_PARALLELISM_PROPERTY, "0");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '0' of property " + CE_VISITORS_PARALLELISM_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void getPersistSourcesParallelism_returns_1_when_property_is_not_defined() {
+    assertThat(new CeConfigurationImpl(settings).getPersistSourcesParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void getPersistSourcesParallelism_returns_value_when_property_is_integer_greater_than_1() {
+    settings.setProperty(CE_PERSIST_SOURCES_PARALLELISM_PROPERTY, 4);
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getPersistSourcesParallelism()).isEqualTo(4);
+    assertThat(underTest.getVisitorsParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_persist_sources_parallelism_property_is_0() {
+    settings.setProperty(CE_PERSIST_SOURCES_PARALLELISM_PROPERTY, "0");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '0' of property " + CE_PERSIST_SOURCES_PARALLELISM_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void no_worker_is_dedicated_to_small_projects_when_property_is_not_defined() {
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getSmallProjectsWorkerCount()).isEqualTo(0);
+    assertThat(underTest.getSmallProjectsMaxNcloc()).isEqualTo(10_000);
+  }
+
+  @Test
+  public void workers_dedicated_to_small_projects_are_read_from_properties() {
+    settings.setProperty(CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY, 2);
+    settings.setProperty(CE_SMALL_PROJECTS_MAX_NCLOC_PROPERTY, 500);
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getSmallProjectsWorkerCount()).isEqualTo(2);
+    assertThat(underTest.getSmallProjectsMaxNcloc()).isEqualTo(500);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_small_projects_worker_count_property_is_less_than_0() {
+    settings.setProperty(CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY, "-1");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '-1' of property " + CE_SMALL_PROJECTS_WORKER_COUNT_PROPERTY + " is invalid. " +
+      "It must an integer greater than or equal to 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
   private void expectMessageException(int value) {
     expectedException.expect(MessageException.class);
     expectedException.expectMessage("value '" + value + "' of property " + CE_WORKERS_COUNT_PROPERTY + " is invalid. " +
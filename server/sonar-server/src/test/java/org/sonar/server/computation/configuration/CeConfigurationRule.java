@@ -29,6 +29,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 public class CeConfigurationRule extends ExternalResource implements CeConfiguration {
   private int workerCount = CeConfigurationImpl.DEFAULT_WORKER_COUNT;
   private long queuePollingDelay = CeConfigurationImpl.DEFAULT_QUEUE_POLLING_DELAY;
+  private int visitorsParallelism = CeConfigurationImpl.DEFAULT_VISITORS_PARALLELISM;
+  private int persistSourcesParallelism = CeConfigurationImpl.DEFAULT_PERSIST_SOURCES_PARALLELISM;
+  private int smallProjectsWorkerCount = CeConfigurationImpl.DEFAULT_SMALL_PROJECTS_WORKER_COUNT;
+  private int smallProjectsMaxNcloc = CeConfigurationImpl.DEFAULT_SMALL_PROJECTS_MAX_NCLOC;
 
   @Override
   public int getWorkerCount() {
@@ -50,4 +54,48 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
     checkArgument(queuePollingDelay > 0, "Queue polling delay must be >= 0");
     this.queuePollingDelay = queuePollingDelay;
   }
+
+  @Override
+  public int getVisitorsParallelism() {
+    return visitorsParallelism;
+  }
+
+  public CeConfigurationRule setVisitorsParallelism(int visitorsParallelism) {
+    checkArgument(visitorsParallelism >= 1, "visitors parallelism must be >= 1");
+    this.visitorsParallelism = visitorsParallelism;
+    return this;
+  }
+
+  @Override
+  public int getPersistSourcesParallelism() {
+    return persistSourcesParallelism;
+  }
+
+  public CeConfigurationRule setPersistSourcesParallelism(int persistSourcesParallelism) {
+    checkArgument(persistSourcesParallelism >= 1, "persist sources parallelism must be >= 1");
+    this.persistSourcesParallelism = persistSourcesParallelism;
+    return this;
+  }
+
+  @Override
+  public int getSmallProjectsWorkerCount() {
+    return smallProjectsWorkerCount;
+  }
+
+  public CeConfigurationRule setSmallProjectsWorkerCount(int smallProjectsWorkerCount) {
+    checkArgument(smallProjectsWorkerCount >= 0, "small projects worker count must be >= 0");
+    this.smallProjectsWorkerCount = smallProjectsWorkerCount;
+    return this;
+  }
+
+  @Override
+  public int getSmallProjectsMaxNcloc() {
+    return smallProjectsMaxNcloc;
+  }
+
+  public CeConfigurationRule setSmallProjectsMaxNcloc(int smallProjectsMaxNcloc) {
+    checkArgument(smallProjectsMaxNcloc >= 0, "small projects max ncloc must be >= 0");
+    this.smallProjectsMaxNcloc = smallProjectsMaxNcloc;
+    return this;
+  }
 }
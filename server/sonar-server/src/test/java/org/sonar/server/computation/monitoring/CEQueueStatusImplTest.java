@@ -29,6 +29,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeQueueDto;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -73,6 +74,37 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
   }
 
+  @Test
+  public void addInProgress_with_waiting_time_increases_InProgress_and_waiting_time_histogram() {
+    underTest.addInProgress(0);
+    underTest.addInProgress(1_000);
+    underTest.addInProgress(1_001);
+    underTest.addInProgress(2 * 60 * 60 * 1_000L);
+
+    assertThat(underTest.getInProgressCount()).isEqualTo(4);
+    assertThat(underTest.getWaitingTimeHistogram()).containsExactly(
+      entry("<=1s", 2L), entry("<=5s", 1L), entry("<=10s", 0L), entry("<=30s", 0L), entry("<=1m", 0L),
+      entry("<=5m", 0L), entry("<=10m", 0L), entry("<=30m", 0L), entry("<=1h", 0L), entry(">1h", 1L));
+    assertThat(underTest.getProcessingTimeHistogram().values()).containsOnly(0L);
+  }
+
+  @Test
+  public void addInProgress_throws_IAE_if_waiting_time_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Waiting time can not be < 0");
+
+    underTest.addInProgress(-1);
+  }
+
+  @Test
+  public void addSuccess_and_addError_increase_processing_time_histogram() {
+    underTest.addSuccess(10);
+    underTest.addError(45_000);
+
+    assertThat(underTest.getProcessingTimeHistogram()).contains(entry("<=1s", 1L), entry("<=1m", 1L));
+    assertThat(underTest.getProcessingTimeHistogram().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(2L);
+  }
+
   @Test
   public void addError_throws_IAE_if_time_is_less_than_0() {
     expectedException.expect(IllegalArgumentException.class);
@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CeMeasuresMBeanImplTest {
+
+  private CeMeasuresMBeanImpl underTest = new CeMeasuresMBeanImpl();
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void no_usage_by_default() {
+    assertThat(underTest.getTaskCount()).isEqualTo(0);
+    assertThat(underTest.getColumnarStorageTaskCount()).isEqualTo(0);
+    assertThat(underTest.getRawMeasureLookups()).isEqualTo(0);
+    assertThat(underTest.getRawMeasureLookupTime()).isEqualTo(0);
+    assertThat(underTest.getAverageRawMeasureLookupTimeNanos()).isEqualTo(0);
+    assertThat(underTest.getMaxColumnsSizeInBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void sum_usage_of_tasks() {
+    underTest.addTaskUsingMapStorage(10, 3_000_000L);
+    underTest.addTaskUsingColumnarStorage(20, 5_000_000L, 2_048L);
+    underTest.addTaskUsingColumnarStorage(30, 4_000_000L, 1_024L);
+
+    assertThat(underTest.getTaskCount()).isEqualTo(3);
+    assertThat(underTest.getColumnarStorageTaskCount()).isEqualTo(2);
+    assertThat(underTest.getRawMeasureLookups()).isEqualTo(60);
+    assertThat(underTest.getRawMeasureLookupTime()).isEqualTo(12);
+    assertThat(underTest.getAverageRawMeasureLookupTimeNanos()).isEqualTo(200_000L);
+    assertThat(underTest.getMaxColumnsSizeInBytes()).isEqualTo(2_048L);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(CeMeasuresMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
@@ -19,7 +19,9 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import com.google.common.collect.ImmutableMap;
 import java.lang.management.ManagementFactory;
+import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.management.InstanceNotFoundException;
 import javax.management.ObjectInstance;
@@ -38,6 +40,9 @@ public class CeTasksMBeanImplTest {
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
   private static final int WORKER_COUNT = 56;
+  private static final int SMALL_PROJECTS_WORKER_COUNT = 3;
+  private static final Map<String, Long> WAITING_TIME_HISTOGRAM = ImmutableMap.of("<=1s", 4L, ">1h", 1L);
+  private static final Map<String, Long> PROCESSING_TIME_HISTOGRAM = ImmutableMap.of("<=5s", 2L);
 
   private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration());
 
@@ -59,18 +64,22 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getWaitingTimeHistogram()).isEqualTo(WAITING_TIME_HISTOGRAM);
+    assertThat(underTest.getProcessingTimeHistogram()).isEqualTo(PROCESSING_TIME_HISTOGRAM);
   }
 
   @Test
   public void getWorkerCount_delegates_to_the_CEConfiguration_instance() {
     assertThat(underTest.getWorkerCount()).isEqualTo(WORKER_COUNT);
+    assertThat(underTest.getSmallProjectsWorkerCount()).isEqualTo(SMALL_PROJECTS_WORKER_COUNT);
   }
 
   @Test
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(6);
+    assertThat(section.getAttributesCount()).isEqualTo(9);
+    assertThat(section.getAttributes(7).getStringValue()).isEqualTo("<=1s=4, >1h=1");
   }
 
   /**
@@ -89,6 +98,11 @@ public class CeTasksMBeanImplTest {
       return methodNotImplemented();
     }
 
+    @Override
+    public long addInProgress(long waitingTime) {
+      return methodNotImplemented();
+    }
+
     @Override
     public long getInProgressCount() {
       return IN_PROGRESS_COUNT;
@@ -119,6 +133,16 @@ public class CeTasksMBeanImplTest {
       return PROCESSING_TIME;
     }
 
+    @Override
+    public Map<String, Long> getWaitingTimeHistogram() {
+      return WAITING_TIME_HISTOGRAM;
+    }
+
+    @Override
+    public Map<String, Long> getProcessingTimeHistogram() {
+      return PROCESSING_TIME_HISTOGRAM;
+    }
+
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
@@ -134,6 +158,26 @@ public class CeTasksMBeanImplTest {
     public long getQueuePollingDelay() {
       throw new UnsupportedOperationException("getQueuePollingDelay is not implemented");
     }
+
+    @Override
+    public int getVisitorsParallelism() {
+      throw new UnsupportedOperationException("getVisitorsParallelism is not implemented");
+    }
+
+    @Override
+    public int getPersistSourcesParallelism() {
+      throw new UnsupportedOperationException("getPersistSourcesParallelism is not implemented");
+    }
+
+    @Override
+    public int getSmallProjectsWorkerCount() {
+      return SMALL_PROJECTS_WORKER_COUNT;
+    }
+
+    @Override
+    public int getSmallProjectsMaxNcloc() {
+      throw new UnsupportedOperationException("getSmallProjectsMaxNcloc is not implemented");
+    }
   }
 
   @CheckForNull
@@ -27,7 +27,7 @@ import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.sonar.api.utils.System2;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeTask;
@@ -42,6 +42,8 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.metric.MetricDto;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -52,12 +54,14 @@ import static org.assertj.guava.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sonar.db.measure.MeasureTesting.newMeasureDto;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
 
 public class InternalCeQueueImplTest {
 
   private static final String AN_ANALYSIS_UUID = "U1";
 
-  private System2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
+  private TestSystem2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
@@ -241,6 +245,36 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void peek_with_max_ncloc_ignores_tasks_of_bigger_or_never_analyzed_projects() throws Exception {
+    MetricDto ncloc = dbTester.getDbClient().metricDao().insert(session, newMetricDto().setKey(CoreMetrics.NCLOC_KEY));
+    ComponentDto bigProject = insertProjectWithNcloc(ncloc, "BIG", 5_000d);
+    ComponentDto smallProject = insertProjectWithNcloc(ncloc, "SMALL", 100d);
+    ComponentDto newProject = insertComponent(newComponentDto("NEW"));
+    submit(CeTaskTypes.REPORT, bigProject.uuid());
+    submit(CeTaskTypes.REPORT, newProject.uuid());
+    CeTask smallTask = submit(CeTaskTypes.REPORT, smallProject.uuid());
+
+    Optional<CeTask> peek = underTest.peek(1_000);
+    assertThat(peek.isPresent()).isTrue();
+    assertThat(peek.get().getUuid()).isEqualTo(smallTask.getUuid());
+    assertThat(queueStatus.getInProgressCount()).isEqualTo(1);
+
+    // no more pending tasks of small projects
+    assertThat(underTest.peek(1_000).isPresent()).isFalse();
+    assertThat(underTest.peek().get().getComponentUuid()).isEqualTo(bigProject.uuid());
+  }
+
+  @Test
+  public void peek_records_waiting_time_of_task() throws Exception {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    system2.setNow(1_450_000_003_000L);
+
+    underTest.peek();
+
+    assertThat(queueStatus.getWaitingTimeHistogram()).containsEntry("<=5s", 1L);
+  }
+
   @Test
   public void peek_nothing_if_paused() throws Exception {
     submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -366,6 +400,14 @@ public class InternalCeQueueImplTest {
     return taskResult;
   }
 
+  private ComponentDto insertProjectWithNcloc(MetricDto ncloc, String uuid, double value) {
+    ComponentDto project = newComponentDto(uuid);
+    SnapshotDto analysis = dbTester.components().insertProjectAndSnapshot(project);
+    dbTester.getDbClient().measureDao().insert(session, newMeasureDto(ncloc, project, analysis).setValue(value));
+    session.commit();
+    return project;
+  }
+
   private ComponentDto insertComponent(ComponentDto componentDto) {
     dbTester.getDbClient().componentDao().insert(session, componentDto);
     session.commit();
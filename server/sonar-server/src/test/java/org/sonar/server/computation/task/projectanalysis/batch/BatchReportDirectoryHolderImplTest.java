@@ -20,12 +20,19 @@
 package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class BatchReportDirectoryHolderImplTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test(expected = IllegalStateException.class)
   public void getDirectory_throws_ISE_if_holder_is_empty() {
     new BatchReportDirectoryHolderImpl().getDirectory();
@@ -39,4 +46,35 @@ public class BatchReportDirectoryHolderImplTest {
 
     assertThat(holder.getDirectory()).isSameAs(file);
   }
+
+  @Test(expected = IllegalStateException.class)
+  public void getFileStructure_throws_ISE_if_holder_is_empty() {
+    new BatchReportDirectoryHolderImpl().getFileStructure();
+  }
+
+  @Test
+  public void getFileStructure_returns_structure_of_directory_set_with_setDirectory() throws Exception {
+    File dir = temp.newFolder();
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    holder.setDirectory(dir);
+
+    assertThat(holder.getFileStructure().root()).isEqualTo(dir);
+    assertThat(holder.getFileStructure()).isNotInstanceOf(LazyExtractedFileStructure.class);
+  }
+
+  @Test
+  public void getFileStructure_extracts_files_of_archive_set_with_setArchive() throws Exception {
+    File reportDir = temp.newFolder();
+    FileUtils.write(new File(reportDir, "metadata.pb"), "{metadata}");
+    File zip = temp.newFile();
+    ZipUtils.zipDir(reportDir, zip);
+    File dir = temp.newFolder();
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    holder.setArchive(dir, zip);
+
+    assertThat(holder.getDirectory()).isSameAs(dir);
+    assertThat(holder.getFileStructure()).isInstanceOf(LazyExtractedFileStructure.class);
+    assertThat(holder.getFileStructure().metadataFile()).hasContent("{metadata}");
+    holder.stop();
+  }
 }
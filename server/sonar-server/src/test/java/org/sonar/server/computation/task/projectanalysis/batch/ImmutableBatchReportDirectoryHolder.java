@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.batch;
 
 import java.io.File;
 import java.util.Objects;
+import org.sonar.scanner.protocol.output.FileStructure;
 
 public class ImmutableBatchReportDirectoryHolder implements BatchReportDirectoryHolder {
   private final File directory;
@@ -33,4 +34,9 @@ public class ImmutableBatchReportDirectoryHolder implements BatchReportDirectory
   public File getDirectory() {
     return directory;
   }
+
+  @Override
+  public FileStructure getFileStructure() {
+    return new FileStructure(directory);
+  }
 }
@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
+import org.sonar.scanner.protocol.output.FileStructure;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyExtractedFileStructureTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File dir;
+  private LazyExtractedFileStructure underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    File reportDir = temp.newFolder();
+    FileUtils.write(new File(reportDir, "metadata.pb"), "{metadata}");
+    FileUtils.write(new File(reportDir, "issues-3.pb"), "{issues}");
+    File zip = temp.newFile();
+    ZipUtils.zipDir(reportDir, zip);
+
+    dir = temp.newFolder();
+    underTest = new LazyExtractedFileStructure(dir, zip);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    underTest.close();
+  }
+
+  @Test
+  public void nothing_is_extracted_until_files_are_accessed() {
+    assertThat(dir.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void extract_only_the_accessed_files() {
+    File issues = underTest.fileFor(FileStructure.Domain.ISSUES, 3);
+
+    assertThat(issues).isEqualTo(new File(dir, "issues-3.pb"));
+    assertThat(issues).hasContent("{issues}");
+    assertThat(dir.list()).containsOnly("issues-3.pb");
+
+    assertThat(underTest.metadataFile()).hasContent("{metadata}");
+    assertThat(dir.list()).containsOnly("issues-3.pb", "metadata.pb");
+  }
+
+  @Test
+  public void files_are_extracted_only_once() throws Exception {
+    File metadata = underTest.metadataFile();
+    FileUtils.write(metadata, "{updated}");
+
+    assertThat(underTest.metadataFile()).hasContent("{updated}");
+  }
+
+  @Test
+  public void return_non_existing_file_if_not_in_archive() {
+    File measures = underTest.fileFor(FileStructure.Domain.MEASURES, 3);
+
+    assertThat(measures).isEqualTo(new File(dir, "measures-3.pb"));
+    assertThat(measures).doesNotExist();
+    assertThat(underTest.analysisLog()).doesNotExist();
+  }
+
+  @Test
+  public void fail_if_archive_can_not_be_opened() throws Exception {
+    File notAZip = temp.newFile();
+    FileUtils.write(notAZip, "not a zip");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to open report archive " + notAZip);
+
+    new LazyExtractedFileStructure(dir, notAZip);
+  }
+}
@@ -19,7 +19,12 @@
  */
 package org.sonar.server.computation.task.projectanalysis.component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -51,6 +56,13 @@ public class ReportVisitorsCrawlerTest {
   private final TypeAwareVisitor spyPreOrderTypeAwareVisitor = spy(new TestTypeAwareVisitor(CrawlerDepthLimit.FILE, PRE_ORDER));
   private final TypeAwareVisitor spyPostOrderTypeAwareVisitor = spy(new TestTypeAwareVisitor(CrawlerDepthLimit.FILE, POST_ORDER));
   private final TestPathAwareVisitor spyPathAwareVisitor = spy(new TestPathAwareVisitor(CrawlerDepthLimit.FILE, POST_ORDER));
+  private final ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+  private final List<String> visits = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    forkJoinPool.shutdown();
+  }
 
   @Test
   public void execute_each_visitor_on_each_level() throws Exception {
@@ -119,6 +131,47 @@ public class ReportVisitorsCrawlerTest {
     assertThat(underTest.getCumulativeDurations()).hasSize(2);
   }
 
+  @Test
+  public void thread_safe_visitors_visit_all_files_of_a_directory_before_other_visitors() {
+    Component file1 = component(FILE, 11);
+    Component file2 = component(FILE, 12);
+    Component file3 = component(FILE, 13);
+    Component directory = component(DIRECTORY, 10, file1, file2, file3);
+    Component tree = component(PROJECT, 1, component(MODULE, 2, directory));
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.<ComponentVisitor>asList(
+      new ThreadSafeRecordingVisitor("safe"),
+      new RecordingVisitor("other")), false, forkJoinPool);
+
+    underTest.visit(tree);
+
+    assertThat(visits.subList(0, 6)).containsExactly("safe-1", "other-1", "safe-2", "other-2", "safe-10", "other-10");
+    assertThat(visits.subList(6, 9)).containsOnly("safe-11", "safe-12", "safe-13");
+    assertThat(visits.subList(9, 12)).containsExactly("other-11", "other-12", "other-13");
+  }
+
+  @Test
+  public void thread_safe_visitors_following_other_visitors_visit_files_sequentially() {
+    Component directory = component(DIRECTORY, 10, component(FILE, 11), component(FILE, 12));
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.<ComponentVisitor>asList(
+      new RecordingVisitor("other"),
+      new ThreadSafeRecordingVisitor("safe")), false, forkJoinPool);
+
+    underTest.visit(directory);
+
+    assertThat(visits).containsExactly("other-10", "safe-10", "other-11", "safe-11", "other-12", "safe-12");
+  }
+
+  @Test
+  public void failure_of_concurrent_visit_is_wrapped_with_component_details() {
+    Component directory = component(DIRECTORY, 10, component(FILE, 11), component(FILE, 12));
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.<ComponentVisitor>asList(new FailingThreadSafeVisitor()), false, forkJoinPool);
+
+    thrown.expect(VisitException.class);
+    thrown.expectMessage("Visit of Component {key=");
+
+    underTest.visit(directory);
+  }
+
   @Test
   public void fail_with_IAE_when_visitor_is_not_path_aware_or_type_aware() throws Exception {
     thrown.expect(IllegalArgumentException.class);
@@ -149,6 +202,37 @@ public class ReportVisitorsCrawlerTest {
     }
   }
 
+  private class RecordingVisitor extends TypeAwareVisitorAdapter {
+    private final String name;
+
+    RecordingVisitor(String name) {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.name = name;
+    }
+
+    @Override
+    public void visitAny(Component any) {
+      visits.add(name + "-" + any.getReportAttributes().getRef());
+    }
+  }
+
+  private class ThreadSafeRecordingVisitor extends RecordingVisitor implements ThreadSafeVisitor {
+    ThreadSafeRecordingVisitor(String name) {
+      super(name);
+    }
+  }
+
+  private static class FailingThreadSafeVisitor extends TypeAwareVisitorAdapter implements ThreadSafeVisitor {
+    FailingThreadSafeVisitor() {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      throw new IllegalStateException("failure");
+    }
+  }
+
   private static class TestPathAwareVisitor extends PathAwareVisitorAdapter<Integer> {
 
     public TestPathAwareVisitor(CrawlerDepthLimit maxDepth, ComponentVisitor.Order order) {
@@ -34,8 +34,11 @@ import org.picocontainer.PicoContainer;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.core.platform.ComponentContainer;
 import org.sonar.plugin.ce.ReportAnalysisComponentProvider;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.task.container.TaskContainer;
 import org.sonar.server.computation.task.step.StepsExplorer;
+import org.sonar.server.computation.task.projectanalysis.issue.IntegrateIssuesVisitor;
+import org.sonar.server.computation.task.projectanalysis.issue.PrefetchIssueTrackingVisitor;
 import org.sonar.server.computation.task.projectanalysis.step.PersistComponentsStep;
 import org.sonar.server.computation.task.projectanalysis.step.PersistDevelopersStep;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -121,6 +124,32 @@ public class ProjectAnalysisTaskContainerPopulatorTest {
     assertThat(container.added).contains(object, clazz);
   }
 
+  @Test
+  public void PrefetchIssueTrackingVisitor_is_added_before_IntegrateIssuesVisitor_when_visitors_are_executed_concurrently() {
+    CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+    when(ceConfiguration.getVisitorsParallelism()).thenReturn(2);
+
+    underTest = new ProjectAnalysisTaskContainerPopulator(task, null);
+    AddedObjectsRecorderTaskContainer container = new AddedObjectsRecorderTaskContainer();
+    container.add(ceConfiguration);
+    underTest.populateContainer(container);
+
+    assertThat(container.added.indexOf(PrefetchIssueTrackingVisitor.class)).isEqualTo(container.added.indexOf(IntegrateIssuesVisitor.class) - 1);
+  }
+
+  @Test
+  public void PrefetchIssueTrackingVisitor_is_not_added_when_visitors_are_executed_sequentially() {
+    CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+    when(ceConfiguration.getVisitorsParallelism()).thenReturn(1);
+
+    underTest = new ProjectAnalysisTaskContainerPopulator(task, null);
+    AddedObjectsRecorderTaskContainer container = new AddedObjectsRecorderTaskContainer();
+    container.add(ceConfiguration);
+    underTest.populateContainer(container);
+
+    assertThat(container.added).contains(IntegrateIssuesVisitor.class).doesNotContain(PrefetchIssueTrackingVisitor.class);
+  }
+
   private static final class MyClass {
 
   }
@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import javax.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.JUnitTempFolder;
+import org.sonar.db.DbTester;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+
+public class BaseLineHashesLoaderTest {
+
+  private static final String PROJECT_UUID = "PROJECT_UUID";
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+
+  private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
+  private BaseLineHashesLoader underTest = new BaseLineHashesLoader(treeRootHolder, dbTester.getDbClient(), baseIssuesLoader, tempFolder, System2.INSTANCE);
+
+  @Before
+  public void setUp() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).build());
+  }
+
+  @Test
+  public void load_line_hashes_of_files_with_base_issues() {
+    insertFileSource(PROJECT_UUID, "FILE1", "a\nb\nc");
+    insertFileSource(PROJECT_UUID, "FILE2", "d");
+    insertFileSource(PROJECT_UUID, "FILE3", null);
+    insertFileSource("OTHER_PROJECT", "FILE4", "e");
+    when(baseIssuesLoader.loadUuidsOfComponentsWithBaseIssues()).thenReturn(newHashSet("FILE1", "FILE3", "FILE4"));
+
+    assertThat(underTest.loadLineHashes("FILE1")).containsExactly("a", "b", "c");
+    assertThat(underTest.loadLineHashes("FILE2")).isNull();
+    assertThat(underTest.loadLineHashes("FILE3")).isEmpty();
+    assertThat(underTest.loadLineHashes("FILE4")).isNull();
+    assertThat(underTest.loadLineHashes("UNKNOWN")).isNull();
+  }
+
+  @Test
+  public void query_database_only_once() {
+    insertFileSource(PROJECT_UUID, "FILE1", "a");
+    when(baseIssuesLoader.loadUuidsOfComponentsWithBaseIssues()).thenReturn(newHashSet("FILE1"));
+
+    assertThat(underTest.loadLineHashes("FILE1")).containsExactly("a");
+
+    dbTester.executeUpdateSql("delete from file_sources");
+    dbTester.commit();
+    assertThat(underTest.loadLineHashes("FILE1")).containsExactly("a");
+  }
+
+  private void insertFileSource(String projectUuid, String fileUuid, @Nullable String lineHashes) {
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setProjectUuid(projectUuid)
+      .setFileUuid(fileUuid)
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setLineHashes(lineHashes));
+    dbTester.commit();
+  }
+}
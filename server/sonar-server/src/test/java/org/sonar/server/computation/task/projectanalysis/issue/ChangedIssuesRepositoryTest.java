@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangedIssuesRepositoryTest {
+
+  private ChangedIssuesRepository underTest = new ChangedIssuesRepository();
+
+  @Test
+  public void keys_are_unknown_until_completed() {
+    underTest.add("ISSUE_1");
+
+    assertThat(underTest.getKeys()).isEmpty();
+
+    underTest.complete();
+
+    assertThat(underTest.getKeys().get()).containsOnly("ISSUE_1");
+  }
+
+  @Test
+  public void no_keys_if_no_changed_issues() {
+    underTest.complete();
+
+    assertThat(underTest.getKeys().get()).isEmpty();
+  }
+
+  @Test
+  public void keys_are_unknown_if_too_many_issues_changed() {
+    for (int i = 0; i <= ChangedIssuesRepository.MAX_SIZE; i++) {
+      underTest.add("ISSUE_" + i);
+    }
+    underTest.complete();
+
+    assertThat(underTest.getKeys()).isEmpty();
+  }
+
+  @Test
+  public void keys_are_unknown_if_components_changed() {
+    underTest.add("ISSUE_1");
+    underTest.componentsChanged();
+    underTest.complete();
+
+    assertThat(underTest.getKeys()).isEmpty();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultIssueCodecTest {
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws IOException {
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1).setEndLine(2))
+      .build();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(42)
+      .setGap(2.5)
+      .setEffort(Duration.create(10L))
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("CHECKSUM")
+      .setAuthorLogin("jane")
+      .setCreationDate(new Date(1_500_000_000_000L))
+      .setUpdateDate(new Date(1_500_000_001_000L))
+      .setCloseDate(new Date(1_500_000_002_000L))
+      .setSelectedAt(1_400_000_000_000L)
+      .setAttribute("JIRA", "FOO-123")
+      .setTags(asList("tag1", "tag2"))
+      .setLocations(locations)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true);
+    issue.addComment(new DefaultIssueComment()
+      .setKey("COMMENT_KEY")
+      .setIssueKey("ISSUE_KEY")
+      .setUserLogin("john")
+      .setMarkdownText("a comment")
+      .setCreatedAt(new Date(1_000L))
+      .setUpdatedAt(new Date(2_000L))
+      .setNew(true));
+    issue.addChange(new FieldDiffs().setUserLogin("jane").setDiff("severity", "MINOR", "MAJOR"));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(3_000L), "john"), "effort", 5L, 10L);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_KEY");
+    assertThat(decoded.type()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(decoded.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("squid", "S001"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(42);
+    assertThat(decoded.gap()).isEqualTo(2.5);
+    assertThat(decoded.effort()).isEqualTo(Duration.create(10L));
+    assertThat(decoded.status()).isEqualTo("OPEN");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.assignee()).isEqualTo("john");
+    assertThat(decoded.checksum()).isEqualTo("CHECKSUM");
+    assertThat(decoded.authorLogin()).isEqualTo("jane");
+    assertThat(decoded.creationDate()).isEqualTo(new Date(1_500_000_000_000L));
+    assertThat(decoded.updateDate()).isEqualTo(new Date(1_500_000_001_000L));
+    assertThat(decoded.closeDate()).isEqualTo(new Date(1_500_000_002_000L));
+    assertThat(decoded.selectedAt()).isEqualTo(1_400_000_000_000L);
+    assertThat(decoded.attributes()).containsOnly(org.assertj.core.api.Assertions.entry("JIRA", "FOO-123"));
+    assertThat(decoded.tags()).containsExactly("tag1", "tag2");
+    assertThat((DbIssues.Locations) decoded.getLocations()).isEqualTo(locations);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isBeingClosed()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_KEY");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_KEY");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.createdAt()).isEqualTo(new Date(1_000L));
+    assertThat(comment.updatedAt()).isEqualTo(new Date(2_000L));
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(decoded.changes()).hasSize(2);
+    assertThat(decoded.changes().get(0).userLogin()).isEqualTo("jane");
+    assertThat(decoded.changes().get(0).get("severity").oldValue()).isEqualTo("MINOR");
+    assertThat(decoded.changes().get(0).get("severity").newValue()).isEqualTo("MAJOR");
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange).isSameAs(decoded.changes().get(1));
+    assertThat(currentChange.userLogin()).isEqualTo("john");
+    assertThat(currentChange.creationDate()).isEqualTo(new Date(3_000L));
+    assertThat(currentChange.get("effort").oldValue()).isEqualTo(5L);
+    assertThat(currentChange.get("effort").newValue()).isEqualTo(10L);
+  }
+
+  @Test
+  public void encode_and_decode_issue_with_only_default_values() throws IOException {
+    DefaultIssue decoded = encodeAndDecode(new DefaultIssue());
+
+    assertThat(decoded.key()).isNull();
+    assertThat(decoded.type()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.effort()).isNull();
+    assertThat(decoded.status()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat((Object) decoded.getLocations()).isNull();
+    assertThat(decoded.isNew()).isTrue();
+    assertThat(decoded.isChanged()).isFalse();
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+    underTest.write(issue, output);
+    output.flush();
+    return underTest.read(CodedInputStream.newInstance(bytes.toByteArray()));
+  }
+}
@@ -31,6 +31,7 @@ import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.db.DbTester;
@@ -85,6 +86,8 @@ public class IntegrateIssuesVisitorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
   @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
@@ -103,9 +106,10 @@ public class IntegrateIssuesVisitorTest {
 
   IssueFilter issueFilter = mock(IssueFilter.class);
 
-  BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule);
+  BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule, tempFolder, System2.INSTANCE);
+  BaseLineHashesLoader baseLineHashesLoader = new BaseLineHashesLoader(treeRootHolder, dbTester.getDbClient(), baseIssuesLoader, tempFolder, System2.INSTANCE);
   MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
-  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, dbTester.getDbClient(), movedFilesRepository),
+  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, baseLineHashesLoader, movedFilesRepository),
     new TrackerRawInputFactory(treeRootHolder, reportReader,
       fileSourceRepository, new CommonRuleEngineImpl(), issueFilter),
     new Tracker<>());
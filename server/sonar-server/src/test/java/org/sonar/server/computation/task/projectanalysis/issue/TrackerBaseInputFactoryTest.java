@@ -22,9 +22,6 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import com.google.common.base.Optional;
 import org.junit.Before;
 import org.junit.Test;
-import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
-import org.sonar.db.source.FileSourceDao;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
@@ -40,18 +37,14 @@ public class TrackerBaseInputFactoryTest {
   private static final ReportComponent FILE = ReportComponent.builder(Component.Type.FILE, 1).setUuid(FILE_UUID).build();
 
   private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
-  private DbClient dbClient = mock(DbClient.class);
-  private DbSession dbSession = mock(DbSession.class);
-  private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
+  private BaseLineHashesLoader baseLineHashesLoader = mock(BaseLineHashesLoader.class);
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, baseLineHashesLoader, movedFilesRepository);
 
   @Before
   public void setUp() throws Exception {
-    when(dbClient.openSession(false)).thenReturn(dbSession);
-    when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
     when(movedFilesRepository.getOriginalFile(any(Component.class)))
       .thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
   }
@@ -60,7 +53,7 @@ public class TrackerBaseInputFactoryTest {
   public void create_returns_Input_which_retrieves_lines_hashes_of_specified_file_component_when_it_has_no_original_file() {
     underTest.create(FILE).getLineHashSequence();
 
-    verify(fileSourceDao).selectLineHashes(dbSession, FILE_UUID);
+    verify(baseLineHashesLoader).loadLineHashes(FILE_UUID);
   }
 
   @Test
@@ -73,8 +66,8 @@ public class TrackerBaseInputFactoryTest {
 
     underTest.create(FILE).getLineHashSequence();
 
-    verify(fileSourceDao).selectLineHashes(dbSession, originalUuid);
-    verify(fileSourceDao, times(0)).selectLineHashes(dbSession, FILE_UUID);
+    verify(baseLineHashesLoader).loadLineHashes(originalUuid);
+    verify(baseLineHashesLoader, times(0)).loadLineHashes(FILE_UUID);
   }
 
   @Test
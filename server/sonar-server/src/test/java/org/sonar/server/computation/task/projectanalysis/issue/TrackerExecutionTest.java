@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
+import org.sonar.core.issue.tracking.Tracker;
+import org.sonar.core.issue.tracking.Tracking;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TrackerExecutionTest {
+
+  private static final Component FILE = ReportComponent.builder(Component.Type.FILE, 2).build();
+
+  private TrackerBaseInputFactory baseInputFactory = mock(TrackerBaseInputFactory.class);
+  private TrackerRawInputFactory rawInputFactory = mock(TrackerRawInputFactory.class);
+  private Tracker<DefaultIssue, DefaultIssue> tracker = mock(Tracker.class);
+  private Input<DefaultIssue> rawInput = mock(Input.class);
+  private Input<DefaultIssue> baseInput = mock(Input.class);
+
+  private TrackerExecution underTest = new TrackerExecution(baseInputFactory, rawInputFactory, tracker);
+
+  @Test
+  public void track_computes_tracking_of_component() {
+    Tracking<DefaultIssue, DefaultIssue> tracking = mockTracking();
+
+    assertThat(underTest.track(FILE)).isSameAs(tracking);
+    assertThat(underTest.track(FILE)).isSameAs(tracking);
+    verify(tracker, times(2)).track(rawInput, baseInput);
+  }
+
+  @Test
+  public void track_returns_prefetched_tracking_only_once() {
+    Tracking<DefaultIssue, DefaultIssue> tracking = mockTracking();
+
+    underTest.prefetch(FILE);
+    verify(tracker).track(rawInput, baseInput);
+
+    assertThat(underTest.track(FILE)).isSameAs(tracking);
+    verify(tracker).track(rawInput, baseInput);
+
+    assertThat(underTest.track(FILE)).isSameAs(tracking);
+    verify(tracker, times(2)).track(rawInput, baseInput);
+  }
+
+  @Test
+  public void clearPrefetched_drops_prefetched_trackings() {
+    mockTracking();
+
+    underTest.prefetch(FILE);
+    underTest.clearPrefetched();
+    underTest.track(FILE);
+
+    verify(tracker, times(2)).track(rawInput, baseInput);
+  }
+
+  private Tracking<DefaultIssue, DefaultIssue> mockTracking() {
+    Tracking<DefaultIssue, DefaultIssue> tracking = mock(Tracking.class);
+    when(rawInputFactory.create(FILE)).thenReturn(rawInput);
+    when(baseInputFactory.create(FILE)).thenReturn(baseInput);
+    when(tracker.track(rawInput, baseInput)).thenReturn(tracking);
+    return tracking;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.collect.SetMultimap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final Component FILE_1 = ReportComponent.builder(Component.Type.FILE, 1).setKey("file1").build();
+  private static final Component FILE_2 = ReportComponent.builder(Component.Type.FILE, 2).setKey("file2").build();
+  private static final Component FILE_1000 = ReportComponent.builder(Component.Type.FILE, 1000).setKey("file1000").build();
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private static final Metric LONG_METRIC = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT, 3, null, false);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+  private static final Metric STRING_METRIC = new MetricImpl(50, "string", "string", Metric.MetricType.STRING);
+  private static final Developer DEVELOPER = new DumbDeveloper("DEV1");
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository(toReportRef());
+
+  @Test
+  public void getRawMeasure_returns_numeric_measures() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12));
+    underTest.add(FILE_1, LONG_METRIC, newMeasureBuilder().create(5_000_000_000L));
+    underTest.add(FILE_1, DOUBLE_METRIC, newMeasureBuilder().create(1.23456, 3));
+    underTest.add(FILE_1, BOOLEAN_METRIC, newMeasureBuilder().create(true));
+
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(FILE_1, LONG_METRIC).get().getLongValue()).isEqualTo(5_000_000_000L);
+    assertThat(underTest.getRawMeasure(FILE_1, DOUBLE_METRIC).get().getDoubleValue()).isEqualTo(1.235);
+    assertThat(underTest.getRawMeasure(FILE_1, BOOLEAN_METRIC).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(FILE_2, INT_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasure(FILE_1000, INT_METRIC)).isAbsent();
+    assertThat(underTest.getSideTableMeasureCount()).isZero();
+  }
+
+  @Test
+  public void getRawMeasure_returns_variation_of_numeric_measure() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().setVariation(2.5).create(12));
+    underTest.add(FILE_2, INT_METRIC, newMeasureBuilder().create(13));
+
+    Measure measure = underTest.getRawMeasure(FILE_1, INT_METRIC).get();
+    assertThat(measure.getIntValue()).isEqualTo(12);
+    assertThat(measure.getVariation()).isEqualTo(2.5);
+    assertThat(underTest.getRawMeasure(FILE_2, INT_METRIC).get().hasVariation()).isFalse();
+  }
+
+  @Test
+  public void other_measures_are_stored_in_side_table() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure withData = newMeasureBuilder().create(12, "data");
+    Measure withDescription = newMeasureBuilder().setDescription("desc").create(12);
+    Measure withDeveloper = newMeasureBuilder().forDeveloper(DEVELOPER).create(12);
+
+    underTest.add(FILE_1, STRING_METRIC, stringMeasure);
+    underTest.add(FILE_1, INT_METRIC, withData);
+    underTest.add(FILE_2, INT_METRIC, withDescription);
+    underTest.add(FILE_2, INT_METRIC, withDeveloper);
+
+    assertThat(underTest.getRawMeasure(FILE_1, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get()).isSameAs(withData);
+    assertThat(underTest.getRawMeasure(FILE_2, INT_METRIC).get()).isSameAs(withDescription);
+    assertThat(underTest.getRawMeasures(FILE_2, INT_METRIC)).containsOnly(withDescription, withDeveloper);
+    assertThat(underTest.getSideTableMeasureCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void update_moves_measure_between_column_and_side_table() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12));
+
+    Measure withData = newMeasureBuilder().create(13, "data");
+    underTest.update(FILE_1, INT_METRIC, withData);
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get()).isSameAs(withData);
+    assertThat(underTest.getRawMeasures(FILE_1)).hasSize(1);
+
+    underTest.update(FILE_1, INT_METRIC, newMeasureBuilder().create(14));
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(14);
+    assertThat(underTest.getRawMeasures(FILE_1)).hasSize(1);
+    assertThat(underTest.getSideTableMeasureCount()).isZero();
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12), OverridePolicy.DO_NOT_OVERRIDE);
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(13), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_1, INT_METRIC).get().getIntValue()).isEqualTo(12);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_columns_and_side_table() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12));
+    underTest.add(FILE_1, STRING_METRIC, newMeasureBuilder().create("foo"));
+    underTest.add(FILE_2, DOUBLE_METRIC, newMeasureBuilder().create(1.0, 1));
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_1);
+
+    assertThat(measures.keySet()).containsOnly(INT_METRIC.getKey(), STRING_METRIC.getKey());
+    assertThat(measures.get(INT_METRIC.getKey()).iterator().next().getIntValue()).isEqualTo(12);
+    assertThat(measures.get(STRING_METRIC.getKey()).iterator().next().getStringValue()).isEqualTo("foo");
+  }
+
+  @Test
+  public void add_fails_if_measure_already_exists() {
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file1), Metric (key=int). Use update method");
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(13));
+  }
+
+  @Test
+  public void update_fails_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component (key=file1), Metric (key=int). Use add method");
+
+    underTest.update(FILE_1, INT_METRIC, newMeasureBuilder().create(13));
+  }
+
+  @Test
+  public void getColumnsSizeInBytes_grows_with_component_references() {
+    assertThat(underTest.getColumnsSizeInBytes()).isZero();
+
+    underTest.add(FILE_1, INT_METRIC, newMeasureBuilder().create(12));
+    long sizeForSmallRef = underTest.getColumnsSizeInBytes();
+    underTest.add(FILE_1000, INT_METRIC, newMeasureBuilder().create(12));
+
+    assertThat(sizeForSmallRef).isPositive();
+    assertThat(underTest.getColumnsSizeInBytes()).isGreaterThanOrEqualTo(sizeForSmallRef + 8 * 998);
+  }
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_1, INT_METRIC);
+  }
+}
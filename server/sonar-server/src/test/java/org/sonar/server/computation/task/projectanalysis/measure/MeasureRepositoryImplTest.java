@@ -34,6 +34,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -41,10 +42,14 @@ import org.sonar.db.DbTester;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
+import org.sonar.server.computation.monitoring.CeMeasuresMBeanImpl;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
+import org.sonar.server.computation.task.projectanalysis.component.TestSettingsRepository;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -89,11 +94,15 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
+  private MapSettings settings = new MapSettings();
+  private SettingsRepository settingsRepository = new TestSettingsRepository(settings);
+  private CeMeasuresMBeanImpl measuresMBean = new CeMeasuresMBeanImpl();
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(treeRootHolder, settingsRepository, dbClient, reportReader, metricRepository, reportMetricValidator, measuresMBean);
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(treeRootHolder, settingsRepository, mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator, measuresMBean);
 
   private DbSession dbSession = dbTester.getSession();
 
@@ -380,6 +389,52 @@ public class MeasureRepositoryImplTest {
     underTest.update(FILE_COMPONENT, metric1, Measure.updatedMeasureBuilder(measure.get()).create());
   }
 
+  @Test
+  public void raw_measures_are_stored_as_Measure_objects_by_default() {
+    MetricImpl metric = new MetricImpl(10, "ncloc", "ncloc", Metric.MetricType.INT);
+    Measure measure = Measure.newMeasureBuilder().create(12);
+
+    underTest.add(FILE_COMPONENT, metric, measure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric).get()).isSameAs(measure);
+  }
+
+  @Test
+  public void raw_measures_are_stored_in_columns_if_enabled_in_settings_of_project() {
+    settings.setProperty(MeasureRepositoryImpl.COLUMNAR_STORAGE_PROPERTY, true);
+    MetricImpl metric = new MetricImpl(10, "ncloc", "ncloc", Metric.MetricType.INT);
+    Measure measure = Measure.newMeasureBuilder().create(12);
+
+    underTest.add(FILE_COMPONENT, metric, measure);
+
+    Measure res = underTest.getRawMeasure(FILE_COMPONENT, metric).get();
+    assertThat(res).isNotSameAs(measure);
+    assertThat(res.getIntValue()).isEqualTo(12);
+  }
+
+  @Test
+  public void usage_of_raw_measures_is_reported_to_MBean_when_task_ends() {
+    settings.setProperty(MeasureRepositoryImpl.COLUMNAR_STORAGE_PROPERTY, true);
+    MetricImpl metric = new MetricImpl(10, "ncloc", "ncloc", Metric.MetricType.INT);
+    underTest.add(FILE_COMPONENT, metric, Measure.newMeasureBuilder().create(12));
+    underTest.getRawMeasure(FILE_COMPONENT, metric);
+    underTest.getRawMeasure(FILE_COMPONENT, metric);
+
+    underTest.stop();
+
+    assertThat(measuresMBean.getTaskCount()).isEqualTo(1);
+    assertThat(measuresMBean.getColumnarStorageTaskCount()).isEqualTo(1);
+    assertThat(measuresMBean.getRawMeasureLookups()).isEqualTo(2);
+    assertThat(measuresMBean.getMaxColumnsSizeInBytes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void usage_of_raw_measures_is_not_reported_to_MBean_if_no_measures_are_stored() {
+    underTest.stop();
+
+    assertThat(measuresMBean.getTaskCount()).isEqualTo(0);
+  }
+
   @Test
   public void getRawMeasures_for_metric_throws_NPE_if_Component_arg_is_null() {
     expectedException.expect(NullPointerException.class);
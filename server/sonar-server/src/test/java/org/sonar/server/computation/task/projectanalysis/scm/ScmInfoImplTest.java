@@ -20,6 +20,8 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -76,6 +78,27 @@ public class ScmInfoImplTest {
     assertThat(scmInfo.hasChangesetForLine(5)).isFalse();
   }
 
+  @Test
+  public void support_many_distinct_changesets() {
+    verifyDistinctChangesets(300);
+    verifyDistinctChangesets(70_000);
+  }
+
+  private static void verifyDistinctChangesets(int count) {
+    List<Changeset> changesets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Changeset changeset = Changeset.newChangesetBuilder().setRevision("rev-" + i).setDate((long) i).build();
+      changesets.add(changeset);
+      changesets.add(changeset);
+    }
+
+    ScmInfo scmInfo = new ScmInfoImpl(changesets);
+
+    assertThat(scmInfo.getAllChangesets()).containsExactlyElementsOf(changesets);
+    assertThat(scmInfo.getChangesetForLine(2 * count)).isSameAs(changesets.get(2 * count - 1));
+    assertThat(scmInfo.getLatestChangeset()).isSameAs(changesets.get(2 * count - 1));
+  }
+
   @Test
   public void fail_with_ISE_on_empty_changeset() throws Exception {
     thrown.expect(IllegalStateException.class);
@@ -231,6 +231,19 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void do_not_keep_scm_info_in_cache_when_max_number_of_lines_is_reached() {
+    underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
+      new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), 0);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    addChangesetInReport("john", DATE_1, "rev-1");
+    assertThat(underTest.getScmInfo(FILE)).isPresent();
+    logTester.clear();
+
+    assertThat(underTest.getScmInfo(FILE)).isPresent();
+    assertThat(logTester.logs(TRACE)).contains("Reading SCM info from report for file 'FILE_KEY'");
+  }
+
   @Test
   public void not_read_in_db_on_first_analysis_when_CopyFromPrevious_is_true() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(null);
@@ -19,6 +19,11 @@
  */
 package org.sonar.server.computation.task.projectanalysis.source;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -27,6 +32,7 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
@@ -78,6 +84,87 @@ public class SourceLinesRepositoryImplTest {
     consume(underTest.readLines(createComponent(2)));
   }
 
+  @Test
+  public void lines_of_fully_read_file_are_read_from_memory() {
+    reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
+    consume(underTest.readLines(createComponent(2)));
+
+    reportReader.putFileSourceLines(FILE_REF, "changed1", "changed2");
+
+    assertThat(underTest.readLines(createComponent(2))).containsExactly("line1", "line2");
+  }
+
+  @Test
+  public void lines_of_partially_read_file_are_not_kept_in_memory() {
+    reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
+    CloseableIterator<String> lines = underTest.readLines(createComponent(2));
+    lines.next();
+    lines.close();
+
+    reportReader.putFileSourceLines(FILE_REF, "changed1", "changed2");
+
+    assertThat(underTest.readLines(createComponent(2))).containsExactly("changed1", "changed2");
+  }
+
+  @Test
+  public void lines_are_not_kept_in_memory_when_cache_is_full() {
+    underTest = new SourceLinesRepositoryImpl(reportReader, 10);
+    reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
+    consume(underTest.readLines(createComponent(2)));
+
+    reportReader.putFileSourceLines(FILE_REF, "changed1", "changed2");
+
+    assertThat(underTest.readLines(createComponent(2))).containsExactly("changed1", "changed2");
+  }
+
+  @Test
+  public void memory_is_released_on_stop() {
+    reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
+    consume(underTest.readLines(createComponent(2)));
+    underTest.stop();
+
+    reportReader.putFileSourceLines(FILE_REF, "changed1", "changed2");
+
+    assertThat(underTest.readLines(createComponent(2))).containsExactly("changed1", "changed2");
+  }
+
+  @Test
+  public void read_lines_concurrently() throws Exception {
+    int nbFiles = 50;
+    // room for about half of the files
+    long maxCachedSize = 25 * 10 * (48 + 2 * "line 00 of file 00".length());
+    underTest = new SourceLinesRepositoryImpl(reportReader, maxCachedSize);
+    List<Component> files = new ArrayList<>();
+    for (int ref = 1; ref <= nbFiles; ref++) {
+      List<String> lines = new ArrayList<>();
+      for (int line = 0; line < 10; line++) {
+        lines.add(String.format("line %02d of file %02d", line, ref));
+      }
+      reportReader.putFileSourceLines(ref, lines);
+      files.add(builder(Component.Type.FILE, ref).setKey("FILE_" + ref).setFileAttributes(new FileAttributes(false, null, 10)).build());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        for (Component file : files) {
+          results.add(executor.submit(() -> {
+            List<String> lines = newArrayList(underTest.readLines(file));
+            return lines.size() == 10 && lines.get(9).equals(String.format("line 09 of file %02d", file.getReportAttributes().getRef()));
+          }));
+        }
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(underTest.getCachedSize()).isPositive().isLessThanOrEqualTo(maxCachedSize);
+  }
+
   @Test
   public void fail_with_ISE_when_file_has_no_source() throws Exception {
     thrown.expect(IllegalStateException.class);
@@ -21,6 +21,8 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.db.measure.DuplicationsDataCodec;
+import org.sonar.db.protobuf.DbMeasures;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
@@ -35,6 +37,8 @@ import static org.sonar.api.measures.CoreMetrics.DUPLICATIONS_DATA_KEY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
+import static org.sonar.server.duplication.DuplicationMetrics.DUPLICATIONS_BINARY_DATA;
+import static org.sonar.server.duplication.DuplicationMetrics.DUPLICATIONS_BINARY_DATA_KEY;
 
 public class DuplicationDataMeasuresStepTest extends BaseStepTest {
 
@@ -63,7 +67,8 @@ public class DuplicationDataMeasuresStepTest extends BaseStepTest {
 
   @Rule
   public MetricRepositoryRule metricRepository = new MetricRepositoryRule()
-    .add(DUPLICATIONS_DATA);
+    .add(DUPLICATIONS_DATA)
+    .add(DUPLICATIONS_BINARY_DATA);
 
   @Rule
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
@@ -81,6 +86,8 @@ public class DuplicationDataMeasuresStepTest extends BaseStepTest {
 
     assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, DUPLICATIONS_DATA_KEY)).isAbsent();
     assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, DUPLICATIONS_DATA_KEY)).isAbsent();
+    assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, DUPLICATIONS_BINARY_DATA_KEY)).isAbsent();
+    assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, DUPLICATIONS_BINARY_DATA_KEY)).isAbsent();
   }
 
   @Test
@@ -93,9 +100,25 @@ public class DuplicationDataMeasuresStepTest extends BaseStepTest {
     assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, DUPLICATIONS_DATA_KEY).get().getData()).isEqualTo(
       "<duplications><g><b s=\"1\" l=\"5\" r=\"" + FILE_1_KEY + "\"/><b s=\"6\" l=\"5\" r=\"" + FILE_1_KEY + "\"/></g></duplications>"
       );
+    assertThat(binaryData(FILE_1_REF)).isEqualTo(DbMeasures.Duplications.newBuilder()
+      .addComponentKey(FILE_1_KEY)
+      .addGroup(DbMeasures.Group.newBuilder().addBlock(block(0, 1, 5)).addBlock(block(0, 6, 5)))
+      .build());
     assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, DUPLICATIONS_DATA_KEY)).isAbsent();
   }
 
+  @Test
+  public void store_key_of_file_once_in_binary_data_when_referenced_by_many_groups() {
+    duplicationRepository.addDuplication(FILE_1_REF, new TextBlock(1, 5), FILE_2_REF, new TextBlock(6, 10));
+    duplicationRepository.addDuplication(FILE_1_REF, new TextBlock(20, 25), FILE_2_REF, new TextBlock(30, 35));
+
+    underTest.execute();
+
+    DbMeasures.Duplications duplications = binaryData(FILE_1_REF);
+    assertThat(duplications.getComponentKeyList()).containsExactly(FILE_1_KEY, FILE_2_KEY);
+    assertThat(duplications.getGroupCount()).isEqualTo(2);
+  }
+
   @Test
   public void compute_duplications_on_different_files() {
     duplicationRepository.addDuplication(FILE_1_REF, new TextBlock(1, 5), FILE_2_REF, new TextBlock(6, 10));
@@ -106,6 +129,11 @@ public class DuplicationDataMeasuresStepTest extends BaseStepTest {
     assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, DUPLICATIONS_DATA_KEY).get().getData()).isEqualTo(
       "<duplications><g><b s=\"1\" l=\"5\" r=\"" + FILE_1_KEY + "\"/><b s=\"6\" l=\"5\" r=\"" + FILE_2_KEY + "\"/></g></duplications>"
       );
+    assertThat(binaryData(FILE_1_REF)).isEqualTo(DbMeasures.Duplications.newBuilder()
+      .addComponentKey(FILE_1_KEY)
+      .addComponentKey(FILE_2_KEY)
+      .addGroup(DbMeasures.Group.newBuilder().addBlock(block(0, 1, 5)).addBlock(block(1, 6, 5)))
+      .build());
     assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, DUPLICATIONS_DATA_KEY)).isAbsent();
   }
 
@@ -120,7 +148,20 @@ public class DuplicationDataMeasuresStepTest extends BaseStepTest {
     assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, DUPLICATIONS_DATA_KEY).get().getData()).isEqualTo(
       "<duplications><g><b s=\"1\" l=\"5\" r=\"" + FILE_1_KEY + "\"/><b s=\"6\" l=\"5\" r=\"" + fileKeyFromOtherProject + "\"/></g></duplications>"
       );
+    assertThat(binaryData(FILE_1_REF)).isEqualTo(DbMeasures.Duplications.newBuilder()
+      .addComponentKey(FILE_1_KEY)
+      .addComponentKey(fileKeyFromOtherProject)
+      .addGroup(DbMeasures.Group.newBuilder().addBlock(block(0, 1, 5)).addBlock(block(1, 6, 5)))
+      .build());
     assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, DUPLICATIONS_DATA_KEY)).isAbsent();
   }
 
+  private DbMeasures.Duplications binaryData(int componentRef) {
+    return DuplicationsDataCodec.decode(measureRepository.getAddedRawMeasure(componentRef, DUPLICATIONS_BINARY_DATA_KEY).get().getData());
+  }
+
+  private static DbMeasures.Block block(int componentKeyIndex, int startLine, int length) {
+    return DbMeasures.Block.newBuilder().setComponentKeyIndex(componentKeyIndex).setStartLine(startLine).setLength(length).build();
+  }
+
 }
@@ -80,11 +80,15 @@ public class ExtractReportStepTest {
 
     underTest.execute();
 
-    // directory contains the uncompressed report (which contains only metadata.pb in this test)
+    // files of the report are extracted only when accessed
     File unzippedDir = reportDirectoryHolder.getDirectory();
     assertThat(unzippedDir).isDirectory().exists();
+    assertThat(unzippedDir.listFiles()).isEmpty();
+
+    File metadataFile = reportDirectoryHolder.getFileStructure().metadataFile();
+    assertThat(metadataFile).isEqualTo(new File(unzippedDir, "metadata.pb"));
+    assertThat(metadataFile).hasContent("{metadata}");
     assertThat(unzippedDir.listFiles()).hasSize(1);
-    assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
   }
 
   private File generateReport() throws IOException {
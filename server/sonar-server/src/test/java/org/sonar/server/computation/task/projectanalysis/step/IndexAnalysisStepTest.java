@@ -19,18 +19,43 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueTesting;
+import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.component.MutableDisabledComponentsHolder;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.es.EsTester;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndexDefinition;
+import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.issue.index.IssueIteratorFactory;
 
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.VIEW;
 
@@ -43,9 +68,19 @@ public class IndexAnalysisStepTest extends BaseStepTest {
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public EsTester esTester = new EsTester(new IssueIndexDefinition(new MapSettings()));
+  @Rule
+  public MutableDbIdsRepositoryRule dbIdsRepository = MutableDbIdsRepositoryRule.create(treeRootHolder);
+  @Rule
+  public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
 
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private ProjectIndexer componentIndexer = mock(ProjectIndexer.class);
-  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, componentIndexer);
+  private IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, changedIssuesRepository, issueIndexer, componentIndexer, issueIndexer);
 
   @Test
   public void call_indexByProjectUuid_of_indexer_for_project() {
@@ -67,6 +102,72 @@ public class IndexAnalysisStepTest extends BaseStepTest {
     verify(componentIndexer).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
   }
 
+  @Test
+  public void index_all_issues_of_project_if_changed_issues_are_unknown() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build());
+
+    underTest.execute();
+
+    verify(issueIndexer).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+    verify(issueIndexer, never()).index(anyCollectionOf(String.class));
+  }
+
+  @Test
+  public void index_only_changed_issues() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build());
+    changedIssuesRepository.add("ISSUE_1");
+    changedIssuesRepository.complete();
+
+    underTest.execute();
+
+    verify(issueIndexer).index(singleton("ISSUE_1"));
+    verify(issueIndexer, never()).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+    verify(componentIndexer).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+  }
+
+  @Test
+  public void do_not_index_issues_if_none_changed() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build());
+    changedIssuesRepository.complete();
+
+    underTest.execute();
+
+    verify(issueIndexer, never()).index(anyCollectionOf(String.class));
+    verify(issueIndexer, never()).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+  }
+
+  @Test
+  public void index_unchanged_issues_of_moved_file() {
+    OrganizationDto organization = dbTester.organizations().insert();
+    ComponentDto project = dbTester.components().insertProject(organization);
+    ComponentDto directory = dbTester.components().insertComponent(ComponentTesting.newDirectory(project, "src"));
+    ComponentDto file = dbTester.components().insertComponent(ComponentTesting.newFileDto(project, directory)
+      .setKey(project.getKey() + ":Foo.java").setPath("src/Foo.java"));
+    RuleDto rule = dbTester.rules().insertRule();
+    IssueDto issue = dbTester.issues().insertIssue(IssueTesting.newDto(rule, file, project));
+    IssueIndexer realIssueIndexer = new IssueIndexer(esTester.client(), dbTester.getDbClient(), new IssueIteratorFactory(dbTester.getDbClient()));
+    realIssueIndexer.indexProject(project.uuid(), ProjectIndexer.Cause.NEW_ANALYSIS);
+
+    // the file keeps its key and uuid but its path changes. Its issue is not changed by the analysis.
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(project.uuid()).setKey(project.getKey())
+      .addChildren(ReportComponent.builder(DIRECTORY, 2).setUuid(directory.uuid()).setKey(directory.getKey()).setPath("src")
+        .addChildren(ReportComponent.builder(FILE, 3).setUuid(file.uuid()).setKey(file.getKey()).setPath("src/main/Foo.java").build())
+        .build())
+      .build());
+    analysisMetadataHolder.setOrganizationUuid(organization.getUuid());
+    new PersistComponentsStep(dbTester.getDbClient(), treeRootHolder, dbIdsRepository, System2.INSTANCE, mock(MutableDisabledComponentsHolder.class),
+      analysisMetadataHolder, changedIssuesRepository).execute();
+    dbTester.getDbClient().componentDao().applyBChangesForRootComponentUuid(dbTester.getSession(), project.uuid());
+    dbTester.commit();
+    changedIssuesRepository.complete();
+
+    new IndexAnalysisStep(treeRootHolder, changedIssuesRepository, realIssueIndexer, realIssueIndexer).execute();
+
+    List<IssueDoc> docs = esTester.getDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE, IssueDoc.class);
+    assertThat(docs).extracting(IssueDoc::key).containsOnly(issue.getKey());
+    assertThat(docs.get(0).filePath()).isEqualTo("src/main/Foo.java");
+  }
+
   @Override
   protected ComputationStep step() {
     return underTest;
@@ -34,6 +34,7 @@ import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Component.ComponentType;
 import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.HighlightingType;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
@@ -79,6 +80,8 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public SourceLinesRepositoryRule fileSourceRepository = new SourceLinesRepositoryRule();
   @Rule
   public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
@@ -88,7 +91,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, ceConfiguration);
   }
 
   @Override
@@ -120,6 +123,28 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_files_concurrently() {
+    ceConfiguration.setPersistSourcesParallelism(3);
+    int nbFiles = 20;
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    for (int ref = FILE_REF; ref < FILE_REF + nbFiles; ref++) {
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + ref).setKey("MODULE_KEY:src/Foo" + ref + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build());
+      fileSourceRepository.addLine(ref, "line of " + ref);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    for (int ref = FILE_REF; ref < FILE_REF + nbFiles; ref++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + ref);
+      assertThat(fileSourceDto.getProjectUuid()).isEqualTo(PROJECT_UUID);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line of " + ref);
+    }
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -281,7 +306,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    String dataHash = "c0dcd45a568b5f1413144d15ef821310";
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
@@ -362,7 +387,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
       .setDataType(Type.SOURCE)
       // Source hash is missing, update will be made
       .setLineHashes("137f72c3708c6bd0de00a0e5a69c699b")
-      .setDataHash("29f25900140c94db38035128cb6de6a2")
+      .setDataHash("c0dcd45a568b5f1413144d15ef821310")
       .setSourceData(DbFileSources.Data.newBuilder()
         .addLines(DbFileSources.Line.newBuilder()
           .setLine(1)
@@ -44,6 +44,7 @@ import org.sonar.db.rule.RuleTesting;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
@@ -71,6 +72,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
   private DbClient dbClient = dbTester.getDbClient();
   private System2 system2;
   private IssueCache issueCache;
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private ComputationStep step;
 
   @Override
@@ -85,7 +87,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient, analysisMetadataHolder), issueCache,
+      changedIssuesRepository);
   }
 
   @After
@@ -125,6 +128,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
     assertThat(result.getSeverity()).isEqualTo(Severity.BLOCKER);
     assertThat(result.getStatus()).isEqualTo(Issue.STATUS_OPEN);
     assertThat(result.getType()).isEqualTo(RuleType.BUG.getDbConstant());
+    assertThat(changedIssuesRepository.getKeys().get()).containsOnly("ISSUE");
   }
 
   @Test
@@ -147,6 +151,27 @@ public class PersistIssuesStepTest extends BaseStepTest {
     step.execute();
 
     dbTester.assertDbUnit(getClass(), "close_issue-result.xml", "issues");
+    assertThat(changedIssuesRepository.getKeys().get()).containsOnly("ISSUE");
+  }
+
+  @Test
+  public void do_not_register_unchanged_issues() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    issueCache.newAppender().append(new DefaultIssue()
+      .setKey("ISSUE")
+      .setType(RuleType.CODE_SMELL)
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid("COMPONENT")
+      .setProjectUuid("PROJECT")
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_OPEN)
+      .setNew(false)
+      .setChanged(false)).close();
+
+    step.execute();
+
+    assertThat(changedIssuesRepository.getKeys().get()).isEmpty();
   }
 
   @Test
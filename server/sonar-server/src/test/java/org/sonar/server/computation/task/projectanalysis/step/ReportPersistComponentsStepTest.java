@@ -37,6 +37,7 @@ import org.sonar.server.computation.task.projectanalysis.component.FileAttribute
 import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.component.MutableDisabledComponentsHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -72,6 +73,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
   private DbClient dbClient = dbTester.getDbClient();
   private Date now;
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
+  private ChangedIssuesRepository changedIssuesRepository = new ChangedIssuesRepository();
   private PersistComponentsStep underTest;
 
   @Before
@@ -80,7 +82,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(now.getTime());
 
     dbTester.organizations().insertForUuid(ORGANIZATION_UUID);
-    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder);
+    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, changedIssuesRepository);
   }
 
   @Override
@@ -403,6 +405,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
         .addChildren(
           builder(Component.Type.MODULE, 2).setUuid("BCDE").setKey(MODULE_KEY)
             .setName("Module")
+            .setPath(module.path())
             .addChildren(
               builder(DIRECTORY, 3).setUuid("CDEF").setKey("MODULE_KEY:src/main/java/dir")
                 .setPath("src/main/java/dir")
@@ -458,6 +461,9 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     assertThat(fileReloaded.getRootUuid()).isEqualTo(file.getRootUuid());
     assertThat(fileReloaded.name()).isEqualTo(file.name());
     assertThat(fileReloaded.path()).isEqualTo(file.path());
+
+    changedIssuesRepository.complete();
+    assertThat(changedIssuesRepository.getKeys()).isPresent();
   }
 
   @Test
@@ -524,6 +530,10 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     // commit the functional transaction
     dbClient.componentDao().applyBChangesForRootComponentUuid(dbTester.getSession(), project.uuid());
     assertThat(dbClient.componentDao().selectByKey(dbTester.getSession(), MODULE_KEY).get().path()).isEqualTo("New path");
+
+    // issues of the module must be re-indexed with the new path
+    changedIssuesRepository.complete();
+    assertThat(changedIssuesRepository.getKeys()).isEmpty();
   }
 
   @Test
@@ -600,6 +610,10 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     assertThat(fileReloaded.moduleUuidPath()).isEqualTo(moduleBReloaded.moduleUuidPath());
     assertThat(fileReloaded.projectUuid()).isEqualTo(project.uuid());
     assertThat(fileReloaded.getRootUuid()).isEqualTo(moduleBReloaded.uuid());
+
+    // issues of the moved components must be re-indexed with their new module
+    changedIssuesRepository.complete();
+    assertThat(changedIssuesRepository.getKeys()).isEmpty();
   }
 
   @Test
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import java.io.IOException;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
@@ -28,12 +29,15 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.webhook.WebhookDeliveryDto;
+import org.sonar.db.webhook.WebhookPendingDeliveryDto;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.db.webhook.WebhookDbTesting.newWebhookDeliveryDto;
 import static org.sonar.db.webhook.WebhookDbTesting.selectAllDeliveryUuids;
+import static org.sonar.db.webhook.WebhookDbTesting.selectAllPendingDeliveryUuids;
 
 public class WebhookDeliveryStorageTest {
 
@@ -85,6 +89,19 @@ public class WebhookDeliveryStorageTest {
     assertThat(dto.getErrorStacktrace()).contains("java.io.IOException", "fail to connect");
   }
 
+  @Test
+  public void persist_updates_statistics() {
+    when(uuidFactory.create()).thenReturn("D1", "D2", "D3");
+
+    underTest.persist(newBuilderTemplate().setDurationInMs(1_000).build());
+    underTest.persist(newBuilderTemplate().setHttpStatus(500).setDurationInMs(3_000).build());
+    underTest.persist(newBuilderTemplate().setHttpStatus(null).setDurationInMs(null).setError(new IOException("fail to connect")).build());
+
+    assertThat(underTest.getSuccessCount()).isEqualTo(1);
+    assertThat(underTest.getFailureCount()).isEqualTo(2);
+    assertThat(underTest.getAverageDurationMs()).isEqualTo(2_000);
+  }
+
   @Test
   public void purge_deletes_records_older_than_one_month_on_the_project() {
     when(system.now()).thenReturn(NOW);
@@ -99,6 +116,52 @@ public class WebhookDeliveryStorageTest {
     assertThat(selectAllDeliveryUuids(dbTester, dbSession)).containsOnly("D2", "D3");
   }
 
+  @Test
+  public void addToQueue_inserts_delivery_to_be_attempted_now() {
+    when(system.now()).thenReturn(NOW);
+    when(uuidFactory.create()).thenReturn(DELIVERY_UUID);
+
+    String uuid = underTest.addToQueue(new Webhook("COMPONENT1", "TASK1", "Jenkins", "http://jenkins"), new WebhookPayload("my-project", "{json}"));
+
+    assertThat(uuid).isEqualTo(DELIVERY_UUID);
+    List<WebhookPendingDeliveryDto> queue = underTest.loadQueue(10);
+    assertThat(queue).hasSize(1);
+    WebhookPendingDeliveryDto dto = queue.get(0);
+    assertThat(dto.getUuid()).isEqualTo(DELIVERY_UUID);
+    assertThat(dto.getComponentUuid()).isEqualTo("COMPONENT1");
+    assertThat(dto.getCeTaskUuid()).isEqualTo("TASK1");
+    assertThat(dto.getName()).isEqualTo("Jenkins");
+    assertThat(dto.getUrl()).isEqualTo("http://jenkins");
+    assertThat(dto.getProjectKey()).isEqualTo("my-project");
+    assertThat(dto.getPayload()).isEqualTo("{json}");
+    assertThat(dto.getAttempt()).isEqualTo(1);
+    assertThat(dto.getNextAttemptAt()).isEqualTo(NOW);
+    assertThat(dto.getCreatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void updateInQueue_changes_attempt_and_date_of_next_attempt() {
+    when(system.now()).thenReturn(NOW);
+    when(uuidFactory.create()).thenReturn(DELIVERY_UUID);
+    String uuid = underTest.addToQueue(new Webhook("COMPONENT1", "TASK1", "Jenkins", "http://jenkins"), new WebhookPayload("my-project", "{json}"));
+
+    underTest.updateInQueue(uuid, 2, NOW + 10_000L);
+
+    assertThat(underTest.loadQueue(10)).extracting(WebhookPendingDeliveryDto::getAttempt, WebhookPendingDeliveryDto::getNextAttemptAt)
+      .containsExactly(tuple(2, NOW + 10_000L));
+  }
+
+  @Test
+  public void removeFromQueue_deletes_delivery() {
+    when(uuidFactory.create()).thenReturn("D1", "D2");
+    String uuid = underTest.addToQueue(new Webhook("COMPONENT1", "TASK1", "Jenkins", "http://jenkins"), new WebhookPayload("my-project", "{json}"));
+    underTest.addToQueue(new Webhook("COMPONENT1", "TASK1", "Travis", "http://travis"), new WebhookPayload("my-project", "{json}"));
+
+    underTest.removeFromQueue(uuid);
+
+    assertThat(selectAllPendingDeliveryUuids(dbTester, dbSession)).containsOnly("D2");
+  }
+
   private static WebhookDelivery.Builder newBuilderTemplate() {
     return new WebhookDelivery.Builder()
       .setWebhook(new Webhook("COMPONENT1", "TASK1", "Jenkins", "http://jenkins"))
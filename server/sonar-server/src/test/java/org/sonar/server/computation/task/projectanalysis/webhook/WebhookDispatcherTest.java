@@ -0,0 +1,281 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.db.webhook.WebhookPendingDeliveryDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.task.projectanalysis.webhook.WebhookDispatcher.MAX_ATTEMPTS;
+import static org.sonar.server.computation.task.projectanalysis.webhook.WebhookDispatcher.MAX_CONCURRENT_DELIVERIES_PER_HOST;
+
+public class WebhookDispatcherTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{json}");
+
+  @Rule
+  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
+
+  private TestWebhookCaller caller = new TestWebhookCaller();
+  private WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
+  private System2 system = mock(System2.class);
+  private WebhookDispatcher underTest;
+
+  @Before
+  public void setUp() {
+    when(system.now()).thenReturn(NOW);
+    when(deliveryStorage.addToQueue(any(Webhook.class), any(WebhookPayload.class))).thenReturn("D1");
+  }
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void send_and_persist_deliveries() throws InterruptedException {
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    start(caller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | attempt=1 | time=1234ms | status=200");
+    verify(deliveryStorage).persist(any(WebhookDelivery.class));
+  }
+
+  @Test
+  public void store_pending_delivery_then_remove_it_and_purge_old_deliveries_once_persisted() throws InterruptedException {
+    caller.enqueueSuccess(NOW, 200, 1_234);
+    start(caller);
+
+    Webhook webhook = newWebhook("First", "http://url1");
+    underTest.dispatch(webhook, PAYLOAD);
+    waitForDeliveries();
+
+    InOrder inOrder = inOrder(deliveryStorage);
+    inOrder.verify(deliveryStorage).addToQueue(webhook, PAYLOAD);
+    inOrder.verify(deliveryStorage).persist(any(WebhookDelivery.class));
+    inOrder.verify(deliveryStorage).removeFromQueue("D1");
+    inOrder.verify(deliveryStorage).purge("P1_UUID");
+  }
+
+  @Test
+  public void send_again_deliveries_which_fail_because_of_connectivity_or_server_errors() throws InterruptedException {
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+    start(caller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(3);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains(
+      "Failed to send webhook 'First' | url=http://url1 | attempt=1 | message=Fail to connect",
+      "Sent webhook 'First' | url=http://url1 | attempt=2 | time=10ms | status=503",
+      "Sent webhook 'First' | url=http://url1 | attempt=3 | time=10ms | status=200");
+    verify(deliveryStorage, times(3)).persist(any(WebhookDelivery.class));
+  }
+
+  @Test
+  public void store_attempt_number_and_date_of_next_attempt_before_sending_again() throws InterruptedException {
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+    start(caller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    waitForDeliveries();
+
+    InOrder inOrder = inOrder(deliveryStorage);
+    inOrder.verify(deliveryStorage).updateInQueue("D1", 2, NOW + 1L);
+    inOrder.verify(deliveryStorage).updateInQueue("D1", 3, NOW + 2L);
+    inOrder.verify(deliveryStorage).removeFromQueue("D1");
+  }
+
+  @Test
+  public void send_pending_deliveries_loaded_on_startup() throws InterruptedException {
+    caller.enqueueSuccess(NOW, 200, 10);
+    when(deliveryStorage.loadQueue(WebhookDispatcher.MAX_PENDING_DELIVERIES)).thenReturn(Collections.singletonList(new WebhookPendingDeliveryDto()
+      .setUuid("D2")
+      .setComponentUuid("P1_UUID")
+      .setCeTaskUuid("TASK_1")
+      .setName("First")
+      .setUrl("http://url1")
+      .setProjectKey("P1")
+      .setPayload("{json}")
+      .setAttempt(2)
+      .setNextAttemptAt(NOW - 1_000L)
+      .setCreatedAt(NOW - 10_000L)));
+    start(caller);
+
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("1 pending webhook deliveries are loaded");
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | attempt=2 | time=10ms | status=200");
+    verify(deliveryStorage).removeFromQueue("D2");
+  }
+
+  @Test
+  public void do_not_send_again_deliveries_after_max_attempts() throws InterruptedException {
+    for (int i = 0; i < MAX_ATTEMPTS; i++) {
+      caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    }
+    start(caller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(MAX_ATTEMPTS);
+    verify(deliveryStorage, times(MAX_ATTEMPTS)).persist(any(WebhookDelivery.class));
+  }
+
+  @Test
+  public void do_not_send_again_deliveries_rejected_by_client_errors() throws InterruptedException {
+    caller.enqueueSuccess(NOW, 404, 10);
+    start(caller);
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(0);
+  }
+
+  @Test
+  public void limit_concurrent_deliveries_to_same_host() throws InterruptedException {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger sent = new AtomicInteger();
+    start((webhook, payload) -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      running.decrementAndGet();
+      sent.incrementAndGet();
+      return new WebhookDelivery.Builder().setWebhook(webhook).setPayload(payload).setAt(NOW).setHttpStatus(200).build();
+    });
+
+    for (int i = 0; i < 10; i++) {
+      underTest.dispatch(newWebhook("Hook " + i, "http://host1/path" + i), PAYLOAD);
+    }
+    waitForDeliveries();
+
+    assertThat(sent.get()).isEqualTo(10);
+    assertThat(maxRunning.get()).isEqualTo(MAX_CONCURRENT_DELIVERIES_PER_HOST);
+  }
+
+  @Test
+  public void do_not_keep_pending_deliveries_rejected_when_server_is_stopped() {
+    start(caller);
+    underTest.stop();
+
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    underTest.dispatch(newWebhook("Second", "http://url1"), PAYLOAD);
+    underTest.dispatch(newWebhook("Third", "http://url1"), PAYLOAD);
+
+    assertThat(caller.countSent()).isEqualTo(0);
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(0);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Webhook 'Third' is postponed to next startup as server is stopping | url=http://url1");
+    // deliveries are still stored in the queue
+    verify(deliveryStorage, times(3)).addToQueue(any(Webhook.class), any(WebhookPayload.class));
+    verify(deliveryStorage, never()).removeFromQueue(anyString());
+    underTest = null;
+  }
+
+  @Test
+  public void do_not_keep_pending_deliveries_which_can_not_be_sent_again_when_server_is_stopping() throws InterruptedException {
+    CountDownLatch called = new CountDownLatch(1);
+    CountDownLatch stopping = new CountDownLatch(1);
+    start((webhook, payload) -> {
+      called.countDown();
+      try {
+        stopping.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new WebhookDelivery.Builder().setWebhook(webhook).setPayload(payload).setAt(NOW).setHttpStatus(503).build();
+    });
+    underTest.dispatch(newWebhook("First", "http://url1"), PAYLOAD);
+    called.await();
+
+    Thread stopper = new Thread(underTest::stop);
+    stopper.start();
+    // wait for the executor to be shut down, then let the delivery fail
+    while (stopper.getState() != Thread.State.TIMED_WAITING && stopper.isAlive()) {
+      Thread.sleep(5L);
+    }
+    stopping.countDown();
+    stopper.join();
+
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(0);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Webhook 'First' is postponed to next startup as server is stopping | url=http://url1");
+    verify(deliveryStorage).updateInQueue(anyString(), anyInt(), anyLong());
+    verify(deliveryStorage, never()).removeFromQueue(anyString());
+    underTest = null;
+  }
+
+  private void start(WebhookCaller webhookCaller) {
+    underTest = new WebhookDispatcher(webhookCaller, deliveryStorage, system, 1L);
+    underTest.start();
+  }
+
+  private void waitForDeliveries() throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10_000L;
+    while (underTest.getPendingDeliveries() > 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(5L);
+    }
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(0);
+  }
+
+  private static Webhook newWebhook(String name, String url) {
+    return new Webhook("P1_UUID", "TASK_1", name, url);
+  }
+}
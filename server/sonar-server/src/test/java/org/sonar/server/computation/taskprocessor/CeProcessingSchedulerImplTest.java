@@ -199,6 +199,46 @@ public class CeProcessingSchedulerImplTest {
     verify(listenableScheduledFuture, times(workerCount)).addListener(any(Runnable.class), eq(processingExecutorService));
   }
 
+  @Test
+  public void workers_dedicated_to_small_projects_are_scheduled_in_addition_to_other_workers() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    ceConfiguration.setSmallProjectsWorkerCount(3);
+    ceConfiguration.setSmallProjectsMaxNcloc(500);
+    CeWorkerCallable smallProjectsWorker = mock(CeWorkerCallable.class);
+    when(ceWorkerRunnable.restrictToSmallProjects(500)).thenReturn(smallProjectsWorker);
+
+    ListenableScheduledFuture listenableScheduledFuture = mock(ListenableScheduledFuture.class);
+    CeProcessingSchedulerExecutorService processingExecutorService = mock(CeProcessingSchedulerExecutorService.class);
+    when(processingExecutorService.schedule(any(CeWorkerCallable.class), eq(ceConfiguration.getQueuePollingDelay()), eq(MILLISECONDS)))
+      .thenReturn(listenableScheduledFuture);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+
+    underTest.startScheduling();
+
+    verify(processingExecutorService, times(2)).schedule(ceWorkerRunnable, ceConfiguration.getQueuePollingDelay(), MILLISECONDS);
+    verify(processingExecutorService, times(3)).schedule(smallProjectsWorker, ceConfiguration.getQueuePollingDelay(), MILLISECONDS);
+  }
+
+  @Test
+  public void idle_workers_poll_without_delay_when_a_worker_executed_a_task() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+    when(ceWorkerRunnable.call())
+      .thenReturn(true)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    processingExecutorService.runFutures();
+
+    // delayed poll of second worker is replaced by a poll without delay
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll,
+      notDelayedPoll,
+      notDelayedPoll);
+    verify(ceWorkerRunnable, times(3)).call();
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
@@ -38,7 +38,9 @@ import org.sonar.server.computation.task.projectanalysis.taskprocessor.ReportTas
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -64,6 +66,20 @@ public class CeWorkerCallableImplTest {
     verifyZeroInteractions(taskProcessor, ceLogging);
   }
 
+  @Test
+  public void worker_restricted_to_small_projects_peeks_tasks_of_small_projects() throws Exception {
+    CeTask task = createCeTask(null);
+    taskProcessorRepository.setProcessorForTask(task.getType(), taskProcessor);
+    when(queue.peek(500)).thenReturn(Optional.of(task));
+
+    assertThat(underTest.restrictToSmallProjects(500).call()).isTrue();
+
+    inOrder.verify(queue).peek(500);
+    inOrder.verify(taskProcessor).process(task);
+    inOrder.verify(queue).remove(task, CeActivityDto.Status.SUCCESS, null, null);
+    verify(queue, never()).peek();
+  }
+
   @Test
   public void fail_when_no_CeTaskProcessor_is_found_in_repository() throws Exception {
     CeTask task = createCeTask(null);
@@ -36,7 +36,9 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDao;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.measure.DuplicationsDataCodec;
 import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.protobuf.DbMeasures;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
@@ -162,6 +164,43 @@ public class DuplicationsParserTest {
     assertThat(duplication3.size()).isEqualTo(24);
   }
 
+  @Test
+  public void duplications_in_binary_format() {
+    String data = DuplicationsDataCodec.encode(DbMeasures.Duplications.newBuilder()
+      .addComponentKey(fileOnDifferentProject.key())
+      .addComponentKey(currentFile.key())
+      .addComponentKey(fileOnSameProject.key())
+      .addGroup(DbMeasures.Group.newBuilder()
+        .addBlock(block(0, 137, 24))
+        .addBlock(block(1, 148, 24))
+        .addBlock(block(2, 111, 24)))
+      .build());
+
+    List<DuplicationsParser.Block> blocks = parser.parseBinary(currentFile, data, dbSession);
+    assertThat(blocks).hasSize(1);
+
+    List<DuplicationsParser.Duplication> duplications = blocks.get(0).getDuplications();
+    assertThat(duplications).extracting(DuplicationsParser.Duplication::file).containsExactly(currentFile, fileOnSameProject, fileOnDifferentProject);
+    assertThat(duplications).extracting(DuplicationsParser.Duplication::from).containsExactly(148, 111, 137);
+    assertThat(duplications).extracting(DuplicationsParser.Duplication::size).containsExactly(24, 24, 24);
+  }
+
+  @Test
+  public void duplication_on_removed_file_in_binary_format() {
+    String data = DuplicationsDataCodec.encode(DbMeasures.Duplications.newBuilder()
+      .addComponentKey(currentFile.key())
+      .addComponentKey("removed_file")
+      .addGroup(DbMeasures.Group.newBuilder()
+        .addBlock(block(0, 10, 5))
+        .addBlock(block(1, 20, 5)))
+      .build());
+
+    List<DuplicationsParser.Duplication> duplications = parser.parseBinary(currentFile, data, dbSession).get(0).getDuplications();
+
+    assertThat(duplication(duplications, null).from()).isEqualTo(20);
+    assertThat(duplication(duplications, currentFile.key()).from()).isEqualTo(10);
+  }
+
   @Test
   public void duplications_on_many_blocks() throws Exception {
     List<DuplicationsParser.Block> blocks = parser.parse(currentFile, getData("duplications_on_many_blocks.xml"), dbSession);
@@ -227,6 +266,10 @@ public class DuplicationsParserTest {
     assertThat(comparator.compare(new DuplicationsParser.Duplication(null, 2, 2), new DuplicationsParser.Duplication(currentFile, 5, 2))).isEqualTo(-1);
   }
 
+  private static DbMeasures.Block block(int componentKeyIndex, int startLine, int length) {
+    return DbMeasures.Block.newBuilder().setComponentKeyIndex(componentKeyIndex).setStartLine(startLine).setLength(length).build();
+  }
+
   private String getData(String file) throws IOException {
     return Files.toString(new File(Resources.getResource(this.getClass(), "DuplicationsParserTest/" + file).getFile()), StandardCharsets.UTF_8);
   }
@@ -29,8 +29,11 @@ import org.sonar.api.web.UserRole;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.measure.DuplicationsDataCodec;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.db.protobuf.DbMeasures;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.duplication.DuplicationMetrics;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.startup.RegisterMetrics;
@@ -56,12 +59,13 @@ public class ShowActionTest {
   private DuplicationsJsonWriter duplicationsJsonWriter = new DuplicationsJsonWriter(db.getDbClient().componentDao());
   private WsTester tester;
   private MetricDto dataMetric = RegisterMetrics.MetricToDto.INSTANCE.apply(CoreMetrics.DUPLICATIONS_DATA);
+  private MetricDto binaryDataMetric = RegisterMetrics.MetricToDto.INSTANCE.apply(DuplicationMetrics.DUPLICATIONS_BINARY_DATA);
 
   @Before
   public void setUp() {
     tester = new WsTester(new DuplicationsWs(new ShowAction(db.getDbClient(), parser, duplicationsJsonWriter, userSessionRule, new ComponentFinder(db.getDbClient()))));
 
-    db.getDbClient().metricDao().insert(db.getSession(), dataMetric);
+    db.getDbClient().metricDao().insert(db.getSession(), dataMetric, binaryDataMetric);
     db.commit();
   }
 
@@ -77,6 +81,30 @@ public class ShowActionTest {
     verifyCallToFileWithDuplications(file -> request.setParam("uuid", file.uuid()));
   }
 
+  @Test
+  public void read_binary_data_rather_than_xml_when_available() throws Exception {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project).setKey("foo.js"));
+    SnapshotDto snapshot = db.components().insertSnapshot(newAnalysis(project));
+    String xml = "<duplications><g><b s=\"1\" l=\"2\" r=\"foo.js\"/><b s=\"3\" l=\"2\" r=\"foo.js\"/></g></duplications>";
+    String binaryData = DuplicationsDataCodec.encode(DbMeasures.Duplications.newBuilder()
+      .addComponentKey("foo.js")
+      .addGroup(DbMeasures.Group.newBuilder()
+        .addBlock(DbMeasures.Block.newBuilder().setComponentKeyIndex(0).setStartLine(31).setLength(5))
+        .addBlock(DbMeasures.Block.newBuilder().setComponentKeyIndex(0).setStartLine(20).setLength(5)))
+      .build());
+    db.getDbClient().measureDao().insert(db.getSession(), newMeasureDto(dataMetric, file, snapshot).setData(xml));
+    db.getDbClient().measureDao().insert(db.getSession(), newMeasureDto(binaryDataMetric, file, snapshot).setData(binaryData));
+    db.commit();
+    userSessionRule.addProjectUuidPermissions(UserRole.CODEVIEWER, project.uuid());
+
+    WsTester.Result result = newBaseRequest().setParam("key", file.key()).execute();
+
+    result.assertJson("{\"duplications\":[" +
+      "{\"blocks\":[{\"from\":20,\"size\":5,\"_ref\":\"1\"},{\"from\":31,\"size\":5,\"_ref\":\"1\"}]}]," +
+      "\"files\":{\"1\":{\"key\":\"foo.js\",\"uuid\":\"" + file.uuid() + "\"}}}");
+  }
+
   @Test
   public void return_file_with_missing_duplication_data() throws Exception {
     ComponentDto project = db.components().insertProject();
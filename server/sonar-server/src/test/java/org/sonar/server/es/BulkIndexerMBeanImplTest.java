@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexerMBeanImplTest {
+
+  private BulkIndexerMetrics metrics = new BulkIndexerMetrics(System::nanoTime);
+  private BulkIndexerMBeanImpl underTest = new BulkIndexerMBeanImpl(metrics);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void export_metrics() {
+    metrics.onRequestSent();
+    metrics.onRequestSent();
+    metrics.onResponse(10, 1_000L, 50L, 2, true);
+
+    assertThat(underTest.getInFlightRequests()).isEqualTo(1);
+    assertThat(underTest.getRequests()).isEqualTo(1);
+    assertThat(underTest.getDocuments()).isEqualTo(10);
+    assertThat(underTest.getBytes()).isEqualTo(1_000L);
+    assertThat(underTest.getFailedDocuments()).isEqualTo(2);
+    assertThat(underTest.getRejectedRequests()).isEqualTo(1);
+    assertThat(underTest.getAverageLatencyMillis()).isEqualTo(50L);
+    assertThat(underTest.getDocumentsPerSecond()).isGreaterThanOrEqualTo(0d);
+    assertThat(underTest.getBytesPerSecond()).isGreaterThanOrEqualTo(0d);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(BulkIndexerMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
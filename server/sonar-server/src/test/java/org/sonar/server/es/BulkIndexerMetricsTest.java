@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexerMetricsTest {
+
+  private AtomicLong now = new AtomicLong(0L);
+  private BulkIndexerMetrics underTest = new BulkIndexerMetrics(now::get);
+
+  @Test
+  public void count_requests() {
+    underTest.onRequestSent();
+    underTest.onRequestSent();
+    assertThat(underTest.getInFlightRequests()).isEqualTo(2);
+
+    underTest.onResponse(10, 1_000L, 100L, 1, false);
+    underTest.onResponse(5, 500L, 300L, 0, true);
+
+    assertThat(underTest.getInFlightRequests()).isEqualTo(0);
+    assertThat(underTest.getRequests()).isEqualTo(2);
+    assertThat(underTest.getDocuments()).isEqualTo(15);
+    assertThat(underTest.getBytes()).isEqualTo(1_500L);
+    assertThat(underTest.getFailedDocuments()).isEqualTo(1);
+    assertThat(underTest.getRejectedRequests()).isEqualTo(1);
+    assertThat(underTest.getAverageLatencyMillis()).isEqualTo(200L);
+  }
+
+  @Test
+  public void compute_rates_over_periods_of_5_seconds() {
+    assertThat(underTest.getDocumentsPerSecond()).isEqualTo(0d);
+
+    underTest.onRequestSent();
+    now.set(TimeUnit.SECONDS.toNanos(5));
+    underTest.onResponse(100, 10_000L, 100L, 0, false);
+
+    assertThat(underTest.getDocumentsPerSecond()).isEqualTo(20d);
+    assertThat(underTest.getBytesPerSecond()).isEqualTo(2_000d);
+
+    // nothing indexed since a long time
+    now.set(TimeUnit.SECONDS.toNanos(30));
+    assertThat(underTest.getDocumentsPerSecond()).isEqualTo(0d);
+  }
+
+  @Test
+  public void average_latency_is_zero_if_no_requests() {
+    assertThat(underTest.getAverageLatencyMillis()).isEqualTo(0L);
+  }
+}
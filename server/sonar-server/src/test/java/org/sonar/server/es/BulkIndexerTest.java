@@ -62,6 +62,21 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void flush_sends_pending_requests() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(newIndexRequest(78));
+
+    indexer.flush();
+    esTester.client().prepareRefresh(INDEX).get();
+    assertThat(count()).isEqualTo(2);
+
+    indexer.stop();
+    assertThat(count()).isEqualTo(2);
+  }
+
   @Test
   public void large_indexing() {
     // index has one replica
@@ -86,6 +101,24 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void adaptive_indexing() {
+    long requestsBefore = BulkIndexerMetrics.get().getRequests();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX)
+      .setFlushByteSize(500)
+      .setSize(Size.LARGE)
+      .setAdaptive(true);
+    indexer.start();
+    for (int i = 0; i < 100; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+    assertThat(BulkIndexerMetrics.get().getRequests()).isGreaterThan(requestsBefore);
+    assertThat(BulkIndexerMetrics.get().getInFlightRequests()).isEqualTo(0);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
@@ -104,6 +137,20 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(removeFrom);
   }
 
+  @Test
+  public void delete_then_index_documents() throws Exception {
+    esTester.putDocuments(INDEX_TYPE_FAKE, FakeIndexDefinition.newDoc(1), FakeIndexDefinition.newDoc(2));
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch(INDEX_TYPE_FAKE).setQuery(QueryBuilders.matchAllQuery()));
+    // documents added after the call to addDeletion() are not deleted
+    indexer.add(newIndexRequest(3));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(1);
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
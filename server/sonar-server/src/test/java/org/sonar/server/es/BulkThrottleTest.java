@@ -0,0 +1,87 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.BulkThrottle.MAX_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkThrottle.MIN_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkThrottle.SUCCESSES_BEFORE_CONCURRENCY_INCREASE;
+import static org.sonar.server.es.BulkThrottle.TARGET_LATENCY_MILLIS;
+
+public class BulkThrottleTest {
+
+  private static final long FLUSH_BYTE_SIZE = 1_000_000L;
+
+  @Test
+  public void limits_do_not_change_if_not_adaptive() {
+    BulkThrottle underTest = new BulkThrottle(FLUSH_BYTE_SIZE, 2, 8, false);
+
+    underTest.onRejection();
+    underTest.onSuccess(1L);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE);
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+  }
+
+  @Test
+  public void rejection_halves_size_and_decreases_concurrency() {
+    BulkThrottle underTest = new BulkThrottle(FLUSH_BYTE_SIZE, 2, 8, true);
+
+    underTest.onRejection();
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE / 2);
+    assertThat(underTest.getConcurrency()).isEqualTo(1);
+
+    underTest.onRejection();
+    assertThat(underTest.getConcurrency()).isEqualTo(1);
+
+    for (int i = 0; i < 10; i++) {
+      underTest.onRejection();
+    }
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+  }
+
+  @Test
+  public void slow_responses_decrease_size() {
+    BulkThrottle underTest = new BulkThrottle(FLUSH_BYTE_SIZE, 2, 8, true);
+
+    underTest.onSuccess(3 * TARGET_LATENCY_MILLIS);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE * 3 / 4);
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+  }
+
+  @Test
+  public void fast_responses_increase_size_and_concurrency() {
+    BulkThrottle underTest = new BulkThrottle(FLUSH_BYTE_SIZE, 2, 3, true);
+
+    underTest.onSuccess(1L);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE + FLUSH_BYTE_SIZE / 4);
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+
+    for (int i = 1; i < 3 * SUCCESSES_BEFORE_CONCURRENCY_INCREASE; i++) {
+      underTest.onSuccess(1L);
+    }
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MAX_FLUSH_BYTE_SIZE);
+    // max concurrency
+    assertThat(underTest.getConcurrency()).isEqualTo(3);
+  }
+}
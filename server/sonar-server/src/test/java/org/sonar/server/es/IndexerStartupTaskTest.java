@@ -22,13 +22,16 @@ package org.sonar.server.es;
 import com.google.common.collect.ImmutableSet;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.mockito.Mockito;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
@@ -44,6 +47,9 @@ public class IndexerStartupTaskTest {
   @Rule
   public EsTester es = new EsTester(new FakeIndexDefinition());
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Test
   public void only_index_once() throws Exception {
     insertDocumentIntoIndex();
@@ -63,6 +69,42 @@ public class IndexerStartupTaskTest {
     verifyNoMoreInteractions(indexer2);
   }
 
+  @Test
+  public void index_empty_types_of_all_indexers() throws Exception {
+    settings.setProperty(IndexerStartupTask.PARALLELISM_PROPERTY, "2");
+    insertDocumentIntoIndex();
+    IndexType otherType = new IndexType(INDEX_TYPE_FAKE.getIndex(), "other");
+
+    StartupIndexer indexer1 = createIndexer();
+    StartupIndexer indexer2 = mock(StartupIndexer.class);
+    doReturn(ImmutableSet.of(otherType)).when(indexer2).getIndexTypes();
+    new IndexerStartupTask(es.client(), settings, indexer1, indexer2).execute();
+
+    verify(indexer1).indexOnStartup(Mockito.eq(ImmutableSet.of(INDEX_TYPE_FAKE)));
+    verify(indexer2).indexOnStartup(Mockito.eq(ImmutableSet.of(otherType)));
+
+    // both types are flagged as initialized
+    StartupIndexer indexer3 = createIndexer();
+    StartupIndexer indexer4 = mock(StartupIndexer.class);
+    doReturn(ImmutableSet.of(otherType)).when(indexer4).getIndexTypes();
+    new IndexerStartupTask(es.client(), settings, indexer3, indexer4).execute();
+
+    verify(indexer3, never()).indexOnStartup(Mockito.anySetOf(IndexType.class));
+    verify(indexer4, never()).indexOnStartup(Mockito.anySetOf(IndexType.class));
+  }
+
+  @Test
+  public void fail_if_an_indexer_fails() throws Exception {
+    insertDocumentIntoIndex();
+    StartupIndexer indexer = createIndexer();
+    doThrow(new IllegalStateException("BOOM")).when(indexer).indexOnStartup(Mockito.anySetOf(IndexType.class));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("BOOM");
+
+    emulateStartup(indexer);
+  }
+
   @Test
   public void do_not_index_if_indexes_are_disabled() throws Exception {
     settings.setProperty("sonar.internal.es.disableIndexes", "true");
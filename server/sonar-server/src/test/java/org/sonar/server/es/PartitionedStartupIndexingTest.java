@@ -0,0 +1,96 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.InOrder;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionedStartupIndexingTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private BulkIndexer bulk = mock(BulkIndexer.class);
+  private StartupIndexingCheckpoint checkpoint = mock(StartupIndexingCheckpoint.class);
+
+  @Test
+  public void index_all_projects() {
+    Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+    PartitionedStartupIndexing.forEachProject(asList("P1", "P2", "P3", "P4"), bulk, checkpoint, 3, 10, indexed::add);
+
+    assertThat(indexed).containsOnly("P1", "P2", "P3", "P4");
+  }
+
+  @Test
+  public void flush_and_save_checkpoint_after_each_batch_of_projects() {
+    Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+    PartitionedStartupIndexing.forEachProject(asList("P1", "P2", "P3"), bulk, checkpoint, 2, 2, indexed::add);
+
+    assertThat(indexed).containsOnly("P1", "P2", "P3");
+    InOrder inOrder = inOrder(bulk, checkpoint);
+    inOrder.verify(bulk).flush();
+    inOrder.verify(checkpoint).save(asList("P1", "P2"));
+    inOrder.verify(bulk).flush();
+    inOrder.verify(checkpoint).save(singletonList("P3"));
+  }
+
+  @Test
+  public void do_not_index_projects_saved_in_checkpoint() {
+    when(checkpoint.isDone("P2")).thenReturn(true);
+    Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+    PartitionedStartupIndexing.forEachProject(asList("P1", "P2", "P3"), bulk, checkpoint, 2, 10, indexed::add);
+
+    assertThat(indexed).containsOnly("P1", "P3");
+    verify(checkpoint).save(asList("P1", "P3"));
+  }
+
+  @Test
+  public void fail_if_indexing_of_a_project_fails() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("BOOM");
+
+    try {
+      PartitionedStartupIndexing.forEachProject(asList("P1", "P2"), bulk, checkpoint, 2, 10, projectUuid -> {
+        if ("P2".equals(projectUuid)) {
+          throw new IllegalStateException("BOOM");
+        }
+      });
+    } finally {
+      verify(checkpoint, never()).save(anyCollectionOf(String.class));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+
+public class StartupIndexingCheckpointTest {
+
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  @Test
+  public void no_projects_are_done_by_default() {
+    StartupIndexingCheckpoint underTest = load();
+
+    assertThat(underTest.isDone("P1")).isFalse();
+    assertThat(underTest.countDone()).isEqualTo(0);
+  }
+
+  @Test
+  public void load_saved_projects() {
+    load().save(asList("P1", "P2"));
+    StartupIndexingCheckpoint checkpoint = load();
+    checkpoint.save(singletonList("P3"));
+
+    StartupIndexingCheckpoint underTest = load();
+    assertThat(underTest.isDone("P1")).isTrue();
+    assertThat(underTest.isDone("P2")).isTrue();
+    assertThat(underTest.isDone("P3")).isTrue();
+    assertThat(underTest.isDone("P4")).isFalse();
+  }
+
+  @Test
+  public void ignore_saved_projects_if_index_has_been_recreated() {
+    dbTester.getDbClient().internalPropertiesDao().save(dbTester.getSession(), "es.startupIndexing." + INDEX_TYPE_FAKE.getType(), "another_index_uuid,P1,P2");
+    dbTester.commit();
+
+    StartupIndexingCheckpoint underTest = load();
+
+    assertThat(underTest.isDone("P1")).isFalse();
+    assertThat(underTest.countDone()).isEqualTo(0);
+  }
+
+  @Test
+  public void clear_saved_projects() {
+    load().save(asList("P1", "P2"));
+
+    load().clear();
+
+    assertThat(load().countDone()).isEqualTo(0);
+  }
+
+  private StartupIndexingCheckpoint load() {
+    return StartupIndexingCheckpoint.load(dbTester.getDbClient(), esTester.client(), INDEX_TYPE_FAKE);
+  }
+}
@@ -39,6 +39,7 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.StartupIndexingCheckpoint;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -61,7 +62,7 @@ public class IssueIndexerTest {
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
-  private IssueIndexer underTest = new IssueIndexer(esTester.client(), new IssueIteratorFactory(dbTester.getDbClient()));
+  private IssueIndexer underTest = new IssueIndexer(esTester.client(), dbTester.getDbClient(), new IssueIteratorFactory(dbTester.getDbClient()));
 
   @Test
   public void index_on_startup() {
@@ -94,6 +95,25 @@ public class IssueIndexerTest {
     verifyDoc(docs.get(0), org, project, file, rule, issue);
   }
 
+  @Test
+  public void indexOnStartup_does_not_index_again_projects_saved_in_checkpoint() {
+    OrganizationDto org = dbTester.organizations().insert();
+    RuleDto rule = dbTester.rules().insertRule();
+    ComponentDto project1 = dbTester.components().insertProject(org);
+    ComponentDto file1 = dbTester.components().insertComponent(ComponentTesting.newFileDto(project1));
+    dbTester.issues().insertIssue(IssueTesting.newDto(rule, file1, project1));
+    ComponentDto project2 = dbTester.components().insertProject(org);
+    ComponentDto file2 = dbTester.components().insertComponent(ComponentTesting.newFileDto(project2));
+    IssueDto issue2 = dbTester.issues().insertIssue(IssueTesting.newDto(rule, file2, project2));
+    // indexing of project1 was completed before the server was stopped
+    loadCheckpoint().save(asList(project1.uuid()));
+
+    underTest.indexOnStartup(null);
+
+    verifyIssueKeys(issue2.getKey());
+    assertThat(loadCheckpoint().isDone(project1.uuid())).isFalse();
+  }
+
   @Test
   public void index_loads_and_indexes_issues_with_specified_keys() {
     OrganizationDto org = dbTester.organizations().insert();
@@ -243,12 +263,16 @@ public class IssueIndexerTest {
     issueDoc.setKey("key");
     issueDoc.setTechnicalUpdateDate(new Date());
     issueDoc.setProjectUuid("non-exitsing-parent");
-    new IssueIndexer(esTester.client(), new IssueIteratorFactory(dbTester.getDbClient()))
+    new IssueIndexer(esTester.client(), dbTester.getDbClient(), new IssueIteratorFactory(dbTester.getDbClient()))
       .index(asList(issueDoc).iterator());
 
     assertThat(esTester.countDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE)).isEqualTo(1L);
   }
 
+  private StartupIndexingCheckpoint loadCheckpoint() {
+    return StartupIndexingCheckpoint.load(dbTester.getDbClient(), esTester.client(), IssueIndexDefinition.INDEX_TYPE_ISSUE);
+  }
+
   private void addIssue(String projectUuid, String issueKey) throws Exception {
     esTester.putDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE,
       newDoc().setKey(issueKey).setProjectUuid(projectUuid));
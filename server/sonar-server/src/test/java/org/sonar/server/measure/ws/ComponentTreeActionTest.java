@@ -100,7 +100,7 @@ public class ComponentTreeActionTest {
 
   private WsActionTester ws = new WsActionTester(
     new ComponentTreeAction(
-      new ComponentTreeDataLoader(dbClient, new ComponentFinder(dbClient), userSession, resourceTypes),
+      new ComponentTreeDataLoader(dbClient, new ComponentFinder(dbClient), userSession, resourceTypes, new ComponentTreeCache()),
       i18n, resourceTypes));
 
   @Before
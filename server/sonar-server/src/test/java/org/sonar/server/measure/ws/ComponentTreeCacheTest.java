@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.ws;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.component.ComponentTreeQuery;
+import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTreeQuery.Strategy.LEAVES;
+
+public class ComponentTreeCacheTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private AtomicInteger loads = new AtomicInteger();
+  private ComponentTreeCache underTest = new ComponentTreeCache();
+
+  @Test
+  public void load_components_once_per_analysis() {
+    ComponentTreeQuery query = ComponentTreeQuery.builder().setBaseUuid("P1").setStrategy(LEAVES).build();
+    ComponentTreeWsRequest wsRequest = new ComponentTreeWsRequest().setSort(asList("name")).setAsc(true);
+
+    assertThat(underTest.getComponentUuids("A1", query, wsRequest, null, this::load)).containsExactly("F1", "F2");
+    assertThat(underTest.getComponentUuids("A1", query, wsRequest.setPage(2), null, this::load)).containsExactly("F1", "F2");
+    assertThat(loads.get()).isEqualTo(1);
+
+    underTest.getComponentUuids("A2", query, wsRequest, null, this::load);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void load_components_again_if_sort_or_filter_change() {
+    ComponentTreeQuery query = ComponentTreeQuery.builder().setBaseUuid("P1").setStrategy(LEAVES).build();
+
+    underTest.getComponentUuids("A1", query, new ComponentTreeWsRequest().setSort(asList("name")).setAsc(true), null, this::load);
+    underTest.getComponentUuids("A1", query, new ComponentTreeWsRequest().setSort(asList("name")).setAsc(false), null, this::load);
+    underTest.getComponentUuids("A1", query, new ComponentTreeWsRequest().setSort(asList("metric")).setMetricSort("ncloc").setAsc(true), null, this::load);
+    underTest.getComponentUuids("A1", query, new ComponentTreeWsRequest().setSort(asList("name")).setAsc(true), 10L, this::load);
+    ComponentTreeQuery otherQuery = ComponentTreeQuery.builder().setBaseUuid("P1").setStrategy(LEAVES).setNameOrKeyQuery("Foo").build();
+    underTest.getComponentUuids("A1", otherQuery, new ComponentTreeWsRequest().setSort(asList("name")).setAsc(true), null, this::load);
+
+    assertThat(loads.get()).isEqualTo(5);
+  }
+
+  @Test
+  public void propagate_failure_of_loader() {
+    ComponentTreeQuery query = ComponentTreeQuery.builder().setBaseUuid("P1").setStrategy(LEAVES).build();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Boom");
+
+    underTest.getComponentUuids("A1", query, new ComponentTreeWsRequest(), null, () -> {
+      throw new IllegalStateException("Boom");
+    });
+  }
+
+  private List<String> load() {
+    loads.incrementAndGet();
+    return asList("F1", "F2");
+  }
+}
@@ -72,6 +72,7 @@ public class ServerUserSessionTest {
   private UserDto userDto = newUserDto().setLogin(LOGIN);
   private TestOrganizationFlags organizationFlags = TestOrganizationFlags.standalone();
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
+  private UserPermissionsCache permissionsCache = new UserPermissionsCache();
   private OrganizationDto organization;
   private ComponentDto project;
 
@@ -253,6 +254,27 @@ public class ServerUserSessionTest {
     assertThat(session.hasPermission(SCAN, org.getUuid())).isFalse();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_of_same_user_until_cache_is_invalidated() {
+    OrganizationDto org = db.organizations().insert();
+    db.users().insertPermissionOnUser(org, userDto, PROVISIONING);
+    db.users().insertProjectPermissionOnUser(userDto, UserRole.ADMIN, project);
+
+    // feed the cache
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, org.getUuid())).isTrue();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.ADMIN, project)).isTrue();
+    assertThat(newAnonymousSession().hasComponentPermission(UserRole.ADMIN, project)).isFalse();
+
+    db.users().deletePermissionFromUser(org, userDto, PROVISION_PROJECTS);
+    db.users().deletePermissionFromUser(project, userDto, UserRole.ADMIN);
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, org.getUuid())).isTrue();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.ADMIN, project)).isTrue();
+
+    permissionsCache.invalidateAll();
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, org.getUuid())).isFalse();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.ADMIN, project)).isFalse();
+  }
+
   @Test
   public void test_hasComponentPermission_with_anonymous_user() {
     ServerUserSession underTest = newAnonymousSession();
@@ -406,7 +428,7 @@ public class ServerUserSessionTest {
   }
 
   private ServerUserSession newUserSession(@Nullable UserDto userDto) {
-    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userDto);
+    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, permissionsCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
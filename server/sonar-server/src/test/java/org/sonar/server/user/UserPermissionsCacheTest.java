@@ -0,0 +1,109 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.permission.OrganizationPermission.ADMINISTER;
+import static org.sonar.db.permission.OrganizationPermission.SCAN;
+
+public class UserPermissionsCacheTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private AtomicLong nanoTime = new AtomicLong();
+  private UserPermissionsCache underTest = new UserPermissionsCache(new Ticker() {
+    @Override
+    public long read() {
+      return nanoTime.get();
+    }
+  });
+
+  @Test
+  public void load_permissions_once_per_user() {
+    assertThat(underTest.getProjectPermissions(10, "P1", () -> singleton("user"))).containsOnly("user");
+    assertThat(underTest.getProjectPermissions(10, "P1", () -> singleton("admin"))).containsOnly("user");
+    assertThat(underTest.getProjectPermissions(11, "P1", () -> singleton("admin"))).containsOnly("admin");
+    assertThat(underTest.getProjectPermissions(null, "P1", () -> singleton("codeviewer"))).containsOnly("codeviewer");
+    assertThat(underTest.getOrganizationPermissions(10, "O1", () -> singleton(SCAN))).containsOnly(SCAN);
+    assertThat(underTest.getOrganizationPermissions(10, "O1", () -> singleton(ADMINISTER))).containsOnly(SCAN);
+
+    assertThat(underTest.getHitCount()).isEqualTo(2);
+    assertThat(underTest.getMissCount()).isEqualTo(4);
+    assertThat(underTest.getHitRate()).isEqualTo(2.0 / 6.0);
+    assertThat(underTest.getSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void permissions_expire_after_one_minute() {
+    underTest.getProjectPermissions(10, "P1", () -> singleton("user"));
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(59));
+    assertThat(underTest.getProjectPermissions(10, "P1", () -> singleton("admin"))).containsOnly("user");
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThat(underTest.getProjectPermissions(10, "P1", () -> singleton("admin"))).containsOnly("admin");
+    assertThat(underTest.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidateProjects_removes_permissions_of_all_users_on_given_projects() {
+    underTest.getProjectPermissions(10, "P1", () -> singleton("user"));
+    underTest.getProjectPermissions(null, "P1", () -> singleton("user"));
+    underTest.getProjectPermissions(10, "P2", () -> singleton("user"));
+    underTest.getOrganizationPermissions(10, "O1", () -> singleton(SCAN));
+
+    underTest.invalidateProjects(singletonList("P1"));
+
+    assertThat(underTest.getSize()).isEqualTo(2);
+    assertThat(underTest.getProjectPermissions(10, "P1", () -> singleton("admin"))).containsOnly("admin");
+    assertThat(underTest.getProjectPermissions(10, "P2", () -> singleton("admin"))).containsOnly("user");
+  }
+
+  @Test
+  public void invalidateAll_removes_all_permissions() {
+    underTest.getProjectPermissions(10, "P1", () -> singleton("user"));
+    underTest.getOrganizationPermissions(null, "O1", () -> singleton(SCAN));
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.getSize()).isEqualTo(0);
+    assertThat(underTest.getOrganizationPermissions(null, "O1", () -> singleton(ADMINISTER))).containsOnly(ADMINISTER);
+  }
+
+  @Test
+  public void propagate_failure_of_loader() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Boom");
+
+    underTest.getProjectPermissions(10, "P1", () -> {
+      throw new IllegalStateException("Boom");
+    });
+  }
+}
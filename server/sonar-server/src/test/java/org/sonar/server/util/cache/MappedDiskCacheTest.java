@@ -0,0 +1,167 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedDiskCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read() throws Exception {
+    MappedDiskCache<String> cache = newCache();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar");
+    }
+  }
+
+  @Test
+  public void append_with_multiple_appenders() throws Exception {
+    MappedDiskCache<String> cache = newCache();
+    cache.newAppender().append("foo").close();
+    cache.newAppender().append("bar").close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar");
+    }
+  }
+
+  @Test
+  public void traverse_by_index_key() throws Exception {
+    MappedDiskCache<String> cache = newCache();
+    cache.newAppender()
+      .append("a1")
+      .append("b1")
+      .append("a2")
+      .append("none")
+      .close();
+    cache.newAppender()
+      .append("b2")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).containsExactly("a1", "a2");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("b")) {
+      assertThat(traverse).containsExactly("b1", "b2");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("c")) {
+      assertThat(traverse).isEmpty();
+    }
+  }
+
+  @Test
+  public void do_not_index_objects_if_no_index_key_function() throws Exception {
+    MappedDiskCache<String> cache = new MappedDiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec());
+    cache.newAppender()
+      .append("a1")
+      .append("b1")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a1", "b1");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).isEmpty();
+    }
+  }
+
+  @Test
+  public void write_and_read_records_bigger_than_write_buffer() throws Exception {
+    String big = StringUtils.repeat("x", 3 * 1024 * 1024);
+    MappedDiskCache<String> cache = newCache();
+    cache.newAppender()
+      .append("a1")
+      .append("a" + big)
+      .append("b1")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a1", "a" + big, "b1");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("b")) {
+      assertThat(traverse).containsExactly("b1");
+    }
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new MappedDiskCache<>(temp.newFolder(), System2.INSTANCE, new StringCodec(), MappedDiskCacheTest::indexKey);
+  }
+
+  @Test
+  public void fail_to_encode() throws Exception {
+    MappedDiskCache<String> cache = newCache();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    cache.newAppender().append("fail");
+  }
+
+  private MappedDiskCache<String> newCache() throws IOException {
+    return new MappedDiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), MappedDiskCacheTest::indexKey);
+  }
+
+  private static String indexKey(String s) {
+    return s.startsWith("none") ? null : s.substring(0, 1);
+  }
+
+  private static class StringCodec implements ObjectCodec<String> {
+    @Override
+    public void write(String object, CodedOutputStream output) throws IOException {
+      if ("fail".equals(object)) {
+        throw new IOException("expected error");
+      }
+      output.writeStringNoTag(object);
+    }
+
+    @Override
+    public String read(CodedInputStream input) throws IOException {
+      return input.readString();
+    }
+  }
+}
@@ -19,15 +19,23 @@
  */
 package org.sonar.core.issue.tracking;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import org.sonar.api.rule.RuleKey;
 
 class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
 
@@ -75,25 +83,115 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       }
     }
 
-    // Check if remaining number of lines exceeds threshold. It avoids processing too many combinations.
-    if (basesByLine.keySet().size() * rawsByLine.keySet().size() >= 250_000) {
-      return;
+    LineHashSequence baseLineHashes = baseInput.getLineHashSequence();
+    LineHashSequence rawLineHashes = rawInput.getLineHashSequence();
+    for (LinePair linePair : linePairsInCommonBlocks(baseLineHashes, basesByLine.keySet(), rawLineHashes, rawsByLine.keySet())) {
+      // High probability that baseLine has been moved to rawLine, so we can map all issues on baseLine to all issues on rawLine
+      map(rawsByLine.get(linePair.rawLine), basesByLine.get(linePair.baseLine), tracking);
+    }
+
+    // Remaining issues on lines which are not in a common block are matched with the issues of the nearest lines
+    mapNearestLines(rawsByLine, basesByLine, tracking);
+  }
+
+  /**
+   * Pairs of lines which are in a common block of lines, sorted by decreasing length of block then by increasing distance
+   * between lines. Lines can be in a common block only if they have the same hash, so that only these pairs are compared.
+   * The length of each block is computed only once, whatever the number of pairs of lines in the block.
+   */
+  private static List<LinePair> linePairsInCommonBlocks(LineHashSequence baseLineHashes, Collection<Integer> baseLines,
+    LineHashSequence rawLineHashes, Collection<Integer> rawLines) {
+    Multimap<String, Integer> rawLinesByHash = ArrayListMultimap.create();
+    for (Integer rawLine : rawLines) {
+      rawLinesByHash.put(rawLineHashes.getHashForLine(rawLine), rawLine);
     }
 
-    List<LinePair> possibleLinePairs = Lists.newArrayList();
-    for (Integer baseLine : basesByLine.keySet()) {
-      for (Integer rawLine : rawsByLine.keySet()) {
-        int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
-        possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
+    CommonBlocks commonBlocks = new CommonBlocks(baseLineHashes, rawLineHashes);
+    List<LinePair> linePairs = new ArrayList<>();
+    for (Integer baseLine : baseLines) {
+      for (Integer rawLine : rawLinesByHash.get(baseLineHashes.getHashForLine(baseLine))) {
+        int weight = commonBlocks.lengthOfBlock(baseLine, rawLine);
+        linePairs.add(new LinePair(baseLine, rawLine, weight));
       }
     }
-    Collections.sort(possibleLinePairs, LinePairComparator.INSTANCE);
-    for (LinePair linePair : possibleLinePairs) {
-      // High probability that baseLine has been moved to rawLine, so we can map all issues on baseLine to all issues on rawLine
-      map(rawsByLine.get(linePair.rawLine), basesByLine.get(linePair.baseLine), tracking);
+    Collections.sort(linePairs, LinePairComparator.INSTANCE);
+    return linePairs;
+  }
+
+  /**
+   * Maps the issues of each rule to the issues of the same rule on the nearest line, nearest lines first.
+   */
+  private void mapNearestLines(Multimap<Integer, RAW> rawsByLine, Multimap<Integer, BASE> basesByLine, Tracking<RAW, BASE> tracking) {
+    Map<RuleKey, NavigableMap<Integer, Deque<BASE>>> basesByRule = new HashMap<>();
+    for (Map.Entry<Integer, BASE> entry : basesByLine.entries()) {
+      BASE base = entry.getValue();
+      if (tracking.containsUnmatchedBase(base)) {
+        basesByRule.computeIfAbsent(base.getRuleKey(), k -> new TreeMap<>())
+          .computeIfAbsent(entry.getKey(), k -> new ArrayDeque<>())
+          .add(base);
+      }
+    }
+    Map<RuleKey, NavigableMap<Integer, Deque<RAW>>> rawsByRule = new HashMap<>();
+    for (Map.Entry<Integer, RAW> entry : rawsByLine.entries()) {
+      RAW raw = entry.getValue();
+      if (tracking.baseFor(raw) == null && basesByRule.containsKey(raw.getRuleKey())) {
+        rawsByRule.computeIfAbsent(raw.getRuleKey(), k -> new TreeMap<>())
+          .computeIfAbsent(entry.getKey(), k -> new ArrayDeque<>())
+          .add(raw);
+      }
+    }
+
+    for (Map.Entry<RuleKey, NavigableMap<Integer, Deque<RAW>>> entry : rawsByRule.entrySet()) {
+      mapNearestLines(entry.getValue(), basesByRule.get(entry.getKey()), tracking);
     }
   }
 
+  /**
+   * Issues must all have the same rule. Each pair of lines is taken from a queue sorted by distance, which contains
+   * the nearest base line of each raw line. The nearest base line of a raw line is searched again when the issues of
+   * the base line have all been matched.
+   */
+  private void mapNearestLines(NavigableMap<Integer, Deque<RAW>> rawsByLine, NavigableMap<Integer, Deque<BASE>> basesByLine,
+    Tracking<RAW, BASE> tracking) {
+    PriorityQueue<LinePair> queue = new PriorityQueue<>(rawsByLine.size(), LinePairComparator.INSTANCE);
+    for (Integer rawLine : rawsByLine.keySet()) {
+      queue.add(nearestLinePair(rawLine, basesByLine));
+    }
+
+    while (!queue.isEmpty() && !basesByLine.isEmpty()) {
+      LinePair linePair = queue.poll();
+      Deque<RAW> raws = rawsByLine.get(linePair.rawLine);
+      Deque<BASE> bases = basesByLine.get(linePair.baseLine);
+      if (bases != null) {
+        Iterator<RAW> rawIterator = raws.iterator();
+        while (rawIterator.hasNext() && !bases.isEmpty()) {
+          tracking.match(rawIterator.next(), bases.poll());
+          rawIterator.remove();
+        }
+        if (bases.isEmpty()) {
+          basesByLine.remove(linePair.baseLine);
+        }
+      }
+      if (!raws.isEmpty() && !basesByLine.isEmpty()) {
+        queue.add(nearestLinePair(linePair.rawLine, basesByLine));
+      }
+    }
+  }
+
+  private static LinePair nearestLinePair(int rawLine, NavigableMap<Integer, ?> basesByLine) {
+    Integer floor = basesByLine.floorKey(rawLine);
+    Integer ceiling = basesByLine.ceilingKey(rawLine);
+    int baseLine;
+    if (floor == null) {
+      baseLine = ceiling;
+    } else if (ceiling == null || rawLine - floor <= ceiling - rawLine) {
+      baseLine = floor;
+    } else {
+      baseLine = ceiling;
+    }
+    return new LinePair(baseLine, rawLine, 0);
+  }
+
   /**
    * @param startLineA number of line from first version of text (numbering starts from 1)
    * @param startLineB number of line from second version of text (numbering starts from 1)
@@ -143,6 +241,48 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     return result;
   }
 
+  /**
+   * Maximal blocks of lines in common, found so far. A block is a sequence of lines with the same hashes, so it is
+   * located on a diagonal of the matrix of lines (base lines x raw lines).
+   */
+  private static class CommonBlocks {
+    private final LineHashSequence baseLineHashes;
+    private final LineHashSequence rawLineHashes;
+    // first base line -> last base line of blocks, by diagonal (raw line - base line)
+    private final Map<Integer, NavigableMap<Integer, Integer>> blocksByDiagonal = new HashMap<>();
+
+    CommonBlocks(LineHashSequence baseLineHashes, LineHashSequence rawLineHashes) {
+      this.baseLineHashes = baseLineHashes;
+      this.rawLineHashes = rawLineHashes;
+    }
+
+    /**
+     * Same as {@link #lengthOfMaximalBlock(LineHashSequence, int, LineHashSequence, int)}, for lines with the same hash
+     */
+    int lengthOfBlock(int baseLine, int rawLine) {
+      int diagonal = rawLine - baseLine;
+      NavigableMap<Integer, Integer> blocks = blocksByDiagonal.computeIfAbsent(diagonal, k -> new TreeMap<>());
+      Map.Entry<Integer, Integer> block = blocks.floorEntry(baseLine);
+      if (block == null || block.getValue() < baseLine) {
+        int first = baseLine;
+        while (first > 1 && first + diagonal > 1 && sameHash(first - 1, diagonal)) {
+          first--;
+        }
+        int last = baseLine;
+        while (last < baseLineHashes.length() && last + diagonal < rawLineHashes.length() && sameHash(last + 1, diagonal)) {
+          last++;
+        }
+        blocks.put(first, last);
+        return last - first + 1;
+      }
+      return block.getValue() - block.getKey() + 1;
+    }
+
+    private boolean sameHash(int baseLine, int diagonal) {
+      return baseLineHashes.getHashForLine(baseLine).equals(rawLineHashes.getHashForLine(baseLine + diagonal));
+    }
+  }
+
   private static class LinePair {
     int baseLine;
     int rawLine;
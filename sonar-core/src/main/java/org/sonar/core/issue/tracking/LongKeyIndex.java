@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Hash index of positions (0 to capacity - 1) by long keys, without boxing. Positions with the same key are
+ * returned in the order they have been added. Open addressing with linear probing.
+ * <p/>
+ * Can be reused after {@link #clear()}.
+ */
+final class LongKeyIndex {
+  private static final int NONE = -1;
+  // marks a slot which is used by a key but has no more positions
+  private static final int EXHAUSTED = -2;
+
+  private final long[] keys;
+  // first and last positions of each slot of the table
+  private final int[] heads;
+  private final int[] tails;
+  // next position with the same key, indexed by position
+  private final int[] next;
+  private final int mask;
+
+  LongKeyIndex(int capacity) {
+    int tableSize = Integer.highestOneBit(Math.max(1, capacity)) * 4;
+    this.keys = new long[tableSize];
+    this.heads = new int[tableSize];
+    this.tails = new int[tableSize];
+    this.next = new int[Math.max(1, capacity)];
+    this.mask = tableSize - 1;
+    clear();
+  }
+
+  void clear() {
+    Arrays.fill(heads, NONE);
+  }
+
+  void add(long key, int position) {
+    int slot = slot(key);
+    next[position] = NONE;
+    if (heads[slot] < 0) {
+      keys[slot] = key;
+      heads[slot] = position;
+    } else {
+      next[tails[slot]] = position;
+    }
+    tails[slot] = position;
+  }
+
+  /**
+   * Removes and returns the first position of the key which is accepted by the predicate. Positions which are
+   * skipped because they are not accepted are removed as well, so they must not be accepted later.
+   *
+   * @return the position, or -1 if none
+   */
+  int pollFirst(long key, IntPredicate accepted) {
+    int slot = slot(key);
+    int position = heads[slot];
+    while (position >= 0 && !accepted.test(position)) {
+      position = next[position];
+    }
+    if (position < 0) {
+      if (heads[slot] != NONE) {
+        heads[slot] = EXHAUSTED;
+      }
+      return NONE;
+    }
+    heads[slot] = next[position] == NONE ? EXHAUSTED : next[position];
+    return position;
+  }
+
+  private int slot(long key) {
+    int slot = hash(key) & mask;
+    while (heads[slot] != NONE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
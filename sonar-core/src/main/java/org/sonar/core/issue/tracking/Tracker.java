@@ -19,15 +19,14 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
-import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
+import org.sonar.api.batch.ScannerSide;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +34,29 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+    List<RAW> raws = new ArrayList<>(tracking.getRaws());
+    List<BASE> bases = new ArrayList<>(tracking.getBases());
+    SearchKeys keys = new SearchKeys(raws, bases);
+    LongKeyIndex baseIndex = new LongKeyIndex(bases.size());
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, baseIndex, keys.ruleAndLineHash, keys.line);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, baseIndex, keys.ruleAndLineHash, keys.message);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, baseIndex, keys.ruleAndMessage, keys.line);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, baseIndex, keys.ruleAndLineHash, null);
 
     return tracking;
   }
@@ -61,189 +67,97 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  /**
+   * Matches the unmatched issues which have the same values of the two keys. Values are the ids of
+   * {@link SearchKeys}, indexed by the position of raw issues, then by the position of base issues.
+   * Second key is ignored if {@code null}.
+   */
+  private void match(Tracking<RAW, BASE> tracking, List<RAW> raws, List<BASE> bases, LongKeyIndex baseIndex, int[] key1, @Nullable int[] key2) {
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
+    int rawCount = raws.size();
+    baseIndex.clear();
+    for (int i = 0; i < bases.size(); i++) {
+      if (tracking.containsUnmatchedBase(bases.get(i))) {
+        baseIndex.add(searchKey(key1, key2, rawCount + i), i);
+      }
     }
 
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
+    for (int i = 0; i < rawCount; i++) {
+      RAW raw = raws.get(i);
+      if (tracking.baseFor(raw) == null) {
         // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
         // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
-      }
-    }
-  }
-
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+        int match = baseIndex.pollFirst(searchKey(key1, key2, i), position -> tracking.containsUnmatchedBase(bases.get(position)));
+        if (match >= 0) {
+          tracking.match(raw, bases.get(match));
+        }
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
     }
   }
 
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
+  private static long searchKey(int[] key1, @Nullable int[] key2, int index) {
+    return ((long) key1[index] << 32) | (key2 == null ? 0L : (key2[index] & 0xFFFFFFFFL));
   }
 
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Fields of issues which are compared by the matching passes, computed once for all the passes. Values are
+   * interned as ints, so that issues are compared by primitive keys. Arrays are indexed by the position of raw
+   * issues, followed by the position of base issues.
+   */
+  private static final class SearchKeys {
+    private static final int NO_LINE = Integer.MIN_VALUE;
+
+    private final int[] line;
+    private final int[] message;
+    private final int[] ruleAndLineHash;
+    private final int[] ruleAndMessage;
+    private final Interner<Object> values = new Interner<>();
+    private final Interner<Long> pairs = new Interner<>();
+
+    private SearchKeys(List<? extends Trackable> raws, List<? extends Trackable> bases) {
+      int size = raws.size() + bases.size();
+      this.line = new int[size];
+      this.message = new int[size];
+      this.ruleAndLineHash = new int[size];
+      this.ruleAndMessage = new int[size];
+
+      addAll(raws, 0);
+      addAll(bases, raws.size());
+    }
+
+    private void addAll(List<? extends Trackable> trackables, int offset) {
+      int index = offset;
+      for (Trackable trackable : trackables) {
+        Integer trackableLine = trackable.getLine();
+        int ruleId = values.intern(trackable.getRuleKey());
+        int lineHashId = values.intern(StringUtils.defaultString(trackable.getLineHash(), ""));
+        int messageId = values.intern(trackable.getMessage());
+        line[index] = trackableLine == null ? NO_LINE : trackableLine;
+        message[index] = messageId;
+        ruleAndLineHash[index] = pairs.intern(pair(ruleId, lineHashId));
+        ruleAndMessage[index] = pairs.intern(pair(ruleId, messageId));
+        index++;
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
     }
-  }
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
+    private static long pair(int id1, int id2) {
+      return ((long) id1 << 32) | (id2 & 0xFFFFFFFFL);
     }
   }
 
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
+  private static final class Interner<T> {
+    private final Map<T, Integer> ids = new HashMap<>();
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    int intern(@Nullable T value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = ids.size();
+        ids.put(value, id);
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+      return id;
     }
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongKeyIndexTest {
+
+  private LongKeyIndex underTest = new LongKeyIndex(10);
+
+  @Test
+  public void pollFirst_returns_positions_of_key_in_order_of_addition() {
+    underTest.add(42L, 3);
+    underTest.add(Long.MAX_VALUE, 0);
+    underTest.add(42L, 1);
+    underTest.add(42L, 2);
+
+    assertThat(underTest.pollFirst(42L, position -> true)).isEqualTo(3);
+    assertThat(underTest.pollFirst(42L, position -> true)).isEqualTo(1);
+    assertThat(underTest.pollFirst(42L, position -> true)).isEqualTo(2);
+    assertThat(underTest.pollFirst(42L, position -> true)).isEqualTo(-1);
+    assertThat(underTest.pollFirst(Long.MAX_VALUE, position -> true)).isEqualTo(0);
+  }
+
+  @Test
+  public void pollFirst_skips_positions_which_are_not_accepted() {
+    underTest.add(1L, 0);
+    underTest.add(1L, 1);
+    underTest.add(1L, 2);
+
+    assertThat(underTest.pollFirst(1L, position -> position == 2)).isEqualTo(2);
+    assertThat(underTest.pollFirst(1L, position -> true)).isEqualTo(-1);
+  }
+
+  @Test
+  public void pollFirst_returns_minus_one_if_key_is_unknown() {
+    underTest.add(1L, 0);
+
+    assertThat(underTest.pollFirst(2L, position -> true)).isEqualTo(-1);
+  }
+
+  @Test
+  public void keys_with_same_hash_slot_are_kept_apart() {
+    LongKeyIndex index = new LongKeyIndex(100);
+    for (int i = 0; i < 100; i++) {
+      index.add(i * 1024L, i);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(index.pollFirst(i * 1024L, position -> true)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void clear_removes_all_keys() {
+    underTest.add(1L, 0);
+    underTest.clear();
+
+    assertThat(underTest.pollFirst(1L, position -> true)).isEqualTo(-1);
+
+    underTest.add(1L, 5);
+    assertThat(underTest.pollFirst(1L, position -> true)).isEqualTo(5);
+  }
+}
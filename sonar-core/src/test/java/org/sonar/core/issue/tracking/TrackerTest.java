@@ -381,6 +381,73 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw1)).isEqualTo(base1);
   }
 
+  /**
+   * Lines with issues, and the blocks around them, all have the same hash, so that each raw issue can be paired
+   * with each base issue. Only the lengths of common blocks make the difference.
+   */
+  @Test
+  public void recognize_blocks_in_big_files() {
+    int methods = 600;
+    List<String> baseLines = new ArrayList<>();
+    List<String> rawLines = new ArrayList<>();
+    rawLines.add("// new header");
+    for (int i = 1; i <= methods; i++) {
+      baseLines.addAll(method(i));
+      // methods are in reverse order
+      rawLines.addAll(method(methods - i + 1));
+    }
+    FakeInput baseInput = FakeInput.createForSourceLines(baseLines.toArray(new String[0]));
+    FakeInput rawInput = FakeInput.createForSourceLines(rawLines.toArray(new String[0]));
+    List<Issue> bases = new ArrayList<>();
+    List<Issue> raws = new ArrayList<>();
+    for (int i = 1; i <= methods; i++) {
+      bases.add(baseInput.createIssueOnLine(9 * i - 4, RULE_SYSTEM_PRINT, "Old message"));
+      raws.add(rawInput.createIssueOnLine(9 * i - 3, RULE_SYSTEM_PRINT, "New message"));
+    }
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    for (int i = 0; i < methods; i++) {
+      assertThat(tracking.baseFor(raws.get(i))).isSameAs(bases.get(methods - i - 1));
+    }
+  }
+
+  private static List<String> method(int index) {
+    return asList(
+      "int method" + index + "() {",
+      "  int i = " + index + ";",
+      "  // comment",
+      "  // comment",
+      "  System.out.println(i);",
+      "  // comment",
+      "  // comment",
+      "  return i + " + index + ";",
+      "}");
+  }
+
+  /**
+   * Issues which are not in a common block are matched with issues of the same rule on the nearest lines
+   */
+  @Test
+  public void match_issues_on_nearest_lines_when_no_common_block() {
+    FakeInput baseInput = new FakeInput("H1", "H2", "H3", "H4", "H5", "H6", "H7", "H8", "H9", "H10");
+    Issue base1 = baseInput.createIssueOnLine(2, RULE_SYSTEM_PRINT, "msg1");
+    Issue base2 = baseInput.createIssueOnLine(8, RULE_SYSTEM_PRINT, "msg2");
+    Issue base3 = baseInput.createIssueOnLine(9, RULE_USE_DIAMOND, "msg3");
+
+    FakeInput rawInput = new FakeInput("N1", "N2", "N3", "N4", "N5", "N6", "N7", "N8", "N9", "N10");
+    Issue raw1 = rawInput.createIssueOnLine(7, RULE_SYSTEM_PRINT, "other1");
+    Issue raw2 = rawInput.createIssueOnLine(3, RULE_SYSTEM_PRINT, "other2");
+    Issue raw3 = rawInput.createIssueOnLine(2, RULE_UNUSED_LOCAL_VARIABLE, "other3");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    assertThat(tracking.baseFor(raw1)).isSameAs(base2);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw3)).isNull();
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base3);
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
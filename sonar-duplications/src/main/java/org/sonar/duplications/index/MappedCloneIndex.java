@@ -0,0 +1,439 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+/**
+ * Provides an index which stores blocks in memory-mapped files rather than in the heap, for projects which
+ * have too many blocks for {@link PackedMemoryCloneIndex}.
+ * <p>
+ * Blocks are stored as records of ints, like in {@link PackedMemoryCloneIndex}. Before the first query, records are sorted
+ * by hash with an external merge sort: runs of {@link #RUN_BLOCKS} blocks are sorted in the heap, then merged into a new file.
+ * Blocks are grouped by resource in a second file, by counting sort. Only data related to resources are kept in the heap.
+ * </p>
+ * <p>
+ * Queries can be executed concurrently, as long as no block is inserted at the same time.
+ * </p>
+ */
+public class MappedCloneIndex extends AbstractCloneIndex implements Closeable {
+
+  /**
+   * Ints of a block, in addition to the hash: resource, index in file, first line, last line, start unit and end unit.
+   */
+  private static final int BLOCK_INTS = 6;
+  private static final int RUN_BLOCKS = 1 << 18;
+  private final File directory;
+  private final int hashInts;
+  private final int blockInts;
+  private final int runBlocks;
+
+  private MappedIntArray blockData;
+  /**
+   * Positions of blocks in {@link #blockData}, grouped by resource.
+   */
+  private MappedIntArray blocksByResource;
+  private int size = 0;
+  private volatile boolean sorted = false;
+
+  private final List<String> resourceIds = new ArrayList<>();
+  private final Map<String, Integer> resourceOrdinals = new HashMap<>();
+  /**
+   * Ordinals of resources, sorted by resource id.
+   */
+  private int[] sortedResourceOrdinals;
+  /**
+   * Index in {@link #sortedResourceOrdinals} by resource ordinal.
+   */
+  private int[] resourceRanks;
+  /**
+   * Start of the blocks of each resource in {@link #blocksByResource}, by rank of resource.
+   */
+  private int[] resourceStarts;
+
+  /**
+   * @param directory the existing directory where the files of the index are created
+   */
+  public MappedCloneIndex(File directory) {
+    this(directory, 8);
+  }
+
+  /**
+   * @param directory the existing directory where the files of the index are created
+   * @param hashBytes size of hash in bytes
+   */
+  public MappedCloneIndex(File directory, int hashBytes) {
+    this(directory, hashBytes, RUN_BLOCKS);
+  }
+
+  MappedCloneIndex(File directory, int hashBytes, int runBlocks) {
+    this.runBlocks = runBlocks;
+    this.directory = directory;
+    this.hashInts = hashBytes / 4;
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.blockData = new MappedIntArray(newFile());
+  }
+
+  private File newFile() {
+    try {
+      return File.createTempFile("clone-index", ".bin", directory);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create file in " + directory, e);
+    }
+  }
+
+  @Override
+  public void insert(Block block) {
+    int[] hash = block.getBlockHash().toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    if ((long) (size + 1) * blockInts > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too many blocks in index: " + size);
+    }
+    sorted = false;
+
+    String resourceId = block.getResourceId();
+    Integer ordinal = resourceOrdinals.get(resourceId);
+    if (ordinal == null) {
+      ordinal = resourceIds.size();
+      resourceIds.add(resourceId);
+      resourceOrdinals.put(resourceId, ordinal);
+    }
+
+    for (int h : hash) {
+      blockData.add(h);
+    }
+    blockData.add(ordinal);
+    blockData.add(block.getIndexInFile());
+    blockData.add(block.getStartLine());
+    blockData.add(block.getEndLine());
+    blockData.add(block.getStartUnit());
+    blockData.add(block.getEndUnit());
+    size++;
+  }
+
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    ensureSorted();
+
+    int[] hash = sequenceHash.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(blockData, mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+
+    List<Block> result = new ArrayList<>();
+    Block.Builder blockBuilder = Block.builder();
+    for (int index = lower; index < size && compareHash(blockData, index, hash) == 0; index++) {
+      result.add(createBlock(blockBuilder, index, sequenceHash));
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    ensureSorted();
+
+    Integer ordinal = resourceOrdinals.get(resourceId);
+    if (ordinal == null) {
+      return Collections.emptyList();
+    }
+    return getBlocksOfResource(resourceRanks[ordinal], Block.builder());
+  }
+
+  private List<Block> getBlocksOfResource(int rank, Block.Builder blockBuilder) {
+    List<Block> result = new ArrayList<>(resourceStarts[rank + 1] - resourceStarts[rank]);
+    for (int i = resourceStarts[rank]; i < resourceStarts[rank + 1]; i++) {
+      result.add(createBlock(blockBuilder, blocksByResource.get(i), null));
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    ensureSorted();
+    return new ResourceIterator();
+  }
+
+  @Override
+  public int noResources() {
+    ensureSorted();
+    return resourceIds.size();
+  }
+
+  private Block createBlock(Block.Builder blockBuilder, int index, @Nullable ByteArray byteHash) {
+    int offset = index * blockInts;
+    ByteArray blockHash;
+    if (byteHash == null) {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = blockData.get(offset++);
+      }
+      blockHash = new ByteArray(hash);
+    } else {
+      blockHash = byteHash;
+      offset += hashInts;
+    }
+
+    return blockBuilder
+      .setResourceId(resourceIds.get(blockData.get(offset)))
+      .setBlockHash(blockHash)
+      .setIndexInFile(blockData.get(offset + 1))
+      .setLines(blockData.get(offset + 2), blockData.get(offset + 3))
+      .setUnit(blockData.get(offset + 4), blockData.get(offset + 5))
+      .build();
+  }
+
+  /**
+   * Performs sorting, if necessary. Sorting is done only once when queries are executed concurrently.
+   */
+  private void ensureSorted() {
+    if (sorted) {
+      return;
+    }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
+      sortByHash();
+      groupByResource();
+      sorted = true;
+    }
+  }
+
+  private void sortByHash() {
+    for (int from = 0; from < size; from += runBlocks) {
+      sortRun(from, Math.min(from + runBlocks, size));
+    }
+    if (size > runBlocks) {
+      mergeRuns();
+    }
+  }
+
+  private void sortRun(int from, int to) {
+    int offset = from * blockInts;
+    int[] run = new int[(to - from) * blockInts];
+    for (int i = 0; i < run.length; i++) {
+      run[i] = blockData.get(offset + i);
+    }
+    DataUtils.sort(new RunSortable(run));
+    for (int i = 0; i < run.length; i++) {
+      blockData.set(offset + i, run[i]);
+    }
+  }
+
+  private void mergeRuns() {
+    // a run is represented by its current position and its end
+    PriorityQueue<int[]> runs = new PriorityQueue<>((r1, r2) -> compareHashes(blockData, r1[0], r2[0]));
+    for (int from = 0; from < size; from += runBlocks) {
+      runs.add(new int[] {from, Math.min(from + runBlocks, size)});
+    }
+
+    MappedIntArray merged = new MappedIntArray(newFile());
+    while (!runs.isEmpty()) {
+      int[] run = runs.poll();
+      int offset = run[0] * blockInts;
+      for (int i = 0; i < blockInts; i++) {
+        merged.add(blockData.get(offset + i));
+      }
+      run[0]++;
+      if (run[0] < run[1]) {
+        runs.add(run);
+      }
+    }
+    closeQuietly(blockData);
+    blockData = merged;
+  }
+
+  private void groupByResource() {
+    int resources = resourceIds.size();
+    Integer[] ordinals = new Integer[resources];
+    for (int i = 0; i < resources; i++) {
+      ordinals[i] = i;
+    }
+    Arrays.sort(ordinals, (o1, o2) -> FastStringComparator.INSTANCE.compare(resourceIds.get(o1), resourceIds.get(o2)));
+    sortedResourceOrdinals = new int[resources];
+    resourceRanks = new int[resources];
+    for (int rank = 0; rank < resources; rank++) {
+      sortedResourceOrdinals[rank] = ordinals[rank];
+      resourceRanks[ordinals[rank]] = rank;
+    }
+
+    resourceStarts = new int[resources + 1];
+    for (int i = 0; i < size; i++) {
+      resourceStarts[rankOfBlock(i) + 1]++;
+    }
+    for (int rank = 0; rank < resources; rank++) {
+      resourceStarts[rank + 1] += resourceStarts[rank];
+    }
+
+    if (blocksByResource != null) {
+      closeQuietly(blocksByResource);
+    }
+    blocksByResource = new MappedIntArray(newFile());
+    blocksByResource.resize(size);
+    int[] next = Arrays.copyOf(resourceStarts, resources);
+    for (int i = 0; i < size; i++) {
+      blocksByResource.set(next[rankOfBlock(i)]++, i);
+    }
+  }
+
+  private int rankOfBlock(int index) {
+    return resourceRanks[blockData.get(index * blockInts + hashInts)];
+  }
+
+  private int compareHash(MappedIntArray data, int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++) {
+      int c = Integer.compare(data.get(offset + k), hash[k]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private int compareHashes(MappedIntArray data, int i, int j) {
+    int offsetI = i * blockInts;
+    int offsetJ = j * blockInts;
+    for (int k = 0; k < hashInts; k++) {
+      int c = Integer.compare(data.get(offsetI + k), data.get(offsetJ + k));
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private static void closeQuietly(MappedIntArray array) {
+    try {
+      array.close();
+    } catch (IOException e) {
+      // ignored, the file is in a temporary directory
+    }
+  }
+
+  /**
+   * Deletes the files of the index.
+   */
+  @Override
+  public void close() throws IOException {
+    blockData.close();
+    if (blocksByResource != null) {
+      blocksByResource.close();
+    }
+  }
+
+  private class RunSortable implements DataUtils.Sortable {
+    private final int[] run;
+
+    private RunSortable(int[] run) {
+      this.run = run;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      int offsetI = i * blockInts;
+      int offsetJ = j * blockInts;
+      for (int k = 0; k < blockInts; k++) {
+        int tmp = run[offsetI + k];
+        run[offsetI + k] = run[offsetJ + k];
+        run[offsetJ + k] = tmp;
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      int offsetI = i * blockInts;
+      int offsetJ = j * blockInts;
+      for (int k = 0; k < hashInts; k++) {
+        if (run[offsetI + k] != run[offsetJ + k]) {
+          return run[offsetI + k] < run[offsetJ + k];
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return run.length / blockInts;
+    }
+  }
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private final Block.Builder blockBuilder = Block.builder();
+    private int rank = 0;
+
+    @Override
+    public boolean hasNext() {
+      return rank < sortedResourceOrdinals.length;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String resourceId = resourceIds.get(sortedResourceOrdinals[rank]);
+      List<Block> blocks = getBlocksOfResource(rank, blockBuilder);
+      rank++;
+      return new ResourceBlocks(resourceId, blocks);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
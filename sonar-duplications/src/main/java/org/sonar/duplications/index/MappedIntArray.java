@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable array of ints stored in a memory-mapped file, so that its content is not stored in the heap.
+ * <p>
+ * The file is mapped by segments of {@link #SEGMENT_INTS} ints, because a single mapped region is limited to 2GB.
+ * Concurrent calls to {@link #get(int)} are supported, as long as the array is not modified at the same time.
+ * </p>
+ */
+class MappedIntArray implements Closeable {
+
+  private static final int SEGMENT_SHIFT = 24;
+  static final int SEGMENT_INTS = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_INTS - 1;
+
+  private final File file;
+  private final FileChannel channel;
+  private final List<IntBuffer> segments = new ArrayList<>();
+  private int size = 0;
+
+  MappedIntArray(File file) {
+    this.file = file;
+    try {
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  void add(int value) {
+    if (size == Integer.MAX_VALUE) {
+      throw new IllegalStateException("Array is full: " + file);
+    }
+    resize(size + 1);
+    set(size - 1, value);
+  }
+
+  /**
+   * Changes the size of the array. New elements are zero.
+   */
+  void resize(int newSize) {
+    while (((long) segments.size() << SEGMENT_SHIFT) < newSize) {
+      mapSegment();
+    }
+    this.size = newSize;
+  }
+
+  int get(int index) {
+    return segments.get(index >>> SEGMENT_SHIFT).get(index & SEGMENT_MASK);
+  }
+
+  void set(int index, int value) {
+    segments.get(index >>> SEGMENT_SHIFT).put(index & SEGMENT_MASK, value);
+  }
+
+  private void mapSegment() {
+    long position = (long) segments.size() * SEGMENT_INTS * Integer.BYTES;
+    try {
+      IntBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_INTS * Integer.BYTES)
+        .order(ByteOrder.nativeOrder())
+        .asIntBuffer();
+      segments.add(segment);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to map file " + file, e);
+    }
+  }
+
+  /**
+   * Closes and deletes the file. Mapped segments are released when garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    segments.clear();
+    channel.close();
+    Files.deleteIfExists(file.toPath());
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File dir;
+  private MappedCloneIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    index = new MappedCloneIndex(dir);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    index.close();
+  }
+
+  @Test
+  public void query_by_hash_and_by_resource() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 1));
+    index.insert(newBlock("e", 2));
+    index.insert(newBlock("e", 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void construct_blocks_with_stored_data() {
+    index.insert(Block.builder()
+      .setResourceId("a")
+      .setBlockHash(new ByteArray(12L))
+      .setIndexInFile(3)
+      .setLines(10, 14)
+      .setUnit(100, 150)
+      .build());
+
+    Block block = index.getByResourceId("a").iterator().next();
+    assertThat(block.getResourceId()).isEqualTo("a");
+    assertThat(block.getBlockHash()).isEqualTo(new ByteArray(12L));
+    assertThat(block.getIndexInFile()).isEqualTo(3);
+    assertThat(block.getStartLine()).isEqualTo(10);
+    assertThat(block.getEndLine()).isEqualTo(14);
+    assertThat(block.getStartUnit()).isEqualTo(100);
+    assertThat(block.getEndUnit()).isEqualTo(150);
+    assertThat(index.getBySequenceHash(new ByteArray(12L))).containsExactly(block);
+  }
+
+  @Test
+  public void iterate_resources_in_order() {
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 2));
+    index.insert(newBlock("a", 2));
+
+    Iterator<ResourceBlocks> it = index.iterator();
+    assertThat(it.next().resourceId()).isEqualTo("a");
+    assertThat(it.next().resourceId()).isEqualTo("b");
+    ResourceBlocks last = it.next();
+    assertThat(last.resourceId()).isEqualTo("c");
+    assertThat(last.blocks()).hasSize(1);
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test
+  public void insert_after_query() {
+    index.insert(newBlock("a", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+
+    index.insert(newBlock("b", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+  }
+
+  @Test
+  public void merge_sorted_runs() throws Exception {
+    MappedCloneIndex smallRuns = new MappedCloneIndex(dir, 8, 7);
+    try {
+      for (int i = 0; i < 100; i++) {
+        smallRuns.insert(newBlock("r" + (i % 13), (i * 37) % 10));
+      }
+
+      assertThat(smallRuns.noResources()).isEqualTo(13);
+      int total = 0;
+      for (long hash = 0; hash < 10; hash++) {
+        Collection<Block> blocks = smallRuns.getBySequenceHash(new ByteArray(hash));
+        assertThat(blocks).hasSize(10);
+        for (Block block : blocks) {
+          assertThat(block.getBlockHash()).isEqualTo(new ByteArray(hash));
+        }
+        total += blocks.size();
+      }
+      assertThat(total).isEqualTo(100);
+      assertThat(smallRuns.getByResourceId("r0")).hasSize(8);
+    } finally {
+      smallRuns.close();
+    }
+  }
+
+  @Test
+  public void support_concurrent_queries() throws Exception {
+    int resources = 200;
+    for (int i = 0; i < resources; i++) {
+      index.insert(newBlock("r" + i, i % 10));
+      index.insert(newBlock("r" + i, 100 + i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < resources; i++) {
+        String resourceId = "r" + i;
+        long hash = i % 10;
+        futures.add(executor.submit(() -> index.getByResourceId(resourceId).size() == 2
+          && index.getBySequenceHash(new ByteArray(hash)).size() == 20));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void close_deletes_files() throws Exception {
+    index.insert(newBlock("a", 1));
+    index.getByResourceId("a");
+    assertThat(dir.list()).isNotEmpty();
+
+    index.close();
+
+    assertThat(dir.list()).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_to_insert_hash_of_incorrect_size() throws Exception {
+    try (MappedCloneIndex index4 = new MappedCloneIndex(dir, 4)) {
+      index4.insert(newBlock("a", 1));
+    }
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(1)
+      .setLines(1, 2)
+      .build();
+  }
+}
@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -122,6 +126,50 @@ public class PackedMemoryCloneIndexTest {
     assertThat(index.getByResourceId("a").size(), is(2));
   }
 
+  /**
+   * Given: index, which is full.
+   * Expected: queries do not need additional capacity.
+   */
+  @Test
+  public void should_query_full_index() {
+    CloneIndex index = new PackedMemoryCloneIndex(8, 2);
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    assertThat(index.getByResourceId("b").size(), is(1));
+    assertThat(index.getByResourceId("c").size(), is(0));
+    assertThat(index.getBySequenceHash(new ByteArray(1L)).size(), is(2));
+    assertThat(index.getBySequenceHash(new ByteArray(2L)).size(), is(0));
+  }
+
+  /**
+   * Given: index with blocks of many resources.
+   * Expected: queries executed concurrently return the same results as sequential queries.
+   */
+  @Test
+  public void should_support_concurrent_queries() throws Exception {
+    int resources = 200;
+    for (int i = 0; i < resources; i++) {
+      index.insert(newBlock("r" + i, i % 10));
+      index.insert(newBlock("r" + i, 100 + i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < resources; i++) {
+        String resourceId = "r" + i;
+        long hash = i % 10;
+        futures.add(executor.submit(() -> index.getByResourceId(resourceId).size() == 2
+          && index.getBySequenceHash(new ByteArray(hash)).size() == 20));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get(), is(true));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   /**
    * Given: index, which accepts blocks with 4-byte hash.
    * Expected: exception during insertion of block with 8-byte hash.
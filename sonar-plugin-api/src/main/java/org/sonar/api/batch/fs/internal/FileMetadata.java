@@ -29,9 +29,12 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -56,6 +59,12 @@ public class FileMetadata {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final char REPLACEMENT_CHARACTER = '\ufffd';
+
+  /**
+   * Files bigger than this size are memory-mapped instead of being read into the heap
+   */
+  private static final int MMAP_THRESHOLD = 1024 * 1024;
 
   public abstract static class CharHandler {
 
@@ -87,9 +96,8 @@ public class FileMetadata {
 
     @Override
     protected void handleAll(char c) {
-      if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
-        LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
-          lines, encoding, CoreProperties.ENCODING_PROPERTY);
+      if (!alreadyLoggedInvalidCharacter && c == REPLACEMENT_CHARACTER) {
+        logInvalidCharacter(file, lines, encoding);
         alreadyLoggedInvalidCharacter = true;
       }
     }
@@ -266,11 +274,173 @@ public class FileMetadata {
 
   }
 
+  /**
+   * Single pass over the bytes of files encoded in an ASCII compatible charset. Lines are delimited on raw
+   * bytes, as CR and LF can't be part of a multi-byte sequence in these charsets. Lines containing only ASCII
+   * chars are processed without decoding, other lines are decoded and re-encoded in UTF-8, so that results
+   * are the same than when reading chars from a {@link Reader}.
+   */
+  private static class ByteContentScanner {
+    private final File file;
+    private final Charset encoding;
+    @Nullable
+    private final LineHashConsumer lineHashConsumer;
+    private final boolean logInvalidCharacter;
+    private final CharsetDecoder decoder;
+    private final CharsetEncoder encoder;
+    private final MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
+    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
+    private final IntArrayList originalLineOffsets = new IntArrayList();
+    private final StringBuilder lineHashChars = new StringBuilder();
+    private byte[] lineHashBytes = new byte[256];
+    private int nonBlankLines = 0;
+    private boolean alreadyLoggedInvalidCharacter = false;
+
+    ByteContentScanner(File file, Charset encoding, @Nullable LineHashConsumer lineHashConsumer, boolean logInvalidCharacter) {
+      this.file = file;
+      this.encoding = encoding;
+      this.lineHashConsumer = lineHashConsumer;
+      this.logInvalidCharacter = logInvalidCharacter;
+      this.decoder = encoding.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      this.encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    Metadata scan(ByteBuffer content) {
+      int end = content.limit();
+      int lineStart = content.position();
+      int line = 1;
+      long offset = 0;
+      boolean ascii = true;
+      originalLineOffsets.add(0);
+      for (int i = lineStart; i < end; i++) {
+        byte b = content.get(i);
+        if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+          offset += processLine(content, lineStart, i, ascii, line, true);
+          if (b == CARRIAGE_RETURN && i + 1 < end && content.get(i + 1) == LINE_FEED) {
+            i++;
+            offset++;
+          }
+          offset++;
+          if (offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException("File is too big: " + offset);
+          }
+          originalLineOffsets.add((int) offset);
+          line++;
+          lineStart = i + 1;
+          ascii = true;
+        } else if (b < 0) {
+          ascii = false;
+        }
+      }
+      offset += processLine(content, lineStart, end, ascii, line, false);
+      if (offset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + offset);
+      }
+      return new Metadata(line, nonBlankLines, Hex.encodeHexString(globalMd5Digest.digest()), originalLineOffsets.trimAndGet(), (int) offset);
+    }
+
+    /**
+     * @return the number of chars of the line, excluding end of line
+     */
+    private int processLine(ByteBuffer content, int from, int to, boolean ascii, int line, boolean followedByEol) {
+      int length;
+      if (ascii) {
+        length = to - from;
+        processAsciiLine(content, from, to, line);
+      } else {
+        length = processDecodedLine(content, from, to, line);
+      }
+      if (followedByEol) {
+        globalMd5Digest.update((byte) LINE_FEED);
+      }
+      return length;
+    }
+
+    private void processAsciiLine(ByteBuffer content, int from, int to, int line) {
+      if (lineHashBytes.length < to - from) {
+        lineHashBytes = new byte[to - from];
+      }
+      int hashLength = 0;
+      for (int i = from; i < to; i++) {
+        byte b = content.get(i);
+        if (!Character.isWhitespace(b)) {
+          lineHashBytes[hashLength] = b;
+          hashLength++;
+        }
+      }
+      if (hashLength > 0) {
+        nonBlankLines++;
+      }
+      update(globalMd5Digest, content, from, to);
+      if (lineHashConsumer != null && hashLength > 0) {
+        lineMd5Digest.update(lineHashBytes, 0, hashLength);
+        lineHashConsumer.consume(line, lineMd5Digest.digest());
+      }
+    }
+
+    private int processDecodedLine(ByteBuffer content, int from, int to, int line) {
+      try {
+        CharBuffer chars = decoder.decode(slice(content, from, to));
+        lineHashChars.setLength(0);
+        for (int i = chars.position(); i < chars.limit(); i++) {
+          char c = chars.get(i);
+          if (c == REPLACEMENT_CHARACTER && logInvalidCharacter && !alreadyLoggedInvalidCharacter) {
+            logInvalidCharacter(file, line, encoding);
+            alreadyLoggedInvalidCharacter = true;
+          }
+          if (!Character.isWhitespace(c)) {
+            lineHashChars.append(c);
+          }
+        }
+        if (lineHashChars.length() > 0) {
+          nonBlankLines++;
+        }
+        int length = chars.remaining();
+        globalMd5Digest.update(encoder.encode(chars));
+        if (lineHashConsumer != null && lineHashChars.length() > 0) {
+          lineMd5Digest.update(encoder.encode(CharBuffer.wrap(lineHashChars)));
+          lineHashConsumer.consume(line, lineMd5Digest.digest());
+        }
+        return length;
+      } catch (CharacterCodingException e) {
+        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+      }
+    }
+
+    private static void update(MessageDigest digest, ByteBuffer content, int from, int to) {
+      if (content.hasArray()) {
+        digest.update(content.array(), content.arrayOffset() + from, to - from);
+      } else {
+        digest.update(slice(content, from, to));
+      }
+    }
+
+    private static ByteBuffer slice(ByteBuffer content, int from, int to) {
+      ByteBuffer slice = content.duplicate();
+      slice.limit(to);
+      slice.position(from);
+      return slice;
+    }
+  }
+
+  private static void logInvalidCharacter(File file, int line, Charset encoding) {
+    LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
+      line, encoding, CoreProperties.ENCODING_PROPERTY);
+  }
+
   /**
    * Compute hash of a file ignoring line ends differences.
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
+    ByteBuffer content = readAsciiCompatibleContent(file, encoding);
+    if (content != null) {
+      return new ByteContentScanner(file, encoding, null, true).scan(content);
+    }
     LineCounter lineCounter = new LineCounter(file, encoding);
     FileHashComputer fileHashComputer = new FileHashComputer(file);
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
@@ -305,6 +475,55 @@ public class FileMetadata {
     }
   }
 
+  /**
+   * Content of the file, without UTF-8 BOM, if it can be processed byte per byte.
+   * @return null if the encoding is not ASCII compatible, if the file starts with another BOM
+   * or if it's too big to be held in a single buffer
+   */
+  @CheckForNull
+  private static ByteBuffer readAsciiCompatibleContent(File file, Charset encoding) {
+    if (!StandardCharsets.UTF_8.equals(encoding) && !StandardCharsets.US_ASCII.equals(encoding) && !StandardCharsets.ISO_8859_1.equals(encoding)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return null;
+      }
+      ByteBuffer content;
+      if (size > MMAP_THRESHOLD) {
+        content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        content = ByteBuffer.allocate((int) size);
+        while (content.hasRemaining() && channel.read(content) >= 0) {
+          // read until buffer is full or end of file is reached
+        }
+        content.flip();
+      }
+      if (startsWith(content, 0xEF, 0xBB, 0xBF)) {
+        content.position(3);
+      } else if (startsWith(content, 0xFE, 0xFF) || startsWith(content, 0xFF, 0xFE) || startsWith(content, 0x00, 0x00, 0xFE, 0xFF)) {
+        // UTF-16 or UTF-32 BOM, which are dropped by BOMInputStream
+        return null;
+      }
+      return content;
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+    }
+  }
+
+  private static boolean startsWith(ByteBuffer content, int... bytes) {
+    if (content.limit() < bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (content.get(i) != (byte) bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static void read(Reader reader, CharHandler... handlers) throws IOException {
     char c;
     int i = reader.read();
@@ -363,6 +582,11 @@ public class FileMetadata {
    * Compute a MD5 hash of each line of the file after removing of all blank chars
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    ByteBuffer content = readAsciiCompatibleContent(f.file(), f.charset());
+    if (content != null) {
+      new ByteContentScanner(f.file(), f.charset(), consumer, false).scan(content);
+    } else {
+      readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    }
   }
 }
@@ -198,6 +198,16 @@ public final class ZipUtils {
     }
   }
 
+  /**
+   * Compresses the content of a directory to a stream. The stream is not closed.
+   * @since 6.4
+   */
+  public static void zipDir(File dir, OutputStream out) throws IOException {
+    ZipOutputStream zout = new ZipOutputStream(out);
+    doZipDir(dir, zout);
+    zout.finish();
+  }
+
   private static void doZip(String entryName, InputStream in, ZipOutputStream out) throws IOException {
     ZipEntry entry = new ZipEntry(entryName);
     out.putNextEntry(entry);
@@ -20,8 +20,13 @@
 package org.sonar.api.batch.fs.internal;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
@@ -35,6 +40,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class FileMetadataTest {
@@ -318,4 +324,66 @@ public class FileMetadataTest {
       "glyphicons-halflings-regular.woff at line 1 for encoding UTF-8. Please fix file content or configure the encoding to be used using property 'sonar.sourceEncoding'.");
   }
 
+  @Test
+  public void non_ascii_iso_8859_1() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "föo\r\nbàr\r\n  \r\nbaß", StandardCharsets.ISO_8859_1, true);
+
+    Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.ISO_8859_1);
+    assertThat(metadata.lines()).isEqualTo(4);
+    assertThat(metadata.nonBlankLines()).isEqualTo(3);
+    assertThat(metadata.hash()).isEqualTo(md5Hex("föo\nbàr\n  \nbaß".getBytes(StandardCharsets.UTF_8)));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, 5, 10, 14);
+    assertThat(metadata.lastValidOffset()).isEqualTo(17);
+  }
+
+  @Test
+  public void line_hashes_of_non_ascii_lines() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, " foo\n\t\nb àr\r\nbaz \t", StandardCharsets.UTF_8, true);
+    DefaultInputFile f = new TestInputFileBuilder("foo", tempFile.getName())
+      .setModuleBaseDir(tempFile.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+
+    Map<Integer, String> hashes = new HashMap<>();
+    FileMetadata.computeLineHashesForIssueTracking(f, (lineIdx, hash) -> hashes.put(lineIdx, Hex.encodeHexString(hash)));
+
+    assertThat(hashes).containsOnly(
+      entry(1, md5Hex("foo")),
+      entry(3, md5Hex("bàr".getBytes(StandardCharsets.UTF_8))),
+      entry(4, md5Hex("baz")));
+  }
+
+  @Test
+  public void same_metadata_when_reading_bytes_or_chars() throws Exception {
+    File woff = new File(this.getClass().getResource("glyphicons-halflings-regular.woff").toURI());
+    assertSameMetadataThanReader(woff, StandardCharsets.UTF_8);
+    assertSameMetadataThanReader(woff, StandardCharsets.ISO_8859_1);
+    assertSameMetadataThanReader(woff, StandardCharsets.US_ASCII);
+
+    // big enough to be memory-mapped
+    File bigFile = temp.newFile();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      sb.append("line ").append(i).append(i % 3 == 0 ? " àéß\u1D11E\r\n" : "\t \n").append(i % 7 == 0 ? "\r" : "");
+    }
+    FileUtils.write(bigFile, sb, StandardCharsets.UTF_8);
+    assertThat(bigFile.length()).isGreaterThan(1024 * 1024);
+    assertSameMetadataThanReader(bigFile, StandardCharsets.UTF_8);
+  }
+
+  private static void assertSameMetadataThanReader(File file, Charset charset) throws Exception {
+    Metadata metadata = new FileMetadata().readMetadata(file, charset);
+    Metadata expected;
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), charset)) {
+      expected = new FileMetadata().readMetadata(reader);
+    }
+    assertThat(metadata.lines()).isEqualTo(expected.lines());
+    assertThat(metadata.nonBlankLines()).isEqualTo(expected.nonBlankLines());
+    assertThat(metadata.hash()).isEqualTo(expected.hash());
+    assertThat(metadata.originalLineOffsets()).isEqualTo(expected.originalLineOffsets());
+    assertThat(metadata.lastValidOffset()).isEqualTo(expected.lastValidOffset());
+  }
+
 }
@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,7 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -56,6 +59,10 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Duplications of files are detected concurrently by the number of threads defined by the property {@link #THREADS_PROPERTY}
+ * (1 by default). The index is shared by these threads, as it is not modified anymore. Duplications are saved by the calling thread,
+ * in the order of the index, so that the report does not depend on the number of threads.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -63,6 +70,7 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -87,44 +95,71 @@ public class CpdExecutor {
   @VisibleForTesting
   void execute(long timeout) {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("cpd-%d")
+      .setDaemon(true)
+      .build());
     try {
+      // at most one pending analysis per thread, so that the timeout of an analysis does not include time spent in queue
+      Deque<CpdAnalysis> pendingAnalyses = new ArrayDeque<>(threads);
       Iterator<ResourceBlocks> it = index.iterator();
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        CpdAnalysis analysis = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (analysis != null) {
+          pendingAnalyses.add(analysis);
+          if (pendingAnalyses.size() >= threads) {
+            saveCpdAnalysis(pendingAnalyses.poll(), timeout);
+          }
+        }
         count++;
       }
+      while (!pendingAnalyses.isEmpty()) {
+        saveCpdAnalysis(pendingAnalyses.poll(), timeout);
+      }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
   @VisibleForTesting
-  void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+  int getThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
+  @VisibleForTesting
+  @CheckForNull
+  CpdAnalysis submitCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
+    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
+    return new CpdAnalysis(component, futureResult);
+  }
+
+  @VisibleForTesting
+  void saveCpdAnalysis(CpdAnalysis analysis, long timeout) {
+    DefaultInputComponent component = analysis.component;
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = analysis.futureResult.get(timeout, TimeUnit.MILLISECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      analysis.futureResult.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -213,4 +248,15 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  @VisibleForTesting
+  static class CpdAnalysis {
+    private final DefaultInputComponent component;
+    private final Future<List<CloneGroup>> futureResult;
+
+    private CpdAnalysis(DefaultInputComponent component, Future<List<CloneGroup>> futureResult) {
+      this.component = component;
+      this.futureResult = futureResult;
+    }
+  }
 }
@@ -19,37 +19,57 @@
  */
 package org.sonar.scanner.cpd.index;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.lang.StringUtils;
+import org.picocontainer.Startable;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.config.Settings;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
 import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MappedCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.report.ReportPublisher;
 
-public class SonarCpdBlockIndex extends AbstractCloneIndex {
+/**
+ * Index of the blocks of all the files of the project. Blocks are stored in the heap by {@link PackedMemoryCloneIndex}
+ * until their number exceeds the value of the property {@link #MAX_BLOCKS_IN_MEMORY_PROPERTY}. They are then moved to
+ * a {@link MappedCloneIndex}, which stores them in memory-mapped files.
+ */
+public class SonarCpdBlockIndex extends AbstractCloneIndex implements Startable {
+
+  private static final Logger LOG = Loggers.get(SonarCpdBlockIndex.class);
+  static final String MAX_BLOCKS_IN_MEMORY_PROPERTY = "sonar.cpd.maxBlocksInMemory";
+  static final int DEFAULT_MAX_BLOCKS_IN_MEMORY = 5_000_000;
 
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  private CloneIndex mem = new PackedMemoryCloneIndex();
   private final ReportPublisher publisher;
   private final Settings settings;
+  private final TempFolder tempFolder;
+  private final int maxBlocksInMemory;
   // Files already tokenized
   private final Set<InputFile> indexedFiles = new HashSet<>();
+  private int blockCount = 0;
 
-  public SonarCpdBlockIndex(ReportPublisher publisher, Settings settings) {
+  public SonarCpdBlockIndex(ReportPublisher publisher, Settings settings, TempFolder tempFolder) {
     this.publisher = publisher;
     this.settings = settings;
+    this.tempFolder = tempFolder;
+    this.maxBlocksInMemory = settings.hasKey(MAX_BLOCKS_IN_MEMORY_PROPERTY) ? settings.getInt(MAX_BLOCKS_IN_MEMORY_PROPERTY) : DEFAULT_MAX_BLOCKS_IN_MEMORY;
   }
 
   public void insert(InputFile inputFile, Collection<Block> blocks) {
@@ -73,6 +93,22 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
       mem.insert(block);
     }
     indexedFiles.add(inputFile);
+    blockCount += blocks.size();
+    if (blockCount > maxBlocksInMemory && !(mem instanceof MappedCloneIndex)) {
+      moveToMappedIndex();
+    }
+  }
+
+  private void moveToMappedIndex() {
+    LOG.debug("More than {} CPD blocks, move them to disk", maxBlocksInMemory);
+    MappedCloneIndex mappedIndex = new MappedCloneIndex(tempFolder.newDir("cpd"));
+    Iterator<ResourceBlocks> it = mem.iterator();
+    while (it.hasNext()) {
+      for (Block block : it.next().blocks()) {
+        mappedIndex.insert(block);
+      }
+    }
+    mem = mappedIndex;
   }
 
   public boolean isIndexed(InputFile inputFile) {
@@ -114,4 +150,20 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     return mem.noResources();
   }
 
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (mem instanceof MappedCloneIndex) {
+      try {
+        ((MappedCloneIndex) mem).close();
+      } catch (IOException e) {
+        LOG.debug("Fail to delete CPD index", e);
+      }
+    }
+  }
+
 }
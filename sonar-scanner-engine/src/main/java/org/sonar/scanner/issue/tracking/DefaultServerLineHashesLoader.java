@@ -19,45 +19,54 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import org.sonarqube.ws.client.GetRequest;
-
+import com.google.common.collect.Iterables;
 import java.io.IOException;
-import java.io.Reader;
-
-import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
 import org.apache.commons.io.IOUtils;
-import org.sonar.api.utils.log.Loggers;
-import org.sonar.api.utils.log.Profiler;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
-import org.sonar.scanner.util.ScannerUtils;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.client.PostRequest;
 
 public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
-  private ScannerWsClient wsClient;
+
+  /**
+   * Maximum number of files accepted by the web service batch/line_hashes
+   */
+  static final int MAX_FILES_PER_REQUEST = 100;
+
+  private final ScannerWsClient wsClient;
 
   public DefaultServerLineHashesLoader(ScannerWsClient wsClient) {
     this.wsClient = wsClient;
   }
 
   @Override
-  public String[] getLineHashes(String fileKey) {
-    String hashesFromWs = loadHashesFromWs(fileKey);
-    return Iterators.toArray(Splitter.on('\n').split(hashesFromWs).iterator(), String.class);
+  public void load(String componentKey, Collection<String> fileKeys, Function<LineHashes, Void> consumer) {
+    for (List<String> partition : Iterables.partition(fileKeys, MAX_FILES_PER_REQUEST)) {
+      PostRequest request = new PostRequest("/batch/line_hashes")
+        .setMediaType(MediaTypes.PROTOBUF)
+        .setParam("key", componentKey)
+        .setParam("files", partition);
+      InputStream is = wsClient.call(request).contentStream();
+      parseLineHashes(is, consumer);
+    }
   }
 
-  private String loadHashesFromWs(String fileKey) {
-    Profiler profiler = Profiler.createIfDebug(Loggers.get(getClass()))
-      .addContext("file", fileKey)
-      .startDebug("Load line hashes");
-
-    GetRequest getRequest = new GetRequest("/api/sources/hash?key=" + ScannerUtils.encodeForUrl(fileKey));
-    Reader reader = wsClient.call(getRequest).contentReader();
+  private static void parseLineHashes(InputStream is, Function<LineHashes, Void> consumer) {
     try {
-      return IOUtils.toString(reader);
+      LineHashes lineHashes = LineHashes.parseDelimitedFrom(is);
+      while (lineHashes != null) {
+        consumer.apply(lineHashes);
+        lineHashes = LineHashes.parseDelimitedFrom(is);
+      }
     } catch (IOException e) {
-      throw new IllegalStateException(e);
+      throw new IllegalStateException("Unable to get line hashes", e);
     } finally {
-      profiler.stopDebug();
+      IOUtils.closeQuietly(is);
     }
   }
 }
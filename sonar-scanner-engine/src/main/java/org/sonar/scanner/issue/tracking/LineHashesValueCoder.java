@@ -0,0 +1,48 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonar.scanner.storage.ValueCoder;
+
+public class LineHashesValueCoder implements ValueCoder<LineHashes> {
+
+  @Override
+  public void write(DataOutput output, LineHashes lineHashes) throws IOException {
+    byte[] bytes = lineHashes.toByteArray();
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  @Override
+  public LineHashes read(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    try {
+      return LineHashes.parseFrom(bytes);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read line hashes from cache", e);
+    }
+  }
+
+}
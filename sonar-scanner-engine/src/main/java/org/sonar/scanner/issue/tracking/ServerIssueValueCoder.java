@@ -19,24 +19,27 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.storage.ValueCoder;
 
-public class ServerIssueValueCoder implements ValueCoder {
+public class ServerIssueValueCoder implements ValueCoder<ServerIssue> {
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    ServerIssue issue = (ServerIssue) object;
-    value.putByteArray(issue.toByteArray());
+  public void write(DataOutput output, ServerIssue issue) throws IOException {
+    byte[] bytes = issue.toByteArray();
+    output.writeInt(bytes.length);
+    output.write(bytes);
   }
 
   @Override
-  public Object get(Value value, Class<?> clazz, CoderContext context) {
+  public ServerIssue read(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
     try {
-      return ServerIssue.parseFrom(value.getByteArray());
+      return ServerIssue.parseFrom(bytes);
     } catch (IOException e) {
       throw new IllegalStateException("Unable to read issue from cache", e);
     }
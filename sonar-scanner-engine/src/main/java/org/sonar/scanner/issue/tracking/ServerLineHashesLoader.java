@@ -19,10 +19,16 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.util.Collection;
+import java.util.function.Function;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
 
 @ScannerSide
 public interface ServerLineHashesLoader {
 
-  String[] getLineHashes(String fileKey);
+  /**
+   * Streams the line hashes of the given files of a project or module. Files which are unknown on server are ignored.
+   */
+  void load(String componentKey, Collection<String> fileKeys, Function<LineHashes, Void> consumer);
 }
@@ -0,0 +1,114 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.core.component.ComponentKeys;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonar.scanner.scan.ImmutableProjectReactor;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
+import org.sonar.scanner.storage.Storage;
+import org.sonar.scanner.storage.Storages;
+
+/**
+ * Line hashes of the files changed since the last analysis, downloaded in batches the first time
+ * the hashes of a file are requested, instead of one call per changed file. Line hashes of the files
+ * which did not change are not needed, so they are not downloaded.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+@ScannerSide
+public class ServerLineHashesRepository {
+
+  private static final Logger LOG = Loggers.get(ServerLineHashesRepository.class);
+  private static final String LOG_MSG = "Load server line hashes";
+
+  private final Storages caches;
+  private final ServerLineHashesLoader lineHashesLoader;
+  private final ImmutableProjectReactor reactor;
+  private final InputComponentStore componentStore;
+  private Storage<LineHashes> lineHashesCache;
+
+  public ServerLineHashesRepository(Storages caches, ServerLineHashesLoader lineHashesLoader, ImmutableProjectReactor reactor,
+    InputComponentStore componentStore) {
+    this.caches = caches;
+    this.lineHashesLoader = lineHashesLoader;
+    this.reactor = reactor;
+    this.componentStore = componentStore;
+  }
+
+  /**
+   * @param fileKey server side key of the file, including branch
+   * @return null if the file has no line hashes on server
+   */
+  @CheckForNull
+  public synchronized String[] getLineHashes(String fileKey) {
+    if (lineHashesCache == null) {
+      load();
+    }
+    LineHashes lineHashes = lineHashesCache.get(fileKey);
+    if (lineHashes == null) {
+      return null;
+    }
+    return lineHashes.getLineHashList().toArray(new String[lineHashes.getLineHashCount()]);
+  }
+
+  private void load() {
+    Profiler profiler = Profiler.create(LOG).startInfo(LOG_MSG);
+    caches.registerValueCoder(LineHashes.class, new LineHashesValueCoder());
+    lineHashesCache = caches.createCache("serverLineHashes");
+    List<String> changedFileKeys = getChangedFileKeys();
+    if (!changedFileKeys.isEmpty()) {
+      lineHashesLoader.load(reactor.getRoot().getKeyWithBranch(), changedFileKeys, this::save);
+    }
+    profiler.stopInfo();
+  }
+
+  /**
+   * Server side keys, including branch, of the files which changed since the last analysis
+   */
+  private List<String> getChangedFileKeys() {
+    List<String> keys = new ArrayList<>();
+    for (InputFile file : componentStore.allFiles()) {
+      if (file.status() == InputFile.Status.CHANGED) {
+        DefaultInputModule module = (DefaultInputModule) componentStore.getModule(((DefaultInputFile) file).moduleKey());
+        keys.add(ComponentKeys.createEffectiveKey(module.definition().getKeyWithBranch(), file));
+      }
+    }
+    return keys;
+  }
+
+  private Void save(@Nullable LineHashes lineHashes) {
+    if (lineHashes != null) {
+      lineHashesCache.put(lineHashes.getFileKey(), lineHashes);
+    }
+    return null;
+  }
+}
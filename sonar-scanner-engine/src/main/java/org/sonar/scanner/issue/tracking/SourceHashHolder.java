@@ -31,12 +31,12 @@ public class SourceHashHolder {
 
   private final DefaultInputModule module;
   private final DefaultInputFile inputFile;
-  private final ServerLineHashesLoader lastSnapshots;
+  private final ServerLineHashesRepository lastSnapshots;
 
   private FileHashes hashedReference;
   private FileHashes hashedSource;
 
-  public SourceHashHolder(DefaultInputModule module, DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots) {
+  public SourceHashHolder(DefaultInputModule module, DefaultInputFile inputFile, ServerLineHashesRepository lastSnapshots) {
     this.module = module;
     this.inputFile = inputFile;
     this.lastSnapshots = lastSnapshots;
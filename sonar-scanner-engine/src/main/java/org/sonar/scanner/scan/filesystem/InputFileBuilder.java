@@ -78,8 +78,12 @@ public class InputFileBuilder {
     return inputFile;
   }
 
+  /**
+   * Generates metadata of the file right away if it will be needed anyway (file is published) or if preloading is forced,
+   * so that it's computed by the thread indexing the file instead of lazily by sensors.
+   */
   void checkMetadata(DefaultInputFile inputFile) {
-    if (preloadMetadata) {
+    if (preloadMetadata || inputFile.publish()) {
       inputFile.checkMetadata();
     }
   }
@@ -34,10 +34,13 @@ import org.sonar.scanner.storage.Storage.Entry;
 @ScannerSide
 public class MeasureCache {
 
+  @SuppressWarnings("unchecked")
+  private static final Class<DefaultMeasure<?>> MEASURE_CLASS = (Class<DefaultMeasure<?>>) (Class<?>) DefaultMeasure.class;
+
   private final Storage<DefaultMeasure<?>> cache;
 
   public MeasureCache(Storages caches, MetricFinder metricFinder) {
-    caches.registerValueCoder(DefaultMeasure.class, new MeasureValueCoder(metricFinder));
+    caches.registerValueCoder(MEASURE_CLASS, new MeasureValueCoder(metricFinder));
     cache = caches.createCache("measures");
   }
 
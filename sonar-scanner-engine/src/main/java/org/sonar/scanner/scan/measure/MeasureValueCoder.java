@@ -19,14 +19,16 @@
  */
 package org.sonar.scanner.scan.measure;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.scanner.storage.DefaultValueCoder;
+import org.sonar.scanner.storage.ValueCoder;
 
-class MeasureValueCoder implements ValueCoder {
+class MeasureValueCoder implements ValueCoder<DefaultMeasure<?>> {
 
   private final MetricFinder metricFinder;
 
@@ -35,22 +37,26 @@ class MeasureValueCoder implements ValueCoder {
   }
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    DefaultMeasure<?> m = (DefaultMeasure<?>) object;
+  public void write(DataOutput output, DefaultMeasure<?> m) throws IOException {
     org.sonar.api.batch.measure.Metric<?> metric = m.metric();
-    value.putString(metric.key());
-    value.put(m.value());
+    output.writeUTF(metric.key());
+    DefaultValueCoder.INSTANCE.write(output, m.value());
   }
 
   @Override
-  public Object get(Value value, Class clazz, CoderContext context) {
-    String metricKey = value.getString();
+  public DefaultMeasure<?> read(DataInput input) throws IOException {
+    String metricKey = input.readUTF();
     org.sonar.api.batch.measure.Metric<?> metric = metricFinder.findByKey(metricKey);
     if (metric == null) {
       throw new IllegalStateException("Unknow metric with key " + metricKey);
     }
-    return new DefaultMeasure()
+    return newMeasure(metric, (Serializable) DefaultValueCoder.INSTANCE.read(input));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <G extends Serializable> DefaultMeasure<G> newMeasure(org.sonar.api.batch.measure.Metric<G> metric, Serializable value) {
+    return new DefaultMeasure<G>()
       .forMetric(metric)
-      .withValue((Serializable) value.get());
+      .withValue((G) value);
   }
 }
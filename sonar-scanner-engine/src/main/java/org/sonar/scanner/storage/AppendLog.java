@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only sequence of records, addressed by their position. The first {@link #DEFAULT_HEAP_BYTES} bytes
+ * are kept in the heap, so that small analyses never touch the disk. Next records spill to a file which is
+ * created on demand and memory-mapped by segments of {@link #DEFAULT_SEGMENT_BYTES} bytes.
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+class AppendLog implements Closeable {
+
+  static final int DEFAULT_HEAP_BYTES = 1 << 22;
+  static final int DEFAULT_SEGMENT_BYTES = 1 << 24;
+  private static final int INITIAL_HEAP_BYTES = 1 << 13;
+
+  private final File file;
+  private final int heapBytes;
+  private final int segmentBytes;
+  private final List<ByteBuffer> segments = new ArrayList<>();
+  private final byte[] header = new byte[Integer.BYTES];
+  private byte[] heap;
+  private FileChannel channel;
+  private long size = 0L;
+
+  AppendLog(File file) {
+    this(file, DEFAULT_HEAP_BYTES, DEFAULT_SEGMENT_BYTES);
+  }
+
+  AppendLog(File file, int heapBytes, int segmentBytes) {
+    this.file = file;
+    this.heapBytes = heapBytes;
+    this.segmentBytes = segmentBytes;
+    this.heap = new byte[Math.min(heapBytes, INITIAL_HEAP_BYTES)];
+  }
+
+  /**
+   * @return the position of the record, to be used by {@link #read(long)}
+   */
+  long append(byte[] bytes, int length) {
+    long position = size;
+    ensureCapacity(position + Integer.BYTES + length);
+    header[0] = (byte) (length >>> 24);
+    header[1] = (byte) (length >>> 16);
+    header[2] = (byte) (length >>> 8);
+    header[3] = (byte) length;
+    write(position, header, Integer.BYTES);
+    write(position + Integer.BYTES, bytes, length);
+    size = position + Integer.BYTES + length;
+    return position;
+  }
+
+  byte[] read(long position) {
+    read(position, header, Integer.BYTES);
+    int length = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+    byte[] bytes = new byte[length];
+    read(position + Integer.BYTES, bytes, length);
+    return bytes;
+  }
+
+  /**
+   * Total size of the records, in bytes
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * The file, or null if records never spilled from the heap
+   */
+  @CheckForNull
+  File file() {
+    return channel == null ? null : file;
+  }
+
+  private void write(long position, byte[] bytes, int length) {
+    long current = position;
+    int offset = 0;
+    while (offset < length) {
+      int count;
+      if (current < heapBytes) {
+        count = (int) Math.min(length - offset, heapBytes - current);
+        System.arraycopy(bytes, offset, heap, (int) current, count);
+      } else {
+        ByteBuffer segment = segmentAt(current);
+        count = Math.min(length - offset, segment.remaining());
+        segment.put(bytes, offset, count);
+      }
+      current += count;
+      offset += count;
+    }
+  }
+
+  private void read(long position, byte[] bytes, int length) {
+    long current = position;
+    int offset = 0;
+    while (offset < length) {
+      int count;
+      if (current < heapBytes) {
+        count = (int) Math.min(length - offset, heapBytes - current);
+        System.arraycopy(heap, (int) current, bytes, offset, count);
+      } else {
+        ByteBuffer segment = segmentAt(current);
+        count = Math.min(length - offset, segment.remaining());
+        segment.get(bytes, offset, count);
+      }
+      current += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * View of the segment containing the given position, starting at this position
+   */
+  private ByteBuffer segmentAt(long position) {
+    long filePosition = position - heapBytes;
+    ByteBuffer segment = segments.get((int) (filePosition / segmentBytes)).duplicate();
+    segment.position((int) (filePosition % segmentBytes));
+    return segment;
+  }
+
+  private void ensureCapacity(long capacity) {
+    if (capacity > heap.length && heap.length < heapBytes) {
+      long newLength = Math.max(capacity, 2L * heap.length);
+      byte[] newHeap = new byte[(int) Math.min(newLength, heapBytes)];
+      System.arraycopy(heap, 0, newHeap, 0, (int) size);
+      heap = newHeap;
+    }
+    while (heapBytes + (long) segments.size() * segmentBytes < capacity) {
+      mapSegment();
+    }
+  }
+
+  private void mapSegment() {
+    try {
+      if (channel == null) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      long position = (long) segments.size() * segmentBytes;
+      segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to map file " + file, e);
+    }
+  }
+
+  /**
+   * Releases the heap and deletes the file. Mapped segments are released when garbage collected, so the file
+   * can not be deleted yet on some platforms (Windows). It is then left to the cleanup of the temp folder.
+   */
+  @Override
+  public void close() throws IOException {
+    heap = new byte[0];
+    segments.clear();
+    size = 0L;
+    if (channel != null) {
+      channel.close();
+      channel = null;
+      FileUtils.deleteQuietly(file);
+    }
+  }
+}
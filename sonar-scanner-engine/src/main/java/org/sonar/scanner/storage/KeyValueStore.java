@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Iterator;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Sorted key-value store used by {@link Storage}. Keys are arrays of comparable elements, for example
+ * <code>{componentKey, metricKey}</code>, which are compared element by element. A key is lower
+ * than all the keys it prefixes.
+ */
+interface KeyValueStore<V> {
+
+  void put(Object[] key, @Nullable V value);
+
+  @CheckForNull
+  V get(Object[] key);
+
+  boolean contains(Object[] key);
+
+  /**
+   * Removes the value associated with the given key, but not the values of longer keys it prefixes.
+   */
+  boolean remove(Object[] key);
+
+  /**
+   * Removes the value associated with the given key and the values of all the keys it prefixes.
+   * An empty key removes everything.
+   */
+  void clear(Object[] prefix);
+
+  /**
+   * Lazy iteration, in key order, over the entries whose key is strictly prefixed by the given key.
+   * Modifying the store during the iteration is supported.
+   */
+  Iterator<Storage.Entry<V>> entries(Object[] prefix);
+
+  /**
+   * Distinct elements, in order, that follow the given prefix in the keys of the store
+   */
+  Iterator<Object> keys(Object[] prefix);
+
+}
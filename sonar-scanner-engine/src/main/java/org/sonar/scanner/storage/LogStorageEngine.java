@@ -0,0 +1,141 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Default engine. Values of all the stores are encoded and appended to a single {@link AppendLog}. Each store
+ * only keeps in memory the sorted index of its keys to the positions of the values in the log. Overwritten and
+ * removed values are not reclaimed before the engine is closed, which is fine for the lifetime of an analysis.
+ * <p>
+ * This engine is not thread-safe.
+ * </p>
+ */
+class LogStorageEngine implements StorageEngine {
+
+  private static final byte DEFAULT_CODER_ID = 0;
+
+  private final AppendLog log;
+  private final Set<String> storeNames = new HashSet<>();
+  private final List<ValueCoder<?>> coders = new ArrayList<>();
+  private final Map<Class<?>, Byte> coderIdsByClass = new HashMap<>();
+  private final Buffer buffer = new Buffer();
+  private final DataOutputStream output = new DataOutputStream(buffer);
+  private boolean closed = false;
+
+  LogStorageEngine(File file) {
+    this(new AppendLog(file));
+  }
+
+  LogStorageEngine(AppendLog log) {
+    this.log = log;
+    this.coders.add(DefaultValueCoder.INSTANCE);
+  }
+
+  @Override
+  public <T> void registerValueCoder(Class<T> clazz, ValueCoder<T> coder) {
+    Preconditions.checkState(coders.size() <= Byte.MAX_VALUE, "Too many value coders");
+    coderIdsByClass.put(clazz, (byte) coders.size());
+    coders.add(coder);
+  }
+
+  @Override
+  public <V> KeyValueStore<V> createStore(String name) {
+    Preconditions.checkState(!closed, "Caches are not initialized");
+    Preconditions.checkState(storeNames.add(name), "Cache is already created: %s", name);
+    return new LogStore<>(this);
+  }
+
+  long write(@Nullable Object value) {
+    byte coderId = coderIdOf(value);
+    buffer.reset();
+    try {
+      output.writeByte(coderId);
+      writeValue(coders.get(coderId), value);
+      output.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode value", e);
+    }
+    return log.append(buffer.bytes(), buffer.size());
+  }
+
+  @CheckForNull
+  Object read(long position) {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(log.read(position)))) {
+      return coders.get(input.readByte()).read(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to decode value at position " + position, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void writeValue(ValueCoder<T> coder, @Nullable Object value) throws IOException {
+    coder.write(output, (T) value);
+  }
+
+  private byte coderIdOf(@Nullable Object value) {
+    if (value == null || coderIdsByClass.isEmpty()) {
+      return DEFAULT_CODER_ID;
+    }
+    return coderIdsByClass.computeIfAbsent(value.getClass(), this::lookupCoderId);
+  }
+
+  private Byte lookupCoderId(Class<?> clazz) {
+    for (Class<?> c = clazz.getSuperclass(); c != null; c = c.getSuperclass()) {
+      Byte id = coderIdsByClass.get(c);
+      if (id != null) {
+        return id;
+      }
+    }
+    return DEFAULT_CODER_ID;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    storeNames.clear();
+    try {
+      log.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close caches", e);
+    }
+  }
+
+  private static class Buffer extends ByteArrayOutputStream {
+    byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Store of {@link LogStorageEngine}. The index maps the keys to the positions of the values in the log.
+ * <p>
+ * This store is not thread-safe.
+ * </p>
+ */
+class LogStore<V> implements KeyValueStore<V> {
+
+  /**
+   * Key element greater than any other, used to bound the keys prefixed by a given key
+   */
+  private static final Object AFTER = new Object();
+
+  static final Comparator<Object[]> KEY_COMPARATOR = LogStore::compareKeys;
+
+  private final LogStorageEngine engine;
+  private final TreeMap<Object[], Long> index = new TreeMap<>(KEY_COMPARATOR);
+
+  LogStore(LogStorageEngine engine) {
+    this.engine = engine;
+  }
+
+  @Override
+  public void put(Object[] key, @Nullable V value) {
+    checkKey(key);
+    index.put(key.clone(), engine.write(value));
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    Long position = index.get(key);
+    return position == null ? null : read(position);
+  }
+
+  @Override
+  public boolean contains(Object[] key) {
+    return index.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return index.remove(key) != null;
+  }
+
+  @Override
+  public void clear(Object[] prefix) {
+    if (prefix.length == 0) {
+      index.clear();
+    } else {
+      index.subMap(prefix, true, after(prefix), false).clear();
+    }
+  }
+
+  @Override
+  public Iterator<Storage.Entry<V>> entries(Object[] prefix) {
+    return new EntryIterator(prefix);
+  }
+
+  @Override
+  public Iterator<Object> keys(Object[] prefix) {
+    return new KeyIterator(prefix);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V read(long position) {
+    return (V) engine.read(position);
+  }
+
+  private static void checkKey(Object[] key) {
+    if (key.length == 0) {
+      throw new IllegalArgumentException("Key must not be empty");
+    }
+    for (Object element : key) {
+      if (!(element instanceof Comparable)) {
+        throw new IllegalArgumentException("Key elements must be comparable: " + Arrays.toString(key));
+      }
+    }
+  }
+
+  private static Object[] after(Object[] prefix) {
+    Object[] after = Arrays.copyOf(prefix, prefix.length + 1);
+    after[prefix.length] = AFTER;
+    return after;
+  }
+
+  private static boolean isStrictlyPrefixedBy(Object[] key, Object[] prefix) {
+    if (key.length <= prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (compareElements(key[i], prefix[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int compareKeys(Object[] k1, Object[] k2) {
+    int length = Math.min(k1.length, k2.length);
+    for (int i = 0; i < length; i++) {
+      int cmp = compareElements(k1[i], k2[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(k1.length, k2.length);
+  }
+
+  /**
+   * Elements of the same class are compared naturally, others by name of class
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int compareElements(Object e1, Object e2) {
+    if (e1 == e2) {
+      return 0;
+    }
+    if (e1 == AFTER) {
+      return 1;
+    }
+    if (e2 == AFTER) {
+      return -1;
+    }
+    if (e1.getClass() == e2.getClass()) {
+      return ((Comparable) e1).compareTo(e2);
+    }
+    return e1.getClass().getName().compareTo(e2.getClass().getName());
+  }
+
+  private class EntryIterator implements Iterator<Storage.Entry<V>> {
+    private final Object[] prefix;
+    private Object[] lastKey;
+    private Map.Entry<Object[], Long> next;
+
+    private EntryIterator(Object[] prefix) {
+      this.prefix = prefix;
+      this.lastKey = prefix;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        Map.Entry<Object[], Long> entry = index.higherEntry(lastKey);
+        if (entry != null && isStrictlyPrefixedBy(entry.getKey(), prefix)) {
+          next = entry;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Storage.Entry<V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastKey = next.getKey();
+      Storage.Entry<V> entry = new Storage.Entry<>(lastKey.clone(), read(next.getValue()));
+      next = null;
+      return entry;
+    }
+  }
+
+  private class KeyIterator implements Iterator<Object> {
+    private final Object[] prefix;
+    private Object[] lastKey;
+    private Object next;
+
+    private KeyIterator(Object[] prefix) {
+      this.prefix = prefix;
+      this.lastKey = prefix;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        Object[] key = index.higherKey(lastKey);
+        if (key != null && isStrictlyPrefixedBy(key, prefix)) {
+          next = key[prefix.length];
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Object next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Object element = next;
+      Object[] elementPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+      elementPrefix[prefix.length] = element;
+      lastKey = after(elementPrefix);
+      next = null;
+      return element;
+    }
+  }
+}
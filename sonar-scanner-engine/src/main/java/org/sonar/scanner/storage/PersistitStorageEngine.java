@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.base.Preconditions;
+import com.persistit.Exchange;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.Volume;
+import com.persistit.encoding.CoderContext;
+import com.persistit.exception.PersistitException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores are the trees of a temporary Persistit volume.
+ */
+class PersistitStorageEngine implements StorageEngine {
+
+  private final Map<String, Exchange> exchanges = new HashMap<>();
+  private final Persistit persistit;
+  private Volume volume;
+
+  PersistitStorageEngine(Persistit persistit) {
+    this.persistit = persistit;
+    try {
+      persistit.flush();
+      volume = persistit.createTemporaryVolume();
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to create a cache volume", e);
+    }
+  }
+
+  @Override
+  public <T> void registerValueCoder(Class<T> clazz, ValueCoder<T> coder) {
+    persistit.getCoderManager().registerValueCoder(clazz, new PersistitValueCoder<>(clazz, coder));
+  }
+
+  @Override
+  public <V> KeyValueStore<V> createStore(String name) {
+    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(!exchanges.containsKey(name), "Cache is already created: %s", name);
+    try {
+      Exchange exchange = persistit.getExchange(volume, name, true);
+      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      exchanges.put(name, exchange);
+      return new PersistitStore<>(name, exchange);
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to create cache: " + name, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    exchanges.values().forEach(persistit::releaseExchange);
+    exchanges.clear();
+
+    if (volume != null) {
+      try {
+        volume.close();
+        volume.delete();
+      } catch (PersistitException e) {
+        throw new IllegalStateException("Fail to close caches", e);
+      }
+      volume = null;
+    }
+  }
+
+  private static class PersistitValueCoder<T> implements com.persistit.encoding.ValueCoder {
+    private final Class<T> clazz;
+    private final ValueCoder<T> coder;
+
+    private PersistitValueCoder(Class<T> clazz, ValueCoder<T> coder) {
+      this.clazz = clazz;
+      this.coder = coder;
+    }
+
+    @Override
+    public void put(Value value, Object object, CoderContext context) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream output = new DataOutputStream(bytes)) {
+        coder.write(output, clazz.cast(object));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to encode value of " + clazz, e);
+      }
+      value.putByteArray(bytes.toByteArray());
+    }
+
+    @Override
+    public Object get(Value value, Class<?> c, CoderContext context) {
+      try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(value.getByteArray()))) {
+        return coder.read(input);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to decode value of " + clazz, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+/**
+ * Backend of {@link Storages}. Each instance of {@link Storages} uses its own engine, created by
+ * {@link StoragesManager}, and closes it when stopped.
+ */
+interface StorageEngine {
+
+  <T> void registerValueCoder(Class<T> clazz, ValueCoder<T> coder);
+
+  /**
+   * @throws IllegalStateException if a store with the same name already exists
+   */
+  <V> KeyValueStore<V> createStore(String name);
+
+  /**
+   * Releases all the stores and deletes their data
+   */
+  void close();
+
+}
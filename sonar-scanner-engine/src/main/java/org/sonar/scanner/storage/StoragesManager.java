@@ -24,32 +24,49 @@ import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 /**
- * Factory of storages
+ * Factory of storages. The engine is selected by the property {@link #ENGINE_PROPERTY}:
+ * <ul>
+ *   <li>{@value #LOG_ENGINE} (default): values are appended to a log, kept in memory then spilled to a memory-mapped file</li>
+ *   <li>{@value #PERSISTIT_ENGINE}: values are stored in the B-trees of Persistit</li>
+ * </ul>
  *
  * @since 3.6
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+  public static final String ENGINE_PROPERTY = "sonar.scanner.storage";
+  public static final String LOG_ENGINE = "log";
+  public static final String PERSISTIT_ENGINE = "persistit";
+
+  private final AtomicInteger engineCount = new AtomicInteger();
   private File tempDir;
   private Persistit persistit;
-  private final TempFolder tempFolder;
 
-  public StoragesManager(TempFolder tempFolder) {
-    this.tempFolder = tempFolder;
-    initPersistit();
+  public StoragesManager(TempFolder tempFolder, GlobalProperties globalProperties) {
+    this.tempDir = tempFolder.newDir("caches");
+    String engine = StringUtils.defaultIfBlank(globalProperties.property(ENGINE_PROPERTY), LOG_ENGINE);
+    if (PERSISTIT_ENGINE.equals(engine)) {
+      initPersistit();
+    } else if (!LOG_ENGINE.equals(engine)) {
+      throw new IllegalArgumentException(String.format("Unsupported value of property %s: %s. Supported values are %s and %s",
+        ENGINE_PROPERTY, engine, LOG_ENGINE, PERSISTIT_ENGINE));
+    }
   }
 
   private void initPersistit() {
     try {
-      tempDir = tempFolder.newDir("caches");
       persistit = new Persistit();
       persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
       Properties props = new Properties();
@@ -88,10 +105,21 @@ public class StoragesManager implements Startable {
     tempDir = null;
   }
 
+  StorageEngine newEngine() {
+    if (persistit != null) {
+      return new PersistitStorageEngine(persistit);
+    }
+    return new LogStorageEngine(new File(tempDir, "storage" + engineCount.incrementAndGet() + ".log"));
+  }
+
   File tempDir() {
     return tempDir;
   }
 
+  /**
+   * Null if Persistit is not the selected engine or if the manager is stopped
+   */
+  @CheckForNull
   Persistit persistit() {
     return persistit;
   }
@@ -36,6 +36,7 @@ import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.util.CloseableIterator;
@@ -85,7 +86,7 @@ public class CpdExecutorTest {
     settings = new MapSettings();
     publisher = mock(ReportPublisher.class);
     when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
-    index = new SonarCpdBlockIndex(publisher, settings);
+    index = new SonarCpdBlockIndex(publisher, settings, new DefaultTempFolder(temp.newFolder()));
     componentStore = new InputComponentStore(new PathResolver());
     executor = new CpdExecutor(settings, index, publisher, componentStore);
     reader = new ScannerReportReader(outputDir);
@@ -206,9 +207,59 @@ public class CpdExecutorTest {
     assertDuplication(dups[1], 15, 214, batchComponent3.batchId(), 15, 214);
   }
 
+  @Test
+  public void threads() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+
+    settings.setProperty("sonar.cpd.threads", 4);
+    assertThat(executor.getThreads()).isEqualTo(4);
+
+    settings.setProperty("sonar.cpd.threads", -1);
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void detectDuplicationsConcurrently() {
+    settings.setProperty("sonar.cpd.threads", 3);
+    detectDuplicationsBetweenThreeFiles();
+  }
+
+  @Test
+  public void detectDuplicationsWithBlocksStoredOnDisk() throws IOException {
+    settings.setProperty("sonar.cpd.maxBlocksInMemory", 4);
+    index = new SonarCpdBlockIndex(publisher, settings, new DefaultTempFolder(temp.newFolder()));
+    executor = new CpdExecutor(settings, index, publisher, componentStore);
+    detectDuplicationsBetweenThreeFiles();
+    index.stop();
+  }
+
+  private void detectDuplicationsBetweenThreeFiles() {
+    for (DefaultInputFile component : Arrays.asList(batchComponent1, batchComponent2, batchComponent3)) {
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 3; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(100 * j, 100 * j + 99)
+          .setBlockHash(new ByteArray(("hash000" + j).getBytes()))
+          .build());
+      }
+      index.insert(component, blocks);
+    }
+
+    executor.execute();
+
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 4, 2);
+    assertThat(dups[0].getDuplicateList()).extracting(Duplicate::getOtherFileRef).containsExactly(batchComponent2.batchId(), batchComponent3.batchId());
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(1);
+    assertThat(reader.readComponentDuplications(batchComponent3.batchId())).hasSize(1);
+  }
+
   @Test
   public void failOnMissingComponent() {
-    executor.runCpdAnalysis(null, "unknown", Collections.emptyList(), 1);
+    assertThat(executor.submitCpdAnalysis(null, "unknown", Collections.emptyList())).isNull();
     readDuplications(0);
     assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Resource not found in component store: unknown. Skipping CPD computation for it");
   }
@@ -42,16 +42,18 @@ public abstract class AbstractCachesTest {
   protected static StoragesManager cachesManager;
   protected Storages caches;
 
-  private static StoragesManager createCacheOnTemp() {
+  protected static StoragesManager createCacheOnTemp(String engine) {
     Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
-      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      StoragesManager.ENGINE_PROPERTY, engine);
 
-    return new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    GlobalProperties globalProperties = new GlobalProperties(props);
+    return new StoragesManager(new GlobalTempFolderProvider().provide(globalProperties), globalProperties);
   }
 
   @BeforeClass
   public static void startClass() {
-    cachesManager = createCacheOnTemp();
+    cachesManager = createCacheOnTemp(StoragesManager.LOG_ENGINE);
     cachesManager.start();
   }
 
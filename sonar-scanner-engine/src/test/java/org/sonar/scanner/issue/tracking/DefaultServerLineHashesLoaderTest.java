@@ -19,58 +19,106 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import java.io.StringReader;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.sonar.api.utils.HttpDownloader;
+import org.mockito.ArgumentCaptor;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.sonar.scanner.issue.tracking.DefaultServerLineHashesLoader.MAX_FILES_PER_REQUEST;
 
 public class DefaultServerLineHashesLoaderTest {
-  private ScannerWsClient wsClient;
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  private ScannerWsClient wsClient;
+  private DefaultServerLineHashesLoader underTest;
+
   @Before
   public void before() {
     wsClient = mock(ScannerWsClient.class);
+    underTest = new DefaultServerLineHashesLoader(wsClient);
   }
 
   @Test
-  public void should_download_source_from_ws_if_preview_mode() {
-    WsTestUtil.mockReader(wsClient, new StringReader("ae12\n\n43fb"));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+  public void should_download_line_hashes_of_requested_files() throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    LineHashes.newBuilder().setFileKey("myproject:org/foo/Bar.c").addAllLineHash(asList("ae12", "", "43fb")).build().writeDelimitedTo(bos);
+    LineHashes.newBuilder().setFileKey("myproject:org/foo/Foo Bar.c").addLineHash("ab34").build().writeDelimitedTo(bos);
+    WsTestUtil.mockStream(wsClient, "/batch/line_hashes", new ByteArrayInputStream(bos.toByteArray()));
 
-    String[] hashes = lastSnapshots.getLineHashes("myproject:org/foo/Bar.c");
-    assertThat(hashes).containsOnly("ae12", "", "43fb");
-    WsTestUtil.verifyCall(wsClient, "/api/sources/hash?key=myproject%3Aorg%2Ffoo%2FBar.c");
+    List<LineHashes> result = new ArrayList<>();
+    underTest.load("myproject:myBranch", asList("myproject:org/foo/Bar.c", "myproject:org/foo/Foo Bar.c"), lineHashes -> {
+      result.add(lineHashes);
+      return null;
+    });
+
+    assertThat(result).extracting(LineHashes::getFileKey).containsExactly("myproject:org/foo/Bar.c", "myproject:org/foo/Foo Bar.c");
+    assertThat(result.get(0).getLineHashList()).containsExactly("ae12", "", "43fb");
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient).call(request.capture());
+    assertThat(request.getValue().getMethod()).isEqualTo(WsRequest.Method.POST);
+    assertThat(request.getValue().getParameters().getValue("key")).isEqualTo("myproject:myBranch");
+    assertThat(request.getValue().getParameters().getValues("files")).containsExactly("myproject:org/foo/Bar.c", "myproject:org/foo/Foo Bar.c");
   }
 
   @Test
-  public void should_download_source_with_space_from_ws_if_preview_mode() {
-    WsTestUtil.mockReader(wsClient, new StringReader("ae12\n\n43fb"));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+  public void should_split_files_in_several_requests() {
+    when(wsClient.call(any(WsRequest.class))).thenAnswer(invocation -> {
+      WsResponse response = mock(WsResponse.class);
+      when(response.contentStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+      return response;
+    });
+    List<String> fileKeys = IntStream.range(0, MAX_FILES_PER_REQUEST + 1).mapToObj(i -> "myproject:File" + i).collect(Collectors.toList());
+
+    underTest.load("myproject", fileKeys, mock(Function.class));
 
-    String[] hashes = lastSnapshots.getLineHashes("myproject:org/foo/Foo Bar.c");
-    assertThat(hashes).containsOnly("ae12", "", "43fb");
-    WsTestUtil.verifyCall(wsClient, "/api/sources/hash?key=myproject%3Aorg%2Ffoo%2FFoo+Bar.c");
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues().get(0).getParameters().getValues("files")).hasSize(MAX_FILES_PER_REQUEST);
+    assertThat(requests.getAllValues().get(1).getParameters().getValues("files")).containsExactly("myproject:File" + MAX_FILES_PER_REQUEST);
   }
 
   @Test
-  public void should_fail_to_download_source_from_ws() throws URISyntaxException {
-    WsTestUtil.mockException(wsClient, new HttpDownloader.HttpException(new URI(""), 500));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+  public void should_not_call_server_if_no_files() {
+    underTest.load("myproject", Collections.emptyList(), mock(Function.class));
 
-    thrown.expect(HttpDownloader.HttpException.class);
-    lastSnapshots.getLineHashes("foo");
+    verifyZeroInteractions(wsClient);
   }
 
+  @Test
+  public void should_fail_if_response_can_not_be_read() throws IOException {
+    InputStream is = mock(InputStream.class);
+    when(is.read()).thenThrow(IOException.class);
+    WsTestUtil.mockStream(wsClient, "/batch/line_hashes", is);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to get line hashes");
+
+    underTest.load("foo", asList("foo:Bar.c"), mock(Function.class));
+  }
 }
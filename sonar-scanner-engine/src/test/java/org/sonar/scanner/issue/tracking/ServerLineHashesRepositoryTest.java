@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import java.util.Collection;
+import java.util.function.Function;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.InputFile.Status;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.scanner.index.AbstractCachesTest;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
+import org.sonar.scanner.scan.ImmutableProjectReactor;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ServerLineHashesRepositoryTest extends AbstractCachesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private ServerLineHashesLoader loader = mock(ServerLineHashesLoader.class);
+  private ImmutableProjectReactor reactor = new ImmutableProjectReactor(ProjectDefinition.create().setKey("foo"));
+  private InputComponentStore componentStore = new InputComponentStore(new PathResolver());
+
+  @Before
+  public void prepareModules() throws Exception {
+    DefaultInputModule root = TestInputFileBuilder.newDefaultInputModule("foo", temp.newFolder());
+    DefaultInputModule module = TestInputFileBuilder.newDefaultInputModule("foo:core", temp.newFolder());
+    root.definition().addSubProject(module.definition());
+    componentStore.put(root);
+    componentStore.put(module);
+  }
+
+  @Test
+  public void load_line_hashes_of_changed_files_once() {
+    componentStore.put(newFile("foo", "src/Foo.java", Status.CHANGED));
+    componentStore.put(newFile("foo:core", "src/Bar.java", Status.CHANGED));
+    componentStore.put(newFile("foo", "src/Same.java", Status.SAME));
+    componentStore.put(newFile("foo", "src/Added.java", Status.ADDED));
+    doAnswer(invocation -> {
+      Function<LineHashes, Void> consumer = (Function<LineHashes, Void>) invocation.getArguments()[2];
+      consumer.apply(LineHashes.newBuilder().setFileKey("foo:src/Foo.java").addLineHash("ab12").addLineHash("").build());
+      consumer.apply(LineHashes.newBuilder().setFileKey("foo:core:src/Bar.java").addLineHash("cd34").build());
+      return null;
+    }).when(loader).load(eq("foo"), any(Collection.class), any(Function.class));
+    ServerLineHashesRepository underTest = new ServerLineHashesRepository(caches, loader, reactor, componentStore);
+
+    assertThat(underTest.getLineHashes("foo:src/Foo.java")).containsExactly("ab12", "");
+    assertThat(underTest.getLineHashes("foo:core:src/Bar.java")).containsExactly("cd34");
+    assertThat(underTest.getLineHashes("foo:src/Missing.java")).isNull();
+    ArgumentCaptor<Collection> fileKeys = ArgumentCaptor.forClass(Collection.class);
+    verify(loader).load(eq("foo"), fileKeys.capture(), any(Function.class));
+    assertThat(fileKeys.getValue()).containsOnly("foo:src/Foo.java", "foo:core:src/Bar.java");
+  }
+
+  @Test
+  public void do_not_call_server_if_no_files_changed() {
+    componentStore.put(newFile("foo", "src/Same.java", Status.SAME));
+    ServerLineHashesRepository underTest = new ServerLineHashesRepository(caches, loader, reactor, componentStore);
+
+    assertThat(underTest.getLineHashes("foo:src/Same.java")).isNull();
+    verifyZeroInteractions(loader);
+  }
+
+  @Test
+  public void do_not_load_line_hashes_if_not_requested() {
+    new ServerLineHashesRepository(caches, loader, reactor, componentStore);
+
+    verifyZeroInteractions(loader);
+  }
+
+  private static DefaultInputFile newFile(String moduleKey, String path, Status status) {
+    return new TestInputFileBuilder(moduleKey, path).setStatus(status).setLines(1).build();
+  }
+}
@@ -46,7 +46,7 @@ public class SourceHashHolderTest {
 
   SourceHashHolder sourceHashHolder;
 
-  ServerLineHashesLoader lastSnapshots;
+  ServerLineHashesRepository lastSnapshots;
   DefaultInputFile file;
 
   private File ioFile;
@@ -54,7 +54,7 @@ public class SourceHashHolderTest {
 
   @Before
   public void setUp() throws Exception {
-    lastSnapshots = mock(ServerLineHashesLoader.class);
+    lastSnapshots = mock(ServerLineHashesRepository.class);
     file = mock(DefaultInputFile.class);
     ioFile = temp.newFile();
     when(file.file()).thenReturn(ioFile);
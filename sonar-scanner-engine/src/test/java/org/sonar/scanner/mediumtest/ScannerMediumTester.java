@@ -28,7 +28,9 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -55,6 +57,7 @@ import org.sonar.batch.bootstrapper.IssueListener;
 import org.sonar.batch.bootstrapper.LogOutput;
 import org.sonar.scanner.bootstrap.GlobalMode;
 import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
+import org.sonar.scanner.protocol.input.ScannerInput.LineHashes;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.repository.FileData;
@@ -475,11 +478,12 @@ public class ScannerMediumTester {
     private Map<String, String[]> byKey = new HashMap<>();
 
     @Override
-    public String[] getLineHashes(String fileKey) {
-      if (byKey.containsKey(fileKey)) {
-        return byKey.get(fileKey);
-      } else {
-        throw new IllegalStateException("You forgot to mock line hashes for " + fileKey);
+    public void load(String componentKey, Collection<String> fileKeys, Function<LineHashes, Void> consumer) {
+      for (String fileKey : fileKeys) {
+        String[] lineHashes = byKey.get(fileKey);
+        if (lineHashes != null) {
+          consumer.apply(LineHashes.newBuilder().setFileKey(fileKey).addAllLineHash(Arrays.asList(lineHashes)).build());
+        }
       }
     }
   }
@@ -20,7 +20,12 @@
 package org.sonar.scanner.scan.filesystem;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -44,6 +49,8 @@ public class InputFileBuilderTest {
 
   private Path baseDir;
   private InputFileBuilder builder;
+  private LanguageDetection langDetection = mock(LanguageDetection.class);
+  private MetadataGenerator metadataGenerator = mock(MetadataGenerator.class);
 
   @Before
   public void setUp() throws IOException {
@@ -53,8 +60,6 @@ public class InputFileBuilderTest {
       .setBaseDir(baseDir.toFile()), 0);
 
     PathResolver pathResolver = new PathResolver();
-    LanguageDetection langDetection = mock(LanguageDetection.class);
-    MetadataGenerator metadataGenerator = mock(MetadataGenerator.class);
     BatchIdGenerator idGenerator = new BatchIdGenerator();
     Settings settings = new MapSettings();
     builder = new InputFileBuilder(module, pathResolver, langDetection, metadataGenerator, idGenerator, settings);
@@ -70,4 +75,23 @@ public class InputFileBuilderTest {
     assertThat(inputFile.key()).isEqualTo("module1:src/File1.xoo");
     assertThat(inputFile.publish()).isFalse();
   }
+
+  @Test
+  public void generate_metadata_of_published_files_when_indexing() {
+    when(langDetection.language(any())).thenReturn("xoo");
+    DefaultInputFile inputFile = builder.create(baseDir.resolve("src/File1.xoo"), Type.MAIN, StandardCharsets.UTF_8);
+
+    builder.checkMetadata(inputFile);
+
+    verify(metadataGenerator).setMetadata(eq(inputFile), eq(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void generate_metadata_of_other_files_lazily() {
+    DefaultInputFile inputFile = builder.create(baseDir.resolve("src/File1.xoo"), Type.MAIN, StandardCharsets.UTF_8);
+
+    builder.checkMetadata(inputFile);
+
+    verifyZeroInteractions(metadataGenerator);
+  }
 }
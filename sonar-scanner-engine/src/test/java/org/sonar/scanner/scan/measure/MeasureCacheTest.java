@@ -29,6 +29,8 @@ import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
+import org.sonar.scanner.storage.Storages;
+import org.sonar.scanner.storage.StoragesManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -114,10 +116,18 @@ public class MeasureCacheTest extends AbstractCachesTest {
     }
     DefaultMeasure<?> m = new DefaultMeasure().forMetric(CoreMetrics.COVERAGE_LINE_HITS_DATA).withValue(data.toString());
 
-    thrown.expect(IllegalStateException.class);
-    thrown.expectMessage("Fail to put element in the storage 'measures'");
-
-    measureCache.put(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, m);
+    // the limit only applies to the Persistit engine
+    StoragesManager persistitManager = createCacheOnTemp(StoragesManager.PERSISTIT_ENGINE);
+    Storages persistitCaches = new Storages(persistitManager);
+    try {
+      thrown.expect(IllegalStateException.class);
+      thrown.expectMessage("Fail to put element in the storage 'measures'");
+
+      new MeasureCache(persistitCaches, metricFinder).put(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, m);
+    } finally {
+      persistitCaches.stop();
+      persistitManager.stop();
+    }
   }
 
   @Test
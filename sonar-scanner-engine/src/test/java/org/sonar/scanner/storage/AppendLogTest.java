@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AppendLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void records_are_kept_in_heap_while_they_fit() throws IOException {
+    File file = new File(temp.newFolder(), "log");
+    AppendLog underTest = new AppendLog(file, 100, 16);
+
+    long first = underTest.append(bytes("foo"), 3);
+    long second = underTest.append(bytes("barbaz"), 6);
+
+    assertThat(first).isEqualTo(0L);
+    assertThat(second).isEqualTo(7L);
+    assertThat(underTest.size()).isEqualTo(17L);
+    assertThat(underTest.read(first)).isEqualTo(bytes("foo"));
+    assertThat(underTest.read(second)).isEqualTo(bytes("barbaz"));
+    assertThat(underTest.file()).isNull();
+    assertThat(file).doesNotExist();
+
+    underTest.close();
+  }
+
+  @Test
+  public void records_spill_to_mapped_segments() throws IOException {
+    File file = new File(temp.newFolder(), "log");
+    AppendLog underTest = new AppendLog(file, 10, 16);
+
+    long[] positions = new long[50];
+    for (int i = 0; i < positions.length; i++) {
+      String value = "value" + i;
+      positions[i] = underTest.append(bytes(value), value.length());
+    }
+    // larger than a segment
+    String big = "0123456789abcdefghijklmnopqrstuvwxyz";
+    long bigPosition = underTest.append(bytes(big), big.length());
+
+    assertThat(underTest.file()).isEqualTo(file);
+    assertThat(file).exists();
+    for (int i = 0; i < positions.length; i++) {
+      assertThat(underTest.read(positions[i])).isEqualTo(bytes("value" + i));
+    }
+    assertThat(underTest.read(bigPosition)).isEqualTo(bytes(big));
+
+    underTest.close();
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void append_only_the_given_length() throws IOException {
+    AppendLog underTest = new AppendLog(new File(temp.newFolder(), "log"));
+
+    long position = underTest.append(bytes("foobar"), 3);
+
+    assertThat(underTest.read(position)).isEqualTo(bytes("foo"));
+    underTest.close();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(UTF_8);
+  }
+}
@@ -210,6 +210,31 @@ public class StorageTest extends AbstractCachesTest {
     assertThat(cache.values()).isEmpty();
   }
 
+  @Test
+  public void integer_keys() {
+    Storage<String> cache = caches.createCache("issues");
+    cache.put(10, "b", "ten-b");
+    cache.put(2, "a", "two-a");
+    cache.put(10, "a", "ten-a");
+
+    assertThat(cache.keySet()).containsExactly(2, 10);
+    assertThat(cache.values(10)).containsExactly("ten-a", "ten-b");
+    assertThat(cache.values()).containsExactly("two-a", "ten-a", "ten-b");
+  }
+
+  @Test
+  public void put_while_iterating() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+
+    for (Entry<String> entry : cache.entries("europe")) {
+      cache.put(entry.key()[0], entry.key()[1], entry.value().toUpperCase());
+    }
+
+    assertThat(cache.values()).containsExactly("PARIS", "ROME");
+  }
+
   @Test
   public void remove_versus_clear() {
     Storage<String> cache = caches.createCache("capitals");
@@ -19,24 +19,56 @@
  */
 package org.sonar.scanner.storage;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.scanner.index.AbstractCachesTest;
 import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class StoragesManagerTest extends AbstractCachesTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Test
   public void should_stop_and_clean_temp_dir() {
     File tempDir = cachesManager.tempDir();
     assertThat(tempDir).isDirectory().exists();
-    assertThat(cachesManager.persistit()).isNotNull();
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    assertThat(cachesManager.persistit()).isNull();
 
     cachesManager.stop();
 
     assertThat(tempDir).doesNotExist();
     assertThat(cachesManager.tempDir()).isNull();
-    assertThat(cachesManager.persistit()).isNull();
+  }
+
+  @Test
+  public void should_start_and_stop_persistit() {
+    StoragesManager underTest = createCacheOnTemp(StoragesManager.PERSISTIT_ENGINE);
+    File tempDir = underTest.tempDir();
+    assertThat(underTest.persistit()).isNotNull();
+    assertThat(underTest.persistit().isInitialized()).isTrue();
+    StorageEngine engine = underTest.newEngine();
+    assertThat(engine).isInstanceOf(PersistitStorageEngine.class);
+    engine.close();
+
+    underTest.stop();
+
+    assertThat(tempDir).doesNotExist();
+    assertThat(underTest.persistit()).isNull();
+  }
+
+  @Test
+  public void log_engine_is_used_by_default() {
+    assertThat(cachesManager.newEngine()).isInstanceOf(LogStorageEngine.class);
+  }
+
+  @Test
+  public void fail_if_engine_is_not_supported() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unsupported value of property sonar.scanner.storage: foo. Supported values are log and persistit");
+
+    createCacheOnTemp("foo");
   }
 }
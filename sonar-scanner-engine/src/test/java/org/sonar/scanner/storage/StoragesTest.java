@@ -19,9 +19,11 @@
  */
 package org.sonar.scanner.storage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
-import com.persistit.exception.PersistitException;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
@@ -58,7 +60,7 @@ public class StoragesTest extends AbstractCachesTest {
     caches.stop();
 
     // manager continues up
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    assertThat(cachesManager.tempDir()).isDirectory();
 
     caches = new Storages(cachesManager);
     caches.start();
@@ -66,7 +68,7 @@ public class StoragesTest extends AbstractCachesTest {
   }
 
   @Test
-  public void leak_test() throws PersistitException {
+  public void leak_test() {
     caches.stop();
 
     int len = 1 * 1024 * 1024;
@@ -80,14 +82,44 @@ public class StoragesTest extends AbstractCachesTest {
       caches.start();
       Storage<String> c = caches.<String>createCache("test" + i);
       c.put("key" + i, sb.toString());
-      cachesManager.persistit().flush();
 
       caches.stop();
     }
   }
 
+  @Test
+  public void should_use_registered_value_coder() {
+    caches.registerValueCoder(Element.class, new ElementValueCoder());
+    Storage<Element> cache = caches.createCache("elements");
+
+    cache.put("foo", new Element("bar"));
+
+    assertThat(cache.get("foo").name).isEqualTo("bar-decoded");
+  }
+
   private static class Element implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    private final String name;
+
+    Element() {
+      this("");
+    }
+
+    Element(String name) {
+      this.name = name;
+    }
+  }
+
+  private static class ElementValueCoder implements ValueCoder<Element> {
+    @Override
+    public void write(DataOutput output, Element value) throws IOException {
+      output.writeUTF(value.name);
+    }
+
+    @Override
+    public Element read(DataInput input) throws IOException {
+      return new Element(input.readUTF() + "-decoded");
+    }
   }
 }
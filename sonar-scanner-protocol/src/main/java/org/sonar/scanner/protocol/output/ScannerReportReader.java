@@ -31,7 +31,11 @@ public class ScannerReportReader {
   private final FileStructure fileStructure;
 
   public ScannerReportReader(File dir) {
-    this.fileStructure = new FileStructure(dir);
+    this(new FileStructure(dir));
+  }
+
+  public ScannerReportReader(FileStructure fileStructure) {
+    this.fileStructure = fileStructure;
   }
 
   public ScannerReport.Metadata readMetadata() {
@@ -21,10 +21,14 @@ package org.sonarsource.sonarqube.perf.scanner.suite;
 
 import com.sonar.orchestrator.Orchestrator;
 import com.sonar.orchestrator.build.MavenBuild;
+import com.sonar.orchestrator.build.SonarScanner;
 import com.sonar.orchestrator.locator.FileLocation;
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Properties;
 import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -79,6 +83,55 @@ public class DuplicationTest extends PerfTestCase {
     assertThat(measure.get("duplicated_lines")).isGreaterThan(50000.0);
   }
 
+  @Test
+  public void concurrent_detection_of_duplications_in_many_files() throws IOException {
+    File baseDir = prepareProjectWithDuplications(2000);
+
+    long sequentialDuration = computeDuplications(baseDir, 1);
+    orchestrator.resetData();
+    long concurrentDuration = computeDuplications(baseDir, 4);
+
+    System.out.printf("Test %s : duplications computed in %d ms with 1 thread, in %d ms with 4 threads (speedup %.2f)\n", testName.getMethodName(),
+      sequentialDuration, concurrentDuration, (double) sequentialDuration / concurrentDuration);
+    assertThat(concurrentDuration).isLessThan(sequentialDuration);
+  }
+
+  private long computeDuplications(File baseDir, int threads) throws IOException {
+    SonarScanner scanner = SonarScanner.create()
+      .setProperties(
+        "sonar.projectKey", "cpd-threads",
+        "sonar.projectName", "cpd threads",
+        "sonar.projectVersion", "1.0",
+        "sonar.sources", "src",
+        "sonar.scm.disabled", "true",
+        "sonar.cpd.xoo.minimumLines", "10",
+        "sonar.cpd.xoo.minimumTokens", "10",
+        "sonar.cpd.threads", String.valueOf(threads),
+        "sonar.showProfiling", "true")
+      .setEnvironmentVariable("SONAR_RUNNER_OPTS", "-Xmx1024m -server")
+      .setProjectDir(baseDir);
+    orchestrator.executeBuild(scanner);
+
+    Properties prof = readProfiling(baseDir, "cpd-threads");
+    return Long.valueOf(prof.getProperty("Computing duplications"));
+  }
+
+  private File prepareProjectWithDuplications(int nbFiles) throws IOException {
+    File baseDir = temp.newFolder();
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+
+    for (int nb = 1; nb <= nbFiles; nb++) {
+      StringBuilder content = new StringBuilder();
+      for (int line = 1; line <= 500; line++) {
+        // the first 200 lines are duplicated in all the files
+        content.append(line <= 200 ? ("common line " + line) : ("line " + line + " of file " + nb)).append("\n");
+      }
+      FileUtils.write(new File(srcDir, "sample" + nb + ".xoo"), content.toString());
+    }
+    return baseDir;
+  }
+
   private Map<String, Double> getMeasures(String key) {
     return newWsClient().measures().component(new ComponentWsRequest()
       .setComponentKey(key)
@@ -63,6 +63,12 @@ public class MemoryTest extends PerfTestCase {
       newScanner("-Xmx80m -server -XX:-HeapDumpOnOutOfMemoryError"));
   }
 
+  @Test
+  public void should_not_fail_with_limited_xmx_memory_and_persistit_storage() {
+    orchestrator.executeBuild(
+      newScanner("-Xmx80m -server -XX:-HeapDumpOnOutOfMemoryError", "sonar.scanner.storage", "persistit"));
+  }
+
   int DEPTH = 4;
 
   // Property on root module is duplicated in each module so it may be big